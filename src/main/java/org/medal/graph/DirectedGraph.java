@@ -0,0 +1,27 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph;
+
+/**
+ * A graph which edges are oriented: an edge leads from its {@code left} node
+ * to its {@code right} node. Nodes of such a graph provide direction aware
+ * navigation, see {@link DirectedNode}.
+ *
+ * @author skrymets
+ */
+public interface DirectedGraph<N extends DirectedNode<N, E>, E extends Edge<N, E>> extends Graph<N, E> {
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * A node of a directed graph. Every edge is oriented from its {@code left}
+ * (source) node to its {@code right} (target) node.
+ *
+ * @author skrymets
+ */
+public interface DirectedNode<N extends DirectedNode<N, E>, E extends Edge<N, E>> extends Node<N, E> {
+
+    /**
+     * Returns a collection of edges that start at this node, i.e. edges which
+     * {@code left} node is this node. A self-loop is both an outgoing and an
+     * incoming edge.
+     *
+     * @return an unmodifiable collection of edges. May be empty, but never {@code null}.
+     */
+    Collection<E> outEdges();
+
+    /**
+     * Returns a collection of edges that end at this node, i.e. edges which
+     * {@code right} node is this node. A self-loop is both an outgoing and an
+     * incoming edge.
+     *
+     * @return an unmodifiable collection of edges. May be empty, but never {@code null}.
+     */
+    Collection<E> inEdges();
+
+    /**
+     * Returns a set of nodes this node has an outgoing edge to.
+     *
+     * @return an unmodifiable set of nodes. May be empty, but never {@code null}.
+     */
+    Set<N> successors();
+
+    /**
+     * Returns a set of nodes that have an outgoing edge to this node.
+     *
+     * @return an unmodifiable set of nodes. May be empty, but never {@code null}.
+     */
+    Set<N> predecessors();
+
+    /**
+     * Returns the number of edges that end at this node.
+     *
+     * @return the number of incoming edges
+     */
+    long inDegree();
+
+    /**
+     * Returns the number of edges that start at this node.
+     *
+     * @return the number of outgoing edges
+     */
+    long outDegree();
+
+}
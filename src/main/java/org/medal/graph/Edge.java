@@ -26,6 +26,26 @@ public interface Edge<N extends Node<N, E>, E extends Edge<N, E>> {
      */
     Graph<N, E> graph();
 
+    /**
+     * Returns an identifier of this edge. Identifiers are assigned by the graph
+     * in the order edges are created and are never reused within that graph.
+     *
+     * @return a non-negative identifier, unique within the edge's graph
+     */
+    int id();
+
+    /**
+     * Returns the number of parallel edges this edge stands for. A graph which folds
+     * parallel edges keeps a single edge between two nodes, and counts how many
+     * times the nodes have been connected; any other graph keeps every parallel
+     * edge on its own.
+     *
+     * @return a positive number, 1 unless parallel edges have been folded into this edge
+     */
+    default long multiplicity() {
+        return 1;
+    }
+
     /**
      * Returns a node that is linked to the specified {@code node} by this edge.
      *
@@ -16,6 +16,8 @@
 package org.medal.graph;
 
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public interface Graph<N extends Node<N, E>, E extends Edge<N, E>> {
 
@@ -70,4 +72,35 @@ public interface Graph<N extends Node<N, E>, E extends Edge<N, E>> {
      */
     void deleteEdge(E edge);
 
+    /**
+     * Returns a live, read-only view of the part of this graph which nodes satisfy
+     * {@code nodeFilter} and which edges satisfy {@code edgeFilter}. An edge is a
+     * member of the view only if both of its nodes are members too. Nothing is
+     * copied: membership is evaluated lazily while the view is being traversed.
+     *
+     * @param nodeFilter a predicate which selects nodes of the view
+     * @param edgeFilter a predicate which selects edges of the view
+     * @return a subgraph view, never {@code null}
+     * @throws NullPointerException if either of the filters is {@code null}
+     */
+    Subgraph<N, E> subgraph(Predicate<? super N> nodeFilter, Predicate<? super E> edgeFilter);
+
+    /**
+     * Applies a batch of changes atomically. The {@code work} stages the changes
+     * through the given transaction, and nothing is applied to this graph while it
+     * runs. When the work returns, the staged changes are validated once and applied
+     * in a single pass, so that listeners and indexes of the graph are updated once
+     * per batch. If the work throws, or rolls the transaction back, this graph is
+     * left unchanged. Once applying has begun, the batch is applied in full: a
+     * listener which throws meanwhile does not interrupt it, and its failure is
+     * rethrown afterwards.
+     *
+     * @param work a function which stages the changes
+     * @throws NullPointerException                      if {@code work} is {@code null}
+     * @throws java.util.ConcurrentModificationException if the graph has been changed
+     *                                                   outside of the transaction meanwhile
+     * @throws UnsupportedOperationException             if this graph does not support transactions
+     */
+    void transaction(Consumer<? super Transaction<N, E>> work);
+
 }
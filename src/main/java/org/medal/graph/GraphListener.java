@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph;
+
+/**
+ * Receives notifications about structural changes of a graph. Every public
+ * mutation of a graph is reported as a sequence of the primitive changes below,
+ * in the order they are applied. For example, deleting a node reports deletion of
+ * each of its incident edges first, and then deletion of the node itself;
+ * collapsing an edge reports creation of the collapsed node, relinking of the
+ * neighbouring edges, deletion of the collapsed edge and of its former ends.
+ * <p>
+ * Notifications are delivered synchronously, on the thread that mutates the
+ * graph, after the change has been applied.
+ * <p>
+ * A {@link Graph#transaction(java.util.function.Consumer) transaction} reports the
+ * net primitive changes of its batch between {@link #batchStarted(int)} and
+ * {@link #batchCompleted()}.
+ *
+ * @author skrymets
+ */
+public interface GraphListener<N extends Node<N, E>, E extends Edge<N, E>> {
+
+    /**
+     * A node has been added to the graph.
+     *
+     * @param node a new node
+     */
+    default void nodeCreated(N node) {
+    }
+
+    /**
+     * A node has been removed from the graph. Its incident edges have been
+     * removed and reported before.
+     *
+     * @param node a removed node
+     */
+    default void nodeDeleted(N node) {
+    }
+
+    /**
+     * An edge has been added to the graph.
+     *
+     * @param edge a new edge
+     */
+    default void edgeCreated(E edge) {
+    }
+
+    /**
+     * An edge has been removed from the graph. The edge still refers its nodes.
+     *
+     * @param edge a removed edge
+     */
+    default void edgeDeleted(E edge) {
+    }
+
+    /**
+     * One end of an edge has been moved from {@code oldNode} to {@code newNode}.
+     *
+     * @param edge    a relinked edge, already referring {@code newNode}
+     * @param oldNode a node the edge has been detached from
+     * @param newNode a node the edge has been attached to
+     */
+    default void edgeRelinked(E edge, N oldNode, N newNode) {
+    }
+
+    /**
+     * Parallel edges have been folded into an existing edge, adding {@code count}
+     * to its {@link Edge#multiplicity() multiplicity}. Reported by graphs which fold
+     * parallel edges instead of creating them.
+     *
+     * @param edge  an edge which multiplicity has grown
+     * @param count the number of folded edges
+     */
+    default void edgeFolded(E edge, int count) {
+    }
+
+    /**
+     * A transaction is about to apply {@code changes} primitive changes, which are
+     * reported next. A listener which maintains a derived structure may stop
+     * following the changes, and rebuild the structure once the batch is completed.
+     *
+     * @param changes the number of primitive changes in the batch
+     */
+    default void batchStarted(int changes) {
+    }
+
+    /**
+     * All changes of a transaction have been applied and reported.
+     */
+    default void batchCompleted() {
+    }
+
+}
@@ -30,6 +30,15 @@ public interface Node<N extends Node<N, E>, E extends Edge<N, E>> {
      */
     Graph<N, E> graph();
 
+    /**
+     * Returns an identifier of this node. Identifiers are assigned by the graph
+     * in the order nodes are created and are never reused within that graph,
+     * which makes them suitable for indexing arrays and bit sets.
+     *
+     * @return a non-negative identifier, unique within the node's graph
+     */
+    int id();
+
     /**
      * Returns the number of edges incident on this node.
      * Self-loop edges counted twice.
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * A read-only view of a part of a parent graph. The view does not copy anything:
+ * its nodes and edges are the parent's objects, and its content follows changes
+ * made to the parent. Since nodes keep answering {@link Node#incidentEdges()} and
+ * {@link Node#adjacentNodes()} for the whole parent graph, the view provides its
+ * own filtered counterparts of these queries.
+ * <p>
+ * Mutating operations of {@link Graph} are not supported by a view and throw
+ * {@link UnsupportedOperationException}.
+ *
+ * @author skrymets
+ */
+public interface Subgraph<N extends Node<N, E>, E extends Edge<N, E>> extends Graph<N, E> {
+
+    /**
+     * Returns a graph this view is taken from.
+     *
+     * @return a parent graph, never {@code null}
+     */
+    Graph<N, E> parent();
+
+    /**
+     * Returns a collection of the {@code node}'s incident edges which belong to this view.
+     *
+     * @param node a node which incident edges are requested
+     * @return an unmodifiable collection of edges. Empty, if the {@code node} itself
+     * does not belong to this view, but never {@code null}.
+     */
+    Collection<E> incidentEdges(N node);
+
+    /**
+     * Returns a set of nodes that are adjacent to the {@code node} within this view.
+     *
+     * @param node a node which neighbours are requested
+     * @return an unmodifiable set of nodes. Empty, if the {@code node} itself
+     * does not belong to this view, but never {@code null}.
+     */
+    Set<N> adjacentNodes(N node);
+
+    /**
+     * Returns the number of the {@code node}'s incident edges which belong to this
+     * view. Self-loop edges counted twice.
+     *
+     * @param node a node which degree is requested
+     * @return the number of edges incident on the node within this view
+     */
+    long degree(N node);
+
+    /**
+     * Returns a view with the same filters as this one, which remembers the result
+     * of every membership test in a bit set indexed by node and edge identifiers.
+     * Repeated queries then cost a bit lookup instead of a predicate evaluation.
+     * <p>
+     * The cache assumes the filters give stable answers. Call {@link #invalidate()}
+     * when the attributes they look at, or the ends of an edge, have changed.
+     *
+     * @return a caching view, never {@code null}
+     */
+    Subgraph<N, E> cached();
+
+    /**
+     * Forgets all cached membership tests. Does nothing for a view without a cache.
+     */
+    void invalidate();
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph;
+
+import java.util.Collection;
+
+/**
+ * A batch of changes of a graph, see {@link Graph#transaction(java.util.function.Consumer)}.
+ * Changes are staged: the graph does not see them until the transaction is
+ * committed, while the methods of the transaction do. Nodes and edges created by a
+ * transaction already have their identifiers, but they may be used only with this
+ * transaction until it is committed.
+ *
+ * @author skrymets
+ */
+public interface Transaction<N extends Node<N, E>, E extends Edge<N, E>> {
+
+    /**
+     * Stages creation of a new node.
+     *
+     * @return a new node
+     * @throws IllegalStateException if the transaction is no longer active
+     */
+    N createNode();
+
+    /**
+     * Stages deletion of a node along with all of its edges.
+     *
+     * @param node a node to be deleted
+     * @return {@code true} if the node was deleted, {@code false} if it is not in the graph
+     * @throws IllegalStateException if the transaction is no longer active
+     */
+    boolean deleteNode(N node);
+
+    /**
+     * Stages creation of a new edge between two nodes.
+     *
+     * @param left  an end node of the relation
+     * @param right an end node of the relation
+     * @return a new edge
+     * @throws NullPointerException     if {@code left} or {@code right} node is {@code null}
+     * @throws IllegalArgumentException if either of the nodes is not in the graph
+     * @throws IllegalStateException    if the transaction is no longer active
+     */
+    E connect(N left, N right);
+
+    /**
+     * Stages deletion of an edge. If the {@code edge} is {@code null} or is not in the
+     * graph - does nothing.
+     *
+     * @param edge an edge to be deleted
+     * @throws IllegalStateException if the transaction is no longer active
+     */
+    void deleteEdge(E edge);
+
+    /**
+     * Stages a collapse of an edge, see {@link Edge#collapse()}.
+     *
+     * @param edge an edge to be collapsed
+     * @return a node which replaces both ends of the edge
+     * @throws IllegalArgumentException if the edge is not in the graph
+     * @throws IllegalStateException    if the transaction is no longer active
+     */
+    N collapse(E edge);
+
+    /**
+     * Stages a split of an edge with a new node, see {@link Edge#insertMiddleNode()}.
+     *
+     * @param edge an edge to be split
+     * @return the edges which replace the split one
+     * @throws IllegalArgumentException if the edge is not in the graph
+     * @throws IllegalStateException    if the transaction is no longer active
+     */
+    Edge.Split<N, E> insertMiddleNode(E edge);
+
+    /**
+     * Stages a split of an edge with the {@code middleNode}, see
+     * {@link Edge#insertMiddleNode(Node)}.
+     *
+     * @param edge       an edge to be split
+     * @param middleNode a node to be inserted
+     * @return the edges which replace the split one
+     * @throws NullPointerException     if {@code middleNode} is {@code null}
+     * @throws IllegalArgumentException if the edge or the node is not in the graph
+     * @throws IllegalStateException    if the transaction is no longer active
+     */
+    Edge.Split<N, E> insertMiddleNode(E edge, N middleNode);
+
+    /**
+     * Returns the edges of a node, as they are with the staged changes applied.
+     *
+     * @param node a node of the graph
+     * @return an unmodifiable collection of edges
+     * @throws IllegalArgumentException if the node is not in the graph
+     */
+    Collection<E> incidentEdges(N node);
+
+    /**
+     * Discards all staged changes. The transaction can not be used afterwards.
+     */
+    void rollback();
+
+}
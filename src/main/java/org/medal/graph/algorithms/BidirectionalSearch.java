@@ -0,0 +1,291 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.medal.graph.DirectedGraph;
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+import org.medal.graph.compact.CompactGraph;
+import org.medal.graph.compact.CompactGraph.Direction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Unweighted point-to-point shortest paths by a bidirectional breadth-first
+ * search over a {@link CompactGraph} snapshot. One search starts at the source
+ * and follows the snapshot's direction, another one starts at the target and
+ * follows the opposite direction; every step expands a whole level of the side
+ * which frontier is smaller. The searches stop as soon as they meet, having
+ * explored roughly two balls of half the distance instead of one ball of the full
+ * distance - on a small-world graph, a tiny fraction of it.
+ * <p>
+ * Visited marks are generation stamps: arrays of the size of the snapshot, which
+ * are marked with the number of the query rather than cleared after it. The
+ * arrays are pooled and reused by later queries, so a query allocates nothing
+ * but its result. The search is thread safe; concurrent queries take separate
+ * arrays from the pool.
+ * <p>
+ * The search works on a snapshot and does not follow later changes of the graph.
+ *
+ * @author skrymets
+ */
+public final class BidirectionalSearch<N extends Node<N, E>, E extends Edge<N, E>> {
+
+    private final CompactGraph<N, E> forward;
+
+    private final CompactGraph<N, E> backward;
+
+    private final Queue<State> pool = new ConcurrentLinkedQueue<>();
+
+    private BidirectionalSearch(CompactGraph<N, E> forward) {
+        this.forward = forward;
+        this.backward = forward.reverse();
+    }
+
+    /**
+     * Takes a snapshot of the {@code graph} and prepares a search over it. Paths of a
+     * {@link DirectedGraph} follow the direction of edges.
+     *
+     * @param graph a graph, or a view of a graph
+     * @return a search over a snapshot of the graph
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> BidirectionalSearch<N, E> of(Graph<N, E> graph) {
+        return of(CompactGraph.of(graph, graph instanceof DirectedGraph ? Direction.OUTGOING : Direction.BOTH));
+    }
+
+    /**
+     * Prepares a search over a snapshot. Paths follow the snapshot's direction.
+     *
+     * @param graph a snapshot of a graph
+     * @return a search over the snapshot
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> BidirectionalSearch<N, E> of(
+            CompactGraph<N, E> graph) {
+        return new BidirectionalSearch<>(requireNonNull(graph));
+    }
+
+    /**
+     * Returns the snapshot this search runs on.
+     *
+     * @return a snapshot of a graph
+     */
+    public CompactGraph<N, E> graph() {
+        return forward;
+    }
+
+    /**
+     * Returns the number of edges on a shortest path between two nodes.
+     *
+     * @param source a node to start from
+     * @param target a node to reach
+     * @return the distance, or {@code -1} if the {@code target} is not reachable
+     * @throws IllegalArgumentException if either of the nodes is not in the snapshot
+     */
+    public int distance(N source, N target) {
+        return distance(indexOf(source), indexOf(target));
+    }
+
+    /**
+     * Returns the number of edges on a shortest path between two nodes of the snapshot.
+     *
+     * @param source an index of a node to start from
+     * @param target an index of a node to reach
+     * @return the distance, or {@code -1} if the {@code target} is not reachable
+     */
+    public int distance(int source, int target) {
+        final State state = acquire();
+        try {
+            final int meeting = state.search(source, target);
+            return meeting < 0 ? -1 : state.forwardDistance[meeting] + state.backwardDistance[meeting];
+        } finally {
+            pool.offer(state);
+        }
+    }
+
+    /**
+     * Returns a shortest path between two nodes.
+     *
+     * @param source a node to start from
+     * @param target a node to reach
+     * @return edges of the path, in order from the {@code source} to the
+     * {@code target}; an empty list if the nodes are the same; nothing if the
+     * {@code target} is not reachable
+     * @throws IllegalArgumentException if either of the nodes is not in the snapshot
+     */
+    public Optional<List<E>> shortestPath(N source, N target) {
+        final int from = indexOf(source);
+        final int to = indexOf(target);
+
+        final State state = acquire();
+        try {
+            final int meeting = state.search(from, to);
+            if (meeting < 0) {
+                return Optional.empty();
+            }
+
+            final List<E> path = new ArrayList<>(state.forwardDistance[meeting] + state.backwardDistance[meeting]);
+            for (int node = meeting; node != from; ) {
+                final int edge = forward.slotEdge(state.forwardParent[node]);
+                path.add(forward.edge(edge));
+                node = opposite(edge, node);
+            }
+            Collections.reverse(path);
+            for (int node = meeting; node != to; ) {
+                final int edge = backward.slotEdge(state.backwardParent[node]);
+                path.add(backward.edge(edge));
+                node = opposite(edge, node);
+            }
+            return Optional.of(Collections.unmodifiableList(path));
+        } finally {
+            pool.offer(state);
+        }
+    }
+
+    private int indexOf(N node) {
+        final int index = forward.index(requireNonNull(node));
+        if (index < 0) {
+            throw new IllegalArgumentException("The node is not in the snapshot.");
+        }
+        return index;
+    }
+
+    private int opposite(int edge, int node) {
+        return forward.left(edge) == node ? forward.right(edge) : forward.left(edge);
+    }
+
+    private State acquire() {
+        final State state = pool.poll();
+        return state != null ? state : new State(forward.nodeCount());
+    }
+
+    /**
+     * Arrays of one search, reused by the queries which take them from the pool.
+     */
+    private final class State {
+
+        private final int[] forwardStamps;
+
+        private final int[] backwardStamps;
+
+        private final int[] forwardDistance;
+
+        private final int[] backwardDistance;
+
+        /**
+         * A slot by which a node has been reached.
+         */
+        private final int[] forwardParent;
+
+        private final int[] backwardParent;
+
+        private final int[] forwardQueue;
+
+        private final int[] backwardQueue;
+
+        private int generation;
+
+        private State(int nodeCount) {
+            forwardStamps = new int[nodeCount];
+            backwardStamps = new int[nodeCount];
+            forwardDistance = new int[nodeCount];
+            backwardDistance = new int[nodeCount];
+            forwardParent = new int[nodeCount];
+            backwardParent = new int[nodeCount];
+            forwardQueue = new int[nodeCount];
+            backwardQueue = new int[nodeCount];
+        }
+
+        /**
+         * Runs both searches until they meet.
+         *
+         * @return an index of a node on a shortest path, or {@code -1} if there is no path
+         */
+        private int search(int source, int target) {
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(forwardStamps, 0);
+                Arrays.fill(backwardStamps, 0);
+                generation = 0;
+            }
+            final int stamp = ++generation;
+
+            forwardStamps[source] = stamp;
+            forwardDistance[source] = 0;
+            backwardStamps[target] = stamp;
+            backwardDistance[target] = 0;
+            if (source == target) {
+                return source;
+            }
+
+            forwardQueue[0] = source;
+            backwardQueue[0] = target;
+            int forwardHead = 0;
+            int forwardTail = 1;
+            int backwardHead = 0;
+            int backwardTail = 1;
+
+            while (forwardHead < forwardTail && backwardHead < backwardTail) {
+                final boolean ahead = forwardTail - forwardHead <= backwardTail - backwardHead;
+                final CompactGraph<N, E> graph = ahead ? forward : backward;
+                final int[] stamps = ahead ? forwardStamps : backwardStamps;
+                final int[] distance = ahead ? forwardDistance : backwardDistance;
+                final int[] parent = ahead ? forwardParent : backwardParent;
+                final int[] queue = ahead ? forwardQueue : backwardQueue;
+                final int[] otherStamps = ahead ? backwardStamps : forwardStamps;
+                int head = ahead ? forwardHead : backwardHead;
+                int tail = ahead ? forwardTail : backwardTail;
+
+                // The first node reached by both searches lies on a shortest path:
+                // neither search has met the other one on its previous levels
+                final int levelEnd = tail;
+                while (head < levelEnd) {
+                    final int node = queue[head++];
+                    for (int slot = graph.firstSlot(node), end = graph.endSlot(node); slot < end; slot++) {
+                        final int next = graph.target(slot);
+                        if (stamps[next] != stamp) {
+                            stamps[next] = stamp;
+                            distance[next] = distance[node] + 1;
+                            parent[next] = slot;
+                            if (otherStamps[next] == stamp) {
+                                return next;
+                            }
+                            queue[tail++] = next;
+                        }
+                    }
+                }
+
+                if (ahead) {
+                    forwardHead = head;
+                    forwardTail = tail;
+                } else {
+                    backwardHead = head;
+                    backwardTail = tail;
+                }
+            }
+            return -1;
+        }
+
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.medal.graph.compact.CompactGraph;
+import org.medal.graph.compact.CompressedGraph;
+import org.medal.graph.compact.IntGraph;
+
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Breadth-first search over an {@link IntGraph}: hop distances from a source node,
+ * following the recorded neighbours of nodes. Runs on any adjacency with numbered
+ * nodes - a {@link CompactGraph} snapshot, or a {@link CompressedGraph}, which is
+ * read through a {@link IntGraph#cursor() cursor} so that its lists are decoded
+ * without allocating.
+ * <p>
+ * The queue and the distances are primitive arrays of the size of the adjacency,
+ * and the neighbours of a node are copied into a single buffer, grown to the
+ * largest degree met. The search is thread safe; every call has arrays of its own.
+ *
+ * @author skrymets
+ */
+public final class BreadthFirst {
+
+    private final IntGraph graph;
+
+    private BreadthFirst(IntGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Prepares a search over an adjacency.
+     *
+     * @param graph an adjacency
+     * @return a search over the adjacency
+     */
+    public static BreadthFirst of(IntGraph graph) {
+        return new BreadthFirst(requireNonNull(graph));
+    }
+
+    /**
+     * Computes the distances of all nodes from the {@code source}.
+     *
+     * @param source an index of a node to start from
+     * @return distances in hops, indexed as the nodes; {@code -1} for the nodes
+     * which are not reachable
+     */
+    public int[] distances(int source) {
+        return distances(source, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Computes the distances of the nodes within {@code maxDepth} hops from the
+     * {@code source}.
+     *
+     * @param source   an index of a node to start from
+     * @param maxDepth the maximum distance to explore
+     * @return distances in hops, indexed as the nodes; {@code -1} for the nodes
+     * which are farther or not reachable
+     * @throws IndexOutOfBoundsException if there is no node with the source index
+     * @throws IllegalArgumentException  if the depth is negative
+     */
+    public int[] distances(int source, int maxDepth) {
+        final int n = graph.nodeCount();
+        if (source < 0 || source >= n) {
+            throw new IndexOutOfBoundsException("No node with index " + source);
+        }
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("A depth can not be negative.");
+        }
+
+        final IntGraph cursor = graph.cursor();
+        final int[] distances = new int[n];
+        Arrays.fill(distances, -1);
+        final int[] queue = new int[n];
+        int[] neighbors = new int[16];
+
+        distances[source] = 0;
+        queue[0] = source;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            final int v = queue[head++];
+            final int depth = distances[v];
+            if (depth == maxDepth) {
+                // Nodes are dequeued by distance, so the rest is as deep
+                break;
+            }
+            final int degree = cursor.degree(v);
+            if (degree > neighbors.length) neighbors = new int[Math.max(degree, 2 * neighbors.length)];
+            cursor.neighbors(v, neighbors);
+            for (int i = 0; i < degree; i++) {
+                final int w = neighbors[i];
+                if (distances[w] < 0) {
+                    distances[w] = depth + 1;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return distances;
+    }
+
+}
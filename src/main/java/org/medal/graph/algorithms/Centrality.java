@@ -0,0 +1,350 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.medal.graph.DirectedGraph;
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+import org.medal.graph.compact.CompactGraph;
+import org.medal.graph.compact.CompactGraph.Direction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Betweenness and closeness centrality of the nodes of a graph, computed on a
+ * {@link CompactGraph} snapshot by breadth-first searches from every node, or from
+ * a random sample of nodes.
+ * <p>
+ * Betweenness follows Brandes: a search from a source counts the shortest paths
+ * to every node, and then walks the nodes back in the order of decreasing
+ * distance, accumulating the dependency of the source on each of them. With
+ * {@link #withSamples(int) sampling}, only {@code k} random sources are searched
+ * and the sums are scaled by {@code n / k}, an unbiased estimate of the exact
+ * values. In an undirected graph every path is found from both of its ends, so
+ * the sums are halved.
+ * <p>
+ * Closeness of a node is the Wasserman-Faust variant, which stays meaningful in a
+ * disconnected graph: {@code (r / (n - 1)) * (r / s)}, where {@code r} nodes are
+ * reachable from the node and {@code s} is the sum of their distances. Closeness
+ * is always exact.
+ * <p>
+ * Sources are searched in parallel: every worker of the pool takes the next
+ * unprocessed source until there are none left, and accumulates into primitive
+ * arrays of its own, which are summed once all sources are done. Paths of a
+ * {@link DirectedGraph} follow the direction of edges.
+ *
+ * @author skrymets
+ */
+public final class Centrality<N extends Node<N, E>, E extends Edge<N, E>> {
+
+    /**
+     * Receives progress of a computation: the number of sources searched so far.
+     * Called from worker threads, about a hundred times per computation.
+     */
+    @FunctionalInterface
+    public interface Progress {
+
+        void update(int completed, int total);
+
+    }
+
+    private final CompactGraph<N, E> graph;
+
+    private int samples;
+
+    private long seed = 0x5DEECE66DL;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    private Progress progress;
+
+    private Centrality(CompactGraph<N, E> graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Takes a snapshot of the {@code graph} to compute centrality of its nodes.
+     *
+     * @param graph a graph, or a view of a graph
+     * @return a computation over a snapshot of the graph
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> Centrality<N, E> of(Graph<N, E> graph) {
+        return of(CompactGraph.of(graph, graph instanceof DirectedGraph ? Direction.OUTGOING : Direction.BOTH));
+    }
+
+    /**
+     * Prepares a computation of centrality over a snapshot. Paths follow the
+     * snapshot's direction.
+     *
+     * @param graph a snapshot of a graph
+     * @return a computation over the snapshot
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> Centrality<N, E> of(CompactGraph<N, E> graph) {
+        return new Centrality<>(requireNonNull(graph));
+    }
+
+    /**
+     * Makes betweenness be estimated from {@code k} random sources instead of
+     * computed from all nodes. Default is 0: exact betweenness.
+     *
+     * @param k the number of sources, or 0 for all nodes
+     * @return this computation
+     * @throws IllegalArgumentException if {@code k} is negative
+     */
+    public Centrality<N, E> withSamples(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("A number of samples can not be negative.");
+        }
+        this.samples = k;
+        return this;
+    }
+
+    /**
+     * Sets a seed of the random choice of sources, see {@link #withSamples(int)}.
+     *
+     * @param seed a seed
+     * @return this computation
+     */
+    public Centrality<N, E> withSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Sets a pool to search in. Default is the common pool.
+     *
+     * @param pool a pool
+     * @return this computation
+     */
+    public Centrality<N, E> withPool(ForkJoinPool pool) {
+        this.pool = requireNonNull(pool);
+        return this;
+    }
+
+    /**
+     * Sets a receiver of progress of computations.
+     *
+     * @param progress a receiver of progress, or {@code null} for none
+     * @return this computation
+     */
+    public Centrality<N, E> withProgress(Progress progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * Computes betweenness centrality: for every node, the sum over pairs of other
+     * nodes of the fraction of shortest paths between them which pass through the node.
+     *
+     * @return betweenness of the nodes, exact or estimated
+     */
+    public CentralityScores<N, E> betweenness() {
+        final int n = graph.nodeCount();
+        final int[] sources = sources();
+        final double[] scores = run(sources, Worker::betweenness, Worker::betweennessScores);
+
+        double scale = n == 0 ? 0 : (double) n / Math.max(1, sources.length);
+        if (graph.direction() == Direction.BOTH) scale /= 2;
+        for (int v = 0; v < n; v++) scores[v] *= scale;
+        return new CentralityScores<>(graph, scores, sources.length);
+    }
+
+    /**
+     * Computes closeness centrality of all nodes.
+     *
+     * @return exact closeness of the nodes
+     */
+    public CentralityScores<N, E> closeness() {
+        final int n = graph.nodeCount();
+        final int[] sources = new int[n];
+        for (int v = 0; v < n; v++) sources[v] = v;
+        return new CentralityScores<>(graph, run(sources, Worker::closeness, Worker::closenessScores), n);
+    }
+
+    private int[] sources() {
+        final int n = graph.nodeCount();
+        final int[] nodes = new int[n];
+        for (int v = 0; v < n; v++) nodes[v] = v;
+        if (samples == 0 || samples >= n) {
+            return nodes;
+        }
+
+        // A partial Fisher-Yates shuffle draws the sample without repetitions
+        final SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < samples; i++) {
+            final int j = i + random.nextInt(n - i);
+            final int swap = nodes[i];
+            nodes[i] = nodes[j];
+            nodes[j] = swap;
+        }
+        final int[] sample = new int[samples];
+        System.arraycopy(nodes, 0, sample, 0, samples);
+        return sample;
+    }
+
+    private double[] run(int[] sources, ObjIntConsumer<Worker> search, Function<Worker, double[]> result) {
+        final int n = graph.nodeCount();
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger completed = new AtomicInteger();
+        final Progress listener = progress;
+        final int step = Math.max(1, sources.length / 100);
+
+        final int parallelism = Math.max(1, Math.min(pool.getParallelism(), sources.length));
+        final List<Worker> workers = new ArrayList<>(parallelism);
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            final Worker worker = new Worker(n);
+            workers.add(worker);
+            tasks.add(pool.submit(() -> {
+                for (int s = next.getAndIncrement(); s < sources.length; s = next.getAndIncrement()) {
+                    search.accept(worker, sources[s]);
+                    final int done = completed.incrementAndGet();
+                    if (listener != null && (done % step == 0 || done == sources.length)) {
+                        listener.update(done, sources.length);
+                    }
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) task.join();
+
+        final double[] scores = new double[n];
+        for (Worker worker : workers) {
+            final double[] partial = result.apply(worker);
+            for (int v = 0; v < n; v++) scores[v] += partial[v];
+        }
+        return scores;
+    }
+
+    /**
+     * Arrays of one worker: the state of a search, reset after every source, and
+     * the accumulated scores.
+     */
+    private final class Worker {
+
+        private final int[] distance;
+
+        private final double[] paths;
+
+        private final double[] dependency;
+
+        /**
+         * Nodes in the order they are reached, which is the order of distance.
+         */
+        private final int[] order;
+
+        private double[] betweenness;
+
+        private double[] closeness;
+
+        private Worker(int nodeCount) {
+            distance = new int[nodeCount];
+            paths = new double[nodeCount];
+            dependency = new double[nodeCount];
+            order = new int[nodeCount];
+            Arrays.fill(distance, -1);
+        }
+
+        /**
+         * Searches from the source, and returns the number of reached nodes.
+         */
+        private int search(int source) {
+            distance[source] = 0;
+            paths[source] = 1;
+            order[0] = source;
+            int head = 0;
+            int tail = 1;
+            while (head < tail) {
+                final int node = order[head++];
+                final int nextDistance = distance[node] + 1;
+                for (int slot = graph.firstSlot(node), end = graph.endSlot(node); slot < end; slot++) {
+                    final int next = graph.target(slot);
+                    if (distance[next] < 0) {
+                        distance[next] = nextDistance;
+                        order[tail++] = next;
+                    }
+                    if (distance[next] == nextDistance) {
+                        paths[next] += paths[node];
+                    }
+                }
+            }
+            return tail;
+        }
+
+        private void reset(int reached) {
+            for (int i = 0; i < reached; i++) {
+                final int node = order[i];
+                distance[node] = -1;
+                paths[node] = 0;
+                dependency[node] = 0;
+            }
+        }
+
+        private void betweenness(int source) {
+            if (betweenness == null) betweenness = new double[distance.length];
+
+            final int reached = search(source);
+            // Successors on shortest paths are settled before their predecessors
+            for (int i = reached - 1; i > 0; i--) {
+                final int node = order[i];
+                final int nextDistance = distance[node] + 1;
+                double sum = 0;
+                for (int slot = graph.firstSlot(node), end = graph.endSlot(node); slot < end; slot++) {
+                    final int next = graph.target(slot);
+                    if (distance[next] == nextDistance) {
+                        sum += (1 + dependency[next]) / paths[next];
+                    }
+                }
+                dependency[node] = paths[node] * sum;
+                betweenness[node] += dependency[node];
+            }
+            reset(reached);
+        }
+
+        private void closeness(int source) {
+            if (closeness == null) closeness = new double[distance.length];
+
+            final int reached = search(source);
+            long sum = 0;
+            for (int i = 1; i < reached; i++) sum += distance[order[i]];
+            if (sum > 0) {
+                final double r = reached - 1;
+                closeness[source] = (r / (distance.length - 1)) * (r / sum);
+            }
+            reset(reached);
+        }
+
+        private double[] betweennessScores() {
+            return betweenness == null ? new double[distance.length] : betweenness;
+        }
+
+        private double[] closenessScores() {
+            return closeness == null ? new double[distance.length] : closeness;
+        }
+
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Node;
+import org.medal.graph.compact.CompactGraph;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Centrality scores of the nodes of a graph snapshot. See {@link Centrality}.
+ *
+ * @author skrymets
+ */
+public final class CentralityScores<N extends Node<N, E>, E extends Edge<N, E>> {
+
+    private final CompactGraph<N, E> graph;
+
+    private final double[] scores;
+
+    private final int sources;
+
+    CentralityScores(CompactGraph<N, E> graph, double[] scores, int sources) {
+        this.graph = requireNonNull(graph);
+        this.scores = requireNonNull(scores);
+        this.sources = sources;
+    }
+
+    /**
+     * Returns the snapshot the scores are computed on.
+     *
+     * @return a snapshot of a graph
+     */
+    public CompactGraph<N, E> graph() {
+        return graph;
+    }
+
+    /**
+     * Returns the score of a node.
+     *
+     * @param node a node of the snapshot
+     * @return the score of the node
+     * @throws IllegalArgumentException if the node is not in the snapshot
+     */
+    public double score(N node) {
+        final int index = graph.index(node);
+        if (index < 0) {
+            throw new IllegalArgumentException("The node is not in the snapshot.");
+        }
+        return scores[index];
+    }
+
+    /**
+     * Returns the score of the node of the snapshot with the given index.
+     *
+     * @param index an index of a node
+     * @return the score of the node
+     */
+    public double score(int index) {
+        return scores[index];
+    }
+
+    /**
+     * Returns the number of searched sources: the number of nodes if the scores are
+     * exact, or the size of the sample if they are estimated.
+     *
+     * @return the number of sources
+     */
+    public int sources() {
+        return sources;
+    }
+
+    /**
+     * Returns up to {@code k} nodes with the highest scores.
+     *
+     * @param k the number of nodes
+     * @return the nodes, in the order of decreasing score
+     */
+    public List<N> top(int k) {
+        return IntStream.range(0, scores.length).boxed()
+                .sorted(Comparator.comparingDouble((Integer v) -> scores[v]).reversed())
+                .limit(Math.max(0, k))
+                .map(graph::node)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the scores of all nodes, indexed as the nodes of the snapshot.
+     *
+     * @return a copy of the scores
+     */
+    public double[] toArray() {
+        return Arrays.copyOf(scores, scores.length);
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A condensed graph: a node for every strongly connected component of a graph,
+ * and an edge wherever an edge leads from one component to another. See
+ * {@link StrongComponents#condense(Graph)}.
+ *
+ * @author skrymets
+ */
+public final class Condensation<N extends Node<N, E>, E extends Edge<N, E>, M extends Node<M, F>, F extends Edge<M, F>> {
+
+    private final StrongComponents<N, E> components;
+
+    private final Graph<M, F> graph;
+
+    private final List<M> nodes;
+
+    /**
+     * A component of a condensed node, indexed by node identifier; {@code -1} for other nodes.
+     */
+    private final int[] byIdentifier;
+
+    Condensation(StrongComponents<N, E> components, Graph<M, F> graph, List<M> nodes) {
+        this.components = requireNonNull(components);
+        this.graph = requireNonNull(graph);
+        this.nodes = requireNonNull(nodes);
+
+        int maxId = -1;
+        for (M node : nodes) maxId = Math.max(maxId, node.id());
+        this.byIdentifier = new int[maxId + 1];
+        Arrays.fill(byIdentifier, -1);
+        for (int c = 0; c < nodes.size(); c++) byIdentifier[nodes.get(c).id()] = c;
+    }
+
+    /**
+     * Returns the graph the condensed nodes and edges were created in.
+     *
+     * @return the condensed graph
+     */
+    public Graph<M, F> graph() {
+        return graph;
+    }
+
+    /**
+     * Returns the condensed node of a component.
+     *
+     * @param component a number of a component
+     * @return the node of the component
+     */
+    public M node(int component) {
+        return nodes.get(component);
+    }
+
+    /**
+     * Returns the condensed node of the component of a node.
+     *
+     * @param node a node of the condensed snapshot
+     * @return the node of its component
+     * @throws IllegalArgumentException if the node is not in the snapshot
+     */
+    public M nodeOf(N node) {
+        return node(components.component(node));
+    }
+
+    /**
+     * Returns the nodes of the component of a condensed node.
+     *
+     * @param node a condensed node
+     * @return an unmodifiable list of the nodes of its component
+     * @throws IllegalArgumentException if the node is not a condensed node
+     */
+    public List<N> members(M node) {
+        final int id = node.id();
+        final int component = node.graph() != graph || id < 0 || id >= byIdentifier.length ? -1 : byIdentifier[id];
+        if (component < 0 || nodes.get(component) != node) {
+            throw new IllegalArgumentException("The node is not a condensed node.");
+        }
+        return components.members(component);
+    }
+
+}
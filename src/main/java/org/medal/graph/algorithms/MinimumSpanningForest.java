@@ -0,0 +1,312 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+import org.medal.graph.compact.CompactGraph;
+import org.medal.graph.compact.CompactGraph.Direction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Minimum spanning forests: for every connected component of a graph, a tree of
+ * the least total weight which connects all of the component's nodes. Edge
+ * directions are ignored, self-loops never belong to a forest. If edge weights
+ * are not distinct, the algorithms may select different forests of the same
+ * total weight. The weight function is called once per edge, possibly from
+ * several threads at once.
+ * <p>
+ * Both algorithms work on a {@link CompactGraph} snapshot and primitive arrays:
+ * <ul>
+ * <li>{@link #kruskal} sorts the edges by weight - weights are ranked with a
+ * parallel sort of a {@code double[]}, and edges are ordered by a parallel sort
+ * of {@code long} keys which combine a rank with an edge index - and joins the
+ * trees with an {@code int[]} union-find. Prefer it for sparse graphs;</li>
+ * <li>{@link #prim} grows every tree from a single node with an indexed binary
+ * heap of candidate nodes. Prefer it for dense graphs.</li>
+ * </ul>
+ *
+ * @author skrymets
+ */
+public final class MinimumSpanningForest {
+
+    private MinimumSpanningForest() {
+    }
+
+    /**
+     * Builds a minimum spanning forest of the {@code graph} with Kruskal's
+     * algorithm, over a snapshot taken for the purpose.
+     *
+     * @param graph  a graph
+     * @param weight a function which returns the weight of an edge
+     * @return the forest
+     * @throws IllegalArgumentException if a weight is {@code NaN}
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> SpanningForest<N, E> kruskal(
+            Graph<N, E> graph, ToDoubleFunction<? super E> weight) {
+        return kruskal(graph, CompactGraph.of(graph), weight);
+    }
+
+    /**
+     * Builds a minimum spanning forest with Kruskal's algorithm.
+     *
+     * @param graph   the graph the snapshot was taken of
+     * @param compact a snapshot of the graph
+     * @param weight  a function which returns the weight of an edge
+     * @return the forest
+     * @throws IllegalArgumentException if a weight is {@code NaN}
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> SpanningForest<N, E> kruskal(
+            Graph<N, E> graph, CompactGraph<N, E> compact, ToDoubleFunction<? super E> weight) {
+        requireNonNull(graph);
+        requireNonNull(weight);
+
+        final int n = compact.nodeCount();
+        final int m = compact.edgeCount();
+        final double[] weights = weights(compact, weight);
+
+        final double[] sorted = weights.clone();
+        Arrays.parallelSort(sorted);
+        final long[] keys = new long[m];
+        IntStream.range(0, m).parallel()
+                .forEach(e -> keys[e] = (long) Arrays.binarySearch(sorted, weights[e]) << 32 | e);
+        Arrays.parallelSort(keys);
+
+        final int[] parents = new int[n];
+        final int[] sizes = new int[n];
+        for (int v = 0; v < n; v++) {
+            parents[v] = v;
+            sizes[v] = 1;
+        }
+
+        final List<E> selected = new ArrayList<>(Math.max(0, n - 1));
+        double total = 0;
+        for (int i = 0; i < m && selected.size() < n - 1; i++) {
+            final int e = (int) keys[i];
+            int a = find(parents, compact.left(e));
+            int b = find(parents, compact.right(e));
+            if (a == b) {
+                continue;
+            }
+            if (sizes[a] < sizes[b]) {
+                final int tmp = a;
+                a = b;
+                b = tmp;
+            }
+            parents[b] = a;
+            sizes[a] += sizes[b];
+            selected.add(compact.edge(e));
+            total += weights[e];
+        }
+
+        return new SpanningForest<>(graph, selected, total, n - selected.size());
+    }
+
+    private static int find(int[] parents, int v) {
+        while (parents[v] != v) {
+            parents[v] = parents[parents[v]];
+            v = parents[v];
+        }
+        return v;
+    }
+
+    /**
+     * Builds a minimum spanning forest of the {@code graph} with Prim's algorithm,
+     * over a snapshot taken for the purpose. Edges are followed in both directions.
+     *
+     * @param graph  a graph
+     * @param weight a function which returns the weight of an edge
+     * @return the forest
+     * @throws IllegalArgumentException if a weight is {@code NaN}
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> SpanningForest<N, E> prim(
+            Graph<N, E> graph, ToDoubleFunction<? super E> weight) {
+        return prim(graph, CompactGraph.of(graph, Direction.BOTH), weight);
+    }
+
+    /**
+     * Builds a minimum spanning forest with Prim's algorithm.
+     *
+     * @param graph   the graph the snapshot was taken of
+     * @param compact a snapshot of the graph, which records {@link Direction#BOTH} directions
+     * @param weight  a function which returns the weight of an edge
+     * @return the forest
+     * @throws IllegalArgumentException if a weight is {@code NaN}, or the snapshot is directed
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> SpanningForest<N, E> prim(
+            Graph<N, E> graph, CompactGraph<N, E> compact, ToDoubleFunction<? super E> weight) {
+        requireNonNull(graph);
+        requireNonNull(weight);
+        if (compact.direction() != Direction.BOTH) {
+            throw new IllegalArgumentException("The snapshot must record edges in both directions.");
+        }
+
+        final int n = compact.nodeCount();
+        final double[] weights = weights(compact, weight);
+
+        final double[] keys = new double[n];
+        final int[] via = new int[n];
+        final boolean[] done = new boolean[n];
+        Arrays.fill(keys, Double.POSITIVE_INFINITY);
+        Arrays.fill(via, -1);
+
+        final Heap heap = new Heap(n, keys);
+        final List<E> selected = new ArrayList<>(Math.max(0, n - 1));
+        int trees = 0;
+        double total = 0;
+        for (int root = 0; root < n; root++) {
+            if (done[root]) {
+                continue;
+            }
+            trees++;
+            keys[root] = 0;
+            heap.insert(root);
+            while (!heap.isEmpty()) {
+                final int v = heap.poll();
+                done[v] = true;
+                if (via[v] >= 0) {
+                    selected.add(compact.edge(via[v]));
+                    total += weights[via[v]];
+                }
+                for (int slot = compact.firstSlot(v); slot < compact.endSlot(v); slot++) {
+                    final int w = compact.target(slot);
+                    final int e = compact.slotEdge(slot);
+                    if (done[w] || weights[e] >= keys[w]) {
+                        continue;
+                    }
+                    keys[w] = weights[e];
+                    via[w] = e;
+                    if (heap.contains(w)) {
+                        heap.decreased(w);
+                    } else {
+                        heap.insert(w);
+                    }
+                }
+            }
+        }
+
+        return new SpanningForest<>(graph, selected, total, trees);
+    }
+
+    private static <N extends Node<N, E>, E extends Edge<N, E>> double[] weights(
+            CompactGraph<N, E> compact, ToDoubleFunction<? super E> weight) {
+        final double[] weights = new double[compact.edgeCount()];
+        IntStream.range(0, weights.length).parallel().forEach(e -> {
+            weights[e] = weight.applyAsDouble(compact.edge(e));
+            if (Double.isNaN(weights[e])) {
+                throw new IllegalArgumentException("An edge weight is not a number.");
+            }
+        });
+        return weights;
+    }
+
+    /**
+     * A binary min-heap of node indexes ordered by their keys, which tracks the
+     * position of every node to support decreasing a key.
+     */
+    private static final class Heap {
+
+        private final int[] heap;
+
+        private final int[] positions;
+
+        private final double[] keys;
+
+        private int size;
+
+        Heap(int capacity, double[] keys) {
+            this.heap = new int[capacity];
+            this.positions = new int[capacity];
+            this.keys = keys;
+            Arrays.fill(positions, -1);
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        boolean contains(int v) {
+            return positions[v] >= 0;
+        }
+
+        void insert(int v) {
+            heap[size] = v;
+            positions[v] = size;
+            siftUp(size++);
+        }
+
+        void decreased(int v) {
+            siftUp(positions[v]);
+        }
+
+        int poll() {
+            final int top = heap[0];
+            positions[top] = -1;
+            if (--size > 0) {
+                heap[0] = heap[size];
+                positions[heap[0]] = 0;
+                siftDown(0);
+            }
+            return top;
+        }
+
+        private void siftUp(int i) {
+            final int v = heap[i];
+            while (i > 0) {
+                final int parent = (i - 1) >>> 1;
+                if (keys[heap[parent]] <= keys[v]) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                positions[heap[i]] = i;
+                i = parent;
+            }
+            heap[i] = v;
+            positions[v] = i;
+        }
+
+        private void siftDown(int i) {
+            final int v = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) {
+                    child++;
+                }
+                if (keys[v] <= keys[heap[child]]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                positions[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = v;
+            positions[v] = i;
+        }
+
+    }
+
+}
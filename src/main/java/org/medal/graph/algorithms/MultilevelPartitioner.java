@@ -0,0 +1,594 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+import org.medal.graph.compact.CompactGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Splits a graph into k parts of nearly equal size, cutting as few edges as
+ * possible. The partitioner works in three phases:
+ * <ol>
+ * <li>coarsening - the graph is shrunk level by level by contracting a matching of
+ * heavy edges, much like {@link Edge#collapse()} merges the ends of an edge; the
+ * weights of merged nodes and of parallel edges are summed up;</li>
+ * <li>initial partitioning - the smallest graph is split by growing regions from
+ * random seeds; several attempts run in parallel and the best one is kept;</li>
+ * <li>refinement - the partition is projected back through the levels, and on
+ * each level boundary nodes are moved to the neighbouring part they are most
+ * strongly connected to, as long as the balance allows it. Gains are evaluated in
+ * parallel.</li>
+ * </ol>
+ * Edge directions are ignored, self-loops never contribute to the cut.
+ *
+ * @author skrymets
+ */
+public final class MultilevelPartitioner {
+
+    private static final int COARSEST_NODES_PER_PART = 16;
+
+    private final int parts;
+
+    private double imbalance = 0.03;
+
+    private long seed = 42;
+
+    private int initialAttempts = 8;
+
+    private int refinementPasses = 8;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * Creates a partitioner into the given number of parts.
+     *
+     * @param parts the number of parts
+     * @throws IllegalArgumentException if {@code parts} is less than one
+     */
+    public MultilevelPartitioner(int parts) {
+        if (parts < 1) {
+            throw new IllegalArgumentException("The number of parts must be positive.");
+        }
+        this.parts = parts;
+    }
+
+    /**
+     * Sets the allowed imbalance: no part may be larger than
+     * {@code (1 + imbalance) * nodes / parts}. Default is {@code 0.03}.
+     *
+     * @param imbalance allowed relative excess of a part's size
+     * @return this partitioner
+     */
+    public MultilevelPartitioner withImbalance(double imbalance) {
+        if (imbalance < 0) {
+            throw new IllegalArgumentException("The imbalance can not be negative.");
+        }
+        this.imbalance = imbalance;
+        return this;
+    }
+
+    /**
+     * Sets a seed of the random choices, so that partitioning is repeatable.
+     *
+     * @param seed a random seed
+     * @return this partitioner
+     */
+    public MultilevelPartitioner withSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Sets the number of initial partitioning attempts. Default is {@code 8}.
+     *
+     * @param initialAttempts the number of attempts
+     * @return this partitioner
+     */
+    public MultilevelPartitioner withInitialAttempts(int initialAttempts) {
+        if (initialAttempts < 1) {
+            throw new IllegalArgumentException("The number of attempts must be positive.");
+        }
+        this.initialAttempts = initialAttempts;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of refinement passes on every level; refinement of a
+     * level stops early once a pass moves no node. Default is {@code 8}.
+     *
+     * @param refinementPasses the number of passes; {@code 0} disables refinement
+     * @return this partitioner
+     */
+    public MultilevelPartitioner withRefinementPasses(int refinementPasses) {
+        if (refinementPasses < 0) {
+            throw new IllegalArgumentException("The number of refinement passes can not be negative.");
+        }
+        this.refinementPasses = refinementPasses;
+        return this;
+    }
+
+    /**
+     * Sets a pool to run parallel phases in. Default is the common pool.
+     *
+     * @param pool a fork/join pool
+     * @return this partitioner
+     */
+    public MultilevelPartitioner withPool(ForkJoinPool pool) {
+        this.pool = requireNonNull(pool);
+        return this;
+    }
+
+    public <N extends Node<N, E>, E extends Edge<N, E>> Partitioning<N, E> partition(Graph<N, E> graph) {
+        return partition(CompactGraph.of(graph));
+    }
+
+    public <N extends Node<N, E>, E extends Edge<N, E>> Partitioning<N, E> partition(CompactGraph<N, E> graph) {
+        final Level finest = Level.of(graph);
+        final int[] assignment = parts == 1 ? new int[finest.n] : pool.submit(() -> partition(finest)).join();
+        return new Partitioning<>(graph, parts, assignment);
+    }
+
+    private int[] partition(Level finest) {
+        final Random random = new Random(seed);
+        final long maxPartWeight = (long) Math.ceil(finest.totalWeight / (double) parts * (1 + imbalance));
+
+        // Coarsening ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+        final List<Level> levels = new ArrayList<>();
+        final int threshold = Math.max(COARSEST_NODES_PER_PART * parts, 64);
+        final long maxNodeWeight = Math.max(1, (long) (1.5 * finest.totalWeight / threshold));
+
+        Level level = finest;
+        levels.add(level);
+        while (level.n > threshold) {
+            final Level coarse = level.coarsen(random, maxNodeWeight);
+            if (coarse.n > level.n * 0.95) {
+                // The matching does not shrink the graph anymore
+                break;
+            }
+            levels.add(coarse);
+            level = coarse;
+        }
+
+        // Initial partitioning ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+        final Level coarsest = level;
+        final long attemptsSeed = random.nextLong();
+        int[] assignment = IntStream.range(0, initialAttempts).parallel()
+                .mapToObj(attempt -> {
+                    final int[] candidate = grow(coarsest, new SplittableRandom(attemptsSeed + attempt));
+                    final long[] weights = coarsest.partWeights(candidate, parts);
+                    rebalance(coarsest, candidate, weights, maxPartWeight);
+                    refine(coarsest, candidate, weights, maxPartWeight);
+                    return candidate;
+                })
+                .min(Comparator.<int[]>comparingLong(candidate -> overweight(coarsest, candidate, maxPartWeight))
+                        .thenComparingLong(candidate -> coarsest.cut(candidate)))
+                .orElseThrow(IllegalStateException::new);
+
+        // Uncoarsening and refinement ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+        for (int i = levels.size() - 2; i >= 0; i--) {
+            final Level fine = levels.get(i);
+            final int[] projected = new int[fine.n];
+            for (int v = 0; v < fine.n; v++) projected[v] = assignment[fine.map[v]];
+            assignment = projected;
+
+            final long[] weights = fine.partWeights(assignment, parts);
+            rebalance(fine, assignment, weights, maxPartWeight);
+            refine(fine, assignment, weights, maxPartWeight);
+        }
+
+        return assignment;
+    }
+
+    /**
+     * Grows parts one by one in breadth-first order from random seeds, until each
+     * part reaches its share of the total weight. The last part takes the rest.
+     */
+    private int[] grow(Level level, SplittableRandom random) {
+        final int n = level.n;
+        final int[] assignment = new int[n];
+        Arrays.fill(assignment, -1);
+
+        final int[] seeds = IntStream.range(0, n).toArray();
+        for (int i = n - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final int t = seeds[i];
+            seeds[i] = seeds[j];
+            seeds[j] = t;
+        }
+
+        final long target = (level.totalWeight + parts - 1) / parts;
+        final int[] queue = new int[n];
+        final int[] queuedBy = new int[n];
+        Arrays.fill(queuedBy, -1);
+
+        int nextSeed = 0;
+        for (int part = 0; part < parts - 1; part++) {
+            long weight = 0;
+            int head = 0;
+            int tail = 0;
+            while (weight < target) {
+                if (head == tail) {
+                    while (nextSeed < n && assignment[seeds[nextSeed]] != -1) nextSeed++;
+                    if (nextSeed == n) {
+                        break;
+                    }
+                    queue[tail++] = seeds[nextSeed];
+                    queuedBy[seeds[nextSeed]] = part;
+                }
+
+                final int v = queue[head++];
+                if (assignment[v] != -1) {
+                    continue;
+                }
+
+                assignment[v] = part;
+                weight += level.nodeWeight[v];
+                for (int s = level.offsets[v]; s < level.offsets[v + 1]; s++) {
+                    final int u = level.targets[s];
+                    if (assignment[u] == -1 && queuedBy[u] != part) {
+                        queuedBy[u] = part;
+                        queue[tail++] = u;
+                    }
+                }
+            }
+        }
+
+        for (int v = 0; v < n; v++) {
+            if (assignment[v] == -1) assignment[v] = parts - 1;
+        }
+        return assignment;
+    }
+
+    /**
+     * Moves nodes out of the parts which exceed the weight limit, choosing for every
+     * node the part with room that it is most strongly connected to.
+     */
+    private void rebalance(Level level, int[] assignment, long[] weights, long maxPartWeight) {
+        final long[] connection = new long[parts];
+
+        for (int v = 0; v < level.n; v++) {
+            final int own = assignment[v];
+            if (weights[own] <= maxPartWeight) {
+                continue;
+            }
+
+            for (int s = level.offsets[v]; s < level.offsets[v + 1]; s++) {
+                connection[assignment[level.targets[s]]] += level.edgeWeight[s];
+            }
+
+            int best = -1;
+            for (int part = 0; part < parts; part++) {
+                if (part == own || weights[part] + level.nodeWeight[v] > maxPartWeight) {
+                    continue;
+                }
+                if (best < 0 || connection[part] > connection[best]
+                        || connection[part] == connection[best] && weights[part] < weights[best]) {
+                    best = part;
+                }
+            }
+            Arrays.fill(connection, 0);
+
+            if (best >= 0) {
+                assignment[v] = best;
+                weights[own] -= level.nodeWeight[v];
+                weights[best] += level.nodeWeight[v];
+            }
+        }
+    }
+
+    /**
+     * Greedy k-way refinement. Boundary nodes which may gain from a move are found in
+     * parallel against a stable assignment; the moves are then applied one by one,
+     * each re-evaluated against the current assignment and the weight limit.
+     */
+    private void refine(Level level, int[] assignment, long[] weights, long maxPartWeight) {
+        final boolean[] candidates = new boolean[level.n];
+        final ThreadLocal<Move> moves = ThreadLocal.withInitial(() -> new Move(parts));
+
+        for (int pass = 0; pass < refinementPasses; pass++) {
+            IntStream.range(0, level.n).parallel().forEach(v -> {
+                final Move move = moves.get();
+                move.evaluate(level, assignment, v);
+                candidates[v] = move.target >= 0 && move.gain >= 0;
+            });
+
+            final Move move = moves.get();
+            int moved = 0;
+            for (int v = 0; v < level.n; v++) {
+                if (!candidates[v]) {
+                    continue;
+                }
+
+                move.evaluate(level, assignment, v);
+                final int own = assignment[v];
+                final int target = move.target;
+                if (target < 0 || weights[target] + level.nodeWeight[v] > maxPartWeight) {
+                    continue;
+                }
+                if (move.gain > 0 || move.gain == 0 && weights[target] + level.nodeWeight[v] < weights[own]) {
+                    assignment[v] = target;
+                    weights[own] -= level.nodeWeight[v];
+                    weights[target] += level.nodeWeight[v];
+                    moved++;
+                }
+            }
+
+            if (moved == 0) {
+                break;
+            }
+        }
+    }
+
+    private long overweight(Level level, int[] assignment, long maxPartWeight) {
+        long overweight = 0;
+        for (long weight : level.partWeights(assignment, parts)) overweight += Math.max(0, weight - maxPartWeight);
+        return overweight;
+    }
+
+    /**
+     * The best move of a node: a neighbouring part it is most strongly connected to,
+     * and the reduction of the cut weight the move brings.
+     */
+    private static final class Move {
+
+        private final long[] connection;
+
+        private final int[] touched;
+
+        int target;
+
+        long gain;
+
+        Move(int parts) {
+            connection = new long[parts];
+            touched = new int[parts];
+        }
+
+        void evaluate(Level level, int[] assignment, int v) {
+            int touchedCount = 0;
+            for (int s = level.offsets[v]; s < level.offsets[v + 1]; s++) {
+                final int part = assignment[level.targets[s]];
+                if (connection[part] == 0) {
+                    touched[touchedCount++] = part;
+                }
+                connection[part] += level.edgeWeight[s];
+            }
+
+            final int own = assignment[v];
+            target = -1;
+            gain = Long.MIN_VALUE;
+            for (int i = 0; i < touchedCount; i++) {
+                final int part = touched[i];
+                if (part != own && connection[part] - connection[own] > gain) {
+                    target = part;
+                    gain = connection[part] - connection[own];
+                }
+            }
+            for (int i = 0; i < touchedCount; i++) connection[touched[i]] = 0;
+        }
+
+    }
+
+    /**
+     * One level of the coarsening hierarchy: a weighted, undirected graph without
+     * self-loops and parallel edges, in the compressed sparse row layout.
+     */
+    private static final class Level {
+
+        final int n;
+
+        final int[] nodeWeight;
+
+        final long totalWeight;
+
+        final int[] offsets;
+
+        final int[] targets;
+
+        final int[] edgeWeight;
+
+        /**
+         * Maps nodes of this level to the nodes of the next, coarser level.
+         */
+        int[] map;
+
+        private Level(int n, int[] nodeWeight, int[] offsets, int[] targets, int[] edgeWeight) {
+            this.n = n;
+            this.nodeWeight = nodeWeight;
+            this.offsets = offsets;
+            this.targets = targets;
+            this.edgeWeight = edgeWeight;
+
+            long total = 0;
+            for (int weight : nodeWeight) total += weight;
+            this.totalWeight = total;
+        }
+
+        static Level of(CompactGraph<?, ?> graph) {
+            final int n = graph.nodeCount();
+            final int[] offsets = new int[n + 1];
+            for (int e = 0; e < graph.edgeCount(); e++) {
+                if (graph.left(e) != graph.right(e)) {
+                    offsets[graph.left(e) + 1]++;
+                    offsets[graph.right(e) + 1]++;
+                }
+            }
+            for (int v = 0; v < n; v++) offsets[v + 1] += offsets[v];
+
+            final int[] targets = new int[offsets[n]];
+            final int[] weights = new int[offsets[n]];
+            final int[] fill = Arrays.copyOf(offsets, n);
+            for (int e = 0; e < graph.edgeCount(); e++) {
+                final int left = graph.left(e);
+                final int right = graph.right(e);
+                if (left != right) {
+                    targets[fill[left]] = right;
+                    weights[fill[left]++] = 1;
+                    targets[fill[right]] = left;
+                    weights[fill[right]++] = 1;
+                }
+            }
+
+            final int[] nodeWeight = new int[n];
+            Arrays.fill(nodeWeight, 1);
+            return merged(n, nodeWeight, offsets, targets, weights);
+        }
+
+        /**
+         * Merges parallel edges of a raw adjacency, summing up their weights.
+         */
+        static Level merged(int n, int[] nodeWeight, int[] rawOffsets, int[] rawTargets, int[] rawWeights) {
+            final int[] offsets = new int[n + 1];
+            final int[] targets = new int[rawTargets.length];
+            final int[] weights = new int[rawTargets.length];
+            final int[] position = new int[n];
+            Arrays.fill(position, -1);
+
+            int size = 0;
+            for (int v = 0; v < n; v++) {
+                final int start = size;
+                for (int s = rawOffsets[v]; s < rawOffsets[v + 1]; s++) {
+                    final int u = rawTargets[s];
+                    if (position[u] >= start) {
+                        weights[position[u]] += rawWeights[s];
+                    } else {
+                        position[u] = size;
+                        targets[size] = u;
+                        weights[size++] = rawWeights[s];
+                    }
+                }
+                offsets[v + 1] = size;
+            }
+
+            return new Level(n, nodeWeight, offsets, Arrays.copyOf(targets, size), Arrays.copyOf(weights, size));
+        }
+
+        /**
+         * Contracts a heavy-edge matching: nodes are visited in random order, and each
+         * unmatched node is matched with its unmatched neighbour connected by the
+         * heaviest edge, unless the merged node would become too heavy.
+         */
+        Level coarsen(Random random, long maxNodeWeight) {
+            final int[] order = IntStream.range(0, n).toArray();
+            for (int i = n - 1; i > 0; i--) {
+                final int j = random.nextInt(i + 1);
+                final int t = order[i];
+                order[i] = order[j];
+                order[j] = t;
+            }
+
+            final int[] match = new int[n];
+            Arrays.fill(match, -1);
+            for (int v : order) {
+                if (match[v] != -1) {
+                    continue;
+                }
+
+                int best = v;
+                int bestWeight = 0;
+                for (int s = offsets[v]; s < offsets[v + 1]; s++) {
+                    final int u = targets[s];
+                    if (match[u] == -1 && edgeWeight[s] > bestWeight
+                            && (long) nodeWeight[v] + nodeWeight[u] <= maxNodeWeight) {
+                        best = u;
+                        bestWeight = edgeWeight[s];
+                    }
+                }
+                match[v] = best;
+                match[best] = v;
+            }
+
+            map = new int[n];
+            Arrays.fill(map, -1);
+            int coarseCount = 0;
+            for (int v = 0; v < n; v++) {
+                if (map[v] == -1) {
+                    map[v] = coarseCount;
+                    map[match[v]] = coarseCount;
+                    coarseCount++;
+                }
+            }
+
+            final int[] coarseWeight = new int[coarseCount];
+            final int[] rawOffsets = new int[coarseCount + 1];
+            for (int v = 0; v < n; v++) {
+                coarseWeight[map[v]] += nodeWeight[v];
+                rawOffsets[map[v] + 1] += offsets[v + 1] - offsets[v];
+            }
+            for (int c = 0; c < coarseCount; c++) rawOffsets[c + 1] += rawOffsets[c];
+
+            // Edges inside a merged pair become self-loops, and are dropped
+            final int[] rawTargets = new int[rawOffsets[coarseCount]];
+            final int[] rawWeights = new int[rawOffsets[coarseCount]];
+            final int[] fill = Arrays.copyOf(rawOffsets, coarseCount);
+            for (int v = 0; v < n; v++) {
+                final int c = map[v];
+                for (int s = offsets[v]; s < offsets[v + 1]; s++) {
+                    final int cu = map[targets[s]];
+                    if (cu == c) {
+                        continue;
+                    }
+                    rawTargets[fill[c]] = cu;
+                    rawWeights[fill[c]++] = edgeWeight[s];
+                }
+            }
+
+            // Close the gaps left by the dropped self-loops
+            final int[] compactOffsets = new int[coarseCount + 1];
+            int size = 0;
+            for (int c = 0; c < coarseCount; c++) {
+                final int length = fill[c] - rawOffsets[c];
+                System.arraycopy(rawTargets, rawOffsets[c], rawTargets, size, length);
+                System.arraycopy(rawWeights, rawOffsets[c], rawWeights, size, length);
+                size += length;
+                compactOffsets[c + 1] = size;
+            }
+
+            return merged(coarseCount, coarseWeight, compactOffsets, rawTargets, rawWeights);
+        }
+
+        long[] partWeights(int[] assignment, int parts) {
+            final long[] weights = new long[parts];
+            for (int v = 0; v < n; v++) weights[assignment[v]] += nodeWeight[v];
+            return weights;
+        }
+
+        long cut(int[] assignment) {
+            long cut = 0;
+            for (int v = 0; v < n; v++) {
+                for (int s = offsets[v]; s < offsets[v + 1]; s++) {
+                    if (assignment[v] != assignment[targets[s]]) cut += edgeWeight[s];
+                }
+            }
+            return cut / 2;
+        }
+
+    }
+
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.medal.graph.Edge;
+import org.medal.graph.GraphListener;
+import org.medal.graph.Node;
+import org.medal.graph.impl.AbstractEdge;
+import org.medal.graph.impl.AbstractGraph;
+import org.medal.graph.impl.AbstractNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A size-bounded cache of k-hop neighbourhoods of a graph, see
+ * {@link Neighborhoods}. The cache listens to the graph and drops exactly the
+ * entries a mutation may affect: the neighbourhood of a node within {@code k} hops
+ * depends only on the edges incident on the nodes closer than {@code k} hops, so
+ * an edge which is created, deleted or relinked elsewhere leaves the entry intact.
+ * A transaction with more changes than the cache has entries drops all entries
+ * once, when it completes, instead.
+ * <p>
+ * The cache is thread safe. A neighbourhood is computed outside of the cache lock,
+ * and is not cached if the graph has been changed meanwhile.
+ *
+ * @author skrymets
+ */
+public final class NeighborhoodCache<N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>>
+        implements GraphListener<N, E>, AutoCloseable {
+
+    /**
+     * A policy which selects an entry to be evicted when the cache is full.
+     */
+    public enum Eviction {
+        /**
+         * Evicts the least recently used entry.
+         */
+        LRU,
+        /**
+         * Evicts the least frequently used entry; among equally used entries -
+         * the one which has not been used for the longest time.
+         */
+        LFU
+    }
+
+    private final AbstractGraph<N, E> graph;
+
+    private final int capacity;
+
+    private final Eviction eviction;
+
+    private final Map<Key<N>, Entry<N>> entries;
+
+    /**
+     * Entries with the same number of uses, from the least to the most recently
+     * used one. Maintained for {@link Eviction#LFU} only.
+     */
+    private final Map<Integer, LinkedHashSet<Key<N>>> frequencies = new HashMap<>();
+
+    private int minFrequency;
+
+    /**
+     * The keys of the entries which interior contains a node.
+     */
+    private final Map<N, Set<Key<N>>> dependents = new HashMap<>();
+
+    private long modifications;
+
+    /**
+     * Whether the changes of the current batch only count as modifications, and
+     * all entries are dropped when the batch completes.
+     */
+    private boolean suspended;
+
+    private long hits;
+
+    private long misses;
+
+    private NeighborhoodCache(AbstractGraph<N, E> graph, int capacity, Eviction eviction) {
+        this.graph = graph;
+        this.capacity = capacity;
+        this.eviction = eviction;
+        this.entries = new LinkedHashMap<>(16, 0.75f, eviction == Eviction.LRU);
+    }
+
+    /**
+     * Creates a cache of the {@code graph} neighbourhoods and starts listening to the graph.
+     *
+     * @param graph    a graph which neighbourhoods will be cached
+     * @param capacity the maximum number of cached neighbourhoods
+     * @param eviction a policy to evict entries with when the cache is full
+     * @return a new cache
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public static <N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> NeighborhoodCache<N, E> attach(
+            AbstractGraph<N, E> graph, int capacity, Eviction eviction) {
+        requireNonNull(graph);
+        requireNonNull(eviction);
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive.");
+        }
+
+        final NeighborhoodCache<N, E> cache = new NeighborhoodCache<>(graph, capacity, eviction);
+        graph.addListener(cache);
+        return cache;
+    }
+
+    /**
+     * Returns the nodes within {@code k} hops from the {@code node}, see
+     * {@link Neighborhoods#neighborhood(Node, int)}.
+     *
+     * @param node a node of the graph
+     * @param k    the maximum number of hops
+     * @return an unmodifiable set of nodes
+     */
+    public Set<N> neighborhood(N node, int k) {
+        requireNonNull(node);
+        if (node.graph() != graph) {
+            throw new IllegalArgumentException("The node does not belong to the graph.");
+        }
+
+        final Key<N> key = new Key<>(node, k);
+        final long version;
+        synchronized (this) {
+            final Entry<N> entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+                touch(key, entry);
+                return entry.nodes;
+            }
+            misses++;
+            version = modifications;
+        }
+
+        final Set<N> interior = new HashSet<>();
+        final Set<N> nodes = Neighborhoods.neighborhood(node, k, interior);
+        interior.add(node);
+
+        synchronized (this) {
+            if (version == modifications && !entries.containsKey(key)) {
+                if (entries.size() >= capacity) evict();
+                insert(key, new Entry<>(nodes, interior));
+            }
+        }
+        return nodes;
+    }
+
+    private void touch(Key<N> key, Entry<N> entry) {
+        if (eviction != Eviction.LFU) {
+            return;
+        }
+
+        final LinkedHashSet<Key<N>> bucket = frequencies.get(entry.frequency);
+        bucket.remove(key);
+        if (bucket.isEmpty()) {
+            frequencies.remove(entry.frequency);
+            if (minFrequency == entry.frequency) minFrequency++;
+        }
+        entry.frequency++;
+        frequencies.computeIfAbsent(entry.frequency, f -> new LinkedHashSet<>()).add(key);
+    }
+
+    private void insert(Key<N> key, Entry<N> entry) {
+        entries.put(key, entry);
+        for (N n : entry.interior) dependents.computeIfAbsent(n, d -> new HashSet<>()).add(key);
+
+        if (eviction == Eviction.LFU) {
+            frequencies.computeIfAbsent(entry.frequency, f -> new LinkedHashSet<>()).add(key);
+            minFrequency = entry.frequency;
+        }
+    }
+
+    private void evict() {
+        final Key<N> victim;
+        if (eviction == Eviction.LFU) {
+            victim = frequencies.get(minFrequency).iterator().next();
+        } else {
+            victim = entries.keySet().iterator().next();
+        }
+        remove(victim);
+    }
+
+    private void remove(Key<N> key) {
+        final Entry<N> entry = entries.remove(key);
+        if (entry == null) {
+            return;
+        }
+
+        for (N n : entry.interior) {
+            final Set<Key<N>> keys = dependents.get(n);
+            keys.remove(key);
+            if (keys.isEmpty()) dependents.remove(n);
+        }
+
+        if (eviction == Eviction.LFU) {
+            final LinkedHashSet<Key<N>> bucket = frequencies.get(entry.frequency);
+            bucket.remove(key);
+            if (bucket.isEmpty()) frequencies.remove(entry.frequency);
+        }
+    }
+
+    private void invalidate(N node) {
+        if (suspended) {
+            return;
+        }
+        final Set<Key<N>> keys = dependents.get(node);
+        if (keys != null) {
+            for (Key<N> key : new ArrayList<>(keys)) remove(key);
+        }
+    }
+
+    /**
+     * Returns the number of cached neighbourhoods.
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of queries answered from the cache.
+     *
+     * @return the number of hits
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of queries which had to be computed.
+     *
+     * @return the number of misses
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Drops all cached neighbourhoods.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        frequencies.clear();
+        dependents.clear();
+        modifications++;
+    }
+
+    @Override
+    public synchronized void batchStarted(int changes) {
+        suspended = changes > entries.size();
+    }
+
+    @Override
+    public synchronized void batchCompleted() {
+        if (suspended) {
+            suspended = false;
+            clear();
+        }
+    }
+
+    @Override
+    public synchronized void edgeCreated(E edge) {
+        modifications++;
+        invalidate(edge.left());
+        invalidate(edge.right());
+    }
+
+    @Override
+    public synchronized void edgeDeleted(E edge) {
+        modifications++;
+        invalidate(edge.left());
+        invalidate(edge.right());
+    }
+
+    @Override
+    public synchronized void edgeRelinked(E edge, N oldNode, N newNode) {
+        modifications++;
+        invalidate(edge.left());
+        invalidate(edge.right());
+        invalidate(oldNode);
+    }
+
+    @Override
+    public synchronized void nodeDeleted(N node) {
+        modifications++;
+        invalidate(node);
+    }
+
+    /**
+     * Stops listening to the graph and drops all cached neighbourhoods.
+     */
+    @Override
+    public void close() {
+        graph.removeListener(this);
+        clear();
+    }
+
+    private static final class Key<N> {
+
+        private final N node;
+
+        private final int k;
+
+        Key(N node, int k) {
+            this.node = node;
+            this.k = k;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key<?> other = (Key<?>) o;
+            return node == other.node && k == other.k;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(node), k);
+        }
+
+    }
+
+    private static final class Entry<N> {
+
+        private final Set<N> nodes;
+
+        private final Set<N> interior;
+
+        private int frequency = 1;
+
+        Entry(Set<N> nodes, Set<N> interior) {
+            this.nodes = nodes;
+            this.interior = interior;
+        }
+
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.medal.graph.DirectedGraph;
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+import org.medal.graph.impl.PartitionedGraph;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * k-hop neighbourhood queries. The neighbourhood of a node within {@code k} hops
+ * is the set of nodes which can be reached from it over at most {@code k} edges,
+ * regardless of their direction. The node itself is not a part of its neighbourhood.
+ * <p>
+ * Nodes are visited level by level. Each node enters the frontier once, so a node
+ * reachable over several paths is expanded only once, and the visited set is a bit
+ * set indexed by node identifiers, which is kept per thread and reused between
+ * queries.
+ * <p>
+ * Nodes of a {@link DirectedGraph} or of a {@link PartitionedGraph} know their
+ * incident edges, and are expanded one by one. Other undirected graphs find the
+ * incident edges of a node by a scan of all edges, so a level of more than one
+ * node is expanded with a single scan instead.
+ *
+ * @author skrymets
+ */
+public final class Neighborhoods {
+
+    private static final ThreadLocal<BitSet> VISITED = ThreadLocal.withInitial(BitSet::new);
+
+    private Neighborhoods() {
+    }
+
+    /**
+     * Returns the nodes within {@code k} hops from the {@code node}.
+     *
+     * @param node a node to start from
+     * @param k    the maximum number of hops
+     * @return an unmodifiable set of nodes, in the order of their distance from the {@code node}
+     * @throws NullPointerException     if {@code node} is {@code null}
+     * @throws IllegalArgumentException if {@code k} is negative
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> Set<N> neighborhood(N node, int k) {
+        return neighborhood(node, k, null);
+    }
+
+    /**
+     * Same as {@link #neighborhood(Node, int)}, additionally collecting the nodes
+     * which are closer than {@code k} hops - including the {@code node} itself - to
+     * {@code interior}. Edges incident on any of these nodes determine the result.
+     */
+    static <N extends Node<N, E>, E extends Edge<N, E>> Set<N> neighborhood(N node, int k, Set<N> interior) {
+        requireNonNull(node);
+        if (k < 0) {
+            throw new IllegalArgumentException("The number of hops can not be negative.");
+        }
+
+        final Graph<N, E> graph = node.graph();
+        final BitSet visited = VISITED.get();
+        final Set<N> reached = new LinkedHashSet<>();
+        try {
+            visited.set(node.id());
+            List<N> frontier = Collections.singletonList(node);
+            for (int hop = 0; hop < k && !frontier.isEmpty(); hop++) {
+                if (interior != null) interior.addAll(frontier);
+
+                final List<N> next = new ArrayList<>();
+                if (graph instanceof DirectedGraph || graph instanceof PartitionedGraph || frontier.size() == 1) {
+                    for (N current : frontier) {
+                        for (E edge : current.incidentEdges()) {
+                            visit(edge.opposite(current).get(), visited, next, reached);
+                        }
+                    }
+                } else {
+                    // Incident edges of an undirected node are found by a scan of all
+                    // edges, so the whole level is expanded with a single scan.
+                    final BitSet expanding = new BitSet();
+                    for (N current : frontier) expanding.set(current.id());
+                    for (E edge : graph.edges()) {
+                        if (expanding.get(edge.left().id())) visit(edge.right(), visited, next, reached);
+                        if (expanding.get(edge.right().id())) visit(edge.left(), visited, next, reached);
+                    }
+                }
+                frontier = next;
+            }
+        } finally {
+            visited.clear(node.id());
+            for (N n : reached) visited.clear(n.id());
+        }
+        return Collections.unmodifiableSet(reached);
+    }
+
+    private static <N extends Node<N, ?>> void visit(N node, BitSet visited, List<N> next, Set<N> reached) {
+        if (!visited.get(node.id())) {
+            visited.set(node.id());
+            next.add(node);
+            reached.add(node);
+        }
+    }
+
+}
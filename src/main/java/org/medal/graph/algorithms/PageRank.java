@@ -0,0 +1,447 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.medal.graph.DirectedGraph;
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+import org.medal.graph.compact.CompactGraph;
+import org.medal.graph.compact.CompactGraph.Direction;
+import org.medal.graph.compact.CompressedGraph;
+import org.medal.graph.compact.IntGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * PageRank and personalized PageRank of the nodes of a graph, computed by power
+ * iteration on a {@link CompactGraph} snapshot.
+ * <p>
+ * Every iteration is a single pull sweep over primitive arrays: the rank of a node
+ * is gathered from the contributions of its in-neighbors, and while the node is at
+ * hand, its own contribution to the next iteration, its share of the dangling mass
+ * and its change since the previous iteration are computed too. The sweep is split
+ * into blocks of consecutive nodes, which the workers of a pool take one by one, so
+ * the arrays are read sequentially and the iteration is bound by memory bandwidth.
+ * Partial sums are kept per block, so the result does not depend on scheduling.
+ * <p>
+ * Links of a {@link DirectedGraph} follow the direction of edges, and an edge of an
+ * undirected graph links its nodes both ways. A folded edge is as many links as its
+ * {@link Edge#multiplicity() multiplicity}. Iterations stop when the sum of the
+ * absolute changes of ranks drops below the {@link #withTolerance(double) tolerance},
+ * or after the {@link #withMaxIterations(int) maximum} number of them.
+ * <p>
+ * Ranks may also be computed on a {@link CompressedGraph} of in-links, which every
+ * worker reads through a {@link IntGraph#cursor() cursor} of its own. A compressed
+ * adjacency keeps no multiplicities: a folded edge is a single link there.
+ *
+ * @author skrymets
+ */
+public final class PageRank<N extends Node<N, E>, E extends Edge<N, E>> {
+
+    /**
+     * Where the rank of a node without outgoing links goes.
+     */
+    public enum Dangling {
+
+        /**
+         * Spread evenly over all nodes, as if the node linked to every node.
+         */
+        UNIFORM,
+
+        /**
+         * Spread like a teleport: over all nodes, or over the personalization.
+         */
+        TELEPORT,
+
+        /**
+         * Lost: ranks sum to less than one.
+         */
+        DROP
+
+    }
+
+    private static final int BLOCK = 4096;
+
+    /**
+     * The snapshot which slots hold in-links, or {@code null} if the links are read
+     * from a compressed adjacency.
+     */
+    private final CompactGraph<N, E> graph;
+
+    /**
+     * Lists of in-neighbors.
+     */
+    private final IntGraph links;
+
+    private final IntFunction<N> nodes;
+
+    private final ToIntFunction<N> indexes;
+
+    private final double[] outWeight;
+
+    /**
+     * Multiplicities of the edges of slots, or {@code null} if none is folded.
+     */
+    private final double[] slotWeight;
+
+    private double damping = 0.85;
+
+    private double tolerance = 1e-9;
+
+    private int maxIterations = 100;
+
+    private Dangling dangling = Dangling.UNIFORM;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    private PageRank(CompactGraph<N, E> graph) {
+        this.graph = graph;
+        this.links = graph;
+        this.nodes = graph::node;
+        this.indexes = graph::index;
+        final int n = graph.nodeCount();
+
+        double[] weights = null;
+        for (int slot = 0, slots = graph.slotCount(); slot < slots; slot++) {
+            final long multiplicity = graph.edge(graph.slotEdge(slot)).multiplicity();
+            if (multiplicity != 1 && weights == null) {
+                weights = new double[slots];
+                Arrays.fill(weights, 0, slot, 1);
+            }
+            if (weights != null) weights[slot] = multiplicity;
+        }
+        this.slotWeight = weights;
+
+        // Slots hold in-neighbors, so a node's out-weight is the weight of slots targeting it
+        this.outWeight = new double[n];
+        for (int slot = 0, slots = graph.slotCount(); slot < slots; slot++) {
+            outWeight[graph.target(slot)] += weights == null ? 1 : weights[slot];
+        }
+    }
+
+    private PageRank(CompressedGraph<N, E> links) {
+        this.graph = null;
+        this.links = links;
+        this.nodes = links::node;
+        this.indexes = links::index;
+        this.slotWeight = null;
+
+        this.outWeight = new double[links.nodeCount()];
+        final IntGraph cursor = links.cursor();
+        int[] neighbors = new int[16];
+        for (int v = 0, n = links.nodeCount(); v < n; v++) {
+            final int degree = cursor.degree(v);
+            if (degree > neighbors.length) neighbors = new int[Math.max(degree, 2 * neighbors.length)];
+            cursor.neighbors(v, neighbors);
+            for (int i = 0; i < degree; i++) outWeight[neighbors[i]]++;
+        }
+    }
+
+    /**
+     * Takes a snapshot of the {@code graph} to rank its nodes.
+     *
+     * @param graph a graph, or a view of a graph
+     * @return a computation over a snapshot of the graph
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> PageRank<N, E> of(Graph<N, E> graph) {
+        return new PageRank<>(CompactGraph.of(graph, graph instanceof DirectedGraph ? Direction.INCOMING : Direction.BOTH));
+    }
+
+    /**
+     * Prepares a computation of ranks over a snapshot. Links follow the direction of
+     * edges, unless the snapshot is {@link Direction#BOTH undirected}.
+     *
+     * @param graph a snapshot of a graph
+     * @return a computation over the snapshot
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> PageRank<N, E> of(CompactGraph<N, E> graph) {
+        return new PageRank<>(graph.direction() == Direction.OUTGOING ? graph.reverse() : graph);
+    }
+
+    /**
+     * Prepares a computation of ranks over a compressed adjacency, which lists are
+     * taken for in-links: it should be compressed from a {@link Direction#INCOMING}
+     * or an undirected snapshot.
+     *
+     * @param links a compressed adjacency of in-links
+     * @return a computation over the adjacency
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> PageRank<N, E> of(CompressedGraph<N, E> links) {
+        return new PageRank<>(requireNonNull(links));
+    }
+
+    /**
+     * Sets the probability to follow a link rather than teleport. Default is 0.85.
+     *
+     * @param damping a damping factor in {@code [0, 1)}
+     * @return this computation
+     * @throws IllegalArgumentException if the factor is out of range
+     */
+    public PageRank<N, E> withDamping(double damping) {
+        if (!(damping >= 0 && damping < 1)) {
+            throw new IllegalArgumentException("A damping factor must be in [0, 1).");
+        }
+        this.damping = damping;
+        return this;
+    }
+
+    /**
+     * Sets the sum of absolute changes of ranks in an iteration, below which ranks
+     * are converged. Default is {@code 1e-9}.
+     *
+     * @param tolerance a positive tolerance
+     * @return this computation
+     * @throws IllegalArgumentException if the tolerance is not positive
+     */
+    public PageRank<N, E> withTolerance(double tolerance) {
+        if (!(tolerance > 0)) {
+            throw new IllegalArgumentException("A tolerance must be positive.");
+        }
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * Sets the number of iterations after which ranks are returned even if they
+     * are not converged. Default is 100.
+     *
+     * @param maxIterations a positive number of iterations
+     * @return this computation
+     * @throws IllegalArgumentException if the number is not positive
+     */
+    public PageRank<N, E> withMaxIterations(int maxIterations) {
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("A number of iterations must be positive.");
+        }
+        this.maxIterations = maxIterations;
+        return this;
+    }
+
+    /**
+     * Sets where the rank of nodes without outgoing links goes. Default is
+     * {@link Dangling#UNIFORM}.
+     *
+     * @param dangling a handling of dangling nodes
+     * @return this computation
+     */
+    public PageRank<N, E> withDangling(Dangling dangling) {
+        this.dangling = requireNonNull(dangling);
+        return this;
+    }
+
+    /**
+     * Sets a pool to iterate in. Default is the common pool.
+     *
+     * @param pool a pool
+     * @return this computation
+     */
+    public PageRank<N, E> withPool(ForkJoinPool pool) {
+        this.pool = requireNonNull(pool);
+        return this;
+    }
+
+    /**
+     * Computes PageRank: teleports go to any node with equal probability.
+     *
+     * @return ranks of the nodes
+     */
+    public PageRankScores<N, E> ranks() {
+        final int n = links.nodeCount();
+        final double[] teleport = new double[n];
+        Arrays.fill(teleport, 1.0 / n);
+        return iterate(teleport);
+    }
+
+    /**
+     * Computes personalized PageRank: teleports go only to the given nodes, with
+     * probabilities proportional to their weights.
+     *
+     * @param personalization weights of nodes of the snapshot
+     * @return ranks of the nodes
+     * @throws IllegalArgumentException if a node is not in the snapshot, a weight is
+     *                                  negative, or no weight is positive
+     */
+    public PageRankScores<N, E> ranks(Map<N, ? extends Number> personalization) {
+        final double[] teleport = new double[links.nodeCount()];
+        double sum = 0;
+        for (Map.Entry<N, ? extends Number> entry : personalization.entrySet()) {
+            final int index = indexes.applyAsInt(entry.getKey());
+            if (index < 0) {
+                throw new IllegalArgumentException("The node is not in the snapshot.");
+            }
+            final double weight = entry.getValue().doubleValue();
+            if (!(weight >= 0)) {
+                throw new IllegalArgumentException("A weight of a node can not be negative.");
+            }
+            teleport[index] += weight;
+            sum += weight;
+        }
+        if (!(sum > 0)) {
+            throw new IllegalArgumentException("A personalization must have a positive weight.");
+        }
+        for (int v = 0; v < teleport.length; v++) teleport[v] /= sum;
+        return iterate(teleport);
+    }
+
+    private PageRankScores<N, E> iterate(double[] teleport) {
+        final int n = links.nodeCount();
+        final int blocks = (n + BLOCK - 1) / BLOCK;
+
+        double[] rank = Arrays.copyOf(teleport, n);
+        double[] next = new double[n];
+        double[] contribution = new double[n];
+        double[] nextContribution = new double[n];
+        final double[] blockDangling = new double[blocks];
+        final double[] blockResidual = new double[blocks];
+
+        double danglingMass = 0;
+        for (int v = 0; v < n; v++) {
+            if (outWeight[v] > 0) contribution[v] = rank[v] / outWeight[v];
+            else danglingMass += rank[v];
+        }
+
+        final List<Double> residuals = new ArrayList<>();
+        boolean converged = n == 0;
+        while (!converged && residuals.size() < maxIterations) {
+            // Teleports, and the dangling mass spread like them, are a per node base rank
+            final double teleportFactor = 1 - damping
+                    + (dangling == Dangling.TELEPORT ? damping * danglingMass : 0);
+            final double uniformMass = dangling == Dangling.UNIFORM ? damping * danglingMass / n : 0;
+
+            sweep(blocks, new Sweep(rank, next, contribution, nextContribution, teleport, teleportFactor,
+                    uniformMass, blockDangling, blockResidual));
+
+            double residual = 0;
+            danglingMass = 0;
+            for (int b = 0; b < blocks; b++) {
+                residual += blockResidual[b];
+                danglingMass += blockDangling[b];
+            }
+            residuals.add(residual);
+            converged = residual < tolerance;
+
+            double[] swap = rank;
+            rank = next;
+            next = swap;
+            swap = contribution;
+            contribution = nextContribution;
+            nextContribution = swap;
+        }
+        return new PageRankScores<>(nodes, indexes, rank, residuals.stream().mapToDouble(Double::doubleValue).toArray(),
+                converged);
+    }
+
+    private void sweep(int blocks, Sweep sweep) {
+        final AtomicInteger nextBlock = new AtomicInteger();
+        final int parallelism = Math.max(1, Math.min(pool.getParallelism(), blocks));
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            tasks.add(pool.submit(() -> {
+                for (int b = nextBlock.getAndIncrement(); b < blocks; b = nextBlock.getAndIncrement()) {
+                    sweep.block(b);
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) task.join();
+    }
+
+    /**
+     * Arrays of one iteration.
+     */
+    private final class Sweep {
+
+        private final double[] rank;
+
+        private final double[] next;
+
+        private final double[] contribution;
+
+        private final double[] nextContribution;
+
+        private final double[] teleport;
+
+        private final double teleportFactor;
+
+        private final double uniformMass;
+
+        private final double[] blockDangling;
+
+        private final double[] blockResidual;
+
+        private Sweep(double[] rank, double[] next, double[] contribution, double[] nextContribution,
+                      double[] teleport, double teleportFactor, double uniformMass,
+                      double[] blockDangling, double[] blockResidual) {
+            this.rank = rank;
+            this.next = next;
+            this.contribution = contribution;
+            this.nextContribution = nextContribution;
+            this.teleport = teleport;
+            this.teleportFactor = teleportFactor;
+            this.uniformMass = uniformMass;
+            this.blockDangling = blockDangling;
+            this.blockResidual = blockResidual;
+        }
+
+        private void block(int b) {
+            final int from = b * BLOCK;
+            final int to = Math.min(from + BLOCK, links.nodeCount());
+            final IntGraph cursor = graph == null ? links.cursor() : null;
+            int[] neighbors = cursor == null ? null : new int[16];
+            double danglingMass = 0;
+            double residual = 0;
+            for (int v = from; v < to; v++) {
+                double sum = 0;
+                if (cursor != null) {
+                    final int degree = cursor.degree(v);
+                    if (degree > neighbors.length) neighbors = new int[Math.max(degree, 2 * neighbors.length)];
+                    cursor.neighbors(v, neighbors);
+                    for (int i = 0; i < degree; i++) sum += contribution[neighbors[i]];
+                } else if (slotWeight == null) {
+                    for (int slot = graph.firstSlot(v), end = graph.endSlot(v); slot < end; slot++) {
+                        sum += contribution[graph.target(slot)];
+                    }
+                } else {
+                    for (int slot = graph.firstSlot(v), end = graph.endSlot(v); slot < end; slot++) {
+                        sum += slotWeight[slot] * contribution[graph.target(slot)];
+                    }
+                }
+                final double value = teleportFactor * teleport[v] + uniformMass + damping * sum;
+                next[v] = value;
+                residual += Math.abs(value - rank[v]);
+                if (outWeight[v] > 0) {
+                    nextContribution[v] = value / outWeight[v];
+                } else {
+                    danglingMass += value;
+                }
+            }
+            blockDangling[b] = danglingMass;
+            blockResidual[b] = residual;
+        }
+
+    }
+
+}
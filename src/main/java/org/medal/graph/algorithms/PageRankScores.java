@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Node;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Ranks of the nodes of a graph snapshot, or of a compressed adjacency, and how they
+ * converged. See {@link PageRank}.
+ *
+ * @author skrymets
+ */
+public final class PageRankScores<N extends Node<N, E>, E extends Edge<N, E>> {
+
+    private final IntFunction<N> nodes;
+
+    private final ToIntFunction<N> indexes;
+
+    private final double[] ranks;
+
+    private final double[] residuals;
+
+    private final boolean converged;
+
+    PageRankScores(IntFunction<N> nodes, ToIntFunction<N> indexes, double[] ranks, double[] residuals,
+                   boolean converged) {
+        this.nodes = requireNonNull(nodes);
+        this.indexes = requireNonNull(indexes);
+        this.ranks = requireNonNull(ranks);
+        this.residuals = requireNonNull(residuals);
+        this.converged = converged;
+    }
+
+    /**
+     * Returns the rank of a node.
+     *
+     * @param node a node of the snapshot
+     * @return the rank of the node
+     * @throws IllegalArgumentException if the node is not in the snapshot
+     */
+    public double rank(N node) {
+        final int index = indexes.applyAsInt(node);
+        if (index < 0) {
+            throw new IllegalArgumentException("The node is not in the snapshot.");
+        }
+        return ranks[index];
+    }
+
+    /**
+     * Returns the rank of the node of the snapshot with the given index.
+     *
+     * @param index an index of a node
+     * @return the rank of the node
+     */
+    public double rank(int index) {
+        return ranks[index];
+    }
+
+    /**
+     * Returns up to {@code k} nodes with the highest ranks.
+     *
+     * @param k the number of nodes
+     * @return the nodes, in the order of decreasing rank
+     */
+    public List<N> top(int k) {
+        return IntStream.range(0, ranks.length).boxed()
+                .sorted(Comparator.comparingDouble((Integer v) -> ranks[v]).reversed())
+                .limit(Math.max(0, k))
+                .map(nodes::apply)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the ranks of all nodes, indexed as the nodes of the snapshot.
+     *
+     * @return a copy of the ranks
+     */
+    public double[] toArray() {
+        return Arrays.copyOf(ranks, ranks.length);
+    }
+
+    /**
+     * Returns the number of performed iterations.
+     *
+     * @return the number of iterations
+     */
+    public int iterations() {
+        return residuals.length;
+    }
+
+    /**
+     * Returns, for every iteration, the sum of absolute changes of ranks in it.
+     *
+     * @return a copy of the residuals, in the order of iterations
+     */
+    public double[] residuals() {
+        return Arrays.copyOf(residuals, residuals.length);
+    }
+
+    /**
+     * Returns whether the last residual is below the tolerance.
+     *
+     * @return {@code true} if the ranks converged
+     */
+    public boolean converged() {
+        return converged;
+    }
+
+}
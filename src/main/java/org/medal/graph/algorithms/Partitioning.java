@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Node;
+import org.medal.graph.compact.CompactGraph;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An assignment of graph nodes to parts, with the statistics of the edges cut by
+ * the assignment. An edge is cut if its ends belong to different parts.
+ *
+ * @author skrymets
+ */
+public final class Partitioning<N extends Node<N, E>, E extends Edge<N, E>> {
+
+    private final CompactGraph<N, E> graph;
+
+    private final int parts;
+
+    private final int[] assignment;
+
+    private final int[] partSizes;
+
+    private final long cutEdges;
+
+    Partitioning(CompactGraph<N, E> graph, int parts, int[] assignment) {
+        this.graph = requireNonNull(graph);
+        this.parts = parts;
+        this.assignment = requireNonNull(assignment);
+
+        this.partSizes = new int[parts];
+        for (int part : assignment) partSizes[part]++;
+
+        long cut = 0;
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            if (assignment[graph.left(e)] != assignment[graph.right(e)]) cut++;
+        }
+        this.cutEdges = cut;
+    }
+
+    /**
+     * Returns the number of parts.
+     *
+     * @return the number of parts
+     */
+    public int parts() {
+        return parts;
+    }
+
+    /**
+     * Returns a part the {@code node} is assigned to.
+     *
+     * @param node a node of the partitioned graph
+     * @return a part number, {@code 0 .. parts() - 1}
+     * @throws IllegalArgumentException if the node was not partitioned
+     */
+    public int part(N node) {
+        final int index = graph.index(node);
+        if (index < 0) {
+            throw new IllegalArgumentException("The node was not partitioned.");
+        }
+        return assignment[index];
+    }
+
+    /**
+     * Returns the number of nodes in each part.
+     *
+     * @return a new array of part sizes, indexed by part number
+     */
+    public int[] partSizes() {
+        return partSizes.clone();
+    }
+
+    /**
+     * Returns the number of edges which ends belong to different parts.
+     *
+     * @return the number of cut edges
+     */
+    public long cutEdges() {
+        return cutEdges;
+    }
+
+    /**
+     * Returns the share of the edges which are cut.
+     *
+     * @return a ratio of cut edges to all edges, {@code 0} for a graph without edges
+     */
+    public double cutRatio() {
+        return graph.edgeCount() == 0 ? 0 : (double) cutEdges / graph.edgeCount();
+    }
+
+    /**
+     * Returns the size of the largest part relative to the size of a perfectly
+     * balanced part. {@code 1.0} means perfect balance.
+     *
+     * @return the imbalance, {@code 1.0} for an empty graph
+     */
+    public double imbalance() {
+        if (graph.nodeCount() == 0) {
+            return 1.0;
+        }
+
+        int largest = 0;
+        for (int size : partSizes) largest = Math.max(largest, size);
+        return largest / ((double) graph.nodeCount() / parts);
+    }
+
+    /**
+     * Returns the assignment as a map of nodes to part numbers.
+     *
+     * @return a new identity map
+     */
+    public Map<N, Integer> toMap() {
+        final Map<N, Integer> map = new IdentityHashMap<>(assignment.length);
+        for (int v = 0; v < assignment.length; v++) map.put(graph.node(v), assignment[v]);
+        return map;
+    }
+
+}
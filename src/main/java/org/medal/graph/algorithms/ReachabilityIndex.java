@@ -0,0 +1,376 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.medal.graph.DirectedGraph;
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+import org.medal.graph.compact.CompactGraph;
+import org.medal.graph.compact.CompactGraph.Direction;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A precomputed index which answers whether one node of a graph can be reached
+ * from another. Intended for read-mostly graphs: the index is a snapshot and does
+ * not follow later changes of the graph.
+ * <p>
+ * For an undirected graph the index labels connected components, and a query is a
+ * comparison of two labels. For a {@link DirectedGraph} the index collapses
+ * {@link StrongComponents strongly connected components} and labels the resulting acyclic graph:
+ * <ul>
+ * <li>with a topological rank - a node never reaches a node of a lower rank;</li>
+ * <li>with an interval of a depth-first spanning forest - a node reaches every
+ * node which interval is nested in its own;</li>
+ * <li>with {@value #TRAVERSALS} post-order intervals of randomized depth-first
+ * traversals - a node does not reach a node which interval is not nested in its own.</li>
+ * </ul>
+ * Most queries are answered by the labels alone. The remaining ones fall back to a
+ * depth-first search over the condensed graph, pruned by the same labels.
+ *
+ * @author skrymets
+ */
+public final class ReachabilityIndex<N extends Node<N, E>, E extends Edge<N, E>> {
+
+    private static final int TRAVERSALS = 2;
+
+    private final Graph<N, E> graph;
+
+    private final boolean directed;
+
+    /**
+     * A component of a node, indexed by node identifier; {@code -1} for unknown nodes.
+     * Components of a directed graph are numbered in reverse topological order.
+     */
+    private final int[] components;
+
+    private final int componentCount;
+
+    private final int[] offsets;
+
+    private final int[] successors;
+
+    private final int[] treeFirst;
+
+    private final int[] treeEnd;
+
+    private final int[][] low;
+
+    private final int[][] post;
+
+    private final ThreadLocal<Search> searches = ThreadLocal.withInitial(Search::new);
+
+    private final long buildNanos;
+
+    private ReachabilityIndex(Graph<N, E> graph, boolean directed, int[] components, int componentCount,
+                              int[] offsets, int[] successors, int[] treeFirst, int[] treeEnd,
+                              int[][] low, int[][] post, long buildNanos) {
+        this.graph = graph;
+        this.directed = directed;
+        this.components = components;
+        this.componentCount = componentCount;
+        this.offsets = offsets;
+        this.successors = successors;
+        this.treeFirst = treeFirst;
+        this.treeEnd = treeEnd;
+        this.low = low;
+        this.post = post;
+        this.buildNanos = buildNanos;
+    }
+
+    /**
+     * Builds an index of the {@code graph}. Edges of a {@link DirectedGraph} are
+     * followed from their left to their right node, edges of other graphs - both ways.
+     *
+     * @param graph a graph to be indexed
+     * @return a new index
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> ReachabilityIndex<N, E> build(Graph<N, E> graph) {
+        requireNonNull(graph);
+
+        final long start = System.nanoTime();
+        if (!(graph instanceof DirectedGraph)) {
+            final CompactGraph<N, E> compact = CompactGraph.of(graph, Direction.BOTH);
+            final int[] component = new int[compact.nodeCount()];
+            final int count = connectedComponents(compact, component);
+            return new ReachabilityIndex<>(graph, false, byIdentifier(compact, component), count,
+                    null, null, null, null, null, null, System.nanoTime() - start);
+        }
+
+        final CompactGraph<N, E> compact = CompactGraph.of(graph, Direction.OUTGOING);
+        final int[] component = new int[compact.nodeCount()];
+        final int count = StrongComponents.tarjan(compact, component);
+
+        // The condensed graph, without duplicate edges and self-loops.
+        final int[] offsets = new int[count + 1];
+        final int[] members = StrongComponents.group(component, count, offsets);
+        final int[] dagOffsets = new int[count + 1];
+        final int[] successors = StrongComponents.successors(compact, component, count, members, offsets, dagOffsets);
+
+        final int[] treeFirst = new int[count];
+        final int[] treeEnd = new int[count];
+        final int[][] low = new int[TRAVERSALS][count];
+        final int[][] post = new int[TRAVERSALS][count];
+        final SplittableRandom random = new SplittableRandom(count);
+        for (int t = 0; t < TRAVERSALS; t++) {
+            label(count, dagOffsets, successors, t == 0 ? null : random.split(),
+                    low[t], post[t], t == 0 ? treeFirst : null, t == 0 ? treeEnd : null);
+        }
+
+        return new ReachabilityIndex<>(graph, true, byIdentifier(compact, component), count,
+                dagOffsets, successors, treeFirst, treeEnd, low, post, System.nanoTime() - start);
+    }
+
+    private static int[] byIdentifier(CompactGraph<?, ?> compact, int[] component) {
+        int maxId = -1;
+        for (int v = 0; v < compact.nodeCount(); v++) maxId = Math.max(maxId, compact.node(v).id());
+
+        final int[] result = new int[maxId + 1];
+        Arrays.fill(result, -1);
+        for (int v = 0; v < compact.nodeCount(); v++) result[compact.node(v).id()] = component[v];
+        return result;
+    }
+
+    private static int connectedComponents(CompactGraph<?, ?> graph, int[] component) {
+        Arrays.fill(component, -1);
+        final int[] queue = new int[graph.nodeCount()];
+        int count = 0;
+        for (int root = 0; root < graph.nodeCount(); root++) {
+            if (component[root] >= 0) {
+                continue;
+            }
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = root;
+            component[root] = count;
+            while (head < tail) {
+                final int v = queue[head++];
+                for (int slot = graph.firstSlot(v); slot < graph.endSlot(v); slot++) {
+                    final int w = graph.target(slot);
+                    if (component[w] < 0) {
+                        component[w] = count;
+                        queue[tail++] = w;
+                    }
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Labels the condensed graph with post-order intervals of one depth-first
+     * traversal. If {@code random} is given, roots and successors are visited in a
+     * random order. If {@code treeFirst} is given, also records pre-order intervals
+     * of the spanning forest.
+     */
+    private static void label(int count, int[] offsets, int[] successors, SplittableRandom random,
+                              int[] low, int[] post, int[] treeFirst, int[] treeEnd) {
+        final int[] roots = new int[count];
+        for (int c = 0; c < count; c++) roots[c] = count - 1 - c; // sources first
+        if (random != null) shuffle(roots, 0, count, random);
+
+        final int[] next = new int[count];
+        final int[] callStack = new int[count];
+        final boolean[] visited = new boolean[count];
+        final int[] shuffled = random == null ? successors : successors.clone();
+        if (random != null) {
+            for (int c = 0; c < count; c++) shuffle(shuffled, offsets[c], offsets[c + 1], random);
+        }
+
+        int preCounter = 0;
+        int postCounter = 0;
+        for (int root : roots) {
+            if (visited[root]) {
+                continue;
+            }
+            int depth = 0;
+            callStack[depth++] = root;
+            visited[root] = true;
+            next[root] = offsets[root];
+            low[root] = Integer.MAX_VALUE;
+            if (treeFirst != null) treeFirst[root] = preCounter++;
+
+            while (depth > 0) {
+                final int c = callStack[depth - 1];
+                if (next[c] < offsets[c + 1]) {
+                    final int d = shuffled[next[c]++];
+                    if (!visited[d]) {
+                        visited[d] = true;
+                        next[d] = offsets[d];
+                        low[d] = Integer.MAX_VALUE;
+                        if (treeFirst != null) treeFirst[d] = preCounter++;
+                        callStack[depth++] = d;
+                    } else {
+                        low[c] = Math.min(low[c], low[d]);
+                    }
+                    continue;
+                }
+
+                depth--;
+                post[c] = postCounter++;
+                low[c] = Math.min(low[c], post[c]);
+                if (treeEnd != null) treeEnd[c] = preCounter;
+                if (depth > 0) {
+                    final int parent = callStack[depth - 1];
+                    low[parent] = Math.min(low[parent], low[c]);
+                }
+            }
+        }
+    }
+
+    private static void shuffle(int[] array, int from, int to, SplittableRandom random) {
+        for (int i = to - 1; i > from; i--) {
+            final int j = from + random.nextInt(i - from + 1);
+            final int tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+
+    /**
+     * Checks whether there is a path from the {@code source} node to the {@code target}
+     * node. A node always reaches itself.
+     *
+     * @param source a node to start from
+     * @param target a node to be reached
+     * @return {@code true} if {@code target} is reachable from {@code source}
+     * @throws IllegalArgumentException if either node was not indexed
+     */
+    public boolean reachable(N source, N target) {
+        final int from = componentOf(source);
+        final int to = componentOf(target);
+        if (from == to) {
+            return true;
+        }
+        if (!directed || from < to) {
+            return false;
+        }
+        if (!maybeReaches(from, to)) {
+            return false;
+        }
+        if (treeFirst[from] <= treeFirst[to] && treeFirst[to] < treeEnd[from]) {
+            return true;
+        }
+        return searches.get().reaches(from, to);
+    }
+
+    private int componentOf(N node) {
+        requireNonNull(node);
+        final int id = node.id();
+        final int component = node.graph() != graph || id < 0 || id >= components.length ? -1 : components[id];
+        if (component < 0) {
+            throw new IllegalArgumentException("The node was not indexed.");
+        }
+        return component;
+    }
+
+    /**
+     * A necessary condition: the target is not excluded by the topological order
+     * nor by any of the traversal intervals.
+     */
+    private boolean maybeReaches(int from, int to) {
+        if (from < to) {
+            return false;
+        }
+        for (int t = 0; t < TRAVERSALS; t++) {
+            if (low[t][to] < low[t][from] || post[t][to] > post[t][from]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of components: strongly connected ones for a directed
+     * graph, connected ones otherwise.
+     *
+     * @return the number of components
+     */
+    public int componentCount() {
+        return componentCount;
+    }
+
+    /**
+     * Returns the approximate number of bytes occupied by the index.
+     *
+     * @return the size of the index, in bytes
+     */
+    public long memoryFootprint() {
+        long bytes = 4L * components.length;
+        if (directed) {
+            bytes += 4L * (offsets.length + successors.length + treeFirst.length + treeEnd.length);
+            bytes += 8L * TRAVERSALS * componentCount;
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the time it took to build the index.
+     *
+     * @return the build time
+     */
+    public Duration buildTime() {
+        return Duration.ofNanos(buildNanos);
+    }
+
+    /**
+     * A reusable state of the fallback search; one per thread.
+     */
+    private final class Search {
+
+        private final int[] marks = new int[componentCount];
+
+        private final int[] stack = new int[componentCount];
+
+        private int stamp;
+
+        boolean reaches(int from, int to) {
+            if (++stamp == 0) {
+                Arrays.fill(marks, 0);
+                stamp = 1;
+            }
+
+            int size = 0;
+            stack[size++] = from;
+            marks[from] = stamp;
+            while (size > 0) {
+                final int c = stack[--size];
+                for (int i = offsets[c]; i < offsets[c + 1]; i++) {
+                    final int d = successors[i];
+                    if (d == to) {
+                        return true;
+                    }
+                    if (marks[d] != stamp && maybeReaches(d, to)) {
+                        if (treeFirst[d] <= treeFirst[to] && treeFirst[to] < treeEnd[d]) {
+                            return true;
+                        }
+                        marks[d] = stamp;
+                        stack[size++] = d;
+                    }
+                }
+            }
+            return false;
+        }
+
+    }
+
+}
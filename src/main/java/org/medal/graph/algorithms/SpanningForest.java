@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+import org.medal.graph.Subgraph;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A spanning forest of a graph: for every connected component, a tree which
+ * connects all of its nodes. See {@link MinimumSpanningForest}.
+ *
+ * @author skrymets
+ */
+public final class SpanningForest<N extends Node<N, E>, E extends Edge<N, E>> {
+
+    private final Graph<N, E> graph;
+
+    private final List<E> edges;
+
+    private final BitSet edgeIds = new BitSet();
+
+    private final double totalWeight;
+
+    private final int trees;
+
+    SpanningForest(Graph<N, E> graph, List<E> edges, double totalWeight, int trees) {
+        this.graph = requireNonNull(graph);
+        this.edges = unmodifiableList(edges);
+        this.totalWeight = totalWeight;
+        this.trees = trees;
+        for (E edge : edges) edgeIds.set(edge.id());
+    }
+
+    /**
+     * Returns the edges of the forest.
+     *
+     * @return an unmodifiable set of edges, in the order they were selected
+     */
+    public Set<E> edges() {
+        return new AbstractSet<E>() {
+            @Override
+            public Iterator<E> iterator() {
+                return edges.iterator();
+            }
+
+            @Override
+            public int size() {
+                return edges.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Edge && ((Edge<?, ?>) o).graph() == graph && edgeIds.get(((Edge<?, ?>) o).id());
+            }
+        };
+    }
+
+    /**
+     * Returns the sum of the weights of the forest's edges.
+     *
+     * @return the total weight
+     */
+    public double totalWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * Returns the number of trees, which is the number of connected components of
+     * the graph. An isolated node is a tree of its own.
+     *
+     * @return the number of trees
+     */
+    public int trees() {
+        return trees;
+    }
+
+    /**
+     * Returns a view of the graph which contains all of its nodes and only the
+     * edges of the forest.
+     *
+     * @return a live view of the graph
+     */
+    public Subgraph<N, E> asSubgraph() {
+        return graph.subgraph(node -> true, edge -> edgeIds.get(edge.id()));
+    }
+
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.medal.graph.DirectedGraph;
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+import org.medal.graph.compact.CompactGraph;
+import org.medal.graph.compact.CompactGraph.Direction;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Strongly connected components of a graph: maximal sets of nodes which all reach
+ * each other. Edges of a {@link DirectedGraph} are followed from their left to
+ * their right node, edges of other graphs - both ways, so that components are the
+ * connected ones.
+ * <p>
+ * Components are found by Tarjan's algorithm over a {@link CompactGraph} snapshot,
+ * with an explicit stack instead of recursion, so that long chains do not overflow
+ * the thread stack, and with a handful of {@code int} arrays as the only state.
+ * Components are numbered in a topological order of the condensed graph: an edge
+ * never leads from a component to one with a lower number.
+ *
+ * @author skrymets
+ */
+public final class StrongComponents<N extends Node<N, E>, E extends Edge<N, E>> {
+
+    private final CompactGraph<N, E> graph;
+
+    private final int[] component;
+
+    private final int count;
+
+    /**
+     * Node indexes grouped by component, and where the group of every component starts.
+     */
+    private final int[] members;
+
+    private final int[] offsets;
+
+    private StrongComponents(CompactGraph<N, E> graph) {
+        this.graph = graph;
+        final int n = graph.nodeCount();
+        this.component = new int[n];
+        this.count = tarjan(graph, component);
+        for (int v = 0; v < n; v++) component[v] = count - 1 - component[v];
+
+        this.offsets = new int[count + 1];
+        this.members = group(component, count, offsets);
+    }
+
+    /**
+     * Takes a snapshot of the {@code graph} and finds its components.
+     *
+     * @param graph a graph, or a view of a graph
+     * @return the components of a snapshot of the graph
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> StrongComponents<N, E> of(Graph<N, E> graph) {
+        return new StrongComponents<>(
+                CompactGraph.of(graph, graph instanceof DirectedGraph ? Direction.OUTGOING : Direction.BOTH));
+    }
+
+    /**
+     * Finds the components of a snapshot. Edges are followed in the snapshot's
+     * direction, or both ways if it is {@link Direction#BOTH undirected}.
+     *
+     * @param graph a snapshot of a graph
+     * @return the components of the snapshot
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> StrongComponents<N, E> of(CompactGraph<N, E> graph) {
+        return new StrongComponents<>(requireNonNull(graph));
+    }
+
+    /**
+     * Returns the snapshot the components are found in.
+     *
+     * @return a snapshot of a graph
+     */
+    public CompactGraph<N, E> graph() {
+        return graph;
+    }
+
+    /**
+     * Returns the number of components.
+     *
+     * @return the number of components
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Returns the component of a node.
+     *
+     * @param node a node of the snapshot
+     * @return a number of a component, from {@code 0} to {@code count() - 1}
+     * @throws IllegalArgumentException if the node is not in the snapshot
+     */
+    public int component(N node) {
+        final int index = graph.index(node);
+        if (index < 0) {
+            throw new IllegalArgumentException("The node is not in the snapshot.");
+        }
+        return component[index];
+    }
+
+    /**
+     * Returns the component of the node of the snapshot with the given index.
+     *
+     * @param index an index of a node
+     * @return a number of a component
+     */
+    public int component(int index) {
+        return component[index];
+    }
+
+    /**
+     * Returns the nodes of a component.
+     *
+     * @param component a number of a component
+     * @return an unmodifiable list of the nodes, in the order of their indexes
+     * @throws IndexOutOfBoundsException if there is no such component
+     */
+    public List<N> members(int component) {
+        final int from = offsets[component];
+        final int to = offsets[component + 1];
+        return new AbstractList<N>() {
+            @Override
+            public N get(int i) {
+                if (i < 0 || i >= to - from) {
+                    throw new IndexOutOfBoundsException("Index: " + i + ", size: " + (to - from));
+                }
+                return graph.node(members[from + i]);
+            }
+
+            @Override
+            public int size() {
+                return to - from;
+            }
+        };
+    }
+
+    /**
+     * Returns whether the snapshot has no cycles: every component is a single node
+     * without a self-loop.
+     *
+     * @return {@code true} if the snapshot is acyclic
+     */
+    public boolean isAcyclic() {
+        if (count != graph.nodeCount()) {
+            return false;
+        }
+        for (int v = 0; v < count; v++) {
+            for (int slot = graph.firstSlot(v); slot < graph.endSlot(v); slot++) {
+                if (graph.target(slot) == v) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the condensed graph in the {@code target} graph: a node for every
+     * component, created in the order of components, and an edge between two nodes
+     * if any edge leads from one component to the other. The condensed graph has no
+     * cycles, self-loops nor parallel edges.
+     *
+     * @param target a graph to create nodes and edges in, normally an empty {@link DirectedGraph}
+     * @return the condensed graph, and how its nodes map to components
+     */
+    public <M extends Node<M, F>, F extends Edge<M, F>> Condensation<N, E, M, F> condense(Graph<M, F> target) {
+        requireNonNull(target);
+        final int[] dagOffsets = new int[count + 1];
+        final int[] successors = successors(graph, component, count, members, offsets, dagOffsets);
+
+        final List<M> nodes = new ArrayList<>(count);
+        for (int c = 0; c < count; c++) nodes.add(target.createNode());
+        for (int c = 0; c < count; c++) {
+            for (int i = dagOffsets[c]; i < dagOffsets[c + 1]; i++) {
+                target.connect(nodes.get(c), nodes.get(successors[i]));
+            }
+        }
+        return new Condensation<>(this, target, nodes);
+    }
+
+    /**
+     * Tarjan's algorithm, without recursion. Components are numbered in the order
+     * they are completed, which is a reverse topological order of the condensed graph.
+     *
+     * @return the number of components
+     */
+    static int tarjan(CompactGraph<?, ?> graph, int[] component) {
+        final int n = graph.nodeCount();
+        final int[] index = new int[n];
+        final int[] lowLink = new int[n];
+        final int[] nextSlot = new int[n];
+        final int[] callStack = new int[n];
+        final int[] stack = new int[n];
+        final boolean[] onStack = new boolean[n];
+        Arrays.fill(index, -1);
+
+        int counter = 0;
+        int count = 0;
+        int stackSize = 0;
+        for (int root = 0; root < n; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            callStack[depth++] = root;
+            index[root] = lowLink[root] = counter++;
+            nextSlot[root] = graph.firstSlot(root);
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth > 0) {
+                final int v = callStack[depth - 1];
+                if (nextSlot[v] < graph.endSlot(v)) {
+                    final int w = graph.target(nextSlot[v]++);
+                    if (index[w] < 0) {
+                        index[w] = lowLink[w] = counter++;
+                        nextSlot[w] = graph.firstSlot(w);
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        callStack[depth++] = w;
+                    } else if (onStack[w]) {
+                        lowLink[v] = Math.min(lowLink[v], index[w]);
+                    }
+                    continue;
+                }
+
+                depth--;
+                if (depth > 0) {
+                    final int parent = callStack[depth - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                }
+                if (lowLink[v] == index[v]) {
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        onStack[w] = false;
+                        component[w] = count;
+                    } while (w != v);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Groups node indexes by component, and fills where every group starts.
+     */
+    static int[] group(int[] component, int count, int[] offsets) {
+        final int[] members = new int[component.length];
+        for (int v = 0; v < component.length; v++) offsets[component[v] + 1]++;
+        for (int c = 0; c < count; c++) offsets[c + 1] += offsets[c];
+        final int[] fill = Arrays.copyOf(offsets, count);
+        for (int v = 0; v < component.length; v++) members[fill[component[v]]++] = v;
+        return members;
+    }
+
+    /**
+     * Builds the adjacency of the condensed graph, without duplicate edges and
+     * self-loops, and fills where successors of every component start.
+     */
+    static int[] successors(CompactGraph<?, ?> graph, int[] component, int count,
+                            int[] members, int[] offsets, int[] dagOffsets) {
+        final int[] mark = new int[count];
+        Arrays.fill(mark, -1);
+        int[] successors = new int[Math.max(16, graph.slotCount())];
+        int size = 0;
+        for (int c = 0; c < count; c++) {
+            for (int i = offsets[c]; i < offsets[c + 1]; i++) {
+                final int v = members[i];
+                for (int slot = graph.firstSlot(v); slot < graph.endSlot(v); slot++) {
+                    final int d = component[graph.target(slot)];
+                    if (d != c && mark[d] != c) {
+                        mark[d] = c;
+                        successors[size++] = d;
+                    }
+                }
+            }
+            dagOffsets[c + 1] = size;
+        }
+        return Arrays.copyOf(successors, size);
+    }
+
+}
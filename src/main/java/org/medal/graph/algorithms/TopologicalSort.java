@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.medal.graph.DirectedGraph;
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+import org.medal.graph.compact.CompactGraph;
+import org.medal.graph.compact.CompactGraph.Direction;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A topological order of the nodes of a graph: every edge leads from an earlier
+ * node to a later one. Edges of a {@link DirectedGraph} are followed from their
+ * left to their right node; in any other graph an edge is a cycle of its own.
+ * <p>
+ * The order is found by Kahn's algorithm over a {@link CompactGraph} snapshot:
+ * nodes without remaining incoming edges are taken from a queue, one by one, and
+ * removing their outgoing edges releases further nodes. The queue is the result
+ * array itself, so the state is two {@code int} arrays. The queue is first in,
+ * first out: the nodes which have no incoming edges at all come first, in the
+ * order of their indexes, and every other node follows in the order it is
+ * released - by the position of its releasing edge in the snapshot, not by its
+ * index. The order is deterministic for a given snapshot, but it is not the
+ * lexicographically smallest one.
+ *
+ * @author skrymets
+ */
+public final class TopologicalSort<N extends Node<N, E>, E extends Edge<N, E>> {
+
+    private final CompactGraph<N, E> graph;
+
+    /**
+     * Sorted node indexes, or {@code null} if the snapshot has a cycle.
+     */
+    private final int[] order;
+
+    private TopologicalSort(CompactGraph<N, E> graph) {
+        this.graph = graph;
+        this.order = kahn(graph);
+    }
+
+    /**
+     * Takes a snapshot of the {@code graph} and sorts its nodes.
+     *
+     * @param graph a graph, or a view of a graph
+     * @return a sort of a snapshot of the graph
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> TopologicalSort<N, E> of(Graph<N, E> graph) {
+        return new TopologicalSort<>(
+                CompactGraph.of(graph, graph instanceof DirectedGraph ? Direction.OUTGOING : Direction.BOTH));
+    }
+
+    /**
+     * Sorts the nodes of a snapshot. Edges are followed in the snapshot's direction.
+     *
+     * @param graph a snapshot of a graph
+     * @return a sort of the snapshot
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> TopologicalSort<N, E> of(CompactGraph<N, E> graph) {
+        return new TopologicalSort<>(requireNonNull(graph));
+    }
+
+    /**
+     * Returns the snapshot which is sorted.
+     *
+     * @return a snapshot of a graph
+     */
+    public CompactGraph<N, E> graph() {
+        return graph;
+    }
+
+    /**
+     * Returns whether the snapshot has no cycles, and so has a topological order.
+     *
+     * @return {@code true} if the nodes are sorted
+     */
+    public boolean isAcyclic() {
+        return order != null;
+    }
+
+    /**
+     * Returns the nodes in a topological order.
+     *
+     * @return an unmodifiable list of all nodes of the snapshot, or nothing if the
+     * snapshot has a cycle; see {@link StrongComponents} to find cycles
+     */
+    public Optional<List<N>> order() {
+        if (order == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new AbstractList<N>() {
+            @Override
+            public N get(int index) {
+                return graph.node(order[index]);
+            }
+
+            @Override
+            public int size() {
+                return order.length;
+            }
+        });
+    }
+
+    /**
+     * Returns the position of the node of the snapshot with the given index in the
+     * topological order, or the inverse of the order.
+     *
+     * @return positions of nodes by index, or nothing if the snapshot has a cycle
+     */
+    public Optional<int[]> positions() {
+        if (order == null) {
+            return Optional.empty();
+        }
+        final int[] positions = new int[order.length];
+        for (int i = 0; i < order.length; i++) positions[order[i]] = i;
+        return Optional.of(positions);
+    }
+
+    private static int[] kahn(CompactGraph<?, ?> graph) {
+        final int n = graph.nodeCount();
+        final int[] inDegree = new int[n];
+        for (int slot = 0, slots = graph.slotCount(); slot < slots; slot++) inDegree[graph.target(slot)]++;
+
+        final int[] queue = new int[n];
+        int tail = 0;
+        for (int v = 0; v < n; v++) {
+            if (inDegree[v] == 0) queue[tail++] = v;
+        }
+        for (int head = 0; head < tail; head++) {
+            final int v = queue[head];
+            for (int slot = graph.firstSlot(v), end = graph.endSlot(v); slot < end; slot++) {
+                final int w = graph.target(slot);
+                if (--inDegree[w] == 0) queue[tail++] = w;
+            }
+        }
+        return tail == n ? queue : null;
+    }
+
+}
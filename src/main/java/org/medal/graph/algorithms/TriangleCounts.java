@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Node;
+import org.medal.graph.compact.CompactGraph;
+
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Triangle counts and clustering coefficients of the nodes of a graph snapshot.
+ * See {@link Triangles}.
+ *
+ * @author skrymets
+ */
+public final class TriangleCounts<N extends Node<N, E>, E extends Edge<N, E>> {
+
+    private final CompactGraph<N, E> graph;
+
+    private final long[] triangles;
+
+    /**
+     * Numbers of distinct neighbors, other than the node itself.
+     */
+    private final int[] degrees;
+
+    TriangleCounts(CompactGraph<N, E> graph, long[] triangles, int[] degrees) {
+        this.graph = requireNonNull(graph);
+        this.triangles = requireNonNull(triangles);
+        this.degrees = requireNonNull(degrees);
+    }
+
+    /**
+     * Returns the snapshot the triangles are counted on.
+     *
+     * @return a snapshot of a graph
+     */
+    public CompactGraph<N, E> graph() {
+        return graph;
+    }
+
+    /**
+     * Returns the number of triangles of the snapshot.
+     *
+     * @return the number of triangles
+     */
+    public long total() {
+        long sum = 0;
+        for (long count : triangles) sum += count;
+        return sum / 3;
+    }
+
+    /**
+     * Returns the number of triangles a node is in.
+     *
+     * @param node a node of the snapshot
+     * @return the number of triangles
+     * @throws IllegalArgumentException if the node is not in the snapshot
+     */
+    public long triangles(N node) {
+        return triangles[indexOf(node)];
+    }
+
+    /**
+     * Returns the number of triangles the node with the given index is in.
+     *
+     * @param index an index of a node
+     * @return the number of triangles
+     */
+    public long triangles(int index) {
+        return triangles[index];
+    }
+
+    /**
+     * Returns the local clustering coefficient of a node: the fraction of pairs of
+     * its neighbors which are adjacent. It is 0 for a node with less than two neighbors.
+     *
+     * @param node a node of the snapshot
+     * @return the clustering coefficient
+     * @throws IllegalArgumentException if the node is not in the snapshot
+     */
+    public double clustering(N node) {
+        return clustering(indexOf(node));
+    }
+
+    /**
+     * Returns the local clustering coefficient of the node with the given index.
+     *
+     * @param index an index of a node
+     * @return the clustering coefficient
+     */
+    public double clustering(int index) {
+        final long degree = degrees[index];
+        return degree < 2 ? 0 : 2.0 * triangles[index] / (degree * (degree - 1));
+    }
+
+    /**
+     * Returns the mean of the local clustering coefficients of all nodes.
+     *
+     * @return the average clustering coefficient
+     */
+    public double averageClustering() {
+        double sum = 0;
+        for (int v = 0; v < triangles.length; v++) sum += clustering(v);
+        return triangles.length == 0 ? 0 : sum / triangles.length;
+    }
+
+    /**
+     * Returns the global clustering coefficient, or transitivity: the fraction of
+     * paths of two edges which are closed by a third one.
+     *
+     * @return the global clustering coefficient
+     */
+    public double globalClustering() {
+        double wedges = 0;
+        for (int degree : degrees) wedges += (double) degree * (degree - 1) / 2;
+        return wedges == 0 ? 0 : 3 * total() / wedges;
+    }
+
+    /**
+     * Returns the clustering coefficients of all nodes, indexed as the nodes of the snapshot.
+     *
+     * @return the clustering coefficients
+     */
+    public double[] clusteringArray() {
+        final double[] coefficients = new double[triangles.length];
+        for (int v = 0; v < coefficients.length; v++) coefficients[v] = clustering(v);
+        return coefficients;
+    }
+
+    /**
+     * Returns the triangle counts of all nodes, indexed as the nodes of the snapshot.
+     *
+     * @return a copy of the counts
+     */
+    public long[] toArray() {
+        return Arrays.copyOf(triangles, triangles.length);
+    }
+
+    private int indexOf(N node) {
+        final int index = graph.index(node);
+        if (index < 0) {
+            throw new IllegalArgumentException("The node is not in the snapshot.");
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+import org.medal.graph.compact.CompactGraph;
+import org.medal.graph.compact.CompactGraph.Direction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Counts triangles of a graph: globally, and for every node, from which local
+ * clustering coefficients follow. Edges are taken undirected; self-loops and
+ * parallel edges are ignored.
+ * <p>
+ * Neighbors of every node of a {@link CompactGraph} snapshot are sorted and
+ * deduplicated once, and then oriented: a node keeps only the neighbors which rank
+ * above it, by degree and then by index. Every triangle is then found exactly once,
+ * from its lowest ranked node {@code u}, as a common neighbor of {@code u} and of one
+ * of its neighbors {@code v}; and no oriented list is longer than about
+ * {@code sqrt(2m)}. Two lists are intersected by merging, or by galloping through
+ * the longer one when their lengths differ a lot.
+ * <p>
+ * Nodes are processed in blocks of consecutive indexes which the workers of a pool
+ * take one by one. Counts of the other two nodes of a triangle are added atomically.
+ *
+ * @author skrymets
+ */
+public final class Triangles<N extends Node<N, E>, E extends Edge<N, E>> {
+
+    private static final int BLOCK = 1024;
+
+    /**
+     * A ratio of lengths of two lists, from which galloping is faster than merging.
+     */
+    private static final int GALLOP_RATIO = 32;
+
+    private final CompactGraph<N, E> graph;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    private Triangles(CompactGraph<N, E> graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Takes a snapshot of the {@code graph} to count its triangles.
+     *
+     * @param graph a graph, or a view of a graph
+     * @return a computation over a snapshot of the graph
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> Triangles<N, E> of(Graph<N, E> graph) {
+        return new Triangles<>(CompactGraph.of(graph, Direction.BOTH));
+    }
+
+    /**
+     * Prepares a count of triangles over a snapshot. A directed snapshot is taken
+     * undirected.
+     *
+     * @param graph a snapshot of a graph
+     * @return a computation over the snapshot
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> Triangles<N, E> of(CompactGraph<N, E> graph) {
+        return new Triangles<>(requireNonNull(graph));
+    }
+
+    /**
+     * Sets a pool to count in. Default is the common pool.
+     *
+     * @param pool a pool
+     * @return this computation
+     */
+    public Triangles<N, E> withPool(ForkJoinPool pool) {
+        this.pool = requireNonNull(pool);
+        return this;
+    }
+
+    /**
+     * Counts triangles of the snapshot.
+     *
+     * @return triangle counts and clustering coefficients
+     */
+    public TriangleCounts<N, E> count() {
+        final int n = graph.nodeCount();
+        final int[] offsets = new int[n + 1];
+        final int[] neighbors = undirectedNeighbors(offsets);
+
+        // Sorted, deduplicated neighbors, without the node itself
+        final int[] degrees = new int[n];
+        parallel(n, v -> {
+            final int from = offsets[v];
+            final int to = offsets[v + 1];
+            Arrays.sort(neighbors, from, to);
+            int length = 0;
+            for (int i = from; i < to; i++) {
+                final int w = neighbors[i];
+                if (w != v && (length == 0 || neighbors[from + length - 1] != w)) {
+                    neighbors[from + length++] = w;
+                }
+            }
+            degrees[v] = length;
+        });
+
+        // Oriented in place, the order of indexes is kept
+        final int[] oriented = new int[n];
+        parallel(n, v -> {
+            final int from = offsets[v];
+            int length = 0;
+            for (int i = from, to = from + degrees[v]; i < to; i++) {
+                final int w = neighbors[i];
+                if (degrees[w] > degrees[v] || degrees[w] == degrees[v] && w > v) {
+                    neighbors[from + length++] = w;
+                }
+            }
+            oriented[v] = length;
+        });
+
+        final AtomicLongArray counts = new AtomicLongArray(n);
+        parallel(n, u -> {
+            final int from = offsets[u];
+            final int to = from + oriented[u];
+            long found = 0;
+            for (int i = from; i < to; i++) {
+                final int v = neighbors[i];
+                final long common = intersect(neighbors, from, to, offsets[v], offsets[v] + oriented[v], counts);
+                if (common > 0) {
+                    counts.addAndGet(v, common);
+                    found += common;
+                }
+            }
+            if (found > 0) counts.addAndGet(u, found);
+        });
+
+        final long[] triangles = new long[n];
+        for (int v = 0; v < n; v++) triangles[v] = counts.get(v);
+        return new TriangleCounts<>(graph, triangles, degrees);
+    }
+
+    /**
+     * Copies neighbors of every node, both ways whatever the direction of the snapshot.
+     */
+    private int[] undirectedNeighbors(int[] offsets) {
+        final int n = graph.nodeCount();
+        if (graph.direction() == Direction.BOTH) {
+            final int[] neighbors = new int[graph.slotCount()];
+            for (int v = 0; v < n; v++) {
+                offsets[v] = graph.firstSlot(v);
+                for (int slot = graph.firstSlot(v), end = graph.endSlot(v); slot < end; slot++) {
+                    neighbors[slot] = graph.target(slot);
+                }
+            }
+            offsets[n] = graph.slotCount();
+            return neighbors;
+        }
+
+        for (int e = 0, edges = graph.edgeCount(); e < edges; e++) {
+            offsets[graph.left(e) + 1]++;
+            offsets[graph.right(e) + 1]++;
+        }
+        for (int v = 0; v < n; v++) offsets[v + 1] += offsets[v];
+        final int[] neighbors = new int[offsets[n]];
+        final int[] fill = Arrays.copyOf(offsets, n);
+        for (int e = 0, edges = graph.edgeCount(); e < edges; e++) {
+            neighbors[fill[graph.left(e)]++] = graph.right(e);
+            neighbors[fill[graph.right(e)]++] = graph.left(e);
+        }
+        return neighbors;
+    }
+
+    /**
+     * Counts the common elements of two sorted ranges, and adds a triangle to each.
+     */
+    private static long intersect(int[] neighbors, int aFrom, int aTo, int bFrom, int bTo, AtomicLongArray counts) {
+        final int aLength = aTo - aFrom;
+        final int bLength = bTo - bFrom;
+        if (aLength == 0 || bLength == 0) {
+            return 0;
+        }
+        if (aLength > bLength * GALLOP_RATIO) {
+            return gallop(neighbors, bFrom, bTo, aFrom, aTo, counts);
+        }
+        if (bLength > aLength * GALLOP_RATIO) {
+            return gallop(neighbors, aFrom, aTo, bFrom, bTo, counts);
+        }
+
+        long common = 0;
+        int a = aFrom;
+        int b = bFrom;
+        while (a < aTo && b < bTo) {
+            final int x = neighbors[a];
+            final int y = neighbors[b];
+            if (x < y) {
+                a++;
+            } else if (x > y) {
+                b++;
+            } else {
+                counts.incrementAndGet(x);
+                common++;
+                a++;
+                b++;
+            }
+        }
+        return common;
+    }
+
+    /**
+     * Looks every element of the short range up in the long one, by exponential and
+     * then binary search forward from the previous match.
+     */
+    private static long gallop(int[] neighbors, int shortFrom, int shortTo, int longFrom, int longTo,
+                               AtomicLongArray counts) {
+        long common = 0;
+        int low = longFrom;
+        for (int s = shortFrom; s < shortTo && low < longTo; s++) {
+            final int x = neighbors[s];
+            int step = 1;
+            int high = low;
+            while (high < longTo && neighbors[high] < x) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            final int found = Arrays.binarySearch(neighbors, low, Math.min(high + 1, longTo), x);
+            if (found >= 0) {
+                counts.incrementAndGet(x);
+                common++;
+                low = found + 1;
+            } else {
+                low = -found - 1;
+            }
+        }
+        return common;
+    }
+
+    private void parallel(int n, IntConsumer action) {
+        final int blocks = (n + BLOCK - 1) / BLOCK;
+        final AtomicInteger nextBlock = new AtomicInteger();
+        final int parallelism = Math.max(1, Math.min(pool.getParallelism(), blocks));
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            tasks.add(pool.submit(() -> {
+                for (int b = nextBlock.getAndIncrement(); b < blocks; b = nextBlock.getAndIncrement()) {
+                    for (int v = b * BLOCK, to = Math.min(v + BLOCK, n); v < to; v++) action.accept(v);
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) task.join();
+    }
+
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.compact;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A read-only snapshot of a graph's structure in primitive arrays. Nodes are
+ * numbered {@code 0 .. nodeCount() - 1} and edges {@code 0 .. edgeCount() - 1};
+ * adjacency is kept in the compressed sparse row layout: the neighbours of a node
+ * occupy slots {@code firstSlot(node) .. endSlot(node) - 1} of a single array.
+ * Algorithms which sweep the whole graph work on these indexes, touching memory
+ * sequentially and allocating nothing per node or edge, and map the results back
+ * to nodes and edges with {@link #node(int)} and {@link #edge(int)}.
+ * <p>
+ * The snapshot does not follow later changes of the graph.
+ *
+ * @author skrymets
+ */
+public final class CompactGraph<N extends Node<N, E>, E extends Edge<N, E>> implements IntGraph {
+
+    /**
+     * Which edges are recorded in the adjacency of a node.
+     */
+    public enum Direction {
+
+        /**
+         * Edges leading from the node: the node is their left end.
+         */
+        OUTGOING,
+
+        /**
+         * Edges leading to the node: the node is their right end.
+         */
+        INCOMING,
+
+        /**
+         * All incident edges, regardless of their orientation. A self-loop occupies
+         * two slots of its node, consistently with {@link Node#degree()}.
+         */
+        BOTH
+
+    }
+
+    private final Direction direction;
+
+    private final Object[] nodes;
+
+    private final Object[] edges;
+
+    private final int[] nodeIndexes;
+
+    private final int[] edgeLeft;
+
+    private final int[] edgeRight;
+
+    private final int[] offsets;
+
+    private final int[] targets;
+
+    private final int[] slotEdges;
+
+    private CompactGraph(Direction direction, Object[] nodes, Object[] edges, int[] nodeIndexes,
+                         int[] edgeLeft, int[] edgeRight) {
+        this.direction = direction;
+        this.nodes = nodes;
+        this.edges = edges;
+        this.nodeIndexes = nodeIndexes;
+        this.edgeLeft = edgeLeft;
+        this.edgeRight = edgeRight;
+
+        final int n = nodes.length;
+        final int m = edges.length;
+        this.offsets = new int[n + 1];
+        for (int e = 0; e < m; e++) {
+            if (direction != Direction.INCOMING) offsets[edgeLeft[e] + 1]++;
+            if (direction != Direction.OUTGOING) offsets[edgeRight[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] = Math.addExact(offsets[v + 1], offsets[v]);
+        }
+
+        this.targets = new int[offsets[n]];
+        this.slotEdges = new int[offsets[n]];
+        final int[] fill = Arrays.copyOf(offsets, n);
+        for (int e = 0; e < m; e++) {
+            if (direction != Direction.INCOMING) {
+                final int slot = fill[edgeLeft[e]]++;
+                targets[slot] = edgeRight[e];
+                slotEdges[slot] = e;
+            }
+            if (direction != Direction.OUTGOING) {
+                final int slot = fill[edgeRight[e]]++;
+                targets[slot] = edgeLeft[e];
+                slotEdges[slot] = e;
+            }
+        }
+    }
+
+    /**
+     * Takes an undirected snapshot of the {@code graph}, see {@link Direction#BOTH}.
+     *
+     * @param graph a graph, or a view of a graph
+     * @return a snapshot of the graph
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> CompactGraph<N, E> of(Graph<N, E> graph) {
+        return of(graph, Direction.BOTH);
+    }
+
+    /**
+     * Takes a snapshot of the {@code graph}. Nodes are numbered in the order the
+     * graph iterates them.
+     *
+     * @param graph     a graph, or a view of a graph
+     * @param direction which edges are recorded in the adjacency of a node
+     * @return a snapshot of the graph
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> CompactGraph<N, E> of(
+            Graph<N, E> graph, Direction direction) {
+        return of(graph, direction, graph.nodes().toArray());
+    }
+
+    /**
+     * Takes a snapshot of the {@code graph} which numbers nodes in the given order.
+     *
+     * @param graph     a graph, or a view of a graph
+     * @param direction which edges are recorded in the adjacency of a node
+     * @param order     nodes of the graph; a node gets its position in this array as its index
+     * @return a snapshot of the graph
+     */
+    static <N extends Node<N, E>, E extends Edge<N, E>> CompactGraph<N, E> of(
+            Graph<N, E> graph, Direction direction, Object[] order) {
+
+        requireNonNull(graph);
+        requireNonNull(direction);
+
+        int maxId = -1;
+        for (Object node : order) maxId = Math.max(maxId, ((Node<?, ?>) node).id());
+
+        final int[] nodeIndexes = new int[maxId + 1];
+        Arrays.fill(nodeIndexes, -1);
+        for (int i = 0; i < order.length; i++) {
+            nodeIndexes[((Node<?, ?>) order[i]).id()] = i;
+        }
+
+        final Object[] edges = graph.edges().toArray();
+        final int[] edgeLeft = new int[edges.length];
+        final int[] edgeRight = new int[edges.length];
+        for (int e = 0; e < edges.length; e++) {
+            // The array was filled from the edges of the graph
+            @SuppressWarnings("unchecked")
+            final E edge = (E) edges[e];
+            edgeLeft[e] = nodeIndexes[edge.left().id()];
+            edgeRight[e] = nodeIndexes[edge.right().id()];
+        }
+
+        return new CompactGraph<>(direction, order, edges, nodeIndexes, edgeLeft, edgeRight);
+    }
+
+    /**
+     * Creates a snapshot of the same graph which numbers nodes in another order.
+     * The graph itself is not read again.
+     *
+     * @param order     indexes of this snapshot's nodes; a node gets its position in this array as its new index
+     * @param direction which edges are recorded in the adjacency of a node
+     * @return a new snapshot
+     */
+    CompactGraph<N, E> permute(int[] order, Direction direction) {
+        final int n = nodes.length;
+        final Object[] permutedNodes = new Object[n];
+        final int[] newIndexes = new int[n];
+        for (int i = 0; i < n; i++) {
+            permutedNodes[i] = nodes[order[i]];
+            newIndexes[order[i]] = i;
+        }
+
+        final int[] permutedNodeIndexes = new int[nodeIndexes.length];
+        for (int id = 0; id < nodeIndexes.length; id++) {
+            permutedNodeIndexes[id] = nodeIndexes[id] < 0 ? -1 : newIndexes[nodeIndexes[id]];
+        }
+
+        final int[] permutedLeft = new int[edgeLeft.length];
+        final int[] permutedRight = new int[edgeRight.length];
+        for (int e = 0; e < edgeLeft.length; e++) {
+            permutedLeft[e] = newIndexes[edgeLeft[e]];
+            permutedRight[e] = newIndexes[edgeRight[e]];
+        }
+
+        return new CompactGraph<>(direction, permutedNodes, edges, permutedNodeIndexes, permutedLeft, permutedRight);
+    }
+
+    /**
+     * Returns a snapshot of the same graph with edges followed in the opposite
+     * direction: outgoing adjacency becomes incoming and vice versa. Nodes and edges
+     * keep their indexes, and the arrays of this snapshot which do not depend on the
+     * direction are shared. An undirected snapshot is its own reverse.
+     *
+     * @return the reversed snapshot
+     */
+    public CompactGraph<N, E> reverse() {
+        switch (direction) {
+            case OUTGOING:
+                return new CompactGraph<>(Direction.INCOMING, nodes, edges, nodeIndexes, edgeLeft, edgeRight);
+            case INCOMING:
+                return new CompactGraph<>(Direction.OUTGOING, nodes, edges, nodeIndexes, edgeLeft, edgeRight);
+            default:
+                return this;
+        }
+    }
+
+    public Direction direction() {
+        return direction;
+    }
+
+    @Override
+    public int nodeCount() {
+        return nodes.length;
+    }
+
+    public int edgeCount() {
+        return edges.length;
+    }
+
+    /**
+     * Returns an index of the {@code node}.
+     *
+     * @param node a node of the graph
+     * @return an index of the node, or {@code -1} if the node is not in the snapshot
+     */
+    public int index(N node) {
+        final int id = node.id();
+        if (id < 0 || id >= nodeIndexes.length) {
+            return -1;
+        }
+
+        final int index = nodeIndexes[id];
+        return index >= 0 && nodes[index] == node ? index : -1;
+    }
+
+    // The snapshot only ever stores nodes of the graph in this array
+    @SuppressWarnings("unchecked")
+    public N node(int index) {
+        return (N) nodes[index];
+    }
+
+    // The snapshot only ever stores edges of the graph in this array
+    @SuppressWarnings("unchecked")
+    public E edge(int edgeIndex) {
+        return (E) edges[edgeIndex];
+    }
+
+    /**
+     * Returns an index of the left node of an edge.
+     *
+     * @param edgeIndex an index of the edge
+     * @return an index of the node
+     */
+    public int left(int edgeIndex) {
+        return edgeLeft[edgeIndex];
+    }
+
+    /**
+     * Returns an index of the right node of an edge.
+     *
+     * @param edgeIndex an index of the edge
+     * @return an index of the node
+     */
+    public int right(int edgeIndex) {
+        return edgeRight[edgeIndex];
+    }
+
+    /**
+     * Returns the number of slots a node occupies in the adjacency array.
+     *
+     * @param node an index of the node
+     * @return the degree of the node in the snapshot's {@link #direction()}
+     */
+    @Override
+    public int degree(int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    @Override
+    public int neighbors(int node, int[] buffer) {
+        final int degree = degree(node);
+        System.arraycopy(targets, offsets[node], buffer, 0, degree);
+        return degree;
+    }
+
+    public int firstSlot(int node) {
+        return offsets[node];
+    }
+
+    public int endSlot(int node) {
+        return offsets[node + 1];
+    }
+
+    /**
+     * Returns the total number of adjacency slots.
+     *
+     * @return the number of slots
+     */
+    public int slotCount() {
+        return targets.length;
+    }
+
+    /**
+     * Returns the neighbour recorded in an adjacency slot.
+     *
+     * @param slot a slot
+     * @return an index of the neighbour node
+     */
+    public int target(int slot) {
+        return targets[slot];
+    }
+
+    /**
+     * Returns the edge which leads to the neighbour recorded in an adjacency slot.
+     *
+     * @param slot a slot
+     * @return an index of the edge
+     */
+    public int slotEdge(int slot) {
+        return slotEdges[slot];
+    }
+
+}
@@ -0,0 +1,492 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.compact;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A read-only adjacency of a graph compressed to a few bits per edge. The
+ * neighbour list of every node is sorted and stored as a sequence of variable
+ * length integers in a single byte array:
+ * <ul>
+ * <li>the number of neighbours;</li>
+ * <li>optionally, a reference to the list of one of the preceding nodes, and the
+ * blocks of that list which are copied into this one - neighbouring nodes of a
+ * well ordered graph tend to have similar lists;</li>
+ * <li>the remaining neighbours as gaps: the first one relative to the node
+ * itself, the others relative to their predecessor.</li>
+ * </ul>
+ * An integer occupies 7 bits of every byte, so small gaps take a single byte.
+ * The lists are the shorter the closer adjacent nodes are numbered, see
+ * {@link NodeReordering}. An index of list offsets provides random access to the
+ * list of any node; the length of reference chains is bounded, so decoding a list
+ * never touches more than a few other lists.
+ * <p>
+ * Decoding a list needs scratch space for the lists it refers. A {@link #cursor()}
+ * keeps it between calls, while {@link #neighbors(int, int[])} of the adjacency
+ * itself allocates it on every call; algorithms reading many lists should take a
+ * cursor per thread.
+ * <p>
+ * Nodes are numbered as in the snapshot the adjacency is built from.
+ *
+ * @author skrymets
+ */
+public final class CompressedGraph<N extends Node<N, E>, E extends Edge<N, E>> implements IntGraph {
+
+    private static final int DEFAULT_WINDOW = 7;
+
+    private static final int DEFAULT_MAX_REFERENCE_CHAIN = 3;
+
+    private final List<N> nodes;
+
+    private final int[] nodeIndexes;
+
+    private final int[] offsets;
+
+    private final byte[] data;
+
+    private final long slots;
+
+    private CompressedGraph(List<N> nodes, int[] nodeIndexes, int[] offsets, byte[] data, long slots) {
+        this.nodes = nodes;
+        this.nodeIndexes = nodeIndexes;
+        this.offsets = offsets;
+        this.data = data;
+        this.slots = slots;
+    }
+
+    /**
+     * Compresses the adjacency of a snapshot, with default parameters.
+     *
+     * @param graph a snapshot
+     * @return a compressed adjacency
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> CompressedGraph<N, E> of(CompactGraph<N, E> graph) {
+        return of(graph, DEFAULT_WINDOW, DEFAULT_MAX_REFERENCE_CHAIN);
+    }
+
+    /**
+     * Compresses the adjacency of a snapshot.
+     *
+     * @param graph             a snapshot
+     * @param window            how many preceding lists are tried as a reference; {@code 0} disables
+     *                          reference compression
+     * @param maxReferenceChain the maximum number of lists decoding of a list may involve
+     * @return a compressed adjacency
+     * @throws IllegalStateException if the compressed adjacency does not fit into an array
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> CompressedGraph<N, E> of(
+            CompactGraph<N, E> graph, int window, int maxReferenceChain) {
+        requireNonNull(graph);
+        if (window < 0 || maxReferenceChain < 0) {
+            throw new IllegalArgumentException("Compression parameters can not be negative.");
+        }
+
+        final int n = graph.nodeCount();
+        final List<N> nodes = new ArrayList<>(n);
+        int maxId = -1;
+        for (int v = 0; v < n; v++) {
+            nodes.add(graph.node(v));
+            maxId = Math.max(maxId, graph.node(v).id());
+        }
+        final int[] nodeIndexes = new int[maxId + 1];
+        Arrays.fill(nodeIndexes, -1);
+        for (int v = 0; v < n; v++) nodeIndexes[graph.node(v).id()] = v;
+
+        final int[][] recent = new int[window + 1][];
+        final int[] chain = new int[n];
+        final int[] offsets = new int[n + 1];
+        final Output output = new Output(Math.max(16, graph.slotCount()));
+        final Output candidate = new Output(16);
+        final Output best = new Output(16);
+
+        for (int v = 0; v < n; v++) {
+            final int[] list = new int[graph.degree(v)];
+            graph.neighbors(v, list);
+            Arrays.sort(list);
+            recent[v % recent.length] = list;
+
+            best.reset();
+            encode(v, list, 0, null, best);
+            for (int distance = 1; distance <= Math.min(window, v); distance++) {
+                final int r = v - distance;
+                if (chain[r] >= maxReferenceChain || list.length == 0) {
+                    continue;
+                }
+                candidate.reset();
+                encode(v, list, distance, recent[r % recent.length], candidate);
+                if (candidate.size < best.size) {
+                    best.copyFrom(candidate);
+                    chain[v] = chain[r] + 1;
+                }
+            }
+
+            offsets[v] = output.size;
+            output.append(best);
+        }
+        offsets[n] = output.size;
+
+        return new CompressedGraph<>(nodes, nodeIndexes, offsets, Arrays.copyOf(output.bytes, output.size),
+                graph.slotCount());
+    }
+
+    /**
+     * Encodes a sorted list of the node {@code v}, referring the list {@code reference}
+     * of the node {@code v - distance} if the distance is positive.
+     */
+    private static void encode(int v, int[] list, int distance, int[] reference, Output out) {
+        out.writeVarint(list.length);
+        if (list.length == 0) {
+            return;
+        }
+        out.writeVarint(distance);
+
+        int[] residuals = list;
+        int residualCount = list.length;
+        if (distance > 0) {
+            // Mark the elements of the reference which are copied, as a multiset intersection
+            final boolean[] copied = new boolean[reference.length];
+            residuals = new int[list.length];
+            residualCount = 0;
+            int i = 0;
+            int j = 0;
+            while (i < list.length) {
+                if (j < reference.length && reference[j] < list[i]) {
+                    j++;
+                } else if (j < reference.length && reference[j] == list[i]) {
+                    copied[j++] = true;
+                    i++;
+                } else {
+                    residuals[residualCount++] = list[i++];
+                }
+            }
+
+            // Alternating lengths of copied and skipped blocks, starting with a copied one
+            int blocks = 0;
+            final int[] lengths = new int[reference.length + 1];
+            boolean copying = true;
+            int length = 0;
+            for (boolean c : copied) {
+                if (c == copying) {
+                    length++;
+                } else {
+                    lengths[blocks++] = length;
+                    copying = c;
+                    length = 1;
+                }
+            }
+            if (copying) lengths[blocks++] = length; // a trailing skipped block is implied
+            out.writeVarint(blocks);
+            for (int b = 0; b < blocks; b++) out.writeVarint(lengths[b]);
+        }
+
+        if (residualCount > 0) {
+            out.writeVarint(zigzag(residuals[0] - v));
+            for (int k = 1; k < residualCount; k++) out.writeVarint(residuals[k] - residuals[k - 1]);
+        }
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    @Override
+    public int nodeCount() {
+        return nodes.size();
+    }
+
+    @Override
+    public int degree(int node) {
+        return readVarint(offsets[node]);
+    }
+
+    /**
+     * Copies the neighbours of a node, in ascending order. Allocates the scratch
+     * space of decoding, see {@link #cursor()}.
+     */
+    @Override
+    public int neighbors(int node, int[] buffer) {
+        return new Cursor().neighbors(node, buffer);
+    }
+
+    /**
+     * Returns a cursor which decodes lists into scratch arrays of its own, reused
+     * from call to call.
+     *
+     * @return a new cursor
+     */
+    @Override
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Reads a variable length integer at {@code offset}.
+     */
+    private int readVarint(int offset) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[offset++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    public N node(int index) {
+        return nodes.get(index);
+    }
+
+    /**
+     * Returns an index of the {@code node}.
+     *
+     * @param node a node of the graph
+     * @return an index of the node, or {@code -1} if the node is not in the adjacency
+     */
+    public int index(N node) {
+        final int id = node.id();
+        if (id < 0 || id >= nodeIndexes.length) {
+            return -1;
+        }
+        final int index = nodeIndexes[id];
+        return index >= 0 && nodes.get(index) == node ? index : -1;
+    }
+
+    /**
+     * Returns the number of bytes of the encoded lists.
+     *
+     * @return the size of the lists
+     */
+    public long dataSize() {
+        return data.length;
+    }
+
+    /**
+     * Returns the number of bits taken by one neighbour entry, counting the encoded
+     * lists and their offset index.
+     *
+     * @return bits per edge end, {@code 0} for a graph without edges
+     */
+    public double bitsPerEdge() {
+        return slots == 0 ? 0 : 8.0 * (data.length + 4L * offsets.length) / slots;
+    }
+
+    /**
+     * Decodes lists of the adjacency. A list which refers another one is decoded
+     * bottom-up: the reference chain is walked first, then every list of it is
+     * rebuilt from the one below, in two scratch arrays used in turn.
+     */
+    public final class Cursor implements IntGraph {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        /**
+         * Nodes of the reference chain of the list being decoded, their degrees and
+         * the offsets their lists continue at after the reference distance.
+         */
+        private int[] chain = new int[4];
+
+        private int[] degrees = new int[4];
+
+        private int[] positions = new int[4];
+
+        private int[] current = new int[INITIAL_CAPACITY];
+
+        private int[] next = new int[INITIAL_CAPACITY];
+
+        private int[] residuals = new int[INITIAL_CAPACITY];
+
+        private int position;
+
+        private Cursor() {
+        }
+
+        @Override
+        public int nodeCount() {
+            return CompressedGraph.this.nodeCount();
+        }
+
+        @Override
+        public int degree(int node) {
+            return CompressedGraph.this.degree(node);
+        }
+
+        @Override
+        public int neighbors(int node, int[] buffer) {
+            int depth = 0;
+            for (int v = node; ; ) {
+                position = offsets[v];
+                final int degree = readVarint();
+                if (degree == 0) {
+                    // Only a list of its own may be empty: empty lists refer nothing
+                    return 0;
+                }
+                final int distance = readVarint();
+                if (depth == chain.length) {
+                    chain = Arrays.copyOf(chain, 2 * depth);
+                    degrees = Arrays.copyOf(degrees, 2 * depth);
+                    positions = Arrays.copyOf(positions, 2 * depth);
+                }
+                chain[depth] = v;
+                degrees[depth] = degree;
+                positions[depth++] = position;
+                if (distance == 0) {
+                    break;
+                }
+                v -= distance;
+            }
+
+            for (int level = depth - 1; level >= 0; level--) {
+                final int[] into = level == 0 ? buffer : (next = ensure(next, degrees[level]));
+                position = positions[level];
+                if (level == depth - 1) {
+                    readResiduals(chain[level], into, degrees[level]);
+                } else {
+                    decode(chain[level], degrees[level], current, into);
+                }
+                final int[] swap = current;
+                current = next;
+                next = swap;
+            }
+            return degrees[0];
+        }
+
+        /**
+         * Decodes the list of the node {@code v}, which refers the {@code reference}
+         * list, into the {@code into} array.
+         */
+        private void decode(int v, int degree, int[] reference, int[] into) {
+            int copiedCount = 0;
+            final int blocks = readVarint();
+            int r = 0;
+            for (int b = 0; b < blocks; b++) {
+                final int length = readVarint();
+                if ((b & 1) == 0) {
+                    System.arraycopy(reference, r, into, copiedCount, length);
+                    copiedCount += length;
+                }
+                r += length;
+            }
+
+            final int residualCount = degree - copiedCount;
+            residuals = ensure(residuals, residualCount);
+            readResiduals(v, residuals, residualCount);
+
+            // Both parts are sorted: merge them from the end, in place
+            int i = copiedCount - 1;
+            int j = residualCount - 1;
+            for (int k = degree - 1; k >= 0; k--) {
+                into[k] = j < 0 || i >= 0 && into[i] > residuals[j] ? into[i--] : residuals[j--];
+            }
+        }
+
+        private void readResiduals(int v, int[] into, int count) {
+            if (count == 0) {
+                return;
+            }
+            int previous = v + unzigzag(readVarint());
+            into[0] = previous;
+            for (int k = 1; k < count; k++) {
+                previous += readVarint();
+                into[k] = previous;
+            }
+        }
+
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        private int[] ensure(int[] array, int capacity) {
+            return array.length >= capacity ? array : new int[Math.max(capacity, 2 * array.length)];
+        }
+
+    }
+
+    /**
+     * A growing byte array.
+     */
+    private static final class Output {
+
+        private byte[] bytes;
+
+        private int size;
+
+        Output(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        void writeVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void append(Output other) {
+            ensure(other.size);
+            System.arraycopy(other.bytes, 0, bytes, size, other.size);
+            size += other.size;
+        }
+
+        void copyFrom(Output other) {
+            reset();
+            append(other);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                final long capacity = Math.max((long) size + extra, 2L * bytes.length);
+                if (capacity > Integer.MAX_VALUE - 8) {
+                    if ((long) size + extra > Integer.MAX_VALUE - 8) {
+                        throw new IllegalStateException("The compressed adjacency does not fit into an array.");
+                    }
+                    bytes = Arrays.copyOf(bytes, Integer.MAX_VALUE - 8);
+                } else {
+                    bytes = Arrays.copyOf(bytes, (int) capacity);
+                }
+            }
+        }
+
+    }
+
+}
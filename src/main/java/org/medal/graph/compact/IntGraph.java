@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.compact;
+
+/**
+ * Adjacency of a graph which nodes are numbered {@code 0 .. nodeCount() - 1}.
+ * Implemented by read-only representations which trade object navigation for
+ * compact storage; algorithms written against this interface run on any of them.
+ *
+ * @author skrymets
+ */
+public interface IntGraph {
+
+    int nodeCount();
+
+    /**
+     * Returns the number of neighbours recorded for a node.
+     *
+     * @param node an index of the node
+     * @return the number of neighbours, counting repeated ones
+     */
+    int degree(int node);
+
+    /**
+     * Copies the neighbours of a node into the {@code buffer}.
+     *
+     * @param node   an index of the node
+     * @param buffer an array of at least {@link #degree(int)} elements
+     * @return the number of neighbours copied
+     */
+    int neighbors(int node, int[] buffer);
+
+    /**
+     * Returns a view of this adjacency for a single thread which reads many lists.
+     * An adjacency which needs scratch space to produce a list allocates it once per
+     * cursor rather than on every call of {@link #neighbors(int, int[])}. A cursor
+     * is not thread safe.
+     *
+     * @return a cursor over this adjacency; this adjacency itself, if reading its
+     * lists needs no scratch space
+     */
+    default IntGraph cursor() {
+        return this;
+    }
+
+}
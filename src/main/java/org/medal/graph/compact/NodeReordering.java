@@ -0,0 +1,333 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.compact;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+import org.medal.graph.compact.CompactGraph.Direction;
+
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Snapshots which number nodes so that adjacent nodes get close indexes. The
+ * adjacency of a snapshot is laid out in the order of node indexes, so with a good
+ * numbering a traversal or a sweep over all nodes reads the adjacency array and
+ * the arrays indexed by node mostly sequentially.
+ * <p>
+ * The quality of a numbering is measured by the distances between the indexes of
+ * edge ends: the largest one is the bandwidth, and the average one tells how far
+ * a typical step of a traversal jumps in memory.
+ *
+ * @author skrymets
+ */
+public final class NodeReordering<N extends Node<N, E>, E extends Edge<N, E>> {
+
+    /**
+     * A way to number nodes.
+     */
+    public enum Strategy {
+
+        /**
+         * Reverse Cuthill-McKee: a breadth-first order from a peripheral node of
+         * every component, which visits the neighbours of a node from the lowest
+         * degree to the highest, reversed. Minimizes the bandwidth.
+         */
+        REVERSE_CUTHILL_MCKEE,
+
+        /**
+         * Nodes sorted by decreasing degree, so the most often accessed nodes
+         * share a few cache lines.
+         */
+        DEGREE,
+
+        /**
+         * A plain breadth-first order, which keeps the nodes of a neighbourhood
+         * together. The cheapest of the locality improving orders.
+         */
+        BREADTH_FIRST
+
+    }
+
+    private final CompactGraph<N, E> graph;
+
+    private final int[] permutation;
+
+    private final long bandwidthBefore;
+
+    private final long bandwidthAfter;
+
+    private final double averageGapBefore;
+
+    private final double averageGapAfter;
+
+    private NodeReordering(CompactGraph<N, E> original, CompactGraph<N, E> graph, int[] permutation) {
+        this.graph = graph;
+        this.permutation = permutation;
+        this.bandwidthBefore = bandwidth(original);
+        this.bandwidthAfter = bandwidth(graph);
+        this.averageGapBefore = averageGap(original);
+        this.averageGapAfter = averageGap(graph);
+    }
+
+    /**
+     * Takes a snapshot of the {@code graph} which numbers nodes by the {@code strategy}.
+     * Edge directions are ignored when the order is computed.
+     *
+     * @param graph     a graph, or a view of a graph
+     * @param direction which edges are recorded in the adjacency of a node
+     * @param strategy  a way to number nodes
+     * @return the reordered snapshot and the quality of the numbering
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> NodeReordering<N, E> of(
+            Graph<N, E> graph, Direction direction, Strategy strategy) {
+        return of(CompactGraph.of(graph, Direction.BOTH), direction, strategy);
+    }
+
+    /**
+     * Renumbers nodes of a snapshot by the {@code strategy}.
+     *
+     * @param original  a snapshot
+     * @param direction which edges are recorded in the adjacency of a node of the new snapshot
+     * @param strategy  a way to number nodes
+     * @return the reordered snapshot and the quality of the numbering
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> NodeReordering<N, E> of(
+            CompactGraph<N, E> original, Direction direction, Strategy strategy) {
+        requireNonNull(direction);
+        requireNonNull(strategy);
+
+        final CompactGraph<N, E> undirected = original.direction() == Direction.BOTH
+                ? original : original.permute(identity(original.nodeCount()), Direction.BOTH);
+
+        final int[] order;
+        switch (strategy) {
+            case REVERSE_CUTHILL_MCKEE:
+                order = reverseCuthillMcKee(undirected);
+                break;
+            case DEGREE:
+                order = byDegree(undirected);
+                break;
+            case BREADTH_FIRST:
+                order = breadthFirst(undirected);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown strategy: " + strategy);
+        }
+
+        final int[] permutation = new int[order.length];
+        for (int i = 0; i < order.length; i++) permutation[order[i]] = i;
+        return new NodeReordering<>(original, original.permute(order, direction), permutation);
+    }
+
+    private static int[] identity(int n) {
+        final int[] identity = new int[n];
+        for (int i = 0; i < n; i++) identity[i] = i;
+        return identity;
+    }
+
+    private static int[] byDegree(CompactGraph<?, ?> graph) {
+        final int n = graph.nodeCount();
+        final long[] keys = new long[n];
+        for (int v = 0; v < n; v++) keys[v] = (long) (Integer.MAX_VALUE - graph.degree(v)) << 32 | v;
+        Arrays.parallelSort(keys);
+
+        final int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = (int) keys[i];
+        return order;
+    }
+
+    private static int[] breadthFirst(CompactGraph<?, ?> graph) {
+        final int n = graph.nodeCount();
+        final int[] order = new int[n];
+        final boolean[] visited = new boolean[n];
+        int size = 0;
+        for (int root = 0; root < n; root++) {
+            if (visited[root]) {
+                continue;
+            }
+            visited[root] = true;
+            int head = size;
+            order[size++] = root;
+            while (head < size) {
+                final int v = order[head++];
+                for (int slot = graph.firstSlot(v); slot < graph.endSlot(v); slot++) {
+                    final int w = graph.target(slot);
+                    if (!visited[w]) {
+                        visited[w] = true;
+                        order[size++] = w;
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    private static int[] reverseCuthillMcKee(CompactGraph<?, ?> graph) {
+        final int n = graph.nodeCount();
+        final int[] order = new int[n];
+        final boolean[] visited = new boolean[n];
+        final int[] level = new int[n];
+        final int[] queue = new int[n];
+        Arrays.fill(level, -1);
+        long[] neighbours = new long[16];
+
+        // Roots: a node of the lowest degree in every component
+        final long[] byDegree = new long[n];
+        for (int v = 0; v < n; v++) byDegree[v] = (long) graph.degree(v) << 32 | v;
+        Arrays.sort(byDegree);
+
+        int size = 0;
+        for (long key : byDegree) {
+            final int candidate = (int) key;
+            if (visited[candidate]) {
+                continue;
+            }
+            final int root = peripheral(graph, candidate, level, queue);
+
+            visited[root] = true;
+            int head = size;
+            order[size++] = root;
+            while (head < size) {
+                final int v = order[head++];
+                int count = 0;
+                for (int slot = graph.firstSlot(v); slot < graph.endSlot(v); slot++) {
+                    final int w = graph.target(slot);
+                    if (!visited[w]) {
+                        visited[w] = true;
+                        if (count == neighbours.length) neighbours = Arrays.copyOf(neighbours, count * 2);
+                        neighbours[count++] = (long) graph.degree(w) << 32 | w;
+                    }
+                }
+                Arrays.sort(neighbours, 0, count);
+                for (int i = 0; i < count; i++) order[size++] = (int) neighbours[i];
+            }
+        }
+
+        for (int i = 0, j = n - 1; i < j; i++, j--) {
+            final int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        return order;
+    }
+
+    /**
+     * Finds a pseudo-peripheral node of the component of {@code start}: repeatedly
+     * moves to a node of the lowest degree on the farthest level of a breadth-first
+     * search, as long as that makes the search deeper. Expects {@code level} and
+     * leaves it filled with {@code -1}.
+     */
+    private static int peripheral(CompactGraph<?, ?> graph, int start, int[] level, int[] queue) {
+        int node = start;
+        int depth = -1;
+        while (true) {
+            int head = 0;
+            int size = 0;
+            queue[size++] = node;
+            level[node] = 0;
+            int farthest = node;
+            while (head < size) {
+                final int v = queue[head++];
+                for (int slot = graph.firstSlot(v); slot < graph.endSlot(v); slot++) {
+                    final int w = graph.target(slot);
+                    if (level[w] < 0) {
+                        level[w] = level[v] + 1;
+                        queue[size++] = w;
+                        if (level[w] > level[farthest]
+                                || level[w] == level[farthest] && graph.degree(w) < graph.degree(farthest)) {
+                            farthest = w;
+                        }
+                    }
+                }
+            }
+            final int maxLevel = level[farthest];
+            for (int i = 0; i < size; i++) level[queue[i]] = -1;
+
+            if (maxLevel <= depth) {
+                return node;
+            }
+            depth = maxLevel;
+            node = farthest;
+        }
+    }
+
+    /**
+     * Returns the largest distance between the indexes of the ends of an edge.
+     *
+     * @param graph a snapshot
+     * @return the bandwidth, {@code 0} for a graph without edges
+     */
+    public static long bandwidth(CompactGraph<?, ?> graph) {
+        long bandwidth = 0;
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            bandwidth = Math.max(bandwidth, Math.abs(graph.left(e) - graph.right(e)));
+        }
+        return bandwidth;
+    }
+
+    /**
+     * Returns the average distance between the indexes of the ends of an edge.
+     *
+     * @param graph a snapshot
+     * @return the average gap, {@code 0} for a graph without edges
+     */
+    public static double averageGap(CompactGraph<?, ?> graph) {
+        if (graph.edgeCount() == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int e = 0; e < graph.edgeCount(); e++) sum += Math.abs(graph.left(e) - graph.right(e));
+        return (double) sum / graph.edgeCount();
+    }
+
+    /**
+     * Returns the reordered snapshot.
+     *
+     * @return a snapshot
+     */
+    public CompactGraph<N, E> graph() {
+        return graph;
+    }
+
+    /**
+     * Returns the new index of every node.
+     *
+     * @return a new array, indexed by the node's index in the original snapshot
+     */
+    public int[] permutation() {
+        return permutation.clone();
+    }
+
+    public long bandwidthBefore() {
+        return bandwidthBefore;
+    }
+
+    public long bandwidthAfter() {
+        return bandwidthAfter;
+    }
+
+    public double averageGapBefore() {
+        return averageGapBefore;
+    }
+
+    public double averageGapAfter() {
+        return averageGapAfter;
+    }
+
+}
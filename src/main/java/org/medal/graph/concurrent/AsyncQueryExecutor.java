@@ -0,0 +1,474 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.concurrent;
+
+import org.medal.graph.DirectedGraph;
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.GraphListener;
+import org.medal.graph.Node;
+import org.medal.graph.algorithms.BidirectionalSearch;
+import org.medal.graph.compact.CompactGraph;
+import org.medal.graph.compact.CompactGraph.Direction;
+import org.medal.graph.impl.AbstractEdge;
+import org.medal.graph.impl.AbstractGraph;
+import org.medal.graph.impl.AbstractNode;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Runs read-only queries against a graph asynchronously. Every query runs on a
+ * thread of its own - a virtual thread, if the JDK provides them, and a thread of
+ * a pool of platform threads otherwise - and its result is delivered through a
+ * {@link CompletableFuture}.
+ * <p>
+ * Queries read a {@link CompactGraph} snapshot of the graph rather than the graph
+ * itself, so any number of queries may read the snapshot at once.
+ * <p>
+ * For an {@link AbstractGraph} the executor listens to the graph: the snapshot is
+ * retaken on the first query after a change, and a snapshot during which the graph
+ * changed, or which overlaps a transaction being applied, is discarded and taken
+ * again. Other graphs are snapshotted while holding the graph's monitor, and the
+ * snapshot is only consistent if the writers hold the monitor as well; it is
+ * retaken after {@link #refresh()}.
+ * <p>
+ * The number of queries which run at the same time is limited; {@link #submit}
+ * blocks until a permit is available. A query may also be given a time limit,
+ * which includes the wait for a permit, after which its future completes
+ * exceptionally with a {@link TimeoutException} and the query's thread is
+ * interrupted.
+ *
+ * @author skrymets
+ */
+public final class AsyncQueryExecutor<N extends Node<N, E>, E extends Edge<N, E>> implements AutoCloseable {
+
+    private static final int DEFAULT_MAX_CONCURRENCY = 10_000;
+
+    /**
+     * How many times a snapshot is retaken while the graph keeps changing.
+     */
+    private static final int SNAPSHOT_ATTEMPTS = 16;
+
+    private final Graph<N, E> graph;
+
+    private final ExecutorService executor;
+
+    private final boolean virtualThreads;
+
+    /**
+     * Unregisters the listener which tracks the changes of the graph, or
+     * {@code null} if the graph can not be listened to.
+     */
+    private final Runnable untrack;
+
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * The number of transactions being applied to the graph.
+     */
+    private final AtomicInteger batches = new AtomicInteger();
+
+    private final Object snapshotLock = new Object();
+
+    /**
+     * The latest snapshot along with the version it was taken at, published as one
+     * so that a reader never pairs a snapshot with another version.
+     */
+    private volatile Versioned<N, E> snapshot;
+
+    /**
+     * A search over the latest snapshot, see {@link #distance}.
+     */
+    private volatile BidirectionalSearch<N, E> search;
+
+    private volatile Direction direction;
+
+    private volatile Semaphore permits = new Semaphore(DEFAULT_MAX_CONCURRENCY);
+
+    private volatile Duration timeout;
+
+    /**
+     * Creates an executor of queries against the {@code graph}.
+     *
+     * @param graph a graph to be queried
+     */
+    public AsyncQueryExecutor(Graph<N, E> graph) {
+        this.graph = requireNonNull(graph);
+        this.direction = graph instanceof DirectedGraph ? Direction.OUTGOING : Direction.BOTH;
+
+        final ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(),
+                runnable -> {
+                    final Thread thread = new Thread(runnable, "graph-query");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        this.untrack = graph instanceof AbstractGraph ? track((AbstractGraph<?, ?>) graph) : null;
+    }
+
+    /**
+     * Starts counting the changes of the {@code graph}.
+     *
+     * @return an action which stops counting them
+     */
+    private <M extends AbstractNode<M, F>, F extends AbstractEdge<M, F>> Runnable track(AbstractGraph<M, F> graph) {
+        final GraphListener<M, F> tracker = new GraphListener<M, F>() {
+            @Override
+            public void nodeCreated(M node) {
+                version.incrementAndGet();
+            }
+
+            @Override
+            public void nodeDeleted(M node) {
+                version.incrementAndGet();
+            }
+
+            @Override
+            public void edgeCreated(F edge) {
+                version.incrementAndGet();
+            }
+
+            @Override
+            public void edgeDeleted(F edge) {
+                version.incrementAndGet();
+            }
+
+            @Override
+            public void edgeRelinked(F edge, M oldNode, M newNode) {
+                version.incrementAndGet();
+            }
+
+            @Override
+            public void edgeFolded(F edge, int count) {
+                version.incrementAndGet();
+            }
+
+            @Override
+            public void batchStarted(int changes) {
+                batches.incrementAndGet();
+                version.incrementAndGet();
+            }
+
+            @Override
+            public void batchCompleted() {
+                version.incrementAndGet();
+                batches.decrementAndGet();
+            }
+        };
+        graph.addListener(tracker);
+        return () -> graph.removeListener(tracker);
+    }
+
+    /**
+     * Creates an executor which starts a new virtual thread for every task, if the
+     * running JDK supports virtual threads.
+     *
+     * @return a new executor, or {@code null} if virtual threads are not available
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Sets the maximum number of queries which run at the same time. Default is
+     * {@value #DEFAULT_MAX_CONCURRENCY}. Applies to queries submitted afterwards.
+     *
+     * @param maxConcurrency the maximum number of running queries
+     * @return this executor
+     */
+    public AsyncQueryExecutor<N, E> withMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("The concurrency limit must be positive.");
+        }
+        this.permits = new Semaphore(maxConcurrency);
+        return this;
+    }
+
+    /**
+     * Sets a time limit for queries submitted without one. By default queries are
+     * not limited in time.
+     *
+     * @param timeout a time limit, or {@code null} for none
+     * @return this executor
+     */
+    public AsyncQueryExecutor<N, E> withTimeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Sets which edges the snapshot records in the adjacency of a node. Default is
+     * {@link Direction#OUTGOING} for a {@link DirectedGraph} and {@link Direction#BOTH}
+     * otherwise.
+     *
+     * @param direction a direction of the snapshot
+     * @return this executor
+     */
+    public AsyncQueryExecutor<N, E> withDirection(Direction direction) {
+        this.direction = requireNonNull(direction);
+        refresh();
+        return this;
+    }
+
+    /**
+     * Reports whether queries run on virtual threads.
+     *
+     * @return {@code true} if the JDK supports virtual threads
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Makes the next query take a new snapshot of the graph.
+     */
+    public void refresh() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Returns an up-to-date snapshot of the graph, taking a new one if needed.
+     *
+     * @return a snapshot
+     * @throws ConcurrentModificationException if the graph kept changing during
+     *                                         every attempt to take a snapshot
+     */
+    public CompactGraph<N, E> snapshot() {
+        final Versioned<N, E> current = snapshot;
+        if (current != null && current.version == version.get()) {
+            return current.graph;
+        }
+
+        synchronized (snapshotLock) {
+            for (int attempt = 1; snapshot == null || snapshot.version != version.get(); attempt++) {
+                final long before = version.get();
+                final CompactGraph<N, E> taken = batches.get() == 0 ? takeSnapshot() : null;
+                if (taken != null && batches.get() == 0 && version.get() == before) {
+                    snapshot = new Versioned<>(taken, before);
+                } else if (attempt == SNAPSHOT_ATTEMPTS) {
+                    throw new ConcurrentModificationException("The graph kept changing while being snapshotted.");
+                } else {
+                    LockSupport.parkNanos(1_000L << attempt);
+                }
+            }
+            return snapshot.graph;
+        }
+    }
+
+    /**
+     * Builds a snapshot of the graph.
+     *
+     * @return a snapshot, or {@code null} if a concurrent change of a listened graph
+     * broke the build
+     */
+    private CompactGraph<N, E> takeSnapshot() {
+        if (untrack == null) {
+            synchronized (graph) {
+                return CompactGraph.of(graph, direction);
+            }
+        }
+        try {
+            return CompactGraph.of(graph, direction);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Submits a query with the default time limit.
+     *
+     * @param query a function which computes a result from a snapshot of the graph
+     * @return a future result of the query
+     */
+    public <T> CompletableFuture<T> submit(Function<? super CompactGraph<N, E>, ? extends T> query) {
+        return submit(query, timeout);
+    }
+
+    /**
+     * Submits a query. Blocks until one of the permits limiting the number of
+     * running queries is available, or the time limit expires.
+     *
+     * @param query   a function which computes a result from a snapshot of the graph
+     * @param timeout a time limit of the query, or {@code null} for none
+     * @return a future result of the query; completes exceptionally with
+     * {@link InterruptedException} if the calling thread was interrupted while
+     * waiting for a permit
+     * @throws RejectedExecutionException if the executor has been closed
+     */
+    public <T> CompletableFuture<T> submit(Function<? super CompactGraph<N, E>, ? extends T> query, Duration timeout) {
+        requireNonNull(query);
+
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final long deadline = timeout == null ? 0 : System.nanoTime() + timeout.toNanos();
+        final Semaphore limit = permits;
+        try {
+            if (timeout == null) {
+                limit.acquire();
+            } else if (!limit.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                result.completeExceptionally(new TimeoutException());
+                return result;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        // Whoever claims the permit first - the task or its cancellation - releases it
+        final AtomicBoolean claimed = new AtomicBoolean();
+        final Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    if (!result.isDone()) result.complete(query.apply(snapshot()));
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                } finally {
+                    limit.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            limit.release();
+            throw e;
+        }
+
+        if (timeout != null) {
+            result.orTimeout(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)
+                    .whenComplete((value, failure) -> {
+                        if (failure instanceof TimeoutException) {
+                            if (claimed.compareAndSet(false, true)) limit.release();
+                            task.cancel(true);
+                        }
+                    });
+        }
+        return result;
+    }
+
+    /**
+     * Returns the nodes adjacent to the {@code node}, following the snapshot's direction.
+     *
+     * @param node a node of the graph
+     * @return a future unmodifiable set of nodes; completes exceptionally with
+     * {@link IllegalArgumentException} if the node is not in the snapshot
+     */
+    public CompletableFuture<Set<N>> adjacentNodes(N node) {
+        return submit(compact -> {
+            final int v = indexOf(compact, node);
+            final Set<N> result = new HashSet<>();
+            for (int slot = compact.firstSlot(v); slot < compact.endSlot(v); slot++) {
+                result.add(compact.node(compact.target(slot)));
+            }
+            return Collections.unmodifiableSet(result);
+        });
+    }
+
+    /**
+     * Returns the degree of the {@code node} in the snapshot's direction.
+     *
+     * @param node a node of the graph
+     * @return a future degree
+     */
+    public CompletableFuture<Integer> degree(N node) {
+        return submit(compact -> compact.degree(indexOf(compact, node)));
+    }
+
+    /**
+     * Returns the length of a shortest path between two nodes, in hops. Computed by a
+     * {@link BidirectionalSearch} which is kept along with the snapshot, so queries
+     * on the same snapshot reuse its arrays.
+     *
+     * @param source a node to start from
+     * @param target a node to be reached
+     * @return a future number of hops, {@code -1} if the target is not reachable
+     */
+    public CompletableFuture<Integer> distance(N source, N target) {
+        return submit(compact -> {
+            BidirectionalSearch<N, E> current = search;
+            if (current == null || current.graph() != compact) {
+                search = current = BidirectionalSearch.of(compact);
+            }
+            return current.distance(indexOf(compact, source), indexOf(compact, target));
+        });
+    }
+
+    private int indexOf(CompactGraph<N, E> compact, N node) {
+        final int index = compact.index(requireNonNull(node));
+        if (index < 0) {
+            throw new IllegalArgumentException("The node is not in the snapshot.");
+        }
+        return index;
+    }
+
+    /**
+     * Stops accepting queries and stops listening to the graph. Queries already
+     * submitted still complete.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        if (untrack != null) {
+            untrack.run();
+        }
+    }
+
+    /**
+     * A snapshot and the version of the graph it was taken at.
+     */
+    private static final class Versioned<N extends Node<N, E>, E extends Edge<N, E>> {
+
+        private final CompactGraph<N, E> graph;
+
+        private final long version;
+
+        private Versioned(CompactGraph<N, E> graph, long version) {
+            this.graph = graph;
+            this.version = version;
+        }
+
+    }
+
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.concurrent;
+
+import org.medal.graph.DirectedNode;
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Sources of {@link Flow.Publisher}s which emit nodes and edges of a graph. The
+ * publishers are cold and lazy: every subscriber gets a scan or a walk of its own,
+ * which advances only as far as the subscriber has requested, and stops as soon as
+ * the subscription is cancelled. Nothing but the state of the scan or the walk
+ * itself is buffered.
+ * <p>
+ * Elements are emitted on the given executor, or on the common fork/join pool.
+ * The graph must not be changed while a subscriber is being served; a change
+ * detected by a scan terminates the subscription with an error.
+ *
+ * @author skrymets
+ */
+public final class GraphPublishers {
+
+    private GraphPublishers() {
+    }
+
+    public static <N extends Node<N, E>, E extends Edge<N, E>> Flow.Publisher<N> nodes(Graph<N, E> graph) {
+        return nodes(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a publisher of the nodes of the {@code graph}.
+     *
+     * @param graph    a graph, or a view of a graph
+     * @param executor an executor to emit nodes on
+     * @return a new publisher
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> Flow.Publisher<N> nodes(
+            Graph<N, E> graph, Executor executor) {
+        requireNonNull(graph);
+        return new IteratorPublisher<>(() -> graph.nodes().iterator(), executor);
+    }
+
+    public static <N extends Node<N, E>, E extends Edge<N, E>> Flow.Publisher<E> edges(Graph<N, E> graph) {
+        return edges(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a publisher of the edges of the {@code graph}.
+     *
+     * @param graph    a graph, or a view of a graph
+     * @param executor an executor to emit edges on
+     * @return a new publisher
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> Flow.Publisher<E> edges(
+            Graph<N, E> graph, Executor executor) {
+        requireNonNull(graph);
+        return new IteratorPublisher<>(() -> graph.edges().iterator(), executor);
+    }
+
+    public static <N extends Node<N, E>, E extends Edge<N, E>> Flow.Publisher<N> breadthFirst(N source) {
+        return breadthFirst(source, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a publisher of the nodes reachable from the {@code source} node, in
+     * breadth-first order, starting with the source itself. Nodes of a directed
+     * graph are left over their outgoing edges, nodes of other graphs - over all
+     * incident edges.
+     *
+     * @param source   a node to start from
+     * @param executor an executor to emit nodes on
+     * @return a new publisher
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> Flow.Publisher<N> breadthFirst(
+            N source, Executor executor) {
+        requireNonNull(source);
+        return new IteratorPublisher<>(() -> new BreadthFirstIterator<>(source), executor);
+    }
+
+    public static <N extends Node<N, E>, E extends Edge<N, E>> Flow.Publisher<N> depthFirst(N source) {
+        return depthFirst(source, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a publisher of the nodes reachable from the {@code source} node, in
+     * depth-first pre-order, starting with the source itself. Edges are followed as
+     * by {@link #breadthFirst(Node, Executor)}.
+     *
+     * @param source   a node to start from
+     * @param executor an executor to emit nodes on
+     * @return a new publisher
+     */
+    public static <N extends Node<N, E>, E extends Edge<N, E>> Flow.Publisher<N> depthFirst(
+            N source, Executor executor) {
+        requireNonNull(source);
+        return new IteratorPublisher<>(() -> new DepthFirstIterator<>(source), executor);
+    }
+
+    // The out-edges of a directed node of type N are edges of type E
+    @SuppressWarnings("unchecked")
+    private static <N extends Node<N, E>, E extends Edge<N, E>> Collection<E> leavingEdges(N node) {
+        return node instanceof DirectedNode
+                ? (Collection<E>) ((DirectedNode<?, ?>) node).outEdges()
+                : node.incidentEdges();
+    }
+
+    private static <N extends Node<N, E>, E extends Edge<N, E>> N across(E edge, N node) {
+        return edge.left() == node ? edge.right() : edge.left();
+    }
+
+    /**
+     * Expands a node only when the previous one has been taken.
+     */
+    private static final class BreadthFirstIterator<N extends Node<N, E>, E extends Edge<N, E>> implements Iterator<N> {
+
+        private final Set<N> visited = new HashSet<>();
+
+        private final Deque<N> queue = new ArrayDeque<>();
+
+        BreadthFirstIterator(N source) {
+            visited.add(source);
+            queue.add(source);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public N next() {
+            final N node = queue.poll();
+            if (node == null) {
+                throw new NoSuchElementException();
+            }
+            for (E edge : leavingEdges(node)) {
+                final N next = across(edge, node);
+                if (visited.add(next)) queue.add(next);
+            }
+            return node;
+        }
+
+    }
+
+    /**
+     * Keeps an iterator of the remaining edges of every node on the current path.
+     */
+    private static final class DepthFirstIterator<N extends Node<N, E>, E extends Edge<N, E>> implements Iterator<N> {
+
+        private final Set<N> visited = new HashSet<>();
+
+        private final Deque<N> path = new ArrayDeque<>();
+
+        private final Deque<Iterator<E>> edges = new ArrayDeque<>();
+
+        private N next;
+
+        DepthFirstIterator(N source) {
+            next = source;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !edges.isEmpty()) {
+                final Iterator<E> remaining = edges.peek();
+                if (!remaining.hasNext()) {
+                    edges.pop();
+                    path.pop();
+                    continue;
+                }
+                final N candidate = across(remaining.next(), path.peek());
+                if (!visited.contains(candidate)) next = candidate;
+            }
+            return next != null;
+        }
+
+        @Override
+        public N next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final N node = next;
+            next = null;
+            visited.add(node);
+            path.push(node);
+            edges.push(leavingEdges(node).iterator());
+            return node;
+        }
+
+    }
+
+}
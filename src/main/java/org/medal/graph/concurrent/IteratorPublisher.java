@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.concurrent;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A publisher of the elements of an iterator. Every subscriber gets an iterator of
+ * its own, and the iterator is advanced only as far as the subscriber has
+ * requested. Elements are emitted by tasks of an executor, one task at a time per
+ * subscription.
+ */
+final class IteratorPublisher<T> implements Flow.Publisher<T> {
+
+    private final Supplier<? extends Iterator<? extends T>> source;
+
+    private final Executor executor;
+
+    IteratorPublisher(Supplier<? extends Iterator<? extends T>> source, Executor executor) {
+        this.source = requireNonNull(source);
+        this.executor = requireNonNull(executor);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        requireNonNull(subscriber);
+        final IteratorSubscription subscription = new IteratorSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.schedule();
+    }
+
+    private final class IteratorSubscription implements Flow.Subscription, Runnable {
+
+        private final Flow.Subscriber<? super T> subscriber;
+
+        private final AtomicLong demand = new AtomicLong();
+
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private volatile Throwable invalidRequest;
+
+        private Iterator<? extends T> iterator;
+
+        IteratorSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("A request must be positive, was " + n);
+            } else {
+                demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            done.set(true);
+        }
+
+        void schedule() {
+            if (pending.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        /**
+         * Emits as many elements as requested. Signals are never emitted
+         * concurrently: a run loops until no request arrived meanwhile.
+         */
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (done.get()) {
+                return;
+            }
+            if (invalidRequest != null) {
+                terminate(invalidRequest);
+                return;
+            }
+
+            try {
+                if (iterator == null) {
+                    iterator = requireNonNull(source.get());
+                }
+                while (demand.get() > 0 && !done.get()) {
+                    if (!iterator.hasNext()) {
+                        if (done.compareAndSet(false, true)) subscriber.onComplete();
+                        return;
+                    }
+                    final T element = iterator.next();
+                    if (demand.get() != Long.MAX_VALUE) demand.decrementAndGet();
+                    subscriber.onNext(element);
+                }
+                if (!done.get() && !iterator.hasNext()) {
+                    if (done.compareAndSet(false, true)) subscriber.onComplete();
+                }
+            } catch (Throwable t) {
+                terminate(t);
+            }
+        }
+
+        private void terminate(Throwable t) {
+            if (done.compareAndSet(false, true)) {
+                iterator = null;
+                subscriber.onError(t);
+            }
+        }
+
+    }
+
+}
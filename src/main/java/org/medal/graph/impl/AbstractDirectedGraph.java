@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.impl;
+
+import org.medal.graph.DirectedGraph;
+
+/**
+ * A graph which edges lead from the {@code left} to the {@code right} node. Every
+ * registered edge is recorded in the outgoing adjacency of its left node and in the
+ * incoming adjacency of its right node, and is removed from both when the edge is
+ * deleted, relinked by a collapse or dropped together with a node.
+ */
+public abstract class AbstractDirectedGraph<N extends AbstractDirectedNode<N, E>, E extends AbstractEdge<N, E>>
+        extends AbstractGraph<N, E> implements DirectedGraph<N, E> {
+
+    protected AbstractDirectedGraph() {
+    }
+
+    protected AbstractDirectedGraph(int expectedNodes, int expectedEdges) {
+        super(expectedNodes, expectedEdges);
+    }
+
+    @Override
+    boolean registerEdge(E edge) {
+        if (!super.registerEdge(edge)) {
+            return false;
+        }
+
+        edge.left().attachOutEdge(edge);
+        edge.right().attachInEdge(edge);
+        return true;
+    }
+
+    @Override
+    boolean unregisterEdge(E edge) {
+        if (!super.unregisterEdge(edge)) {
+            return false;
+        }
+
+        edge.left().detachOutEdge(edge);
+        edge.right().detachInEdge(edge);
+        return true;
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.impl;
+
+import org.medal.graph.DirectedNode;
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import static java.util.Collections.unmodifiableSet;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A node which keeps its own incoming and outgoing adjacency, so the direction
+ * aware queries cost O(degree) or O(1) instead of a scan over all graph edges.
+ * The adjacency is maintained by {@link AbstractDirectedGraph}.
+ */
+public abstract class AbstractDirectedNode<N extends DirectedNode<N, E>, E extends Edge<N, E>>
+        extends AbstractNode<N, E> implements DirectedNode<N, E> {
+
+    private final Set<E> outEdges = new HashSet<>();
+
+    private final Set<E> inEdges = new HashSet<>();
+
+    protected AbstractDirectedNode(final Graph<N, E> graph) {
+        super(graph);
+    }
+
+    void attachOutEdge(E edge) {
+        outEdges.add(edge);
+    }
+
+    void attachInEdge(E edge) {
+        inEdges.add(edge);
+    }
+
+    void detachOutEdge(E edge) {
+        outEdges.remove(edge);
+    }
+
+    void detachInEdge(E edge) {
+        inEdges.remove(edge);
+    }
+
+    @Override
+    public Collection<E> outEdges() {
+        return unmodifiableSet(outEdges);
+    }
+
+    @Override
+    public Collection<E> inEdges() {
+        return unmodifiableSet(inEdges);
+    }
+
+    @Override
+    public Set<N> successors() {
+        final Set<N> successors = new HashSet<>();
+        for (E e : outEdges) successors.add(e.right());
+        return unmodifiableSet(successors);
+    }
+
+    @Override
+    public Set<N> predecessors() {
+        final Set<N> predecessors = new HashSet<>();
+        for (E e : inEdges) predecessors.add(e.left());
+        return unmodifiableSet(predecessors);
+    }
+
+    @Override
+    public long inDegree() {
+        return degree(inEdges);
+    }
+
+    @Override
+    public long outDegree() {
+        return degree(outEdges);
+    }
+
+    private long degree(Set<E> edges) {
+        if (!((AbstractGraph<?, ?>) graph()).foldsParallelEdges()) {
+            return edges.size();
+        }
+
+        long degree = 0;
+        for (E e : edges) degree += e.multiplicity();
+        return degree;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A self-loop is both an outgoing and an incoming edge, so it is naturally
+     * counted twice.
+     */
+    @Override
+    public long degree() {
+        return inDegree() + outDegree();
+    }
+
+    @Override
+    public Collection<E> incidentEdges() {
+        final Set<E> incidentEdges = new HashSet<>(outEdges);
+        incidentEdges.addAll(inEdges);
+        return unmodifiableSet(incidentEdges);
+    }
+
+    @Override
+    public boolean isAdjacent(N other) {
+        requireNonNull(other);
+        if (this.graph() != other.graph())
+            throw new IllegalArgumentException();
+
+        for (E e : outEdges) if (e.right() == other) return true;
+        for (E e : inEdges) if (e.left() == other) return true;
+        return false;
+    }
+
+}
@@ -35,6 +35,13 @@ public abstract class AbstractEdge<N extends Node<N, E>, E extends Edge<N, E>> i
 
     private final Graph<N, E> graph;
 
+    int id = -1;
+
+    /**
+     * A position of this edge in the graph's edge store, see {@link ElementStore}.
+     */
+    int slot = -1;
+
     protected AbstractEdge(final Graph<N, E> graph, final N left, final N right) {
 
         requireNonNull(graph);
@@ -72,6 +79,16 @@ public abstract class AbstractEdge<N extends Node<N, E>, E extends Edge<N, E>> i
         return graph;
     }
 
+    @Override
+    public int id() {
+        return id;
+    }
+
+    @Override
+    public long multiplicity() {
+        return graph instanceof BaseGraph ? ((BaseGraph<N, E>) graph).multiplicity((E) this) : 1;
+    }
+
     @Override
     public Optional<N> opposite(N node) {
         if (left == node) {
@@ -108,18 +125,8 @@ public abstract class AbstractEdge<N extends Node<N, E>, E extends Edge<N, E>> i
     }
 
     private void relinkEdges(Collection<E> edges, N oldTarget, N newTarget) {
-        edges.stream().forEach(e -> {
-            // Find an opposite node for this edge's left/right node
-            // Note: this doesn't necessary mean that a left/right node in this
-            // ( collapse method's target ) edge is also the left/right node
-            // in the neighborEdge
-            final N oppositeNode = e.opposite(oldTarget).get();
-            if (e.left() == oppositeNode) {
-                ((AbstractEdge<N, E>) e).setRight(newTarget);
-            } else {
-                ((AbstractEdge<N, E>) e).setLeft(newTarget);
-            }
-        });
+        final BaseGraph<N, E> base = (BaseGraph<N, E>) graph;
+        edges.forEach(e -> base.relinkEdge(e, oldTarget, newTarget));
     }
 
     @Override
@@ -134,12 +141,20 @@ public abstract class AbstractEdge<N extends Node<N, E>, E extends Edge<N, E>> i
             throw new NullPointerException("Can not insert an undefined node.");
         }
 
+        final long multiplicity = multiplicity();
         graph().deleteEdge((E) this);
 
         E leftEdge = graph().connect(left, middleNode);
 
         E rightEdge = graph().connect(middleNode, right);
 
+        if (multiplicity > 1) {
+            // Every folded parallel edge is split as well
+            final BaseGraph<N, E> base = (BaseGraph<N, E>) graph;
+            base.fold(leftEdge, (int) (multiplicity - 1));
+            base.fold(rightEdge, (int) (multiplicity - 1));
+        }
+
         Split<N, E> split = new SplitImpl(leftEdge, rightEdge);
 
         return split;
@@ -172,7 +187,7 @@ public abstract class AbstractEdge<N extends Node<N, E>, E extends Edge<N, E>> i
 
         private final E rightEdge;
 
-        private SplitImpl(E leftEdge, E rightEdge) {
+        SplitImpl(E leftEdge, E rightEdge) {
             requireNonNull(leftEdge);
             requireNonNull(rightEdge);
 
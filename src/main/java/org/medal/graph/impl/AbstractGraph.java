@@ -16,42 +16,326 @@
 package org.medal.graph.impl;
 
 import org.medal.graph.EdgeFactory;
-import org.medal.graph.Graph;
+import org.medal.graph.GraphListener;
 import org.medal.graph.NodeFactory;
+import org.medal.graph.Subgraph;
+import org.medal.graph.Transaction;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import static java.util.Collections.unmodifiableSet;
 import static java.util.Objects.requireNonNull;
 
 public abstract class AbstractGraph<N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>>
-        implements Graph<N, E> {
+        extends BaseGraph<N, E> {
 
-    protected final Set<N> nodes = new HashSet<>();
+    protected final Set<N> nodes;
 
-    protected final Set<E> edges = new HashSet<>();
+    protected final Set<E> edges;
+
+    /**
+     * The stores behind {@link #nodes} and {@link #edges}, typed for the package.
+     */
+    final ElementStore<N> nodeStore;
+
+    final ElementStore<E> edgeStore;
+
+    private int nextNodeId;
+
+    private int nextEdgeId;
+
+    private final List<GraphListener<N, E>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Failures of listeners deferred while a batch is applied; {@code null} outside of batches.
+     */
+    private List<RuntimeException> batchFailures;
+
+    private volatile GraphStatistics<N, E> statistics;
+
+    private EdgeFolding<N, E> folding;
+
+    /**
+     * The number of folds so far: they change multiplicities without changing the stores.
+     */
+    private int foldModifications;
 
     protected AbstractGraph() {
+        this(0, 0);
+    }
+
+    /**
+     * Creates a graph which stores are sized to take the expected number of nodes
+     * and edges without growing.
+     *
+     * @param expectedNodes expected number of nodes
+     * @param expectedEdges expected number of edges
+     */
+    protected AbstractGraph(int expectedNodes, int expectedEdges) {
+        if (expectedNodes < 0 || expectedEdges < 0) {
+            throw new IllegalArgumentException("Expected size can not be negative.");
+        }
+
+        this.nodes = nodeStore = new ElementStore<>(expectedNodes, AbstractNode.class,
+                node -> node.slot, (node, slot) -> node.slot = slot);
+        this.edges = edgeStore = new ElementStore<>(expectedEdges, AbstractEdge.class,
+                edge -> edge.slot, (edge, slot) -> edge.slot = slot);
+    }
+
+    /**
+     * Makes this graph fold parallel edges: connecting two nodes which are already
+     * connected does not create a new edge, but adds one to the
+     * {@link AbstractEdge#multiplicity() multiplicity} of the existing edge, and
+     * edges which come to connect the same nodes by a collapse are merged. Degrees
+     * of nodes count multiplicities, so they are the same as if the parallel edges
+     * were kept. In a directed graph only edges of the same direction are folded.
+     * <p>
+     * Meant for graphs with many parallel edges, of which only the number matters:
+     * a folded edge costs an entry of a primitive index, while every parallel edge
+     * would cost an edge object and a slot of the edge store.
+     *
+     * @return this graph
+     * @throws IllegalStateException if the graph already has edges
+     */
+    public AbstractGraph<N, E> withParallelEdgeFolding() {
+        if (!edges.isEmpty()) {
+            throw new IllegalStateException("Parallel edge folding must be enabled before edges are created.");
+        }
+        if (folding == null) {
+            folding = new EdgeFolding<>(this instanceof AbstractDirectedGraph, edgeStore.capacity());
+        }
+        return this;
+    }
+
+    /**
+     * Returns whether this graph folds parallel edges, see {@link #withParallelEdgeFolding()}.
+     *
+     * @return {@code true} if parallel edges are folded
+     */
+    public boolean foldsParallelEdges() {
+        return folding != null;
+    }
+
+    EdgeFolding<N, E> folding() {
+        return folding;
+    }
+
+    /**
+     * Returns the number of folds of parallel edges of this graph so far.
+     */
+    int foldModifications() {
+        return foldModifications;
+    }
+
+    /**
+     * Returns the multiplicity of an edge of this graph.
+     */
+    @Override
+    long multiplicity(E edge) {
+        return folding == null ? 1 : folding.multiplicity(edge);
+    }
+
+    /**
+     * Registers a listener which will be notified about every structural change of
+     * this graph.
+     *
+     * @param listener a listener to be registered
+     * @throws NullPointerException if {@code listener} is {@code null}
+     */
+    public void addListener(GraphListener<N, E> listener) {
+        listeners.add(requireNonNull(listener));
+    }
+
+    /**
+     * Unregisters a listener. If the listener is not registered - does nothing.
+     *
+     * @param listener a listener to be unregistered
+     */
+    public void removeListener(GraphListener<N, E> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns statistics of this graph. The statistics are computed by the first
+     * call, and from then on are maintained incrementally on every mutation, so
+     * reading them costs O(1).
+     *
+     * @return live statistics of this graph
+     */
+    public GraphStatistics<N, E> statistics() {
+        GraphStatistics<N, E> result = statistics;
+        if (result == null) {
+            synchronized (this) {
+                result = statistics;
+                if (result == null) {
+                    statistics = result = GraphStatistics.track(this);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Delivers a notification to every listener. Outside of a batch, a failing
+     * listener fails the mutation; within a batch, the failure is deferred so that
+     * the batch is applied in full, see {@link #completeBatch()}.
+     */
+    void notifyListeners(Consumer<GraphListener<N, E>> notification) {
+        for (GraphListener<N, E> listener : listeners) {
+            if (batchFailures == null) {
+                notification.accept(listener);
+                continue;
+            }
+            try {
+                notification.accept(listener);
+            } catch (RuntimeException e) {
+                batchFailures.add(e);
+            }
+        }
+    }
+
+    /**
+     * Starts applying a batch of {@code changes} primitive changes, and reports it.
+     */
+    void startBatch(int changes) {
+        if (batchFailures != null) {
+            throw new IllegalStateException("A batch is already being applied.");
+        }
+        batchFailures = new ArrayList<>();
+        notifyListeners(listener -> listener.batchStarted(changes));
+    }
+
+    /**
+     * Reports the completion of the current batch.
+     *
+     * @return the first failure of a listener during the batch, with the following
+     * ones suppressed, or {@code null} if all listeners succeeded
+     */
+    RuntimeException completeBatch() {
+        notifyListeners(GraphListener::batchCompleted);
+        final List<RuntimeException> failures = batchFailures;
+        batchFailures = null;
+        if (failures.isEmpty()) {
+            return null;
+        }
+        final RuntimeException failure = failures.get(0);
+        for (int i = 1; i < failures.size(); i++) {
+            if (failures.get(i) != failure) failure.addSuppressed(failures.get(i));
+        }
+        return failure;
+    }
+
+    /**
+     * Returns the statistics if they have been requested, without creating them.
+     */
+    GraphStatistics<N, E> trackedStatistics() {
+        return statistics;
+    }
+
+    int nextNodeId() {
+        return nextNodeId;
+    }
+
+    int nextEdgeId() {
+        return nextEdgeId;
+    }
+
+    void reserveIdentifiers(int nodeId, int edgeId) {
+        nextNodeId = Math.max(nextNodeId, nodeId);
+        nextEdgeId = Math.max(nextEdgeId, edgeId);
     }
 
     @Override
     public N createNode() {
+        return addNode(nextNodeId);
+    }
+
+    N addNode(int id) {
         N node = getNodeFactory().createNode();
+        node.id = id;
+        if (id >= nextNodeId) {
+            nextNodeId = Math.addExact(id, 1);
+        }
         nodes.add(node);
+
+        notifyListeners(listener -> listener.nodeCreated(node));
         return node;
     }
 
+    /**
+     * Returns an unmodifiable set of nodes in this graph. The set is backed by an
+     * array, so its spliterator splits into balanced, exactly sized parts and
+     * parallel streams over it scale with the number of cores.
+     *
+     * @return a set of nodes. Never {@code null}
+     */
     @Override
     public Set<N> nodes() {
         return unmodifiableSet(nodes);
     }
 
+    /**
+     * Returns an unmodifiable set of edges in this graph. Splits as {@link #nodes()} does.
+     *
+     * @return a set of edges. Never {@code null}
+     */
     @Override
     public Set<E> edges() {
         return unmodifiableSet(edges);
     }
 
+    /**
+     * Performs the {@code action} for every node of this graph, in parallel, in the
+     * common fork/join pool. The graph must not be changed meanwhile.
+     *
+     * @param action an action to be performed, possibly on several threads at once
+     * @throws java.util.ConcurrentModificationException if the graph has been changed
+     */
+    public void parallelForEachNode(Consumer<? super N> action) {
+        parallelForEachNode(ForkJoinPool.commonPool(), action);
+    }
+
+    /**
+     * Performs the {@code action} for every node of this graph, in parallel, in the
+     * {@code pool}. Returns when all nodes have been processed.
+     *
+     * @param pool   a pool to run the action in
+     * @param action an action to be performed, possibly on several threads at once
+     * @throws java.util.ConcurrentModificationException if the graph has been changed
+     */
+    public void parallelForEachNode(ForkJoinPool pool, Consumer<? super N> action) {
+        nodeStore.parallelForEach(requireNonNull(pool), requireNonNull(action));
+    }
+
+    /**
+     * Performs the {@code action} for every edge of this graph, in parallel, in the
+     * common fork/join pool. The graph must not be changed meanwhile.
+     *
+     * @param action an action to be performed, possibly on several threads at once
+     * @throws java.util.ConcurrentModificationException if the graph has been changed
+     */
+    public void parallelForEachEdge(Consumer<? super E> action) {
+        parallelForEachEdge(ForkJoinPool.commonPool(), action);
+    }
+
+    /**
+     * Performs the {@code action} for every edge of this graph, in parallel, in the
+     * {@code pool}. Returns when all edges have been processed.
+     *
+     * @param pool   a pool to run the action in
+     * @param action an action to be performed, possibly on several threads at once
+     * @throws java.util.ConcurrentModificationException if the graph has been changed
+     */
+    public void parallelForEachEdge(ForkJoinPool pool, Consumer<? super E> action) {
+        edgeStore.parallelForEach(requireNonNull(pool), requireNonNull(action));
+    }
+
     /**
      * Connects two nodes with a new edge, and registers the edge in the parent graph(s)
      *
@@ -70,37 +354,254 @@ public abstract class AbstractGraph<N extends AbstractNode<N, E>, E extends Abst
             throw new IllegalArgumentException("Nodes can not belong to different graphs");
         }
 
-        E edge = getEdgeFactory().createEdge(source, target);
+        if (folding != null) {
+            final E parallel = folding.find(source, target);
+            if (parallel != null) {
+                fold(parallel, 1);
+                return parallel;
+            }
+        }
+        return addEdge(nextEdgeId, source, target);
+    }
 
-        registerEdge(edge);
+    E addEdge(int id, N source, N target) {
+        E edge = getEdgeFactory().createEdge(source, target);
+        edge.id = id;
+        if (id >= nextEdgeId) {
+            nextEdgeId = Math.addExact(id, 1);
+        }
 
+        attachEdge(edge);
         return edge;
     }
 
+    /**
+     * Registers a new edge, or folds it into an edge which connects the same nodes
+     * if this graph folds parallel edges.
+     *
+     * @return {@code true} if the edge has been registered
+     */
+    boolean attachEdge(E edge) {
+        if (folding != null) {
+            final E parallel = folding.find(edge.left(), edge.right());
+            if (parallel != null) {
+                fold(parallel, 1);
+                return false;
+            }
+        }
+
+        if (!registerEdge(edge)) {
+            return false;
+        }
+        if (folding != null) folding.put(edge, 1);
+        notifyListeners(listener -> listener.edgeCreated(edge));
+        return true;
+    }
+
+    /**
+     * Adds {@code count} to the multiplicity of an edge of a graph which folds
+     * parallel edges.
+     */
+    @Override
+    void fold(E edge, int count) {
+        folding.fold(edge, count);
+        foldModifications++;
+        notifyListeners(listener -> listener.edgeFolded(edge, count));
+    }
+
     @Override
     public void deleteEdge(E edge) {
         if (edge == null || edge.graph() != this) {
             return;
         }
 
-        edges.remove(edge);
+        removeEdge(edge);
+    }
+
+    void removeEdge(E edge) {
+        if (unregisterEdge(edge)) {
+            notifyListeners(listener -> listener.edgeDeleted(edge));
+            // Listeners may still ask for the multiplicity of the deleted edge
+            if (folding != null) folding.remove(edge);
+        }
     }
 
     boolean registerEdge(E edge) {
         return edges.add(edge);
     }
 
+    boolean unregisterEdge(E edge) {
+        return edges.remove(edge);
+    }
+
+    /**
+     * Moves one end of the {@code edge} from {@code oldTarget} to {@code newTarget}.
+     * The edge is detached from the graph for the time of the move, so that any
+     * adjacency maintained by a subclass stays consistent.
+     */
+    @Override
+    void relinkEdge(E edge, N oldTarget, N newTarget) {
+        // Find an opposite node for this edge's left/right node
+        // Note: this doesn't necessary mean that a left/right node in this
+        // ( collapse method's target ) edge is also the left/right node
+        // in the neighborEdge
+        final N oppositeNode = edge.opposite(oldTarget).get();
+        moveEnd(edge, edge.left() != oppositeNode, newTarget);
+    }
+
+    /**
+     * Moves the left or the right end of the {@code edge} to {@code newNode}. If this
+     * graph folds parallel edges and the edge comes to connect the same nodes as
+     * another edge, it is merged into that edge instead.
+     */
+    void moveEnd(E edge, boolean leftEnd, N newNode) {
+        if (folding != null && edges.contains(edge)) {
+            final E parallel = leftEnd ? folding.find(newNode, edge.right()) : folding.find(edge.left(), newNode);
+            if (parallel != null && parallel != edge) {
+                // The edge would duplicate another one: merge it into that one
+                final int multiplicity = folding.multiplicity(edge);
+                removeEdge(edge);
+                fold(parallel, multiplicity);
+                return;
+            }
+        }
+
+        final int multiplicity = folding == null ? 1 : folding.remove(edge);
+        final boolean registered = unregisterEdge(edge);
+
+        final N oldNode;
+        if (leftEnd) {
+            oldNode = edge.left();
+            edge.setLeft(newNode);
+        } else {
+            oldNode = edge.right();
+            edge.setRight(newNode);
+        }
+
+        if (registered) {
+            registerEdge(edge);
+            if (folding != null) folding.put(edge, multiplicity);
+            notifyListeners(listener -> listener.edgeRelinked(edge, oldNode, newNode));
+        }
+    }
+
     @Override
     public boolean deleteNode(N node) {
         if (node == null || node.graph() != this) {
             return false;
         }
 
-        this.edges.removeAll(node.incidentEdges());
-        this.nodes.remove(node);
+        for (E edge : new ArrayList<>(node.incidentEdges())) {
+            removeEdge(edge);
+        }
+        if (this.nodes.remove(node)) {
+            notifyListeners(listener -> listener.nodeDeleted(node));
+        }
         return true;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The work runs on the calling thread, and the staged changes are applied while
+     * holding the monitor of this graph. Listeners receive the net changes of the
+     * batch, bracketed by {@link GraphListener#batchStarted(int)} and
+     * {@link GraphListener#batchCompleted()}: a node or an edge which is both
+     * created and deleted by the transaction is never reported. If this graph folds
+     * parallel edges, an edge created by the transaction may be folded into an
+     * existing edge on commit.
+     * <p>
+     * A listener which throws while the batch is reported does not interrupt the
+     * commit: the batch is applied in full and every listener receives the rest of
+     * it, including {@link GraphListener#batchCompleted()}. The first failure is
+     * then rethrown, with the following ones suppressed.
+     */
+    @Override
+    public void transaction(Consumer<? super Transaction<N, E>> work) {
+        requireNonNull(work);
+
+        final GraphTransaction<N, E> transaction = new GraphTransaction<>(this);
+        try {
+            work.accept(transaction);
+            synchronized (this) {
+                transaction.commit();
+            }
+        } finally {
+            transaction.close();
+        }
+    }
+
+    /**
+     * Creates a structural copy of this graph: a new graph of the same kind with a
+     * fresh node for every node and a fresh edge for every edge of this graph,
+     * connected the same way. Copied nodes and edges keep identifiers of their
+     * originals.
+     * <p>
+     * Unlike re-creating the graph with {@link #createNode()} and
+     * {@link #connect(AbstractNode, AbstractNode)}, the copy is built in bulk: its
+     * stores are sized upfront and edges are registered without validation, since
+     * the source graph is consistent by construction.
+     *
+     * @return the copy along with the mapping of original nodes and edges to their copies
+     * @throws UnsupportedOperationException if this graph does not override {@link #newGraph(int, int)}
+     */
+    public GraphCopy<N, E> copy() {
+        final AbstractGraph<N, E> target = newGraph(nodes.size(), edges.size());
+        if (!target.nodes.isEmpty() || !target.edges.isEmpty()) {
+            throw new IllegalStateException("A graph to copy into must be empty.");
+        }
+
+        // Never exposed as an array of the actual node class, which erases to AbstractNode
+        @SuppressWarnings("unchecked")
+        final N[] nodeCopies = (N[]) new AbstractNode<?, ?>[nextNodeId];
+        final NodeFactory<N, E> nodeFactory = target.getNodeFactory();
+        for (N node : nodes) {
+            final N nodeCopy = nodeFactory.createNode();
+            nodeCopy.id = node.id;
+            target.nodes.add(nodeCopy);
+            nodeCopies[node.id] = nodeCopy;
+        }
+
+        // As the node copies, never exposed as an array of the actual edge class
+        @SuppressWarnings("unchecked")
+        final E[] edgeCopies = (E[]) new AbstractEdge<?, ?>[nextEdgeId];
+        final EdgeFactory<N, E> edgeFactory = target.getEdgeFactory();
+        for (E edge : edges) {
+            final E edgeCopy = edgeFactory.createEdge(nodeCopies[edge.left().id], nodeCopies[edge.right().id]);
+            edgeCopy.id = edge.id;
+            target.registerEdge(edgeCopy);
+            edgeCopies[edge.id] = edgeCopy;
+        }
+
+        if (folding != null) {
+            target.folding = new EdgeFolding<>(target instanceof AbstractDirectedGraph, edges.size());
+            for (E edge : edges) target.folding.put(edgeCopies[edge.id], folding.multiplicity(edge));
+        }
+
+        target.nextNodeId = nextNodeId;
+        target.nextEdgeId = nextEdgeId;
+
+        return new GraphCopy<>(this, target, nodeCopies, edgeCopies);
+    }
+
+    /**
+     * Creates a new empty graph of the same kind as this one. Used by {@link #copy()}.
+     * Subclasses which support copying override this method.
+     *
+     * @param expectedNodes expected number of nodes, see {@link #AbstractGraph(int, int)}
+     * @param expectedEdges expected number of edges, see {@link #AbstractGraph(int, int)}
+     * @return a new empty graph
+     * @throws UnsupportedOperationException if this kind of graph can not be copied
+     */
+    protected AbstractGraph<N, E> newGraph(int expectedNodes, int expectedEdges) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support copying.");
+    }
+
+    @Override
+    public Subgraph<N, E> subgraph(Predicate<? super N> nodeFilter, Predicate<? super E> edgeFilter) {
+        return new SubgraphView<>(this, nodeFilter, edgeFilter, false);
+    }
+
     protected abstract NodeFactory<N, E> getNodeFactory();
 
     protected abstract EdgeFactory<N, E> getEdgeFactory();
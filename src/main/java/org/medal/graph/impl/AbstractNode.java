@@ -32,6 +32,13 @@ public abstract class AbstractNode<N extends Node<N, E>, E extends Edge<N, E>> i
 
     private final Graph<N, E> graph;
 
+    int id = -1;
+
+    /**
+     * A position of this node in the graph's node store, see {@link ElementStore}.
+     */
+    int slot = -1;
+
     protected AbstractNode(final Graph<N, E> graph) {
         requireNonNull(graph);
         this.graph = graph;
@@ -39,10 +46,12 @@ public abstract class AbstractNode<N extends Node<N, E>, E extends Edge<N, E>> i
 
     @Override
     public Collection<E> incidentEdges() {
+        if (graph instanceof BaseGraph) {
+            return ((BaseGraph<N, E>) graph).incidentEdges((N) this);
+        }
         return graph()
                 .edges()
                 .stream()
-                .map(edge -> (E) edge)
                 .filter(e -> e.left() == this || e.right() == this)
                 .collect(collectingAndThen(
                         toSet(),
@@ -86,11 +95,16 @@ public abstract class AbstractNode<N extends Node<N, E>, E extends Edge<N, E>> i
         return graph;
     }
 
+    @Override
+    public int id() {
+        return id;
+    }
+
     @Override
     public long degree() {
         long degree = 0;
 
-        for (E e : incidentEdges()) degree += e.isLoop() ? 2 : 1;
+        for (E e : incidentEdges()) degree += (e.isLoop() ? 2 : 1) * e.multiplicity();
         return degree;
     }
 
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.impl;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import static java.util.stream.Collectors.collectingAndThen;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * The common base of the graphs of this package. Holds the hooks which their nodes
+ * and edges call back, so that {@link AbstractNode} and {@link AbstractEdge} do not
+ * need to know which kind of graph they belong to.
+ *
+ * @author skrymets
+ */
+abstract class BaseGraph<N extends Node<N, E>, E extends Edge<N, E>> implements Graph<N, E> {
+
+    /**
+     * Moves the end of the {@code edge} which is attached to {@code oldTarget} to
+     * {@code newTarget}.
+     */
+    abstract void relinkEdge(E edge, N oldTarget, N newTarget);
+
+    /**
+     * Returns the number of parallel edges the {@code edge} stands for.
+     */
+    long multiplicity(E edge) {
+        return 1;
+    }
+
+    /**
+     * Adds {@code count} to the multiplicity of the {@code edge}. Only graphs which
+     * fold parallel edges have edges of a multiplicity other than one.
+     */
+    void fold(E edge, int count) {
+        throw new UnsupportedOperationException("The graph does not fold parallel edges.");
+    }
+
+    /**
+     * Returns the edges incident on the {@code node}. By default, scans all edges of
+     * the graph; a graph which keeps adjacency answers from it instead.
+     */
+    Collection<E> incidentEdges(N node) {
+        return edges().stream()
+                .filter(e -> e.left() == node || e.right() == node)
+                .collect(collectingAndThen(
+                        toSet(),
+                        Collections::unmodifiableSet
+                ));
+    }
+
+}
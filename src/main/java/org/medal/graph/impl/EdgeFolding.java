@@ -0,0 +1,190 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.impl;
+
+/**
+ * An index of the edges of a graph which folds parallel edges, by the pair of
+ * nodes they connect, along with the multiplicity of every edge. See
+ * {@link AbstractGraph#withParallelEdgeFolding()}.
+ * <p>
+ * The index is an open addressing table of primitive keys: a pair of nodes costs
+ * a few words rather than a map entry with a boxed key, so a folded edge stays
+ * much smaller than the parallel edge objects it replaces. A key is made of the
+ * identifiers of the left and the right node; unless edges are directed, the
+ * smaller identifier goes first.
+ *
+ * @author skrymets
+ */
+final class EdgeFolding<N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> {
+
+    private final boolean directed;
+
+    private long[] keys;
+
+    private Object[] edges;
+
+    private int[] multiplicities;
+
+    private int size;
+
+    EdgeFolding(boolean directed, int expectedEdges) {
+        this.directed = directed;
+        allocate(Integer.highestOneBit(Math.max(16, expectedEdges) * 2 - 1) * 2);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns an edge which connects the nodes, or {@code null} if there is none.
+     */
+    E find(N left, N right) {
+        final int slot = slotOf(key(left, right));
+        return slot < 0 ? null : edgeAt(edges, slot);
+    }
+
+    /**
+     * Returns the multiplicity of the {@code edge}, or 1 if it is not indexed.
+     */
+    int multiplicity(E edge) {
+        final int slot = slotOf(key(edge.left(), edge.right()));
+        return slot >= 0 && edges[slot] == edge ? multiplicities[slot] : 1;
+    }
+
+    /**
+     * Indexes the {@code edge}, replacing an edge which connects the same nodes.
+     */
+    void put(E edge, int multiplicity) {
+        if (2 * (size + 1) > keys.length) {
+            rehash(keys.length * 2);
+        }
+
+        final long key = key(edge.left(), edge.right());
+        int slot = hash(key);
+        while (edges[slot] != null && keys[slot] != key) slot = (slot + 1) & (keys.length - 1);
+        if (edges[slot] == null) {
+            size++;
+        }
+        keys[slot] = key;
+        edges[slot] = edge;
+        multiplicities[slot] = multiplicity;
+    }
+
+    /**
+     * Adds {@code count} to the multiplicity of an indexed {@code edge}.
+     */
+    void fold(E edge, int count) {
+        final int slot = slotOf(key(edge.left(), edge.right()));
+        if (slot < 0 || edges[slot] != edge) {
+            throw new IllegalArgumentException("The edge is not in the graph.");
+        }
+        multiplicities[slot] = Math.addExact(multiplicities[slot], count);
+    }
+
+    /**
+     * Removes the {@code edge} from the index. The edge must still connect the
+     * nodes it has been indexed with.
+     *
+     * @return the multiplicity of the removed edge, or 0 if it is not indexed
+     */
+    int remove(E edge) {
+        int slot = slotOf(key(edge.left(), edge.right()));
+        if (slot < 0 || edges[slot] != edge) {
+            return 0;
+        }
+        final int multiplicity = multiplicities[slot];
+
+        // Shift the following entries of the probe sequence back into the gap
+        final int mask = keys.length - 1;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (edges[next] == null) {
+                break;
+            }
+            final int home = hash(keys[next]);
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                edges[slot] = edges[next];
+                multiplicities[slot] = multiplicities[next];
+                slot = next;
+            }
+        }
+        edges[slot] = null;
+        size--;
+        return multiplicity;
+    }
+
+    /**
+     * Returns the approximate number of bytes occupied by this index.
+     */
+    long footprint(MemoryEstimator estimator) {
+        return estimator.shallowSize(EdgeFolding.class)
+                + estimator.arraySize(keys.length, Long.BYTES)
+                + estimator.referenceArraySize(edges.length)
+                + estimator.arraySize(multiplicities.length, Integer.BYTES);
+    }
+
+    private long key(N left, N right) {
+        int first = left.id;
+        int second = right.id;
+        if (!directed && first > second) {
+            first = right.id;
+            second = left.id;
+        }
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    private int hash(long key) {
+        final long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & (keys.length - 1);
+    }
+
+    private int slotOf(long key) {
+        int slot = hash(key);
+        while (edges[slot] != null) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        return -1;
+    }
+
+    // Only edges of the graph are ever put into the table
+    @SuppressWarnings("unchecked")
+    private E edgeAt(Object[] table, int slot) {
+        return (E) table[slot];
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        edges = new Object[capacity];
+        multiplicities = new int[capacity];
+    }
+
+    private void rehash(int capacity) {
+        final Object[] oldEdges = edges;
+        final int[] oldMultiplicities = multiplicities;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldEdges.length; i++) {
+            if (oldEdges[i] != null) put(edgeAt(oldEdges, i), oldMultiplicities[i]);
+        }
+    }
+
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.impl;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * A set of graph elements kept in a dense array. Every element remembers its
+ * position in the array, so adding, removing and looking an element up cost O(1)
+ * without hashing; a removed element is replaced by the last one. An element can
+ * be a member of a single store at a time.
+ * <p>
+ * The array layout makes the store split into exactly sized halves, so parallel
+ * streams over it are balanced and know the size of every part.
+ */
+final class ElementStore<T> extends AbstractSet<T> {
+
+    /**
+     * The number of elements below which a parallel traversal does not split.
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 1024;
+
+    /**
+     * The class which declares the slot of elements: anything else is not an element.
+     */
+    private final Class<?> slotHolder;
+
+    private final ToIntFunction<T> slotOf;
+
+    private final ObjIntConsumer<T> setSlot;
+
+    private Object[] elements;
+
+    private int size;
+
+    private int modCount;
+
+    ElementStore(int expectedSize, Class<?> slotHolder, ToIntFunction<T> slotOf, ObjIntConsumer<T> setSlot) {
+        this.slotHolder = slotHolder;
+        this.slotOf = slotOf;
+        this.setSlot = setSlot;
+        this.elements = new Object[Math.max(16, expectedSize)];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    int capacity() {
+        return elements.length;
+    }
+
+    /**
+     * Grows the store at once, so that it takes {@code expectedSize} elements
+     * without growing again.
+     */
+    void ensureCapacity(int expectedSize) {
+        if (expectedSize > elements.length) {
+            elements = Arrays.copyOf(elements, expectedSize);
+        }
+    }
+
+    /**
+     * Returns the number of changes of this store so far.
+     */
+    int modifications() {
+        return modCount;
+    }
+
+    /**
+     * Returns the capacity a store created without an expected size reaches
+     * after {@code count} insertions.
+     */
+    static long capacityAfter(long count) {
+        long capacity = 16;
+        while (capacity < count) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!slotHolder.isInstance(o)) {
+            return false;
+        }
+        final int slot = slot(o);
+        return slot >= 0 && slot < size && elements[slot] == o;
+    }
+
+    @Override
+    public boolean add(T element) {
+        if (contains(element)) {
+            return false;
+        }
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(size + 1, (int) Math.min(Integer.MAX_VALUE - 8, 2L * size)));
+        }
+        setSlot.accept(element, size);
+        elements[size++] = element;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!contains(o)) {
+            return false;
+        }
+        final int slot = slot(o);
+        final T element = elementAt(elements, slot);
+        final T last = elementAt(elements, --size);
+        elements[slot] = last;
+        setSlot.accept(last, slot);
+        elements[size] = null;
+        setSlot.accept(element, -1);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            setSlot.accept(elementAt(elements, i), -1);
+            elements[i] = null;
+        }
+        size = 0;
+        modCount++;
+    }
+
+    // Any instance of the slot holder has a slot, which is all that is read
+    @SuppressWarnings("unchecked")
+    private int slot(Object o) {
+        return slotOf.applyAsInt((T) o);
+    }
+
+    // Only elements of the store are ever put into its array
+    @SuppressWarnings("unchecked")
+    private static <T> T elementAt(Object[] array, int index) {
+        return (T) array[index];
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+
+            private int expectedModCount = modCount;
+
+            private int next;
+
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public T next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                last = next++;
+                return elementAt(elements, last);
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                ElementStore.this.remove(elements[last]);
+                // The last element has been moved into the freed slot: visit it next
+                next = last;
+                last = -1;
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return new StoreSpliterator(0, size, modCount);
+    }
+
+    /**
+     * Performs the {@code action} for every element, in parallel, in the {@code pool}.
+     * Returns when all elements have been processed.
+     */
+    void parallelForEach(ForkJoinPool pool, Consumer<? super T> action) {
+        final int expectedModCount = modCount;
+        pool.invoke(new ForEachTask<>(elements, 0, size, action));
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    private static final class ForEachTask<T> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Object[] array;
+
+        private final int from;
+
+        private final int to;
+
+        private final Consumer<? super T> action;
+
+        ForEachTask(Object[] array, int from, int to, Consumer<? super T> action) {
+            this.array = array;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int i = from; i < to; i++) action.accept(ElementStore.<T>elementAt(array, i));
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new ForEachTask<>(array, from, middle, action), new ForEachTask<>(array, middle, to, action));
+        }
+    }
+
+    private final class StoreSpliterator implements Spliterator<T> {
+
+        private int from;
+
+        private final int to;
+
+        private final int expectedModCount;
+
+        StoreSpliterator(int from, int to, int expectedModCount) {
+            this.from = from;
+            this.to = to;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept(elementAt(elements, from++));
+            checkForComodification();
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            final Object[] array = elements;
+            for (int i = from; i < to; i++) action.accept(elementAt(array, i));
+            from = to;
+            checkForComodification();
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            final int middle = (from + to) >>> 1;
+            if (middle <= from) {
+                return null;
+            }
+            final Spliterator<T> prefix = new StoreSpliterator(from, middle, expectedModCount);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return SIZED | SUBSIZED | DISTINCT | NONNULL;
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.impl;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A result of {@link AbstractGraph#copy()}: the copied graph and the mapping of
+ * the original nodes and edges to their copies. The mapping is backed by arrays
+ * indexed by identifiers, so a lookup costs O(1).
+ */
+public final class GraphCopy<N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> {
+
+    private final AbstractGraph<N, E> source;
+
+    private final AbstractGraph<N, E> graph;
+
+    private final N[] nodes;
+
+    private final E[] edges;
+
+    GraphCopy(AbstractGraph<N, E> source, AbstractGraph<N, E> graph, N[] nodes, E[] edges) {
+        this.source = requireNonNull(source);
+        this.graph = requireNonNull(graph);
+        this.nodes = requireNonNull(nodes);
+        this.edges = requireNonNull(edges);
+    }
+
+    /**
+     * Returns the copied graph.
+     *
+     * @return a graph, never {@code null}
+     */
+    public AbstractGraph<N, E> graph() {
+        return graph;
+    }
+
+    /**
+     * Returns a copy of the {@code original} node.
+     *
+     * @param original a node of the source graph
+     * @return a node of the copied graph, or {@code null} if the {@code original}
+     * was not a member of the source graph at the time of copying
+     */
+    public N node(N original) {
+        if (original.graph() != source) {
+            return null;
+        }
+
+        final int id = original.id();
+        return id >= 0 && id < nodes.length ? nodes[id] : null;
+    }
+
+    /**
+     * Returns a copy of the {@code original} edge.
+     *
+     * @param original an edge of the source graph
+     * @return an edge of the copied graph, or {@code null} if the {@code original}
+     * was not a member of the source graph at the time of copying
+     */
+    public E edge(E original) {
+        if (original.graph() != source) {
+            return null;
+        }
+
+        final int id = original.id();
+        return id >= 0 && id < edges.length ? edges[id] : null;
+    }
+
+    /**
+     * Returns the mapping of the original nodes to their copies as a map. The map is
+     * built on each call; prefer {@link #node(AbstractNode)} for single lookups.
+     * Nodes added to the source graph after copying are not mapped.
+     *
+     * @return a new identity map of original nodes to copied ones
+     */
+    public Map<N, N> nodeMapping() {
+        final Map<N, N> mapping = new IdentityHashMap<>(source.nodes.size());
+        for (N original : source.nodes) {
+            final N copy = node(original);
+            if (copy != null) {
+                mapping.put(original, copy);
+            }
+        }
+        return mapping;
+    }
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Applies structural changes to a graph by identifiers of nodes and edges rather
+ * than by object references. Nodes and edges are created with the identifiers
+ * given, so a graph can be restored exactly as it was recorded, e.g. from a
+ * mutation log or a snapshot.
+ * <p>
+ * Changes are applied through the same paths as the public graph operations, and
+ * are reported to the graph's listeners.
+ */
+public final class GraphLoader<N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> {
+
+    private final AbstractGraph<N, E> graph;
+
+    private final List<N> nodes;
+
+    private final List<E> edges;
+
+    /**
+     * Creates a loader for the {@code graph}. The graph may already contain nodes
+     * and edges; they can be referenced by their identifiers.
+     *
+     * @param graph a graph to load into
+     */
+    public GraphLoader(AbstractGraph<N, E> graph) {
+        this.graph = requireNonNull(graph);
+        this.nodes = new ArrayList<>(Math.max(16, graph.nextNodeId()));
+        this.edges = new ArrayList<>(Math.max(16, graph.nextEdgeId()));
+
+        for (N node : graph.nodes) put(nodes, node.id, node);
+        for (E edge : graph.edges) put(edges, edge.id, edge);
+    }
+
+    public AbstractGraph<N, E> graph() {
+        return graph;
+    }
+
+    /**
+     * Returns a node of the graph by its identifier.
+     *
+     * @param id an identifier of the node
+     * @return a node, or {@code null} if there is no such node in the graph
+     */
+    public N node(int id) {
+        return id >= 0 && id < nodes.size() ? nodes.get(id) : null;
+    }
+
+    /**
+     * Returns an edge of the graph by its identifier.
+     *
+     * @param id an identifier of the edge
+     * @return an edge, or {@code null} if there is no such edge in the graph
+     */
+    public E edge(int id) {
+        return id >= 0 && id < edges.size() ? edges.get(id) : null;
+    }
+
+    /**
+     * Creates a node with the given identifier.
+     *
+     * @param id an identifier of the new node
+     * @return a new node
+     * @throws IllegalArgumentException if the identifier is negative or is already in use
+     */
+    public N createNode(int id) {
+        if (id < 0 || node(id) != null) {
+            throw new IllegalArgumentException("Node identifier " + id + " is not available.");
+        }
+
+        final N node = graph.addNode(id);
+        put(nodes, id, node);
+        return node;
+    }
+
+    /**
+     * Connects two nodes with a new edge of the given identifier.
+     *
+     * @param id      an identifier of the new edge
+     * @param leftId  an identifier of the left node
+     * @param rightId an identifier of the right node
+     * @return a new edge
+     * @throws IllegalArgumentException if the edge identifier is not available, or
+     *                                  either of the nodes does not exist
+     */
+    public E connect(int id, int leftId, int rightId) {
+        if (id < 0 || edge(id) != null) {
+            throw new IllegalArgumentException("Edge identifier " + id + " is not available.");
+        }
+
+        final E edge = graph.addEdge(id, existingNode(leftId), existingNode(rightId));
+        put(edges, id, edge);
+        return edge;
+    }
+
+    /**
+     * Deletes a node, along with all its incident edges.
+     *
+     * @param id an identifier of the node
+     * @throws IllegalArgumentException if there is no such node
+     */
+    public void deleteNode(int id) {
+        final N node = existingNode(id);
+        for (E edge : node.incidentEdges()) edges.set(edge.id, null);
+        graph.deleteNode(node);
+        nodes.set(id, null);
+    }
+
+    /**
+     * Deletes an edge.
+     *
+     * @param id an identifier of the edge
+     * @throws IllegalArgumentException if there is no such edge
+     */
+    public void deleteEdge(int id) {
+        graph.deleteEdge(existingEdge(id));
+        edges.set(id, null);
+    }
+
+    /**
+     * Moves an end of the edge from one node to another.
+     *
+     * @param id        an identifier of the edge
+     * @param oldNodeId an identifier of the node the edge is detached from
+     * @param newNodeId an identifier of the node the edge is attached to
+     * @throws IllegalArgumentException if any of the edge or the nodes does not
+     *                                  exist, or the edge is not incident with the old node
+     */
+    public void relink(int id, int oldNodeId, int newNodeId) {
+        final E edge = existingEdge(id);
+        final N oldNode = existingNode(oldNodeId);
+        if (!edge.isIncident(oldNode)) {
+            throw new IllegalArgumentException("Edge " + id + " is not incident with node " + oldNodeId + ".");
+        }
+
+        graph.relinkEdge(edge, oldNode, existingNode(newNodeId));
+    }
+
+    /**
+     * Folds parallel edges into an existing edge of a graph which folds parallel
+     * edges, see {@link AbstractGraph#withParallelEdgeFolding()}.
+     *
+     * @param id    an identifier of the edge
+     * @param count the number of folded edges, added to the multiplicity of the edge
+     * @throws IllegalArgumentException if there is no such edge, or {@code count} is not positive
+     * @throws IllegalStateException    if the graph does not fold parallel edges
+     */
+    public void fold(int id, int count) {
+        final E edge = existingEdge(id);
+        if (count <= 0) {
+            throw new IllegalArgumentException("A number of folded edges must be positive.");
+        }
+        if (!graph.foldsParallelEdges()) {
+            throw new IllegalStateException("The graph does not fold parallel edges.");
+        }
+
+        graph.fold(edge, count);
+    }
+
+    /**
+     * Returns the identifier the graph will assign to the next created node.
+     *
+     * @return the next node identifier
+     */
+    public int nextNodeId() {
+        return graph.nextNodeId();
+    }
+
+    /**
+     * Returns the identifier the graph will assign to the next created edge.
+     *
+     * @return the next edge identifier
+     */
+    public int nextEdgeId() {
+        return graph.nextEdgeId();
+    }
+
+    /**
+     * Makes sure the graph will not assign identifiers below the given ones to new
+     * nodes and edges, e.g. because they belonged to nodes and edges which have been
+     * deleted before the graph was recorded.
+     *
+     * @param nextNodeId the lowest identifier of a node to be created
+     * @param nextEdgeId the lowest identifier of an edge to be created
+     */
+    public void reserveIdentifiers(int nextNodeId, int nextEdgeId) {
+        graph.reserveIdentifiers(nextNodeId, nextEdgeId);
+    }
+
+    private N existingNode(int id) {
+        final N node = node(id);
+        if (node == null) {
+            throw new IllegalArgumentException("There is no node " + id + ".");
+        }
+        return node;
+    }
+
+    private E existingEdge(int id) {
+        final E edge = edge(id);
+        if (edge == null) {
+            throw new IllegalArgumentException("There is no edge " + id + ".");
+        }
+        return edge;
+    }
+
+    private static <T> void put(List<T> elements, int index, T element) {
+        while (elements.size() <= index) elements.add(null);
+        elements.set(index, element);
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.impl;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Node;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * One partition of a {@link PartitionedGraph}: it owns a subset of the nodes, the
+ * edges between them, and the boundary edges which connect its nodes to nodes of
+ * other partitions. The far ends of boundary edges are known to the partition as
+ * ghost nodes.
+ * <p>
+ * This interface is the only way a partitioned graph talks to its partitions, so
+ * a partition may live in another process, with the calls below going over the
+ * wire. Reading calls may run concurrently with each other and with mutations;
+ * mutations are made by the graph while holding {@link #lock()}.
+ *
+ * @author skrymets
+ */
+public interface GraphPartition<N extends Node<N, E>, E extends Edge<N, E>> {
+
+    /**
+     * Returns a number of this partition within its graph.
+     *
+     * @return a partition number
+     */
+    int index();
+
+    /**
+     * Returns the nodes owned by this partition.
+     *
+     * @return an unmodifiable set of nodes
+     */
+    Set<N> nodes();
+
+    /**
+     * Returns the edges which both ends are owned by this partition.
+     *
+     * @return an unmodifiable set of edges
+     */
+    Set<E> edges();
+
+    /**
+     * Returns the edges which connect a node of this partition to a node of another one.
+     *
+     * @return an unmodifiable set of edges
+     */
+    Set<E> boundaryEdges();
+
+    /**
+     * Returns the nodes of other partitions which are connected to this partition by
+     * boundary edges.
+     *
+     * @return an unmodifiable set of nodes
+     */
+    Set<N> ghosts();
+
+    /**
+     * Returns the edges incident on a node owned by this partition, including its
+     * boundary edges.
+     *
+     * @param node a node owned by this partition
+     * @return an unmodifiable collection of edges, empty if the node is not owned here
+     */
+    Collection<E> incidentEdges(N node);
+
+    /**
+     * Returns the neighbours of a batch of nodes owned by this partition in one call.
+     * The neighbours may be owned by other partitions.
+     *
+     * @param frontier nodes owned by this partition
+     * @return neighbours of the nodes, with repetitions
+     */
+    Collection<N> expand(Collection<N> frontier);
+
+    void addNode(N node);
+
+    boolean removeNode(N node);
+
+    /**
+     * Records an edge at least one end of which is owned by this partition.
+     *
+     * @param edge an edge to be recorded
+     */
+    void addEdge(E edge);
+
+    boolean removeEdge(E edge);
+
+    /**
+     * Returns a lock which guards mutations of this partition.
+     *
+     * @return a lock, never {@code null}
+     */
+    Lock lock();
+
+}
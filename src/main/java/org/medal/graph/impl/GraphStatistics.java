@@ -0,0 +1,402 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.impl;
+
+import org.medal.graph.DirectedGraph;
+import org.medal.graph.GraphListener;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Aggregate statistics of a graph: node and edge counts, self-loops, the degree
+ * distribution, density and the number of connected components. See
+ * {@link AbstractGraph#statistics()}.
+ * <p>
+ * Statistics obtained from a graph follow its changes: every mutation adjusts the
+ * aggregates by the degrees it touches, so reading them costs O(1). Connected
+ * components are merged incrementally as edges are created; a deletion or a
+ * relink may split a component, so it makes the count to be recomputed on the
+ * next read instead. A transaction which changes a large part of the graph is not
+ * followed change by change: the statistics are rebuilt once it completes.
+ * Statistics returned by {@link #recompute()} are computed
+ * from scratch and do not follow the graph.
+ * <p>
+ * As with {@link org.medal.graph.Node#degree()}, a self-loop adds two to the degree of its node,
+ * and an edge with parallel edges folded into it adds its multiplicity to the degrees of its
+ * ends; it is still counted as one edge.
+ * Edge directions are ignored everywhere, except in {@link #density()}.
+ *
+ * @author skrymets
+ */
+public final class GraphStatistics<N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> {
+
+    private final AbstractGraph<N, E> graph;
+
+    private long nodeCount;
+
+    private long edgeCount;
+
+    private long selfLoops;
+
+    /**
+     * A degree of every node, indexed by node identifier.
+     */
+    private int[] degrees;
+
+    /**
+     * The number of nodes of each degree.
+     */
+    private long[] histogram = new long[16];
+
+    private int maxDegree;
+
+    /**
+     * The sum of the degrees of all nodes.
+     */
+    private long degreeSum;
+
+    /**
+     * A union-find forest over node identifiers.
+     */
+    private int[] parents;
+
+    private long componentCount;
+
+    private boolean componentsStale;
+
+    /**
+     * Whether the changes of the current batch are ignored, to be rebuilt from
+     * scratch when the batch completes.
+     */
+    private boolean suspended;
+
+    private GraphStatistics(AbstractGraph<N, E> graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Computes statistics of the {@code graph} and starts following its changes.
+     */
+    static <N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> GraphStatistics<N, E> track(
+            AbstractGraph<N, E> graph) {
+        final GraphStatistics<N, E> statistics = compute(graph);
+        graph.addListener(statistics.new Tracker());
+        return statistics;
+    }
+
+    private static <N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> GraphStatistics<N, E> compute(
+            AbstractGraph<N, E> graph) {
+        final GraphStatistics<N, E> statistics = new GraphStatistics<>(graph);
+        final int ids = graph.nextNodeId();
+
+        final AtomicIntegerArray degrees = new AtomicIntegerArray(ids);
+        statistics.edgeCount = graph.edges.size();
+        statistics.selfLoops = graph.edges.parallelStream()
+                .mapToLong(edge -> {
+                    final int multiplicity = Math.toIntExact(edge.multiplicity());
+                    degrees.addAndGet(edge.left().id(), multiplicity);
+                    degrees.addAndGet(edge.right().id(), multiplicity);
+                    return edge.isLoop() ? 1 : 0;
+                })
+                .sum();
+
+        statistics.degrees = new int[Math.max(16, ids)];
+        for (int id = 0; id < ids; id++) statistics.degrees[id] = degrees.get(id);
+
+        final int[] nodeDegrees = graph.nodes.parallelStream()
+                .mapToInt(node -> statistics.degrees[node.id()])
+                .toArray();
+        statistics.nodeCount = nodeDegrees.length;
+        for (int degree : nodeDegrees) {
+            statistics.count(degree, 1);
+            statistics.degreeSum += degree;
+        }
+
+        statistics.recomputeComponents();
+        return statistics;
+    }
+
+    /**
+     * Computes the statistics of the graph from scratch, scanning its nodes and
+     * edges in parallel. The result does not follow the graph; it is meant for
+     * validating the incrementally maintained statistics.
+     *
+     * @return new statistics of the graph
+     */
+    public GraphStatistics<N, E> recompute() {
+        synchronized (graph) {
+            return compute(graph);
+        }
+    }
+
+    public synchronized long nodeCount() {
+        return nodeCount;
+    }
+
+    public synchronized long edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Returns the number of edges which both ends are the same node.
+     *
+     * @return the number of self-loops
+     */
+    public synchronized long selfLoops() {
+        return selfLoops;
+    }
+
+    /**
+     * Returns the highest degree of a node.
+     *
+     * @return the maximum degree, {@code 0} for an empty graph
+     */
+    public synchronized int maxDegree() {
+        return maxDegree;
+    }
+
+    /**
+     * Returns the average degree of a node. Folded edges count with their
+     * multiplicity, as in the degrees of their ends.
+     *
+     * @return the average degree, {@code 0} for an empty graph
+     */
+    public synchronized double averageDegree() {
+        return nodeCount == 0 ? 0 : (double) degreeSum / nodeCount;
+    }
+
+    /**
+     * Returns the ratio of edges to the number of edges between distinct nodes the
+     * graph could have. A {@link DirectedGraph} could have an edge of each direction
+     * between two nodes. Self-loops and parallel edges are counted as any other
+     * edges, so the density of a multigraph may exceed one.
+     *
+     * @return the density, {@code 0} for a graph of less than two nodes
+     */
+    public synchronized double density() {
+        if (nodeCount < 2) {
+            return 0;
+        }
+        final double pairs = (double) nodeCount * (nodeCount - 1);
+        return graph instanceof DirectedGraph ? edgeCount / pairs : 2 * edgeCount / pairs;
+    }
+
+    /**
+     * Returns the number of nodes of each degree.
+     *
+     * @return a new array indexed by degree, of {@code maxDegree() + 1} elements
+     */
+    public synchronized long[] degreeHistogram() {
+        return Arrays.copyOf(histogram, nodeCount == 0 ? 0 : maxDegree + 1);
+    }
+
+    /**
+     * Returns the number of connected components. Costs O(1) unless edges have been
+     * deleted or relinked since the previous call, in which case the components are
+     * recomputed.
+     *
+     * @return the number of connected components
+     */
+    public synchronized long componentCount() {
+        if (componentsStale) {
+            recomputeComponents();
+        }
+        return componentCount;
+    }
+
+    /**
+     * Returns the approximate number of bytes occupied by the arrays of these statistics.
+     */
+    synchronized long footprint(MemoryEstimator estimator) {
+        return estimator.arraySize(degrees.length, Integer.BYTES)
+                + estimator.arraySize(parents.length, Integer.BYTES)
+                + estimator.arraySize(histogram.length, Long.BYTES);
+    }
+
+    private void assign(GraphStatistics<N, E> other) {
+        nodeCount = other.nodeCount;
+        edgeCount = other.edgeCount;
+        selfLoops = other.selfLoops;
+        degrees = other.degrees;
+        histogram = other.histogram;
+        maxDegree = other.maxDegree;
+        degreeSum = other.degreeSum;
+        parents = other.parents;
+        componentCount = other.componentCount;
+        componentsStale = other.componentsStale;
+    }
+
+    private void count(int degree, int delta) {
+        if (degree >= histogram.length) {
+            histogram = Arrays.copyOf(histogram, Math.max(degree + 1, histogram.length * 2));
+        }
+        histogram[degree] += delta;
+
+        if (delta > 0 && degree > maxDegree) {
+            maxDegree = degree;
+        }
+        while (maxDegree > 0 && histogram[maxDegree] == 0) maxDegree--;
+    }
+
+    private void adjustDegree(N node, int delta) {
+        final int id = node.id();
+        count(degrees[id], -1);
+        degrees[id] += delta;
+        degreeSum += delta;
+        count(degrees[id], 1);
+    }
+
+    private void recomputeComponents() {
+        parents = new int[degrees.length];
+        for (N node : graph.nodes) parents[node.id()] = node.id();
+
+        componentCount = nodeCount;
+        for (E edge : graph.edges) union(edge.left().id(), edge.right().id());
+        componentsStale = false;
+    }
+
+    private int find(int id) {
+        while (parents[id] != id) {
+            parents[id] = parents[parents[id]];
+            id = parents[id];
+        }
+        return id;
+    }
+
+    private void union(int a, int b) {
+        final int rootA = find(a);
+        final int rootB = find(b);
+        if (rootA != rootB) {
+            parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+            componentCount--;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "GraphStatistics{nodes=" + nodeCount + ", edges=" + edgeCount + ", selfLoops=" + selfLoops
+                + ", maxDegree=" + maxDegree + ", averageDegree=" + averageDegree() + '}';
+    }
+
+    private final class Tracker implements GraphListener<N, E> {
+
+        @Override
+        public void batchStarted(int changes) {
+            synchronized (GraphStatistics.this) {
+                // A rebuild scans the whole graph in parallel, so it pays off
+                // once a batch touches a sizeable part of it
+                suspended = changes >= (nodeCount + edgeCount) / 4;
+            }
+        }
+
+        @Override
+        public void batchCompleted() {
+            synchronized (GraphStatistics.this) {
+                if (suspended) {
+                    suspended = false;
+                    assign(compute(graph));
+                }
+            }
+        }
+
+        @Override
+        public void nodeCreated(N node) {
+            synchronized (GraphStatistics.this) {
+                if (suspended) return;
+                final int id = node.id();
+                if (id >= degrees.length) {
+                    final int length = Math.max(id + 1, degrees.length * 2);
+                    degrees = Arrays.copyOf(degrees, length);
+                    parents = Arrays.copyOf(parents, length);
+                }
+                degrees[id] = 0;
+                parents[id] = id;
+                nodeCount++;
+                componentCount++;
+                count(0, 1);
+            }
+        }
+
+        @Override
+        public void nodeDeleted(N node) {
+            synchronized (GraphStatistics.this) {
+                if (suspended) return;
+                final int id = node.id();
+                nodeCount--;
+                count(degrees[id], -1);
+                degreeSum -= degrees[id];
+                degrees[id] = 0;
+                if (!componentsStale) {
+                    // The node is isolated by now, and nothing has split since
+                    // the forest was built: the node is a component on its own.
+                    componentCount--;
+                }
+            }
+        }
+
+        @Override
+        public void edgeCreated(E edge) {
+            synchronized (GraphStatistics.this) {
+                if (suspended) return;
+                final int multiplicity = Math.toIntExact(edge.multiplicity());
+                edgeCount++;
+                if (edge.isLoop()) selfLoops++;
+                adjustDegree(edge.left(), multiplicity);
+                adjustDegree(edge.right(), multiplicity);
+                if (!componentsStale) union(edge.left().id(), edge.right().id());
+            }
+        }
+
+        @Override
+        public void edgeDeleted(E edge) {
+            synchronized (GraphStatistics.this) {
+                if (suspended) return;
+                final int multiplicity = Math.toIntExact(edge.multiplicity());
+                edgeCount--;
+                if (edge.isLoop()) selfLoops--;
+                adjustDegree(edge.left(), -multiplicity);
+                adjustDegree(edge.right(), -multiplicity);
+                if (!edge.isLoop()) componentsStale = true;
+            }
+        }
+
+        @Override
+        public void edgeRelinked(E edge, N oldNode, N newNode) {
+            synchronized (GraphStatistics.this) {
+                if (suspended) return;
+                final N otherNode = edge.left() == newNode ? edge.right() : edge.left();
+                if (otherNode == oldNode) selfLoops--;
+                if (edge.isLoop()) selfLoops++;
+                final int multiplicity = Math.toIntExact(edge.multiplicity());
+                adjustDegree(oldNode, -multiplicity);
+                adjustDegree(newNode, multiplicity);
+                componentsStale = true;
+            }
+        }
+
+        @Override
+        public void edgeFolded(E edge, int count) {
+            synchronized (GraphStatistics.this) {
+                if (suspended) return;
+                adjustDegree(edge.left(), count);
+                adjustDegree(edge.right(), count);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.impl;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Changes of an {@link AbstractGraph} staged by {@link AbstractGraph#transaction}.
+ * <p>
+ * Nothing of the graph is touched until the commit. New nodes and edges are created
+ * detached and kept aside; deletions of existing nodes and edges are recorded; new
+ * ends of existing edges are kept in a side table rather than set. Queries of the
+ * transaction overlay these records on the graph. Rolling back thus amounts to
+ * dropping the records.
+ *
+ * @author skrymets
+ */
+final class GraphTransaction<N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>>
+        implements Transaction<N, E> {
+
+    private final AbstractGraph<N, E> graph;
+
+    private final int nodeModifications;
+
+    private final int edgeModifications;
+
+    private final int foldModifications;
+
+    private int nextNodeId;
+
+    private int nextEdgeId;
+
+    private final Set<N> createdNodes = new LinkedHashSet<>();
+
+    private final Set<N> deletedNodes = new LinkedHashSet<>();
+
+    private final Set<E> createdEdges = new LinkedHashSet<>();
+
+    private final Set<E> deletedEdges = new LinkedHashSet<>();
+
+    /**
+     * Staged ends of existing edges which have been relinked.
+     */
+    private final Map<E, Ends<N>> relinked = new LinkedHashMap<>();
+
+    /**
+     * Created and relinked edges, by the nodes they have been attached to. May
+     * refer edges which have been deleted or relinked again since.
+     */
+    private final Map<N, List<E>> attached = new HashMap<>();
+
+    /**
+     * Multiplicities of created edges beyond one, folded into them on commit.
+     */
+    private final Map<E, Integer> multiplicities = new HashMap<>();
+
+    private boolean active = true;
+
+    GraphTransaction(AbstractGraph<N, E> graph) {
+        this.graph = graph;
+        this.nodeModifications = graph.nodeStore.modifications();
+        this.edgeModifications = graph.edgeStore.modifications();
+        this.foldModifications = graph.foldModifications();
+        this.nextNodeId = graph.nextNodeId();
+        this.nextEdgeId = graph.nextEdgeId();
+    }
+
+    @Override
+    public N createNode() {
+        checkActive();
+
+        final N node = graph.getNodeFactory().createNode();
+        node.id = nextNodeId;
+        nextNodeId = Math.addExact(nextNodeId, 1);
+        createdNodes.add(node);
+        return node;
+    }
+
+    @Override
+    public boolean deleteNode(N node) {
+        checkActive();
+        if (!contains(node)) {
+            return false;
+        }
+
+        for (E edge : incidentEdges(node)) deleteEdge(edge);
+        if (!createdNodes.remove(node)) {
+            deletedNodes.add(node);
+        }
+        return true;
+    }
+
+    @Override
+    public E connect(N left, N right) {
+        checkActive();
+        requireNonNull(left);
+        requireNonNull(right);
+        if (!contains(left) || !contains(right)) {
+            throw new IllegalArgumentException("Nodes must belong to the graph.");
+        }
+
+        final E edge = graph.getEdgeFactory().createEdge(left, right);
+        edge.id = nextEdgeId;
+        nextEdgeId = Math.addExact(nextEdgeId, 1);
+        createdEdges.add(edge);
+        attach(edge, left);
+        if (right != left) attach(edge, right);
+        return edge;
+    }
+
+    @Override
+    public void deleteEdge(E edge) {
+        checkActive();
+        if (!contains(edge)) {
+            return;
+        }
+
+        if (createdEdges.remove(edge)) {
+            multiplicities.remove(edge);
+        } else {
+            relinked.remove(edge);
+            deletedEdges.add(edge);
+        }
+    }
+
+    @Override
+    public N collapse(E edge) {
+        checkActive();
+        if (!contains(edge)) {
+            throw new IllegalArgumentException("The edge does not belong to the graph.");
+        }
+
+        final N left = left(edge);
+        final N right = right(edge);
+        final N collapsedNode = createNode();
+        for (E sibling : siblings(left, edge)) relink(sibling, left, collapsedNode);
+        for (E sibling : siblings(right, edge)) relink(sibling, right, collapsedNode);
+
+        deleteEdge(edge);
+        deleteNode(left);
+        deleteNode(right);
+        return collapsedNode;
+    }
+
+    @Override
+    public Edge.Split<N, E> insertMiddleNode(E edge) {
+        checkActive();
+        if (!contains(edge)) {
+            throw new IllegalArgumentException("The edge does not belong to the graph.");
+        }
+
+        return insertMiddleNode(edge, createNode());
+    }
+
+    @Override
+    public Edge.Split<N, E> insertMiddleNode(E edge, N middleNode) {
+        checkActive();
+        if (middleNode == null) {
+            throw new NullPointerException("Can not insert an undefined node.");
+        }
+        if (!contains(edge) || !contains(middleNode)) {
+            throw new IllegalArgumentException("The edge and the node must belong to the graph.");
+        }
+
+        final N left = left(edge);
+        final N right = right(edge);
+        final int multiplicity = createdEdges.contains(edge)
+                ? 1 + multiplicities.getOrDefault(edge, 0)
+                : (int) edge.multiplicity();
+        deleteEdge(edge);
+
+        final E leftEdge = connect(left, middleNode);
+        final E rightEdge = connect(middleNode, right);
+        if (multiplicity > 1) {
+            // Every folded parallel edge is split as well
+            multiplicities.put(leftEdge, multiplicity - 1);
+            multiplicities.put(rightEdge, multiplicity - 1);
+        }
+        return new AbstractEdge.SplitImpl<>(leftEdge, rightEdge);
+    }
+
+    @Override
+    public Collection<E> incidentEdges(N node) {
+        if (!contains(node)) {
+            throw new IllegalArgumentException("The node does not belong to the graph.");
+        }
+
+        final Set<E> edges = new LinkedHashSet<>();
+        if (!createdNodes.contains(node)) {
+            for (E edge : node.incidentEdges()) {
+                if (!deletedEdges.contains(edge) && isIncident(edge, node)) edges.add(edge);
+            }
+        }
+        for (E edge : attached.getOrDefault(node, emptyList())) {
+            if (contains(edge) && isIncident(edge, node)) edges.add(edge);
+        }
+        return unmodifiableSet(edges);
+    }
+
+    @Override
+    public void rollback() {
+        checkActive();
+        close();
+    }
+
+    /**
+     * Applies the staged changes to the graph, unless the transaction has been
+     * rolled back. The caller holds the monitor of the graph.
+     *
+     * @throws ConcurrentModificationException if the graph has been changed since
+     *                                         the transaction began
+     */
+    void commit() {
+        if (!active) {
+            return;
+        }
+        close();
+
+        final ElementStore<N> nodes = graph.nodeStore;
+        final ElementStore<E> edges = graph.edgeStore;
+        if (nodes.modifications() != nodeModifications || edges.modifications() != edgeModifications
+                || graph.foldModifications() != foldModifications) {
+            throw new ConcurrentModificationException("The graph has been changed outside of the transaction.");
+        }
+
+        final int changes = createdNodes.size() + deletedNodes.size() + createdEdges.size()
+                + deletedEdges.size() + relinked.size() + multiplicities.size();
+        if (changes == 0) {
+            return;
+        }
+
+        graph.reserveIdentifiers(nextNodeId, nextEdgeId);
+        RuntimeException failure;
+        graph.startBatch(changes);
+        try {
+            // Nodes are created before any edge may refer them, and deleted after
+            // all of their edges have been deleted or moved away
+            for (E edge : deletedEdges) graph.removeEdge(edge);
+
+            nodes.ensureCapacity(nodes.size() + createdNodes.size());
+            for (N node : createdNodes) {
+                nodes.add(node);
+                graph.notifyListeners(listener -> listener.nodeCreated(node));
+            }
+
+            for (Map.Entry<E, Ends<N>> entry : relinked.entrySet()) {
+                final E edge = entry.getKey();
+                final Ends<N> ends = entry.getValue();
+                if (edge.right() != ends.right) graph.moveEnd(edge, false, ends.right);
+                if (edge.left() != ends.left) graph.moveEnd(edge, true, ends.left);
+            }
+
+            edges.ensureCapacity(edges.size() + createdEdges.size());
+            for (E edge : createdEdges) {
+                graph.attachEdge(edge);
+                final Integer multiplicity = multiplicities.get(edge);
+                if (multiplicity != null) {
+                    // The edge may have been folded into an existing parallel one
+                    graph.fold(graph.folding().find(edge.left(), edge.right()), multiplicity);
+                }
+            }
+
+            for (N node : deletedNodes) {
+                if (nodes.remove(node)) {
+                    graph.notifyListeners(listener -> listener.nodeDeleted(node));
+                }
+            }
+        } finally {
+            failure = graph.completeBatch();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    void close() {
+        active = false;
+    }
+
+    private void checkActive() {
+        if (!active) {
+            throw new IllegalStateException("The transaction is no longer active.");
+        }
+    }
+
+    private boolean contains(N node) {
+        if (node == null || node.graph() != graph) {
+            return false;
+        }
+        return createdNodes.contains(node) || (graph.nodes.contains(node) && !deletedNodes.contains(node));
+    }
+
+    private boolean contains(E edge) {
+        if (edge == null || edge.graph() != graph) {
+            return false;
+        }
+        return createdEdges.contains(edge) || (graph.edges.contains(edge) && !deletedEdges.contains(edge));
+    }
+
+    private N left(E edge) {
+        final Ends<N> ends = relinked.get(edge);
+        return ends == null ? edge.left() : ends.left;
+    }
+
+    private N right(E edge) {
+        final Ends<N> ends = relinked.get(edge);
+        return ends == null ? edge.right() : ends.right;
+    }
+
+    private boolean isIncident(E edge, N node) {
+        return left(edge) == node || right(edge) == node;
+    }
+
+    private List<E> siblings(N node, E edge) {
+        if (!contains(node)) {
+            return emptyList();
+        }
+        final List<E> siblings = new ArrayList<>(incidentEdges(node));
+        siblings.remove(edge);
+        return siblings;
+    }
+
+    /**
+     * Stages a move of one end of the {@code edge}, choosing the end the same way
+     * {@link AbstractGraph#relinkEdge} does.
+     */
+    private void relink(E edge, N oldNode, N newNode) {
+        N left = left(edge);
+        N right = right(edge);
+        final N opposite = left == oldNode ? right : left;
+        if (left == opposite) {
+            right = newNode;
+        } else {
+            left = newNode;
+        }
+
+        if (createdEdges.contains(edge)) {
+            // Not registered yet, so it can be changed in place
+            edge.setLeft(left);
+            edge.setRight(right);
+        } else {
+            relinked.put(edge, new Ends<>(left, right));
+        }
+        attach(edge, newNode);
+    }
+
+    private void attach(E edge, N node) {
+        attached.computeIfAbsent(node, n -> new ArrayList<>(2)).add(edge);
+    }
+
+    private static final class Ends<N> {
+
+        private final N left;
+
+        private final N right;
+
+        private Ends(N left, N right) {
+            this.left = left;
+            this.right = right;
+        }
+
+    }
+
+}
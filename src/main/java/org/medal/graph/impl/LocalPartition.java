@@ -0,0 +1,158 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.impl;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Node;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableSet;
+
+/**
+ * An in-process partition. Stores are concurrent, so readers never block and see
+ * a weakly consistent state while the partition is being mutated.
+ */
+class LocalPartition<N extends Node<N, E>, E extends Edge<N, E>> implements GraphPartition<N, E> {
+
+    private final int index;
+
+    private final int partitions;
+
+    private final Set<N> nodes = ConcurrentHashMap.newKeySet();
+
+    private final Set<E> edges = ConcurrentHashMap.newKeySet();
+
+    private final Set<E> boundaryEdges = ConcurrentHashMap.newKeySet();
+
+    private final Map<N, Integer> ghosts = new ConcurrentHashMap<>();
+
+    private final Map<N, Set<E>> adjacency = new ConcurrentHashMap<>();
+
+    private final Lock lock = new ReentrantLock();
+
+    LocalPartition(int index, int partitions) {
+        this.index = index;
+        this.partitions = partitions;
+    }
+
+    private boolean owns(N node) {
+        return node.id() % partitions == index;
+    }
+
+    @Override
+    public int index() {
+        return index;
+    }
+
+    @Override
+    public Set<N> nodes() {
+        return unmodifiableSet(nodes);
+    }
+
+    @Override
+    public Set<E> edges() {
+        return unmodifiableSet(edges);
+    }
+
+    @Override
+    public Set<E> boundaryEdges() {
+        return unmodifiableSet(boundaryEdges);
+    }
+
+    @Override
+    public Set<N> ghosts() {
+        return unmodifiableSet(ghosts.keySet());
+    }
+
+    @Override
+    public Collection<E> incidentEdges(N node) {
+        final Set<E> incidentEdges = adjacency.get(node);
+        return incidentEdges == null ? emptySet() : unmodifiableSet(incidentEdges);
+    }
+
+    @Override
+    public Collection<N> expand(Collection<N> frontier) {
+        final List<N> neighbours = new ArrayList<>();
+        for (N node : frontier) {
+            for (E edge : incidentEdges(node)) {
+                neighbours.add(edge.left() == node ? edge.right() : edge.left());
+            }
+        }
+        return neighbours;
+    }
+
+    @Override
+    public void addNode(N node) {
+        adjacency.put(node, ConcurrentHashMap.newKeySet());
+        nodes.add(node);
+    }
+
+    @Override
+    public boolean removeNode(N node) {
+        adjacency.remove(node);
+        return nodes.remove(node);
+    }
+
+    @Override
+    public void addEdge(E edge) {
+        final N left = edge.left();
+        final N right = edge.right();
+
+        if (owns(left)) adjacency.get(left).add(edge);
+        if (owns(right)) adjacency.get(right).add(edge);
+
+        if (owns(left) && owns(right)) {
+            edges.add(edge);
+        } else if (boundaryEdges.add(edge)) {
+            ghosts.merge(owns(left) ? right : left, 1, Integer::sum);
+        }
+    }
+
+    @Override
+    public boolean removeEdge(E edge) {
+        final N left = edge.left();
+        final N right = edge.right();
+
+        for (N end : List.of(left, right)) {
+            final Set<E> incidentEdges = owns(end) ? adjacency.get(end) : null;
+            if (incidentEdges != null) incidentEdges.remove(edge);
+        }
+
+        if (edges.remove(edge)) {
+            return true;
+        }
+        if (boundaryEdges.remove(edge)) {
+            ghosts.computeIfPresent(owns(left) ? right : left, (ghost, count) -> count == 1 ? null : count - 1);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Lock lock() {
+        return lock;
+    }
+
+}
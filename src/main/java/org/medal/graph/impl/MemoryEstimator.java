@@ -0,0 +1,364 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.impl;
+
+import org.medal.graph.compact.CompactGraph;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.PlatformManagedObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Estimates the heap occupied by graphs. The estimator either measures an existing
+ * graph, walking its nodes and edges, or predicts the footprint of a graph of a
+ * given size for each of the available storage backends, so the heap can be sized
+ * before a graph is loaded.
+ * <p>
+ * The sizes are computed from the object layout of a 64-bit HotSpot JVM: object
+ * headers, references and primitive fields are added up and aligned to 8 bytes.
+ * Hash based collections are accounted for by their tables and entries. The
+ * figures are estimates: the JVM may pack fields tighter, and a collection may
+ * hold a larger table than its current size requires.
+ *
+ * @author skrymets
+ */
+public final class MemoryEstimator {
+
+    /**
+     * A way to store a graph in memory.
+     */
+    public enum Backend {
+
+        /**
+         * {@link AbstractGraph}: nodes and edges in array backed stores; nodes do
+         * not keep their adjacency.
+         */
+        ARRAY_STORE,
+
+        /**
+         * {@link AbstractDirectedGraph}: as {@link #ARRAY_STORE}, and every node keeps
+         * hash sets of its outgoing and incoming edges.
+         */
+        DIRECTED,
+
+        /**
+         * {@link PartitionedGraph}: nodes, edges and per-node adjacency in
+         * concurrent hash sets of the partitions.
+         */
+        PARTITIONED,
+
+        /**
+         * {@link CompactGraph}: a snapshot in primitive arrays. Node and edge objects
+         * are shared with the graph the snapshot is taken of, and are not counted.
+         */
+        COMPACT
+
+    }
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final boolean compressedOops;
+
+    private final int referenceSize;
+
+    private final int headerSize;
+
+    private final int arrayHeaderSize;
+
+    private final Map<Class<?>, Long> shallowSizes = new ConcurrentHashMap<>();
+
+    private MemoryEstimator(boolean compressedOops) {
+        this.compressedOops = compressedOops;
+        this.referenceSize = compressedOops ? 4 : 8;
+        this.headerSize = compressedOops ? 12 : 16;
+        this.arrayHeaderSize = compressedOops ? 16 : 24;
+    }
+
+    /**
+     * Creates an estimator for the given reference size.
+     *
+     * @param compressedOops {@code true} for 4-byte references, {@code false} for 8-byte ones
+     * @return a new estimator
+     */
+    public static MemoryEstimator of(boolean compressedOops) {
+        return new MemoryEstimator(compressedOops);
+    }
+
+    /**
+     * Creates an estimator for the running JVM. Whether references are compressed
+     * is asked from the JVM; if it can not tell, references are assumed to be
+     * compressed for heaps below 32 GB.
+     *
+     * @return a new estimator
+     */
+    public static MemoryEstimator forCurrentJvm() {
+        try {
+            final Class<? extends PlatformManagedObject> beanType = Class
+                    .forName("com.sun.management.HotSpotDiagnosticMXBean")
+                    .asSubclass(PlatformManagedObject.class);
+            final Object bean = ManagementFactory.getPlatformMXBean(beanType);
+            final Object option = beanType.getMethod("getVMOption", String.class).invoke(bean, "UseCompressedOops");
+            final Object value = option.getClass().getMethod("getValue").invoke(option);
+            return of(Boolean.parseBoolean(String.valueOf(value)));
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            return of(Runtime.getRuntime().maxMemory() < 32L * 1024 * 1024 * 1024);
+        }
+    }
+
+    public boolean compressedOops() {
+        return compressedOops;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Returns the size of an instance of the {@code type}, not counting the objects
+     * it refers.
+     *
+     * @param type a class
+     * @return the number of bytes
+     */
+    public long shallowSize(Class<?> type) {
+        requireNonNull(type);
+        return shallowSizes.computeIfAbsent(type, t -> {
+            long bytes = headerSize;
+            for (Class<?> c = t; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) bytes += fieldSize(field.getType());
+                }
+            }
+            return align(bytes);
+        });
+    }
+
+    private int fieldSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        } else if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return referenceSize;
+    }
+
+    /**
+     * Returns the size of an array.
+     *
+     * @param length      the number of elements
+     * @param elementSize the size of an element, in bytes
+     * @return the number of bytes
+     */
+    public long arraySize(long length, int elementSize) {
+        return align(arrayHeaderSize + length * elementSize);
+    }
+
+    long referenceArraySize(long length) {
+        return arraySize(length, referenceSize);
+    }
+
+    /**
+     * The length of a hash table which holds {@code size} entries without resizing.
+     */
+    private static long tableLength(long size) {
+        if (size == 0) {
+            return 0;
+        }
+        final long required = (long) Math.ceil(size / LOAD_FACTOR);
+        return Math.max(16, Long.highestOneBit(required - 1) << 1);
+    }
+
+    /**
+     * The size of a hash table entry: a header, a hash, a key, a value and a link
+     * to the next entry. Same for {@code HashMap} and {@code ConcurrentHashMap}.
+     */
+    private long entrySize() {
+        return align(headerSize + 4 + 3L * referenceSize);
+    }
+
+    /**
+     * Returns the size of a {@code HashSet} of {@code size} elements, not counting
+     * the elements.
+     *
+     * @param size the number of elements
+     * @return the number of bytes
+     */
+    public long hashSetSize(long size) {
+        final long table = size == 0 ? 0 : referenceArraySize(tableLength(size));
+        return align(headerSize + referenceSize)
+                + align(headerSize + 4L * referenceSize + 16)
+                + table
+                + size * entrySize();
+    }
+
+    /**
+     * Returns the size of a store of graph elements, not counting the elements.
+     *
+     * @param capacity the length of the store's array
+     * @return the number of bytes
+     */
+    private long storeSize(long capacity) {
+        return shallowSize(ElementStore.class) + referenceArraySize(capacity);
+    }
+
+    /**
+     * Returns the size of a {@code ConcurrentHashMap} key set of {@code size}
+     * elements, not counting the elements.
+     *
+     * @param size the number of elements
+     * @return the number of bytes
+     */
+    public long concurrentSetSize(long size) {
+        return align(headerSize + 2L * referenceSize) + concurrentMapSize(size);
+    }
+
+    private long concurrentMapSize(long size) {
+        final long table = size == 0 ? 0 : referenceArraySize(tableLength(size));
+        return align(headerSize + 6L * referenceSize + 4 * 4 + 8) + table + size * entrySize();
+    }
+
+    /**
+     * Measures the heap occupied by the {@code graph}.
+     *
+     * @param graph a graph
+     * @return a breakdown of the graph's footprint
+     */
+    public MemoryReport measure(AbstractGraph<?, ?> graph) {
+        long nodeObjects = 0;
+        long indexes = 0;
+        for (AbstractNode<?, ?> node : graph.nodes) {
+            nodeObjects += shallowSize(node.getClass());
+            if (node instanceof AbstractDirectedNode) {
+                final AbstractDirectedNode<?, ?> directed = (AbstractDirectedNode<?, ?>) node;
+                indexes += hashSetSize(directed.outEdges().size()) + hashSetSize(directed.inEdges().size());
+            }
+        }
+
+        long edgeObjects = 0;
+        for (AbstractEdge<?, ?> edge : graph.edges) edgeObjects += shallowSize(edge.getClass());
+
+        final GraphStatistics<?, ?> statistics = graph.trackedStatistics();
+        if (statistics != null) indexes += statistics.footprint(this);
+        final EdgeFolding<?, ?> folding = graph.folding();
+        if (folding != null) indexes += folding.footprint(this);
+
+        return new MemoryReport(nodeObjects, edgeObjects,
+                storeSize(graph.nodeStore.capacity()), storeSize(graph.edgeStore.capacity()),
+                indexes);
+    }
+
+    /**
+     * Measures the heap occupied by the {@code graph}.
+     *
+     * @param graph a partitioned graph
+     * @return a breakdown of the graph's footprint
+     */
+    public <N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> MemoryReport measure(
+            PartitionedGraph<N, E> graph) {
+        long nodeObjects = 0;
+        long nodeRegistry = 0;
+        long edgeRegistry = concurrentSetSize(graph.crossEdges().size());
+        long indexes = 0;
+        for (int p = 0; p < graph.partitionCount(); p++) {
+            final GraphPartition<N, E> partition = graph.partition(p);
+            nodeRegistry += concurrentSetSize(partition.nodes().size());
+            edgeRegistry += concurrentSetSize(partition.edges().size());
+            indexes += concurrentSetSize(partition.boundaryEdges().size())
+                    + concurrentMapSize(partition.ghosts().size())
+                    + concurrentMapSize(partition.nodes().size());
+            for (N node : partition.nodes()) {
+                nodeObjects += shallowSize(node.getClass());
+                indexes += concurrentSetSize(partition.incidentEdges(node).size());
+            }
+        }
+
+        long edgeObjects = 0;
+        for (E edge : graph.edges()) edgeObjects += shallowSize(edge.getClass());
+
+        return new MemoryReport(nodeObjects, edgeObjects, nodeRegistry, edgeRegistry, indexes);
+    }
+
+    /**
+     * Measures the heap occupied by the arrays of a snapshot. The nodes and edges
+     * the snapshot refers are not counted.
+     *
+     * @param compact a snapshot
+     * @return a breakdown of the snapshot's footprint
+     */
+    public MemoryReport measure(CompactGraph<?, ?> compact) {
+        int maxId = -1;
+        for (int v = 0; v < compact.nodeCount(); v++) maxId = Math.max(maxId, compact.node(v).id());
+        return compact(compact.nodeCount(), compact.edgeCount(), maxId + 1L, compact.slotCount());
+    }
+
+    private MemoryReport compact(long nodes, long edges, long identifiers, long slots) {
+        return new MemoryReport(0, 0,
+                referenceArraySize(nodes) + arraySize(identifiers, Integer.BYTES),
+                referenceArraySize(edges) + 2 * arraySize(edges, Integer.BYTES),
+                arraySize(nodes + 1, Integer.BYTES) + 2 * arraySize(slots, Integer.BYTES));
+    }
+
+    /**
+     * Predicts the heap a graph of the given size would occupy on the {@code backend}.
+     * Degrees are assumed to be even; for {@link Backend#COMPACT}, the snapshot is
+     * assumed to record {@link CompactGraph.Direction#BOTH both} directions.
+     *
+     * @param backend  a storage backend
+     * @param nodes    the number of nodes
+     * @param edges    the number of edges
+     * @param nodeType a class of nodes
+     * @param edgeType a class of edges
+     * @return a predicted breakdown of the footprint
+     */
+    public MemoryReport estimate(Backend backend, long nodes, long edges, Class<?> nodeType, Class<?> edgeType) {
+        requireNonNull(backend);
+        if (nodes < 0 || edges < 0) {
+            throw new IllegalArgumentException("The size of a graph can not be negative.");
+        }
+
+        final long nodeObjects = nodes * shallowSize(nodeType);
+        final long edgeObjects = edges * shallowSize(edgeType);
+        final long averageDegree = nodes == 0 ? 0 : (2 * edges + nodes - 1) / nodes;
+
+        switch (backend) {
+            case ARRAY_STORE:
+                return new MemoryReport(nodeObjects, edgeObjects, storeSize(ElementStore.capacityAfter(nodes)),
+                        storeSize(ElementStore.capacityAfter(edges)), 0);
+            case DIRECTED:
+                final long halfDegree = (averageDegree + 1) / 2;
+                return new MemoryReport(nodeObjects, edgeObjects, storeSize(ElementStore.capacityAfter(nodes)),
+                        storeSize(ElementStore.capacityAfter(edges)),
+                        nodes * 2 * hashSetSize(halfDegree));
+            case PARTITIONED:
+                return new MemoryReport(nodeObjects, edgeObjects, concurrentSetSize(nodes), concurrentSetSize(edges),
+                        concurrentMapSize(nodes) + nodes * concurrentSetSize(averageDegree));
+            case COMPACT:
+                return compact(nodes, edges, nodes, 2 * edges);
+            default:
+                throw new IllegalArgumentException("Unknown backend: " + backend);
+        }
+    }
+
+}
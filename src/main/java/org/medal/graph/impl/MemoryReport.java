@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.impl;
+
+/**
+ * A breakdown of the heap occupied by a graph, in bytes. See {@link MemoryEstimator}.
+ *
+ * @author skrymets
+ */
+public final class MemoryReport {
+
+    private final long nodeObjects;
+
+    private final long edgeObjects;
+
+    private final long nodeRegistry;
+
+    private final long edgeRegistry;
+
+    private final long indexes;
+
+    MemoryReport(long nodeObjects, long edgeObjects, long nodeRegistry, long edgeRegistry, long indexes) {
+        this.nodeObjects = nodeObjects;
+        this.edgeObjects = edgeObjects;
+        this.nodeRegistry = nodeRegistry;
+        this.edgeRegistry = edgeRegistry;
+        this.indexes = indexes;
+    }
+
+    /**
+     * Returns the size of the node objects themselves.
+     *
+     * @return the number of bytes
+     */
+    public long nodeObjects() {
+        return nodeObjects;
+    }
+
+    /**
+     * Returns the size of the edge objects themselves.
+     *
+     * @return the number of bytes
+     */
+    public long edgeObjects() {
+        return edgeObjects;
+    }
+
+    /**
+     * Returns the size of the structure which holds the nodes of the graph.
+     *
+     * @return the number of bytes
+     */
+    public long nodeRegistry() {
+        return nodeRegistry;
+    }
+
+    /**
+     * Returns the size of the structure which holds the edges of the graph.
+     *
+     * @return the number of bytes
+     */
+    public long edgeRegistry() {
+        return edgeRegistry;
+    }
+
+    /**
+     * Returns the size of the auxiliary structures: adjacency kept by nodes or
+     * partitions, statistics, and the like.
+     *
+     * @return the number of bytes
+     */
+    public long indexes() {
+        return indexes;
+    }
+
+    public long total() {
+        return nodeObjects + edgeObjects + nodeRegistry + edgeRegistry + indexes;
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryReport{nodeObjects=" + nodeObjects
+                + ", edgeObjects=" + edgeObjects
+                + ", nodeRegistry=" + nodeRegistry
+                + ", edgeRegistry=" + edgeRegistry
+                + ", indexes=" + indexes
+                + ", total=" + total() + '}';
+    }
+
+}
@@ -0,0 +1,455 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.impl;
+
+import org.medal.graph.EdgeFactory;
+import org.medal.graph.NodeFactory;
+import org.medal.graph.Subgraph;
+import org.medal.graph.Transaction;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.Collections.unmodifiableSet;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * One logical graph backed by several independent partitions. Every node is owned
+ * by exactly one partition, and the owner is encoded in the node's identifier:
+ * {@code id % partitions}. Edges between nodes of the same partition are stored
+ * in that partition only; edges which cross partitions are recorded as boundary
+ * edges by both partitions and are tracked by the graph separately.
+ * <p>
+ * There is no global lock. An operation locks just the partitions it touches, in
+ * the order of their numbers, so threads which work with different partitions
+ * never wait for each other. Readers do not lock at all.
+ * <p>
+ * The graph talks to its partitions only through {@link GraphPartition}, so a
+ * subclass may place them elsewhere by overriding {@link #createPartition(int, int)}.
+ *
+ * @author skrymets
+ */
+public abstract class PartitionedGraph<N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>>
+        extends BaseGraph<N, E> {
+
+    private final List<GraphPartition<N, E>> partitions;
+
+    private final AtomicInteger[] nodeCounters;
+
+    private final AtomicInteger[] edgeCounters;
+
+    private final AtomicInteger nextPartition = new AtomicInteger();
+
+    private final Set<E> crossEdges = ConcurrentHashMap.newKeySet();
+
+    protected PartitionedGraph(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("The number of partitions must be positive.");
+        }
+
+        final List<GraphPartition<N, E>> created = new ArrayList<>(partitions);
+        this.nodeCounters = new AtomicInteger[partitions];
+        this.edgeCounters = new AtomicInteger[partitions];
+        for (int p = 0; p < partitions; p++) {
+            created.add(createPartition(p, partitions));
+            this.nodeCounters[p] = new AtomicInteger();
+            this.edgeCounters[p] = new AtomicInteger();
+        }
+        this.partitions = List.copyOf(created);
+    }
+
+    /**
+     * Creates a partition. Called from the constructor.
+     *
+     * @param index      a number of the partition
+     * @param partitions the total number of partitions
+     * @return a new, empty partition
+     */
+    protected GraphPartition<N, E> createPartition(int index, int partitions) {
+        return new LocalPartition<>(index, partitions);
+    }
+
+    public int partitionCount() {
+        return partitions.size();
+    }
+
+    public GraphPartition<N, E> partition(int index) {
+        return partitions.get(index);
+    }
+
+    /**
+     * Returns the partition which owns the {@code node}.
+     *
+     * @param node a node of this graph
+     * @return the owning partition
+     */
+    public GraphPartition<N, E> partitionOf(N node) {
+        return partitionOf(node.id());
+    }
+
+    private GraphPartition<N, E> partitionOf(int nodeId) {
+        return partitions.get(nodeId % partitions.size());
+    }
+
+    /**
+     * Returns the edges which connect nodes of different partitions.
+     *
+     * @return an unmodifiable set of edges
+     */
+    public Set<E> crossEdges() {
+        return unmodifiableSet(crossEdges);
+    }
+
+    private int allocateId(AtomicInteger[] counters, int partition) {
+        return Math.addExact(Math.multiplyExact(counters[partition].getAndIncrement(), partitions.size()), partition);
+    }
+
+    /**
+     * Creates a node in a partition chosen in round-robin order.
+     *
+     * @return a new node
+     */
+    @Override
+    public N createNode() {
+        return createNode(Math.floorMod(nextPartition.getAndIncrement(), partitions.size()));
+    }
+
+    /**
+     * Creates a node owned by the given partition.
+     *
+     * @param partition a number of the owning partition
+     * @return a new node
+     */
+    public N createNode(int partition) {
+        final GraphPartition<N, E> owner = partitions.get(partition);
+        final N node = getNodeFactory().createNode();
+        node.id = allocateId(nodeCounters, partition);
+
+        owner.lock().lock();
+        try {
+            owner.addNode(node);
+        } finally {
+            owner.lock().unlock();
+        }
+        return node;
+    }
+
+    /**
+     * Connects two nodes. The new edge is stored by the partition which owns both
+     * nodes or, if the nodes belong to different partitions, becomes a cross edge.
+     *
+     * @throws NullPointerException if either node is {@code null}
+     * @throws IllegalArgumentException if either node has been deleted from this graph
+     */
+    @Override
+    public E connect(N left, N right) {
+        requireNonNull(left);
+        requireNonNull(right);
+
+        if (left.graph() != this || right.graph() != this) {
+            throw new IllegalArgumentException("Nodes can not belong to different graphs");
+        }
+
+        final E edge = getEdgeFactory().createEdge(left, right);
+        edge.id = allocateId(edgeCounters, partitionOf(left).index());
+
+        withLocks(() -> {
+            // Checked under the locks, so that neither node can be deleted meanwhile
+            if (!partitionOf(left).nodes().contains(left) || !partitionOf(right).nodes().contains(right)) {
+                throw new IllegalArgumentException("Both nodes must belong to the graph.");
+            }
+            register(edge);
+        }, List.of(partitionOf(left), partitionOf(right)));
+        return edge;
+    }
+
+    private void register(E edge) {
+        final GraphPartition<N, E> leftPartition = partitionOf(edge.left());
+        final GraphPartition<N, E> rightPartition = partitionOf(edge.right());
+
+        leftPartition.addEdge(edge);
+        if (rightPartition != leftPartition) {
+            rightPartition.addEdge(edge);
+            crossEdges.add(edge);
+        }
+    }
+
+    private boolean unregister(E edge) {
+        final GraphPartition<N, E> leftPartition = partitionOf(edge.left());
+        final GraphPartition<N, E> rightPartition = partitionOf(edge.right());
+
+        final boolean removed = leftPartition.removeEdge(edge);
+        if (rightPartition != leftPartition) {
+            rightPartition.removeEdge(edge);
+            crossEdges.remove(edge);
+        }
+        return removed;
+    }
+
+    @Override
+    public void deleteEdge(E edge) {
+        if (edge == null || edge.graph() != this) {
+            return;
+        }
+
+        withLocks(() -> unregister(edge), List.of(partitionOf(edge.left()), partitionOf(edge.right())));
+    }
+
+    @Override
+    public boolean deleteNode(N node) {
+        if (node == null || node.graph() != this) {
+            return false;
+        }
+
+        final GraphPartition<N, E> owner = partitionOf(node);
+        while (true) {
+            // Lock the owner and every partition the node has edges to. The set of
+            // partitions may change while the locks are being taken; retry if it did.
+            final Set<GraphPartition<N, E>> involved = partitionsAround(owner, node);
+            final boolean[] done = new boolean[1];
+            final boolean[] deleted = new boolean[1];
+            withLocks(() -> {
+                if (!involved.containsAll(partitionsAround(owner, node))) {
+                    return;
+                }
+                for (E edge : new ArrayList<>(owner.incidentEdges(node))) unregister(edge);
+                deleted[0] = owner.removeNode(node);
+                done[0] = true;
+            }, involved);
+
+            if (done[0]) {
+                return deleted[0];
+            }
+        }
+    }
+
+    private Set<GraphPartition<N, E>> partitionsAround(GraphPartition<N, E> owner, N node) {
+        final Set<GraphPartition<N, E>> involved = new HashSet<>();
+        involved.add(owner);
+        for (E edge : owner.incidentEdges(node)) {
+            involved.add(partitionOf(edge.left()));
+            involved.add(partitionOf(edge.right()));
+        }
+        return involved;
+    }
+
+    /**
+     * Moves one end of an edge, see {@link AbstractGraph}. The edge may become a
+     * cross edge, or stop being one.
+     */
+    @Override
+    void relinkEdge(E edge, N oldTarget, N newTarget) {
+        while (true) {
+            // The ends of the edge may be moved by another thread while the locks are
+            // being taken; retry if they no longer map to the locked partitions.
+            final Set<GraphPartition<N, E>> involved = partitionsOf(edge, newTarget);
+            final boolean[] relinked = new boolean[1];
+            withLocks(() -> {
+                if (!involved.containsAll(partitionsOf(edge, newTarget))) {
+                    return;
+                }
+                final boolean registered = unregister(edge);
+
+                final N oppositeNode = edge.opposite(oldTarget).get();
+                if (edge.left() == oppositeNode) {
+                    edge.setRight(newTarget);
+                } else {
+                    edge.setLeft(newTarget);
+                }
+
+                if (registered) {
+                    register(edge);
+                }
+                relinked[0] = true;
+            }, involved);
+
+            if (relinked[0]) {
+                return;
+            }
+        }
+    }
+
+    private Set<GraphPartition<N, E>> partitionsOf(E edge, N newTarget) {
+        final Set<GraphPartition<N, E>> involved = new HashSet<>();
+        involved.add(partitionOf(edge.left()));
+        involved.add(partitionOf(edge.right()));
+        involved.add(partitionOf(newTarget));
+        return involved;
+    }
+
+    private void withLocks(Runnable action, Collection<GraphPartition<N, E>> involved) {
+        final int[] indexes = involved.stream().mapToInt(GraphPartition::index).distinct().sorted().toArray();
+
+        int locked = 0;
+        try {
+            for (int index : indexes) {
+                partitions.get(index).lock().lock();
+                locked++;
+            }
+            action.run();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) partitions.get(indexes[i]).lock().unlock();
+        }
+    }
+
+    /**
+     * Returns a live, unmodifiable union of the nodes of all partitions.
+     *
+     * @return a set of nodes. Never {@code null}
+     */
+    @Override
+    public Set<N> nodes() {
+        return new AbstractSet<N>() {
+            @Override
+            public Iterator<N> iterator() {
+                return partitions.stream().flatMap(p -> p.nodes().stream()).iterator();
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (GraphPartition<N, E> partition : partitions) size += partition.nodes().size();
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof AbstractNode) || ((AbstractNode<?, ?>) o).graph() != PartitionedGraph.this) {
+                    return false;
+                }
+                return partitionOf(((AbstractNode<?, ?>) o).id()).nodes().contains(o);
+            }
+        };
+    }
+
+    /**
+     * Returns a live, unmodifiable union of the edges of all partitions and the cross edges.
+     *
+     * @return a set of edges. Never {@code null}
+     */
+    @Override
+    public Set<E> edges() {
+        return new AbstractSet<E>() {
+            @Override
+            public Iterator<E> iterator() {
+                return Stream.concat(partitions.stream().flatMap(p -> p.edges().stream()), crossEdges.stream())
+                        .iterator();
+            }
+
+            @Override
+            public int size() {
+                int size = crossEdges.size();
+                for (GraphPartition<N, E> partition : partitions) size += partition.edges().size();
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof AbstractEdge) || ((AbstractEdge<?, ?>) o).graph() != PartitionedGraph.this) {
+                    return false;
+                }
+                final AbstractEdge<?, ?> edge = (AbstractEdge<?, ?>) o;
+                return crossEdges.contains(edge) || partitionOf(edge.left().id()).edges().contains(edge);
+            }
+        };
+    }
+
+    /**
+     * Returns the edges incident on the {@code node}, as recorded by its partition,
+     * without a scan of all edges of the graph. Nodes of this graph answer
+     * {@link AbstractNode#incidentEdges()}, and the queries based on it, from here.
+     *
+     * @param node a node of this graph
+     * @return an unmodifiable collection of edges
+     */
+    @Override
+    public Collection<E> incidentEdges(N node) {
+        return partitionOf(node).incidentEdges(node);
+    }
+
+    /**
+     * Walks the graph breadth-first from the {@code source} node, up to {@code maxDepth}
+     * hops away. On each level the frontier is grouped by owning partition, and each
+     * partition expands its group with a single {@link GraphPartition#expand(Collection)}
+     * call; the partitions are expanded in parallel.
+     *
+     * @param source   a node to start from
+     * @param maxDepth the maximum distance, in hops
+     * @return the reached nodes and their distances from the source, in the order of visiting
+     */
+    public Map<N, Integer> breadthFirst(N source, int maxDepth) {
+        requireNonNull(source);
+
+        final Map<N, Integer> distances = new LinkedHashMap<>();
+        distances.put(source, 0);
+
+        List<N> frontier = List.of(source);
+        for (int depth = 1; depth <= maxDepth && !frontier.isEmpty(); depth++) {
+            final List<List<N>> groups = new ArrayList<>(partitions.size());
+            for (int p = 0; p < partitions.size(); p++) groups.add(new ArrayList<>());
+            for (N node : frontier) groups.get(partitionOf(node).index()).add(node);
+
+            final List<Collection<N>> expanded = IntStream.range(0, partitions.size()).parallel()
+                    .filter(p -> !groups.get(p).isEmpty())
+                    .mapToObj(p -> partitions.get(p).expand(groups.get(p)))
+                    .collect(toList());
+
+            final List<N> next = new ArrayList<>();
+            for (Collection<N> neighbours : expanded) {
+                for (N neighbour : neighbours) {
+                    if (distances.putIfAbsent(neighbour, depth) == null) next.add(neighbour);
+                }
+            }
+            frontier = next;
+        }
+        return distances;
+    }
+
+    @Override
+    public Subgraph<N, E> subgraph(Predicate<? super N> nodeFilter, Predicate<? super E> edgeFilter) {
+        return new SubgraphView<>(this, nodeFilter, edgeFilter, false);
+    }
+
+    /**
+     * Not supported: partitions are changed independently under their own locks,
+     * and there is no single point at which a batch could be applied atomically.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void transaction(Consumer<? super Transaction<N, E>> work) {
+        throw new UnsupportedOperationException("A partitioned graph does not support transactions.");
+    }
+
+    protected abstract NodeFactory<N, E> getNodeFactory();
+
+    protected abstract EdgeFactory<N, E> getEdgeFactory();
+
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.impl;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+import org.medal.graph.Subgraph;
+import org.medal.graph.Transaction;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static java.util.Collections.emptySet;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A lazily filtered, zero-copy view of a graph. Every query walks the parent's
+ * structures and drops what does not pass the filters; nothing is materialized.
+ * <p>
+ * When created with a membership cache, answers of the filters are remembered in
+ * bit sets indexed by node and edge identifiers. The cache is not thread-safe.
+ */
+class SubgraphView<N extends Node<N, E>, E extends Edge<N, E>> implements Subgraph<N, E> {
+
+    private final Graph<N, E> parent;
+
+    private final Predicate<? super N> nodeFilter;
+
+    private final Predicate<? super E> edgeFilter;
+
+    private final boolean cached;
+
+    private final BitSet testedNodes = new BitSet();
+
+    private final BitSet acceptedNodes = new BitSet();
+
+    private final BitSet testedEdges = new BitSet();
+
+    private final BitSet acceptedEdges = new BitSet();
+
+    SubgraphView(Graph<N, E> parent, Predicate<? super N> nodeFilter, Predicate<? super E> edgeFilter, boolean cached) {
+        this.parent = requireNonNull(parent);
+        this.nodeFilter = requireNonNull(nodeFilter);
+        this.edgeFilter = requireNonNull(edgeFilter);
+        this.cached = cached;
+    }
+
+    @Override
+    public Graph<N, E> parent() {
+        return parent;
+    }
+
+    boolean containsNode(Object o) {
+        if (!parent.nodes().contains(o)) {
+            return false;
+        }
+
+        @SuppressWarnings("unchecked") // a node of the parent graph
+        final N node = (N) o;
+        if (!cached) {
+            return nodeFilter.test(node);
+        }
+
+        final int id = node.id();
+        if (!testedNodes.get(id)) {
+            acceptedNodes.set(id, nodeFilter.test(node));
+            testedNodes.set(id);
+        }
+        return acceptedNodes.get(id);
+    }
+
+    boolean containsEdge(Object o) {
+        if (!parent.edges().contains(o)) {
+            return false;
+        }
+
+        @SuppressWarnings("unchecked") // an edge of the parent graph
+        final E edge = (E) o;
+        if (!cached) {
+            return acceptEdge(edge);
+        }
+
+        final int id = edge.id();
+        if (!testedEdges.get(id)) {
+            acceptedEdges.set(id, acceptEdge(edge));
+            testedEdges.set(id);
+        }
+        return acceptedEdges.get(id);
+    }
+
+    private boolean acceptEdge(E edge) {
+        return edgeFilter.test(edge) && containsNode(edge.left()) && containsNode(edge.right());
+    }
+
+    @Override
+    public Set<N> nodes() {
+        return new AbstractSet<N>() {
+            @Override
+            public Iterator<N> iterator() {
+                return parent.nodes().stream().filter(SubgraphView.this::containsNode).iterator();
+            }
+
+            @Override
+            public int size() {
+                return (int) parent.nodes().stream().filter(SubgraphView.this::containsNode).count();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsNode(o);
+            }
+        };
+    }
+
+    @Override
+    public Set<E> edges() {
+        return new AbstractSet<E>() {
+            @Override
+            public Iterator<E> iterator() {
+                return parent.edges().stream().filter(SubgraphView.this::containsEdge).iterator();
+            }
+
+            @Override
+            public int size() {
+                return (int) parent.edges().stream().filter(SubgraphView.this::containsEdge).count();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsEdge(o);
+            }
+        };
+    }
+
+    @Override
+    public Collection<E> incidentEdges(N node) {
+        if (!containsNode(node)) {
+            return emptySet();
+        }
+
+        final Collection<E> incidentEdges = node.incidentEdges();
+        return new AbstractCollection<E>() {
+            @Override
+            public Iterator<E> iterator() {
+                return incidentEdges.stream().filter(SubgraphView.this::containsEdge).iterator();
+            }
+
+            @Override
+            public int size() {
+                return (int) incidentEdges.stream().filter(SubgraphView.this::containsEdge).count();
+            }
+        };
+    }
+
+    @Override
+    public Set<N> adjacentNodes(N node) {
+        final Collection<E> incidentEdges = incidentEdges(node);
+        return new AbstractSet<N>() {
+            @Override
+            public Iterator<N> iterator() {
+                return incidentEdges.stream()
+                        .map(edge -> edge.opposite(node).orElseThrow(IllegalStateException::new))
+                        .distinct()
+                        .iterator();
+            }
+
+            @Override
+            public int size() {
+                return (int) incidentEdges.stream()
+                        .map(edge -> edge.opposite(node).orElseThrow(IllegalStateException::new))
+                        .distinct()
+                        .count();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                for (E edge : incidentEdges) {
+                    if (edge.opposite(node).orElse(null) == o) return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public long degree(N node) {
+        long degree = 0;
+
+        for (E e : incidentEdges(node)) degree += e.isLoop() ? 2 * e.multiplicity() : e.multiplicity();
+        return degree;
+    }
+
+    @Override
+    public Subgraph<N, E> cached() {
+        return cached ? this : new SubgraphView<>(parent, nodeFilter, edgeFilter, true);
+    }
+
+    @Override
+    public void invalidate() {
+        testedNodes.clear();
+        acceptedNodes.clear();
+        testedEdges.clear();
+        acceptedEdges.clear();
+    }
+
+    @Override
+    public Subgraph<N, E> subgraph(Predicate<? super N> nodeFilter, Predicate<? super E> edgeFilter) {
+        return new SubgraphView<>(this, nodeFilter, edgeFilter, false);
+    }
+
+    @Override
+    public N createNode() {
+        throw new UnsupportedOperationException("A subgraph view is read-only");
+    }
+
+    @Override
+    public boolean deleteNode(N node) {
+        throw new UnsupportedOperationException("A subgraph view is read-only");
+    }
+
+    @Override
+    public E connect(N left, N right) {
+        throw new UnsupportedOperationException("A subgraph view is read-only");
+    }
+
+    @Override
+    public void deleteEdge(E edge) {
+        throw new UnsupportedOperationException("A subgraph view is read-only");
+    }
+
+    @Override
+    public void transaction(Consumer<? super Transaction<N, E>> work) {
+        throw new UnsupportedOperationException("A subgraph view is read-only");
+    }
+
+}
@@ -0,0 +1,581 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.io;
+
+import org.medal.graph.GraphListener;
+import org.medal.graph.impl.AbstractEdge;
+import org.medal.graph.impl.AbstractGraph;
+import org.medal.graph.impl.AbstractNode;
+import org.medal.graph.impl.GraphLoader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes checkpoints of a graph into a directory: full snapshots, each followed by
+ * a chain of small deltas. A delta contains only the nodes and edges added or
+ * removed since the previous checkpoint, which the checkpointer learns by
+ * listening to the graph. Recovery loads the latest snapshot and applies the
+ * deltas written after it, so its cost depends on the size of the graph and on
+ * the age of the snapshot, not on the length of the mutation history.
+ * <p>
+ * Every checkpoint is written to a temporary file which is atomically renamed when
+ * complete, so a crash never leaves a partial checkpoint behind. A new snapshot
+ * makes all older files obsolete, and they are deleted.
+ * <p>
+ * The changes are tracked under a lock of the checkpointer, which listener
+ * callbacks take on the mutating thread and deltas hold while they are written, so
+ * a delta never sees the tracking state half updated. A snapshot, however, reads
+ * the whole graph while holding the graph's monitor: a graph checkpointed on a
+ * {@link #schedule schedule} has to be mutated under {@code synchronized (graph)}.
+ * <p>
+ * Every file tells whether the graph it was written from folds parallel edges,
+ * and recovery rejects a graph which does not match.
+ *
+ * @author skrymets
+ */
+public final class Checkpointer<N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>>
+        implements GraphListener<N, E>, Closeable {
+
+    static final int SNAPSHOT_MAGIC = 0x4D475331;
+
+    static final int DELTA_MAGIC = 0x4D474431;
+
+    /**
+     * The format written. Version 2 adds the multiplicity of every edge, version 3
+     * whether the graph folds parallel edges; older files are still read.
+     */
+    static final int VERSION = 3;
+
+    private static final Pattern FILE_NAME = Pattern.compile("checkpoint-(\\d{20})\\.(snapshot|delta)");
+
+    private final AbstractGraph<N, E> graph;
+
+    private final Path directory;
+
+    /**
+     * Guards the tracked changes, which listener callbacks update on mutating threads.
+     */
+    private final Object tracking = new Object();
+
+    private long sequence;
+
+    private boolean snapshotRequired;
+
+    private int deltasSinceSnapshot;
+
+    private int nextNodeId;
+
+    private int nextEdgeId;
+
+    // Tracked changes, guarded by the tracking lock along with the identifiers above
+
+    private final Set<N> addedNodes = new HashSet<>();
+
+    private final BitSet removedNodes = new BitSet();
+
+    private final Set<E> addedEdges = new HashSet<>();
+
+    private final BitSet removedEdges = new BitSet();
+
+    private ScheduledExecutorService scheduler;
+
+    private IOException failure;
+
+    /**
+     * Whether a transaction is being applied, guarded by the tracking lock. Commits
+     * hold the monitor of the graph, so only a listener of the same batch could ask
+     * for a checkpoint meanwhile.
+     */
+    private boolean inBatch;
+
+    private Checkpointer(AbstractGraph<N, E> graph, Path directory, long sequence, GraphLoader<N, E> loader) {
+        this.graph = graph;
+        this.directory = directory;
+        this.sequence = sequence;
+        this.snapshotRequired = sequence < 0;
+        this.nextNodeId = loader.nextNodeId();
+        this.nextEdgeId = loader.nextEdgeId();
+    }
+
+    /**
+     * Recovers the {@code graph} from the checkpoints found in the {@code directory},
+     * if any, and starts tracking its changes for the following checkpoints.
+     *
+     * @param graph     a graph to be checkpointed. Must be empty if the directory
+     *                  contains checkpoints.
+     * @param directory a directory for checkpoint files; created if it does not exist
+     * @return a checkpointer, registered as a listener of the graph
+     * @throws IOException if the checkpoints can not be read
+     */
+    public static <N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> Checkpointer<N, E> open(
+            AbstractGraph<N, E> graph, Path directory) throws IOException {
+
+        requireNonNull(graph);
+        Files.createDirectories(directory);
+
+        final GraphLoader<N, E> loader = new GraphLoader<>(graph);
+        final long sequence = recover(directory, loader);
+
+        final Checkpointer<N, E> checkpointer = new Checkpointer<>(graph, directory, sequence, loader);
+        graph.addListener(checkpointer);
+        return checkpointer;
+    }
+
+    /**
+     * Loads the latest snapshot found in the {@code directory} into the {@code graph},
+     * and applies the deltas written after it.
+     *
+     * @param directory a directory with checkpoint files
+     * @param graph     an empty graph
+     * @return a sequence number of the last applied checkpoint, or {@code -1} if
+     * the directory contains no checkpoints
+     * @throws IOException if the checkpoints can not be read
+     */
+    public static <N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> long recover(
+            Path directory, AbstractGraph<N, E> graph) throws IOException {
+        return recover(directory, new GraphLoader<>(graph));
+    }
+
+    private static <N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> long recover(
+            Path directory, GraphLoader<N, E> loader) throws IOException {
+
+        final TreeMap<Long, Path> snapshots = new TreeMap<>();
+        final TreeMap<Long, Path> deltas = new TreeMap<>();
+        list(directory, snapshots, deltas);
+
+        if (snapshots.isEmpty()) {
+            if (!deltas.isEmpty()) {
+                throw new IOException("Checkpoint deltas found without a snapshot in " + directory);
+            }
+            return -1;
+        }
+
+        if (!loader.graph().nodes().isEmpty() || !loader.graph().edges().isEmpty()) {
+            throw new IllegalStateException("Can not recover into a graph which is not empty.");
+        }
+
+        long sequence = snapshots.lastKey();
+        readSnapshot(snapshots.lastEntry().getValue(), loader);
+        for (Long deltaSequence : deltas.tailMap(sequence, false).keySet()) {
+            if (deltaSequence != sequence + 1) {
+                throw new IOException("Checkpoint " + (sequence + 1) + " is missing in " + directory);
+            }
+            readDelta(deltas.get(deltaSequence), loader);
+            sequence = deltaSequence;
+        }
+        return sequence;
+    }
+
+    private static void list(Path directory, TreeMap<Long, Path> snapshots, TreeMap<Long, Path> deltas) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "checkpoint-*")) {
+            for (Path file : files) {
+                final Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    final long sequence = Long.parseLong(matcher.group(1));
+                    ("snapshot".equals(matcher.group(2)) ? snapshots : deltas).put(sequence, file);
+                }
+            }
+        }
+    }
+
+    private static <N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> void readSnapshot(
+            Path file, GraphLoader<N, E> loader) throws IOException {
+
+        try (DataInputStream in = openInput(file)) {
+            final int version = readHeader(in, SNAPSHOT_MAGIC, file, loader);
+            final int nextNodeId = Varints.read(in);
+            final int nextEdgeId = Varints.read(in);
+
+            int nodeId = -1;
+            for (int i = Varints.read(in); i > 0; i--) {
+                nodeId += Varints.read(in) + 1;
+                loader.createNode(nodeId);
+            }
+            readEdges(in, loader, version);
+
+            loader.reserveIdentifiers(nextNodeId, nextEdgeId);
+        }
+    }
+
+    private static <N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> void readDelta(
+            Path file, GraphLoader<N, E> loader) throws IOException {
+
+        try (DataInputStream in = openInput(file)) {
+            final int version = readHeader(in, DELTA_MAGIC, file, loader);
+            final int nextNodeId = Varints.read(in);
+            final int nextEdgeId = Varints.read(in);
+
+            int edgeId = -1;
+            for (int i = Varints.read(in); i > 0; i--) {
+                edgeId += Varints.read(in) + 1;
+                loader.deleteEdge(edgeId);
+            }
+            int nodeId = -1;
+            for (int i = Varints.read(in); i > 0; i--) {
+                nodeId += Varints.read(in) + 1;
+                loader.deleteNode(nodeId);
+            }
+            nodeId = -1;
+            for (int i = Varints.read(in); i > 0; i--) {
+                nodeId += Varints.read(in) + 1;
+                loader.createNode(nodeId);
+            }
+            readEdges(in, loader, version);
+
+            loader.reserveIdentifiers(nextNodeId, nextEdgeId);
+        }
+    }
+
+    private static DataInputStream openInput(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(FileChannel.open(file, READ)), 64 * 1024));
+    }
+
+    private static int readHeader(DataInputStream in, int magic, Path file, GraphLoader<?, ?> loader)
+            throws IOException {
+        final int version;
+        if (in.readInt() != magic || (version = in.readInt()) < 1 || version > VERSION) {
+            throw new IOException("Not a supported graph checkpoint: " + file);
+        }
+        if (version >= 3 && in.readBoolean() != loader.graph().foldsParallelEdges()) {
+            throw new IOException("The checkpoint " + (loader.graph().foldsParallelEdges() ? "does not fold" : "folds")
+                    + " parallel edges, unlike the graph: " + file);
+        }
+        return version;
+    }
+
+    private static <N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> void readEdges(
+            DataInputStream in, GraphLoader<N, E> loader, int version) throws IOException {
+        for (int i = Varints.read(in); i > 0; i--) {
+            final E edge = loader.connect(Varints.read(in), Varints.read(in), Varints.read(in));
+            final int folded = version >= 2 ? Varints.read(in) : 0;
+            if (folded > 0) {
+                if (!loader.graph().foldsParallelEdges()) {
+                    // Older files do not tell whether the graph folded parallel edges
+                    throw new IOException("The checkpoint folds parallel edges, unlike the graph.");
+                }
+                loader.fold(edge.id(), folded);
+            }
+        }
+    }
+
+    /**
+     * Writes a full snapshot of the graph.
+     *
+     * @return the written file
+     * @throws IOException           if the snapshot can not be written
+     * @throws IllegalStateException if called while a transaction is being applied
+     */
+    public Path snapshot() throws IOException {
+        synchronized (graph) {
+            final long next = sequence + 1;
+            final Path file;
+            synchronized (tracking) {
+                checkNotInBatch();
+                file = write(next, "snapshot", out -> {
+                    writeHeader(out, SNAPSHOT_MAGIC);
+
+                    final BitSet nodeIds = new BitSet(nextNodeId);
+                    for (N node : graph.nodes()) nodeIds.set(node.id());
+                    writeIds(out, nodeIds);
+
+                    writeEdges(out, graph.edges());
+                });
+                clearTracking();
+            }
+
+            sequence = next;
+            snapshotRequired = false;
+            deltasSinceSnapshot = 0;
+            deleteObsolete(next);
+            return file;
+        }
+    }
+
+    /**
+     * Writes a delta with the changes made since the previous checkpoint. If there is
+     * no snapshot to apply the delta to yet, writes a snapshot instead.
+     *
+     * @return the written file
+     * @throws IOException           if the delta can not be written
+     * @throws IllegalStateException if called while a transaction is being applied
+     */
+    public Path delta() throws IOException {
+        synchronized (graph) {
+            if (snapshotRequired) {
+                return snapshot();
+            }
+
+            final long next = sequence + 1;
+            final Path file;
+            synchronized (tracking) {
+                checkNotInBatch();
+                file = write(next, "delta", out -> {
+                    writeHeader(out, DELTA_MAGIC);
+
+                    writeIds(out, removedEdges);
+                    writeIds(out, removedNodes);
+
+                    final BitSet nodeIds = new BitSet();
+                    for (N node : addedNodes) nodeIds.set(node.id());
+                    writeIds(out, nodeIds);
+
+                    writeEdges(out, addedEdges);
+                });
+                clearTracking();
+            }
+
+            sequence = next;
+            deltasSinceSnapshot++;
+            return file;
+        }
+    }
+
+    /**
+     * Writes checkpoints periodically on a background thread. Every checkpoint is a
+     * delta, except for every {@code deltasPerSnapshot + 1}-th one, which is a full
+     * snapshot. Replaces a previously set schedule.
+     *
+     * @param period            a period between checkpoints
+     * @param unit              a time unit of the {@code period}
+     * @param deltasPerSnapshot the number of deltas written between two snapshots
+     */
+    public synchronized void schedule(long period, TimeUnit unit, int deltasPerSnapshot) {
+        if (deltasPerSnapshot < 0) {
+            throw new IllegalArgumentException("The number of deltas can not be negative.");
+        }
+
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "graph-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                synchronized (graph) {
+                    if (deltasSinceSnapshot >= deltasPerSnapshot) {
+                        snapshot();
+                    } else {
+                        delta();
+                    }
+                }
+            } catch (IOException e) {
+                synchronized (Checkpointer.this) {
+                    failure = e;
+                }
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Returns a sequence number of the last written or recovered checkpoint.
+     *
+     * @return a sequence number, or {@code -1} if there is no checkpoint yet
+     */
+    public long sequence() {
+        synchronized (graph) {
+            return sequence;
+        }
+    }
+
+    /**
+     * Stops the schedule, if any, and stops tracking changes of the graph. Does not
+     * write a checkpoint.
+     *
+     * @throws IOException if a scheduled checkpoint has failed
+     */
+    @Override
+    public void close() throws IOException {
+        graph.removeListener(this);
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    @Override
+    public void nodeCreated(N node) {
+        synchronized (tracking) {
+            addedNodes.add(node);
+            nextNodeId = Math.max(nextNodeId, node.id() + 1);
+        }
+    }
+
+    @Override
+    public void nodeDeleted(N node) {
+        synchronized (tracking) {
+            if (!addedNodes.remove(node)) {
+                removedNodes.set(node.id());
+            }
+        }
+    }
+
+    @Override
+    public void edgeCreated(E edge) {
+        synchronized (tracking) {
+            addedEdges.add(edge);
+            nextEdgeId = Math.max(nextEdgeId, edge.id() + 1);
+        }
+    }
+
+    @Override
+    public void edgeDeleted(E edge) {
+        synchronized (tracking) {
+            if (!addedEdges.remove(edge)) {
+                removedEdges.set(edge.id());
+            }
+        }
+    }
+
+    @Override
+    public void edgeRelinked(E edge, N oldNode, N newNode) {
+        // A relinked edge is recorded as removed and added again with its new ends
+        synchronized (tracking) {
+            if (addedEdges.add(edge)) {
+                removedEdges.set(edge.id());
+            }
+        }
+    }
+
+    @Override
+    public void edgeFolded(E edge, int count) {
+        // As a relinked edge, with its new multiplicity
+        synchronized (tracking) {
+            if (addedEdges.add(edge)) {
+                removedEdges.set(edge.id());
+            }
+        }
+    }
+
+    @Override
+    public void batchStarted(int changes) {
+        synchronized (tracking) {
+            inBatch = true;
+        }
+    }
+
+    @Override
+    public void batchCompleted() {
+        synchronized (tracking) {
+            inBatch = false;
+        }
+    }
+
+    private void checkNotInBatch() {
+        if (inBatch) {
+            throw new IllegalStateException("A checkpoint can not be written in the middle of a transaction.");
+        }
+    }
+
+    private void clearTracking() {
+        addedNodes.clear();
+        removedNodes.clear();
+        addedEdges.clear();
+        removedEdges.clear();
+    }
+
+    private void writeHeader(DataOutputStream out, int magic) throws IOException {
+        out.writeInt(magic);
+        out.writeInt(VERSION);
+        out.writeBoolean(graph.foldsParallelEdges());
+        Varints.write(out, nextNodeId);
+        Varints.write(out, nextEdgeId);
+    }
+
+    private static void writeIds(DataOutputStream out, BitSet ids) throws IOException {
+        Varints.write(out, ids.cardinality());
+        int previous = -1;
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            Varints.write(out, id - previous - 1);
+            previous = id;
+        }
+    }
+
+    private static <N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> void writeEdges(
+            DataOutputStream out, Collection<E> edges) throws IOException {
+        Varints.write(out, edges.size());
+        for (E edge : edges) {
+            Varints.write(out, edge.id());
+            Varints.write(out, edge.left().id());
+            Varints.write(out, edge.right().id());
+            Varints.write(out, Math.toIntExact(edge.multiplicity() - 1));
+        }
+    }
+
+    private Path write(long sequence, String kind, Content content) throws IOException {
+        final Path file = directory.resolve(String.format("checkpoint-%020d.%s", sequence, kind));
+        final Path temporary = directory.resolve(file.getFileName() + ".tmp");
+
+        Files.deleteIfExists(temporary);
+        try (FileChannel channel = FileChannel.open(temporary, CREATE_NEW, WRITE)) {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+            content.writeTo(out);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, file, ATOMIC_MOVE);
+        return file;
+    }
+
+    private void deleteObsolete(long snapshotSequence) throws IOException {
+        final TreeMap<Long, Path> snapshots = new TreeMap<>();
+        final TreeMap<Long, Path> deltas = new TreeMap<>();
+        list(directory, snapshots, deltas);
+
+        for (Path file : snapshots.headMap(snapshotSequence).values()) Files.deleteIfExists(file);
+        for (Path file : deltas.headMap(snapshotSequence).values()) Files.deleteIfExists(file);
+    }
+
+    private interface Content {
+
+        void writeTo(DataOutputStream out) throws IOException;
+
+    }
+
+}
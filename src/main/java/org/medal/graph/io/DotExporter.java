@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.io;
+
+import org.medal.graph.DirectedGraph;
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Exports a graph in the Graphviz DOT language. A {@link DirectedGraph} is written
+ * as a {@code digraph} with {@code ->} edges, any other graph - as an undirected
+ * {@code graph} with {@code --} edges.
+ *
+ * @author skrymets
+ */
+public class DotExporter<N extends Node<N, E>, E extends Edge<N, E>> extends GraphExporter<N, E> {
+
+    @Override
+    protected void begin(Graph<N, E> graph, Writer out) throws IOException {
+        out.write(graph instanceof DirectedGraph ? "digraph {\n" : "graph {\n");
+    }
+
+    @Override
+    protected void node(Graph<N, E> graph, N node, Writer out) throws IOException {
+        out.write("  ");
+        out.write(Integer.toString(node.id()));
+        attributes(node, nodeAttributes, out);
+        out.write(";\n");
+    }
+
+    @Override
+    protected void edge(Graph<N, E> graph, E edge, Writer out) throws IOException {
+        out.write("  ");
+        out.write(Integer.toString(edge.left().id()));
+        out.write(graph instanceof DirectedGraph ? " -> " : " -- ");
+        out.write(Integer.toString(edge.right().id()));
+        attributes(edge, edgeAttributes, out);
+        out.write(";\n");
+    }
+
+    @Override
+    protected void end(Graph<N, E> graph, Writer out) throws IOException {
+        out.write("}\n");
+    }
+
+    private static <T> void attributes(T element, Map<String, Function<? super T, ?>> attributes, Writer out)
+            throws IOException {
+
+        boolean first = true;
+        for (Map.Entry<String, Function<? super T, ?>> attribute : attributes.entrySet()) {
+            final Object value = attribute.getValue().apply(element);
+            if (value == null) {
+                continue;
+            }
+
+            out.write(first ? " [" : ", ");
+            quoted(attribute.getKey(), out);
+            out.write('=');
+            quoted(value.toString(), out);
+            first = false;
+        }
+        if (!first) {
+            out.write(']');
+        }
+    }
+
+    private static void quoted(String text, Writer out) throws IOException {
+        out.write('"');
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.io;
+
+/**
+ * Defines when mutation log records reach a storage device, trading durability of
+ * recent mutations for the latency of mutating operations.
+ *
+ * @author skrymets
+ */
+public enum Durability {
+
+    /**
+     * Records are collected into groups and handed over to the operating system,
+     * but are never forced to the storage device, except when the log is
+     * closed. The fastest mode: a process crash loses nothing that has been
+     * handed over, while a power loss may lose whatever the OS has not written yet.
+     */
+    ASYNC,
+
+    /**
+     * Records are collected into groups, and every group is forced to the storage
+     * device with a single {@code fsync}. A group is committed when it reaches its
+     * size limit or its time limit, whichever comes first, so at most one group
+     * of mutations may be lost.
+     */
+    GROUP,
+
+    /**
+     * Every record is forced to the storage device before the mutating operation
+     * returns. Nothing that has been applied to the graph can be lost.
+     */
+    SYNC
+
+}
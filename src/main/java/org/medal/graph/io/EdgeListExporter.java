@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.io;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.Function;
+
+/**
+ * Exports a graph as a list of edges: one line per edge with identifiers of its
+ * left and right nodes, followed by the values of edge attributes, separated by
+ * tabs. A missing attribute value is written as an empty column. The first line
+ * is a comment with the column names.
+ * <p>
+ * Names and values are escaped so that every edge stays on one line and in its
+ * columns: a backslash, a tab, a line feed and a carriage return are written as
+ * {@code \\}, {@code \t}, {@code \n} and {@code \r}.
+ * <p>
+ * The format has no notion of a standalone node, so isolated nodes and node
+ * attributes are not exported.
+ *
+ * @author skrymets
+ */
+public class EdgeListExporter<N extends Node<N, E>, E extends Edge<N, E>> extends GraphExporter<N, E> {
+
+    @Override
+    protected boolean writesNodes() {
+        return false;
+    }
+
+    @Override
+    protected void begin(Graph<N, E> graph, Writer out) throws IOException {
+        out.write("# left\tright");
+        for (String name : edgeAttributes.keySet()) {
+            out.write('\t');
+            escaped(name, out);
+        }
+        out.write('\n');
+    }
+
+    @Override
+    protected void node(Graph<N, E> graph, N node, Writer out) {
+    }
+
+    @Override
+    protected void edge(Graph<N, E> graph, E edge, Writer out) throws IOException {
+        out.write(Integer.toString(edge.left().id()));
+        out.write('\t');
+        out.write(Integer.toString(edge.right().id()));
+        for (Function<? super E, ?> attribute : edgeAttributes.values()) {
+            out.write('\t');
+            final Object value = attribute.apply(edge);
+            if (value != null) {
+                escaped(value.toString(), out);
+            }
+        }
+        out.write('\n');
+    }
+
+    @Override
+    protected void end(Graph<N, E> graph, Writer out) {
+    }
+
+    private static void escaped(String text, Writer out) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            switch (c) {
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                default:
+                    out.write(c);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.io;
+
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A base of the streaming graph exporters. An exporter walks {@link Graph#nodes()}
+ * and {@link Graph#edges()} once and writes every node and edge as soon as it is
+ * visited, so the memory it takes does not depend on the size of the graph.
+ * Nodes and edges are identified by their {@code id()}.
+ * <p>
+ * Attributes are optional: each one is a name and a function which extracts its
+ * value from a node or an edge. A {@code null} value is not written.
+ *
+ * @author skrymets
+ */
+public abstract class GraphExporter<N extends Node<N, E>, E extends Edge<N, E>> {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    protected final Map<String, Function<? super N, ?>> nodeAttributes = new LinkedHashMap<>();
+
+    protected final Map<String, Function<? super E, ?>> edgeAttributes = new LinkedHashMap<>();
+
+    /**
+     * Adds a node attribute to the output.
+     *
+     * @param name  a name of the attribute
+     * @param value a function which returns the attribute's value for a node
+     * @return this exporter
+     */
+    public GraphExporter<N, E> withNodeAttribute(String name, Function<? super N, ?> value) {
+        nodeAttributes.put(requireNonNull(name), requireNonNull(value));
+        return this;
+    }
+
+    /**
+     * Adds an edge attribute to the output.
+     *
+     * @param name  a name of the attribute
+     * @param value a function which returns the attribute's value for an edge
+     * @return this exporter
+     */
+    public GraphExporter<N, E> withEdgeAttribute(String name, Function<? super E, ?> value) {
+        edgeAttributes.put(requireNonNull(name), requireNonNull(value));
+        return this;
+    }
+
+    /**
+     * Exports the {@code graph} into a file through a buffered file channel. The
+     * output is compressed with gzip if the file name ends with {@code .gz}.
+     *
+     * @param graph a graph to be exported
+     * @param file  a file to be written; replaced if it exists
+     * @throws IOException if the file can not be written
+     */
+    public void export(Graph<N, E> graph, Path file) throws IOException {
+        final boolean gzip = file.getFileName().toString().endsWith(".gz");
+        try (OutputStream out = Channels.newOutputStream(FileChannel.open(file, CREATE, TRUNCATE_EXISTING, WRITE))) {
+            export(graph, out, gzip);
+        }
+    }
+
+    /**
+     * Exports the {@code graph} into a stream, encoded as UTF-8. The stream is
+     * flushed, but not closed.
+     *
+     * @param graph a graph to be exported
+     * @param out   a stream to write to
+     * @param gzip  whether the output must be compressed with gzip
+     * @throws IOException if the stream can not be written
+     */
+    public void export(Graph<N, E> graph, OutputStream out, boolean gzip) throws IOException {
+        if (gzip) {
+            final GZIPOutputStream compressed = new GZIPOutputStream(new NonClosingOutputStream(out), BUFFER_SIZE);
+            final Writer writer = new OutputStreamWriter(compressed, UTF_8);
+            export(graph, writer);
+            writer.close();
+        } else {
+            final Writer writer = new OutputStreamWriter(new NonClosingOutputStream(out), UTF_8);
+            export(graph, writer);
+            writer.flush();
+        }
+        out.flush();
+    }
+
+    /**
+     * Exports the {@code graph} into a writer. The writer is flushed, but not closed.
+     *
+     * @param graph  a graph to be exported
+     * @param writer a writer to write to
+     * @throws IOException if the writer fails
+     */
+    public void export(Graph<N, E> graph, Writer writer) throws IOException {
+        requireNonNull(graph);
+        final Writer out = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer, BUFFER_SIZE);
+
+        begin(graph, out);
+        if (writesNodes()) {
+            for (N node : graph.nodes()) node(graph, node, out);
+        }
+        for (E edge : graph.edges()) edge(graph, edge, out);
+        end(graph, out);
+
+        out.flush();
+    }
+
+    /**
+     * Tells whether nodes are written separately from edges. An exporter which
+     * format has no notion of a standalone node returns {@code false}.
+     *
+     * @return {@code true} if {@link #node(Graph, Node, Writer)} must be called for every node
+     */
+    protected boolean writesNodes() {
+        return true;
+    }
+
+    protected abstract void begin(Graph<N, E> graph, Writer out) throws IOException;
+
+    protected abstract void node(Graph<N, E> graph, N node, Writer out) throws IOException;
+
+    protected abstract void edge(Graph<N, E> graph, E edge, Writer out) throws IOException;
+
+    protected abstract void end(Graph<N, E> graph, Writer out) throws IOException;
+
+    /**
+     * Keeps the caller's stream open when the exporter closes its own wrappers.
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+
+    }
+
+}
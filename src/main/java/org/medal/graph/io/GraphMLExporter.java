@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.io;
+
+import org.medal.graph.DirectedGraph;
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Exports a graph in the GraphML format. Every attribute is declared as a
+ * {@code string} key of the document, named after the attribute.
+ *
+ * @author skrymets
+ */
+public class GraphMLExporter<N extends Node<N, E>, E extends Edge<N, E>> extends GraphExporter<N, E> {
+
+    @Override
+    protected void begin(Graph<N, E> graph, Writer out) throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n");
+        keys("node", "n", nodeAttributes, out);
+        keys("edge", "e", edgeAttributes, out);
+        out.write("  <graph edgedefault=\"");
+        out.write(graph instanceof DirectedGraph ? "directed" : "undirected");
+        out.write("\">\n");
+    }
+
+    @Override
+    protected void node(Graph<N, E> graph, N node, Writer out) throws IOException {
+        out.write("    <node id=\"n");
+        out.write(Integer.toString(node.id()));
+        out.write('"');
+        out.write(data(node, "n", nodeAttributes, out) ? "    </node>\n" : "/>\n");
+    }
+
+    @Override
+    protected void edge(Graph<N, E> graph, E edge, Writer out) throws IOException {
+        out.write("    <edge id=\"e");
+        out.write(Integer.toString(edge.id()));
+        out.write("\" source=\"n");
+        out.write(Integer.toString(edge.left().id()));
+        out.write("\" target=\"n");
+        out.write(Integer.toString(edge.right().id()));
+        out.write('"');
+        out.write(data(edge, "e", edgeAttributes, out) ? "    </edge>\n" : "/>\n");
+    }
+
+    @Override
+    protected void end(Graph<N, E> graph, Writer out) throws IOException {
+        out.write("  </graph>\n");
+        out.write("</graphml>\n");
+    }
+
+    private static void keys(String domain, String prefix, Map<String, ?> attributes, Writer out) throws IOException {
+        int index = 0;
+        for (String name : attributes.keySet()) {
+            out.write("  <key id=\"");
+            out.write(prefix);
+            out.write('k');
+            out.write(Integer.toString(index++));
+            out.write("\" for=\"");
+            out.write(domain);
+            out.write("\" attr.name=\"");
+            escaped(name, out);
+            out.write("\" attr.type=\"string\"/>\n");
+        }
+    }
+
+    /**
+     * Writes the data elements of an element, closing its start tag before the first
+     * one. Returns {@code false} if nothing was written, so the caller can write the
+     * element as an empty one.
+     */
+    private static <T> boolean data(T element, String prefix, Map<String, Function<? super T, ?>> attributes, Writer out)
+            throws IOException {
+
+        boolean empty = true;
+        int index = 0;
+        for (Function<? super T, ?> attribute : attributes.values()) {
+            final Object value = attribute.apply(element);
+            final int key = index++;
+            if (value == null) {
+                continue;
+            }
+
+            if (empty) {
+                out.write(">\n");
+                empty = false;
+            }
+            out.write("      <data key=\"");
+            out.write(prefix);
+            out.write('k');
+            out.write(Integer.toString(key));
+            out.write("\">");
+            escaped(value.toString(), out);
+            out.write("</data>\n");
+        }
+        return !empty;
+    }
+
+    private static void escaped(String text, Writer out) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    out.write("&lt;");
+                    break;
+                case '>':
+                    out.write("&gt;");
+                    break;
+                case '&':
+                    out.write("&amp;");
+                    break;
+                case '"':
+                    out.write("&quot;");
+                    break;
+                default:
+                    out.write(c);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,596 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.io;
+
+import org.medal.graph.GraphListener;
+import org.medal.graph.impl.AbstractEdge;
+import org.medal.graph.impl.AbstractGraph;
+import org.medal.graph.impl.AbstractNode;
+import org.medal.graph.impl.GraphLoader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.zip.CRC32C;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * An append-only log of structural changes of a graph. The log listens to the
+ * graph and records every change as a compact binary record, so the graph can be
+ * rebuilt after a restart by replaying the log. Public operations such as
+ * {@code collapse()} or {@code insertMiddleNode()} are recorded as the primitive
+ * changes they consist of, see {@link GraphListener}.
+ * <p>
+ * This is a post-mutation log, not a write-ahead one: listeners are notified after
+ * a change has been applied, so a change is recorded only once it is already
+ * visible in the graph, and a crash may lose the last changes made before it.
+ * Failing to write a record does not fail the change itself either. Instead, the
+ * log is marked as failed, drops every following record, and reports the
+ * {@link #failure() failure} from {@link #sync()} and {@link #close()}, so a lost
+ * record can not pass unnoticed.
+ * <p>
+ * Records are buffered and committed in groups: a whole group is written with one
+ * call and, depending on {@link Durability}, forced to the storage device with one
+ * {@code fsync}. A group is committed when it reaches {@code groupSize} records,
+ * or when {@code maxDelayMillis} pass since the last commit, whichever comes first.
+ * <p>
+ * Every record is a one-byte operation code followed by fixed-size identifiers of
+ * the nodes and edges involved, and by a CRC-32C checksum of both. If the process
+ * dies in the middle of a write, the log ends with records which are incomplete or
+ * fail their checksum; such a torn tail is ignored on replay and cut off when the
+ * log is reopened. A damaged record which is followed by intact ones is not a
+ * torn tail but a corruption, and fails the replay rather than losing the records
+ * committed after it.
+ * <p>
+ * The changes of a {@link org.medal.graph.Graph#transaction transaction} are
+ * enclosed in batch begin and end records, and are replayed only as a whole: a batch
+ * without its end record, left by a crash in the middle of a commit, is discarded
+ * and cut off with the torn tail.
+ *
+ * @author skrymets
+ */
+public final class MutationLog<N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>>
+        implements GraphListener<N, E>, Closeable {
+
+    public static final int DEFAULT_GROUP_SIZE = 1024;
+
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 10;
+
+    static final int MAGIC = 0x4D474A31;
+
+    static final int VERSION = 2;
+
+    static final int HEADER_SIZE = 8;
+
+    static final int CHECKSUM_SIZE = Integer.BYTES;
+
+    private static final int MAX_RECORD_SIZE = 1 + 3 * Integer.BYTES;
+
+    static final byte CREATE_NODE = 1;
+
+    static final byte DELETE_NODE = 2;
+
+    static final byte CONNECT = 3;
+
+    static final byte DELETE_EDGE = 4;
+
+    static final byte RELINK = 5;
+
+    static final byte FOLD = 6;
+
+    static final byte BATCH_BEGIN = 7;
+
+    static final byte BATCH_END = 8;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final AbstractGraph<N, E> graph;
+
+    final FileChannel channel;
+
+    private final Durability durability;
+
+    private final int groupSize;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private final ByteBuffer record = ByteBuffer.allocate(MAX_RECORD_SIZE);
+
+    private final CRC32C checksum = new CRC32C();
+
+    private final ScheduledExecutorService flusher;
+
+    private int pending;
+
+    private boolean closed;
+
+    private IOException failure;
+
+    private MutationLog(AbstractGraph<N, E> graph, FileChannel channel, Durability durability,
+                            int groupSize, long maxDelayMillis) {
+        this.graph = graph;
+        this.channel = channel;
+        this.durability = durability;
+        this.groupSize = groupSize;
+
+        if (durability != Durability.SYNC && maxDelayMillis > 0) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "graph-log-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flusher.scheduleWithFixedDelay(this::commitPending, maxDelayMillis, maxDelayMillis, MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * Opens a log with the default group size and delay.
+     *
+     * @see #open(AbstractGraph, Path, Durability, int, long)
+     */
+    public static <N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> MutationLog<N, E> open(
+            AbstractGraph<N, E> graph, Path file, Durability durability) throws IOException {
+        return open(graph, file, durability, DEFAULT_GROUP_SIZE, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * Opens a log file and starts recording changes of the {@code graph}. If the
+     * file already contains records, they are replayed into the graph first, so the
+     * graph is expected to be in the state the log was started at - normally,
+     * empty.
+     *
+     * @param graph          a graph which changes are to be logged
+     * @param file           a log file; created if it does not exist
+     * @param durability     when records are forced to the storage device
+     * @param groupSize      the maximum number of records committed at once
+     * @param maxDelayMillis the maximum time a record may wait for its group to be
+     *                       committed; zero or less disables time based commits
+     * @return an open log, registered as a listener of the graph
+     * @throws IOException if the file can not be read or written, is not a mutation log,
+     *                     or is corrupt
+     */
+    public static <N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> MutationLog<N, E> open(
+            AbstractGraph<N, E> graph, Path file, Durability durability, int groupSize, long maxDelayMillis)
+            throws IOException {
+
+        requireNonNull(graph);
+        requireNonNull(durability);
+        if (groupSize < 1) {
+            throw new IllegalArgumentException("Group size must be positive.");
+        }
+
+        final FileChannel channel = FileChannel.open(file, CREATE, READ, WRITE);
+        try {
+            final long end;
+            if (channel.size() == 0) {
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                while (header.hasRemaining()) channel.write(header, header.position());
+                end = HEADER_SIZE;
+            } else {
+                end = replay(channel, new GraphLoader<>(graph)).end;
+            }
+
+            channel.truncate(end);
+            channel.position(end);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        final MutationLog<N, E> log = new MutationLog<>(graph, channel, durability, groupSize, maxDelayMillis);
+        graph.addListener(log);
+        return log;
+    }
+
+    /**
+     * Replays a log file into the {@code graph} without recording anything.
+     *
+     * @param file  a log file
+     * @param graph a graph in the state the log was started at
+     * @return the number of records applied
+     * @throws IOException if the file can not be read, is not a mutation log, or is corrupt
+     */
+    public static <N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> long replay(
+            Path file, AbstractGraph<N, E> graph) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            return replay(channel, new GraphLoader<>(graph)).records;
+        }
+    }
+
+    static <N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> Replay replay(
+            FileChannel channel, GraphLoader<N, E> loader) throws IOException {
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) ;
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+            throw new IOException("Not a mutation log.");
+        }
+        if (header.getInt() != VERSION) {
+            throw new IOException("Unsupported mutation log version.");
+        }
+
+        final Replay replay = new Replay();
+        replay.end = HEADER_SIZE;
+
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        final CRC32C checksum = new CRC32C();
+        // Records of an open batch, applied when its end record is read
+        ByteBuffer batch = null;
+        long batchRecords = 0;
+        long offset = HEADER_SIZE;
+        long readPosition = HEADER_SIZE;
+        int read;
+        do {
+            read = channel.read(buffer, readPosition);
+            if (read > 0) {
+                readPosition += read;
+            }
+
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                final byte operation = buffer.get(buffer.position());
+                final int size = recordSize(operation);
+                if (size > 0 && buffer.remaining() < size + CHECKSUM_SIZE) {
+                    // Incomplete: more is to be read, or the log ends with a torn record
+                    break;
+                }
+                if (size < 0 || !intact(buffer, size, checksum)) {
+                    if (containsRecord(channel, offset + 1)) {
+                        throw new IOException("The mutation log is corrupt at offset " + offset + ".");
+                    }
+                    // Nothing intact follows: the log ends with a torn tail
+                    return replay;
+                }
+
+                final int next = buffer.position() + size + CHECKSUM_SIZE;
+                if (operation == BATCH_BEGIN) {
+                    if (batch != null) {
+                        throw new IOException("The mutation log has a nested batch at offset " + offset + ".");
+                    }
+                    batch = ByteBuffer.allocate(BUFFER_SIZE);
+                    batchRecords = 0;
+                } else if (operation == BATCH_END) {
+                    if (batch == null) {
+                        throw new IOException("The mutation log ends a batch it has not begun at offset " + offset + ".");
+                    }
+                    batch.flip();
+                    while (batch.hasRemaining()) apply(batch, loader);
+                    replay.records += batchRecords;
+                    batch = null;
+                } else if (batch != null) {
+                    if (batch.remaining() < size) {
+                        final ByteBuffer grown = ByteBuffer.allocate(2 * batch.capacity());
+                        batch.flip();
+                        batch = grown.put(batch);
+                    }
+                    batch.put(buffer.array(), buffer.arrayOffset() + buffer.position(), size);
+                    batchRecords++;
+                } else {
+                    apply(buffer, loader);
+                    replay.records++;
+                }
+
+                buffer.position(next);
+                offset += size + CHECKSUM_SIZE;
+                if (batch == null) {
+                    replay.end = offset;
+                }
+            }
+            buffer.compact();
+        } while (read > 0);
+
+        // An unterminated batch is discarded, and cut off along with the tail
+        return replay;
+    }
+
+    /**
+     * Checks the checksum of the record the {@code buffer} is positioned at,
+     * without moving the position.
+     */
+    private static boolean intact(ByteBuffer buffer, int size, CRC32C checksum) {
+        checksum.reset();
+        checksum.update(buffer.array(), buffer.arrayOffset() + buffer.position(), size);
+        return buffer.getInt(buffer.position() + size) == (int) checksum.getValue();
+    }
+
+    /**
+     * Looks for an intact record at any offset from {@code from} to the end of the
+     * file. Used to tell a torn tail, which is only followed by garbage, from a
+     * damaged record in the middle of the log.
+     */
+    private static boolean containsRecord(FileChannel channel, long from) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        final CRC32C checksum = new CRC32C();
+        long readPosition = from;
+        int read;
+        do {
+            read = channel.read(buffer, readPosition);
+            if (read > 0) {
+                readPosition += read;
+            }
+
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                final int size = recordSize(buffer.get(buffer.position()));
+                if (size > 0 && buffer.remaining() < size + CHECKSUM_SIZE) {
+                    if (read > 0) {
+                        break;
+                    }
+                } else if (size > 0 && intact(buffer, size, checksum)) {
+                    return true;
+                }
+                buffer.position(buffer.position() + 1);
+            }
+            buffer.compact();
+        } while (read > 0);
+
+        return false;
+    }
+
+    private static int recordSize(byte operation) {
+        switch (operation) {
+            case CREATE_NODE:
+            case DELETE_NODE:
+            case DELETE_EDGE:
+                return 1 + Integer.BYTES;
+            case FOLD:
+                return 1 + 2 * Integer.BYTES;
+            case BATCH_END:
+                return 1;
+            case BATCH_BEGIN:
+                return 1 + Integer.BYTES;
+            case CONNECT:
+            case RELINK:
+                return 1 + 3 * Integer.BYTES;
+            default:
+                return -1;
+        }
+    }
+
+    private static <N extends AbstractNode<N, E>, E extends AbstractEdge<N, E>> void apply(
+            ByteBuffer record, GraphLoader<N, E> loader) {
+
+        switch (record.get()) {
+            case CREATE_NODE:
+                loader.createNode(record.getInt());
+                break;
+            case DELETE_NODE:
+                loader.deleteNode(record.getInt());
+                break;
+            case CONNECT:
+                loader.connect(record.getInt(), record.getInt(), record.getInt());
+                break;
+            case DELETE_EDGE:
+                loader.deleteEdge(record.getInt());
+                break;
+            case RELINK:
+                loader.relink(record.getInt(), record.getInt(), record.getInt());
+                break;
+            case FOLD:
+                loader.fold(record.getInt(), record.getInt());
+                break;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    @Override
+    public void nodeCreated(N node) {
+        record(CREATE_NODE, node.id());
+    }
+
+    @Override
+    public void nodeDeleted(N node) {
+        record(DELETE_NODE, node.id());
+    }
+
+    @Override
+    public void edgeCreated(E edge) {
+        record(CONNECT, edge.id(), edge.left().id(), edge.right().id());
+    }
+
+    @Override
+    public void edgeDeleted(E edge) {
+        record(DELETE_EDGE, edge.id());
+    }
+
+    @Override
+    public void edgeRelinked(E edge, N oldNode, N newNode) {
+        record(RELINK, edge.id(), oldNode.id(), newNode.id());
+    }
+
+    @Override
+    public void edgeFolded(E edge, int count) {
+        record(FOLD, edge.id(), count);
+    }
+
+    @Override
+    public void batchStarted(int changes) {
+        record(BATCH_BEGIN, changes);
+    }
+
+    @Override
+    public void batchCompleted() {
+        record(BATCH_END);
+    }
+
+    private synchronized void record(byte operation) {
+        record.clear();
+        record.put(operation);
+        append();
+    }
+
+    private synchronized void record(byte operation, int id) {
+        record.clear();
+        record.put(operation).putInt(id);
+        append();
+    }
+
+    private synchronized void record(byte operation, int id, int value) {
+        record.clear();
+        record.put(operation).putInt(id).putInt(value);
+        append();
+    }
+
+    private synchronized void record(byte operation, int id, int first, int second) {
+        record.clear();
+        record.put(operation).putInt(id).putInt(first).putInt(second);
+        append();
+    }
+
+    /**
+     * Appends the prepared record and its checksum to the current group, or drops
+     * it if the log has already failed.
+     */
+    private void append() {
+        if (closed) {
+            throw new IllegalStateException("The log is closed.");
+        }
+        if (failure != null) {
+            return;
+        }
+
+        final int size = record.position();
+        try {
+            if (buffer.remaining() < size + CHECKSUM_SIZE) {
+                write();
+            }
+            checksum.reset();
+            checksum.update(record.array(), 0, size);
+            buffer.put(record.array(), 0, size).putInt((int) checksum.getValue());
+
+            if (++pending >= groupSize || durability == Durability.SYNC) {
+                commit(durability != Durability.ASYNC);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void write() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void commit(boolean force) throws IOException {
+        write();
+        if (force) {
+            channel.force(false);
+        }
+        pending = 0;
+    }
+
+    private synchronized void commitPending() {
+        if (closed || pending == 0 || failure != null) {
+            return;
+        }
+
+        try {
+            commit(durability != Durability.ASYNC);
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Returns the error which has failed the log, if any. Once failed, the log drops
+     * every following record, and the file holds the history of the graph only up
+     * to the first lost record.
+     *
+     * @return the first write error, or {@code null} if the log has not failed
+     */
+    public synchronized IOException failure() {
+        return failure;
+    }
+
+    /**
+     * Commits the current group right away and forces it to the storage device,
+     * regardless of the durability mode.
+     *
+     * @throws IOException if the group can not be written, or if the log has
+     *                     already failed and records have been lost
+     */
+    public synchronized void sync() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The log is closed.");
+        }
+        checkFailure();
+        try {
+            commit(true);
+        } catch (IOException e) {
+            failure = e;
+            throw e;
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("The mutation log has failed, and records have been lost.", failure);
+        }
+    }
+
+    /**
+     * Stops recording, commits and forces the pending records, and closes the file.
+     *
+     * @throws IOException if the pending records can not be written, or if the log
+     *                     has already failed and records have been lost
+     */
+    @Override
+    public void close() throws IOException {
+        graph.removeListener(this);
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            try {
+                checkFailure();
+                commit(true);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    static final class Replay {
+
+        long end;
+
+        long records;
+
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.medal.graph.impl.DirectedEdgeImpl;
+import org.medal.graph.impl.DirectedGraphImpl;
+import org.medal.graph.impl.GraphCopy;
+import org.medal.graph.impl.DirectedNodeImpl;
+
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class DirectedGraphTest {
+
+    protected DirectedGraphImpl graph;
+
+    @Before
+    public void prepareData() {
+        graph = new DirectedGraphImpl();
+    }
+
+    @Test
+    public void testInAndOutEdges() {
+        final DirectedNodeImpl node1 = graph.createNode();
+        final DirectedNodeImpl node2 = graph.createNode();
+        final DirectedNodeImpl node3 = graph.createNode();
+
+        //
+        // [node1] --> [node2] --> [node3]
+        //    \______________________^
+        //
+        final DirectedEdgeImpl edge1to2 = node1.connect(node2);
+        final DirectedEdgeImpl edge2to3 = node2.connect(node3);
+        final DirectedEdgeImpl edge1to3 = node1.connect(node3);
+
+        assertEquals(2, node1.outDegree());
+        assertEquals(0, node1.inDegree());
+        assertTrue(node1.outEdges().contains(edge1to2) && node1.outEdges().contains(edge1to3));
+
+        assertEquals(1, node2.outDegree());
+        assertEquals(1, node2.inDegree());
+        assertSame(edge2to3, node2.outEdges().iterator().next());
+        assertSame(edge1to2, node2.inEdges().iterator().next());
+
+        assertEquals(0, node3.outDegree());
+        assertEquals(2, node3.inDegree());
+        assertEquals(2, node3.degree());
+
+        final Set<DirectedNodeImpl> successors = node1.successors();
+        assertEquals(2, successors.size());
+        assertTrue(successors.contains(node2) && successors.contains(node3));
+
+        final Set<DirectedNodeImpl> predecessors = node3.predecessors();
+        assertEquals(2, predecessors.size());
+        assertTrue(predecessors.contains(node1) && predecessors.contains(node2));
+    }
+
+    @Test
+    public void testLoopIsBothInAndOut() {
+        final DirectedNodeImpl node1 = graph.createNode();
+        final DirectedEdgeImpl edge1to1 = node1.connect(node1);
+
+        assertEquals(1, node1.inDegree());
+        assertEquals(1, node1.outDegree());
+        assertEquals(2, node1.degree());
+        assertEquals(1, node1.incidentEdges().size());
+        assertTrue(node1.incidentEdges().contains(edge1to1));
+        assertTrue(node1.successors().contains(node1));
+    }
+
+    @Test
+    public void testAdjacencyFollowsDeletion() {
+        final DirectedNodeImpl node1 = graph.createNode();
+        final DirectedNodeImpl node2 = graph.createNode();
+        final DirectedNodeImpl node3 = graph.createNode();
+
+        final DirectedEdgeImpl edge1to2 = node1.connect(node2);
+        node2.connect(node3);
+        node3.connect(node1);
+
+        graph.deleteEdge(edge1to2);
+        assertEquals(0, node1.outDegree());
+        assertEquals(0, node2.inDegree());
+        assertFalse(node1.isAdjacent(node2));
+        assertTrue(node1.isAdjacent(node3));
+
+        graph.deleteNode(node3);
+        assertEquals(0, node1.inDegree());
+        assertEquals(0, node2.outDegree());
+        assertTrue(node1.isIsolated());
+        assertTrue(node2.isIsolated());
+        assertTrue(graph.edges().isEmpty());
+    }
+
+    @Test
+    public void testAdjacencyFollowsCollapse() {
+        final DirectedNodeImpl node1 = graph.createNode();
+        final DirectedNodeImpl node2 = graph.createNode();
+        final DirectedNodeImpl node3 = graph.createNode();
+        final DirectedNodeImpl node4 = graph.createNode();
+
+        final DirectedEdgeImpl edge1to2 = node1.connect(node2);
+        final DirectedEdgeImpl edge2to3 = node2.connect(node3);
+        final DirectedEdgeImpl edge3to4 = node3.connect(node4);
+
+        final DirectedNodeImpl collapsedNode = edge2to3.collapse();
+
+        assertSame(collapsedNode, edge1to2.right());
+        assertSame(collapsedNode, edge3to4.left());
+
+        assertTrue(node1.successors().contains(collapsedNode));
+        assertTrue(node4.predecessors().contains(collapsedNode));
+        assertEquals(1, collapsedNode.inDegree());
+        assertEquals(1, collapsedNode.outDegree());
+        assertTrue(collapsedNode.inEdges().contains(edge1to2));
+        assertTrue(collapsedNode.outEdges().contains(edge3to4));
+    }
+
+    @Test
+    public void testAdjacencyFollowsSplit() {
+        final DirectedNodeImpl node1 = graph.createNode();
+        final DirectedNodeImpl node2 = graph.createNode();
+        final DirectedEdgeImpl edge1to2 = node1.connect(node2);
+
+        final Edge.Split<DirectedNodeImpl, DirectedEdgeImpl> split = edge1to2.insertMiddleNode();
+        final DirectedNodeImpl middle = split.leftEdge().right();
+
+        assertFalse(node1.outEdges().contains(edge1to2));
+        assertFalse(node2.inEdges().contains(edge1to2));
+        assertTrue(node1.successors().contains(middle));
+        assertTrue(node2.predecessors().contains(middle));
+        assertEquals(1, middle.inDegree());
+        assertEquals(1, middle.outDegree());
+    }
+
+    @Test
+    public void testCopyKeepsDirection() {
+        final DirectedNodeImpl node1 = graph.createNode();
+        final DirectedNodeImpl node2 = graph.createNode();
+        node1.connect(node2);
+
+        final GraphCopy<DirectedNodeImpl, DirectedEdgeImpl> copy = graph.copy();
+        final DirectedNodeImpl copy1 = copy.node(node1);
+        final DirectedNodeImpl copy2 = copy.node(node2);
+
+        assertTrue(copy.graph() instanceof DirectedGraphImpl);
+        assertEquals(1, copy1.outDegree());
+        assertEquals(0, copy1.inDegree());
+        assertTrue(copy1.successors().contains(copy2));
+        assertTrue(copy2.predecessors().contains(copy1));
+    }
+
+}
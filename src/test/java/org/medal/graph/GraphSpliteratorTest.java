@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph;
+
+import org.junit.Test;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class GraphSpliteratorTest {
+
+    private static GraphImpl ring(int size, List<NodeImpl> nodes) {
+        final GraphImpl graph = new GraphImpl();
+        for (int i = 0; i < size; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < size; i++) nodes.get(i).connect(nodes.get((i + 1) % size));
+        return graph;
+    }
+
+    @Test
+    public void testSpliteratorIsSizedAndSplitsExactly() {
+        final GraphImpl graph = ring(10_000, new ArrayList<>());
+
+        final Spliterator<NodeImpl> spliterator = graph.nodes().spliterator();
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SUBSIZED));
+        assertTrue(spliterator.hasCharacteristics(Spliterator.DISTINCT));
+        assertEquals(10_000, spliterator.getExactSizeIfKnown());
+
+        final Spliterator<NodeImpl> prefix = spliterator.trySplit();
+        assertNotNull(prefix);
+        assertEquals(5_000, prefix.getExactSizeIfKnown());
+        assertEquals(5_000, spliterator.getExactSizeIfKnown());
+
+        final Set<NodeImpl> seen = new HashSet<>();
+        prefix.forEachRemaining(seen::add);
+        spliterator.forEachRemaining(seen::add);
+        assertEquals(graph.nodes(), seen);
+    }
+
+    @Test
+    public void testParallelStreams() {
+        final GraphImpl graph = ring(20_000, new ArrayList<>());
+
+        assertEquals(20_000, graph.nodes().parallelStream().count());
+        final long expected = graph.edges().stream().mapToLong(EdgeImpl::id).sum();
+        assertEquals(expected, graph.edges().parallelStream().mapToLong(EdgeImpl::id).sum());
+    }
+
+    @Test
+    public void testParallelForEach() throws Exception {
+        final GraphImpl graph = ring(5_000, new ArrayList<>());
+        final ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            final Set<NodeImpl> nodes = ConcurrentHashMap.newKeySet();
+            graph.parallelForEachNode(pool, nodes::add);
+            assertEquals(graph.nodes(), nodes);
+
+            final AtomicLong edges = new AtomicLong();
+            graph.parallelForEachEdge(pool, edge -> edges.incrementAndGet());
+            assertEquals(5_000, edges.get());
+        } finally {
+            pool.shutdown();
+        }
+
+        final AtomicLong common = new AtomicLong();
+        graph.parallelForEachNode(node -> common.incrementAndGet());
+        assertEquals(5_000, common.get());
+    }
+
+    @Test
+    public void testRemovalKeepsStoreConsistent() {
+        final List<NodeImpl> nodes = new ArrayList<>();
+        final GraphImpl graph = ring(100, nodes);
+
+        for (int i = 0; i < 100; i += 2) {
+            assertTrue(graph.deleteNode(nodes.get(i)));
+        }
+        assertEquals(50, graph.nodes().size());
+        assertEquals(0, graph.edges().size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i % 2 == 1, graph.nodes().contains(nodes.get(i)));
+        }
+        assertFalse(graph.nodes().contains("not a node"));
+        assertEquals(50, graph.nodes().spliterator().getExactSizeIfKnown());
+    }
+
+    @Test
+    public void testStoreIteratorRemovesElements() {
+        final class StoreGraph extends GraphImpl {
+            Set<NodeImpl> nodeStore() {
+                return nodes;
+            }
+        }
+        final StoreGraph graph = new StoreGraph();
+        final List<NodeImpl> created = new ArrayList<>();
+        for (int i = 0; i < 100; i++) created.add(graph.createNode());
+
+        // Every removal moves the last element into the freed slot, which must still be visited
+        final Iterator<NodeImpl> iterator = graph.nodeStore().iterator();
+        int visited = 0;
+        while (iterator.hasNext()) {
+            final NodeImpl node = iterator.next();
+            visited++;
+            if (node.id() % 2 == 0) {
+                iterator.remove();
+            }
+        }
+        assertEquals(100, visited);
+        assertEquals(50, graph.nodeStore().size());
+        for (NodeImpl node : created) {
+            assertEquals(node.id() % 2 != 0, graph.nodeStore().contains(node));
+        }
+
+        assertTrue(graph.nodeStore().removeIf(node -> node.id() % 3 == 0));
+        assertTrue(graph.nodeStore().retainAll(created.subList(0, 50)));
+        for (NodeImpl node : created) {
+            assertEquals(node.id() % 2 != 0 && node.id() % 3 != 0 && created.indexOf(node) < 50,
+                    graph.nodeStore().contains(node));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph;
+
+import org.junit.Test;
+import org.medal.graph.impl.DirectedGraphImpl;
+import org.medal.graph.impl.DirectedNodeImpl;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.GraphStatistics;
+import org.medal.graph.impl.NodeImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class GraphStatisticsTest {
+
+    /**
+     * Checks the incrementally maintained statistics against ones computed from scratch.
+     */
+    static void assertConsistent(GraphStatistics<?, ?> statistics) {
+        final GraphStatistics<?, ?> expected = statistics.recompute();
+        assertEquals(expected.nodeCount(), statistics.nodeCount());
+        assertEquals(expected.edgeCount(), statistics.edgeCount());
+        assertEquals(expected.selfLoops(), statistics.selfLoops());
+        assertEquals(expected.maxDegree(), statistics.maxDegree());
+        assertArrayEquals(expected.degreeHistogram(), statistics.degreeHistogram());
+        assertEquals(expected.componentCount(), statistics.componentCount());
+        assertEquals(expected.density(), statistics.density(), 1e-12);
+        assertEquals(expected.averageDegree(), statistics.averageDegree(), 1e-12);
+    }
+
+    @Test
+    public void testAggregates() {
+        final GraphImpl graph = new GraphImpl();
+        final GraphStatistics<NodeImpl, EdgeImpl> statistics = graph.statistics();
+        assertSame(statistics, graph.statistics());
+        assertEquals(0, statistics.nodeCount());
+        assertEquals(0, statistics.degreeHistogram().length);
+
+        final NodeImpl a = graph.createNode();
+        final NodeImpl b = graph.createNode();
+        final NodeImpl c = graph.createNode();
+        graph.createNode();
+        a.connect(b);
+        a.connect(c);
+        a.connect(a);
+
+        assertEquals(4, statistics.nodeCount());
+        assertEquals(3, statistics.edgeCount());
+        assertEquals(1, statistics.selfLoops());
+        assertEquals(4, statistics.maxDegree());
+        assertEquals(1.5, statistics.averageDegree(), 1e-12);
+        assertEquals(0.5, statistics.density(), 1e-12);
+        assertArrayEquals(new long[]{1, 2, 0, 0, 1}, statistics.degreeHistogram());
+        assertEquals(2, statistics.componentCount());
+        assertConsistent(statistics);
+
+        graph.deleteNode(a);
+        assertEquals(0, statistics.edgeCount());
+        assertEquals(0, statistics.selfLoops());
+        assertEquals(0, statistics.maxDegree());
+        assertEquals(3, statistics.componentCount());
+        assertConsistent(statistics);
+    }
+
+    @Test
+    public void testCollapse() {
+        final GraphImpl graph = new GraphImpl();
+        final List<NodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 5; i++) nodes.add(graph.createNode());
+        final EdgeImpl middle = nodes.get(1).connect(nodes.get(2));
+        nodes.get(0).connect(nodes.get(1));
+        nodes.get(2).connect(nodes.get(3));
+        nodes.get(1).connect(nodes.get(2));
+
+        final GraphStatistics<NodeImpl, EdgeImpl> statistics = graph.statistics();
+        middle.collapse();
+
+        assertEquals(4, statistics.nodeCount());
+        assertEquals(1, statistics.selfLoops());
+        assertEquals(2, statistics.componentCount());
+        assertConsistent(statistics);
+    }
+
+    @Test
+    public void testRandomMutations() {
+        final Random random = new Random(11);
+        final GraphImpl graph = new GraphImpl();
+        final List<NodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 30; i++) nodes.add(graph.createNode());
+
+        final GraphStatistics<NodeImpl, EdgeImpl> statistics = graph.statistics();
+        for (int step = 0; step < 500; step++) {
+            final int action = random.nextInt(10);
+            if (action < 5 || graph.edges().isEmpty()) {
+                graph.connect(nodes.get(random.nextInt(nodes.size())), nodes.get(random.nextInt(nodes.size())));
+            } else if (action < 7) {
+                final List<EdgeImpl> edges = new ArrayList<>(graph.edges());
+                graph.deleteEdge(edges.get(random.nextInt(edges.size())));
+            } else if (action < 8 && nodes.size() > 2) {
+                graph.deleteNode(nodes.remove(random.nextInt(nodes.size())));
+            } else if (action < 9) {
+                final List<EdgeImpl> edges = new ArrayList<>(graph.edges());
+                final EdgeImpl edge = edges.get(random.nextInt(edges.size()));
+                nodes.remove(edge.left());
+                nodes.remove(edge.right());
+                nodes.add(edge.collapse());
+            } else {
+                nodes.add(graph.createNode());
+            }
+
+            if (step % 50 == 0) {
+                statistics.componentCount();
+            }
+        }
+        assertConsistent(statistics);
+    }
+
+    @Test
+    public void testDirectedDensity() {
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final DirectedNodeImpl a = graph.createNode();
+        final DirectedNodeImpl b = graph.createNode();
+        graph.connect(a, b);
+        graph.connect(b, a);
+
+        assertEquals(1.0, graph.statistics().density(), 1e-12);
+        assertEquals(1, graph.statistics().componentCount());
+    }
+
+}
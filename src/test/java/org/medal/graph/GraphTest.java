@@ -17,6 +17,7 @@ package org.medal.graph;
 
 import org.junit.Test;
 import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphCopy;
 import org.medal.graph.impl.GraphImpl;
 import org.medal.graph.impl.NodeImpl;
 
@@ -101,6 +102,21 @@ public class GraphTest {
         assertEquals(existingNodes, createdNodes);
     }
 
+    @Test
+    public void testContainsForeignObjects() {
+        GraphImpl graph = new GraphImpl();
+        final NodeImpl node = graph.createNode();
+        final EdgeImpl edge = node.connect(graph.createNode());
+
+        assertTrue(graph.nodes().contains(node));
+        assertTrue(graph.edges().contains(edge));
+        assertFalse(graph.nodes().contains(edge));
+        assertFalse(graph.edges().contains(node));
+        assertFalse(graph.nodes().contains("node"));
+        assertFalse(graph.nodes().contains(null));
+        assertFalse(graph.nodes().contains(new GraphImpl().createNode()));
+    }
+
     @Test
     public void testBreakEdge() {
         GraphImpl graph = new GraphImpl();
@@ -167,4 +183,48 @@ public class GraphTest {
 
     }
 
+    @Test
+    public void testCopy() {
+        GraphImpl graph = new GraphImpl();
+        final NodeImpl node0 = graph.createNode();
+        final NodeImpl node1 = graph.createNode();
+        final NodeImpl node2 = graph.createNode();
+        final EdgeImpl edge0to1 = node0.connect(node1);
+        final EdgeImpl edge1to2 = node1.connect(node2);
+        final EdgeImpl edge2to2 = node2.connect(node2);
+
+        final GraphCopy<NodeImpl, EdgeImpl> copy = graph.copy();
+        final Graph<NodeImpl, EdgeImpl> copied = copy.graph();
+
+        assertNotSame(graph, copied);
+        assertEquals(3, copied.nodes().size());
+        assertEquals(3, copied.edges().size());
+
+        final NodeImpl copy0 = copy.node(node0);
+        final NodeImpl copy1 = copy.node(node1);
+        final NodeImpl copy2 = copy.node(node2);
+        assertSame(copied, copy0.graph());
+        assertEquals(node1.id(), copy1.id());
+
+        final EdgeImpl copy0to1 = copy.edge(edge0to1);
+        assertSame(copy0, copy0to1.left());
+        assertSame(copy1, copy0to1.right());
+        assertSame(copy1, copy.edge(edge1to2).left());
+        assertTrue(copy.edge(edge2to2).isLoop());
+        assertTrue(copy1.isAdjacent(copy2));
+
+        assertEquals(3, copy.nodeMapping().size());
+        assertSame(copy2, copy.nodeMapping().get(node2));
+
+        // Copies are independent ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+        graph.deleteNode(node1);
+        assertEquals(3, copied.nodes().size());
+        assertEquals(3, copied.edges().size());
+
+        final NodeImpl copy3 = copied.createNode();
+        assertEquals(3, copy3.id());
+        assertEquals(3, copied.connect(copy3, copy0).id());
+        assertEquals(2, graph.nodes().size());
+    }
+
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph;
+
+import org.junit.Test;
+import org.medal.graph.compact.CompactGraph;
+import org.medal.graph.impl.DirectedEdgeImpl;
+import org.medal.graph.impl.DirectedGraphImpl;
+import org.medal.graph.impl.DirectedNodeImpl;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.MemoryEstimator;
+import org.medal.graph.impl.MemoryEstimator.Backend;
+import org.medal.graph.impl.MemoryReport;
+import org.medal.graph.impl.NodeImpl;
+import org.medal.graph.impl.PartitionedGraphImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class MemoryEstimatorTest {
+
+    private final MemoryEstimator estimator = MemoryEstimator.of(true);
+
+    private static GraphImpl ring(int size) {
+        final GraphImpl graph = new GraphImpl();
+        final List<NodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < size; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < size; i++) nodes.get(i).connect(nodes.get((i + 1) % size));
+        return graph;
+    }
+
+    @Test
+    public void testShallowSize() {
+        // A header, a graph reference and an identifier
+        assertEquals(24, estimator.shallowSize(NodeImpl.class));
+        // ... and two node references
+        assertEquals(32, estimator.shallowSize(EdgeImpl.class));
+        assertTrue(MemoryEstimator.of(false).shallowSize(EdgeImpl.class) > estimator.shallowSize(EdgeImpl.class));
+        assertNotNull(MemoryEstimator.forCurrentJvm());
+    }
+
+    @Test
+    public void testMeasureMatchesEstimate() {
+        final GraphImpl graph = ring(1000);
+
+        final MemoryReport measured = estimator.measure(graph);
+        final MemoryReport estimated = estimator.estimate(Backend.ARRAY_STORE, 1000, 1000, NodeImpl.class, EdgeImpl.class);
+
+        assertEquals(estimated.nodeObjects(), measured.nodeObjects());
+        assertEquals(estimated.edgeObjects(), measured.edgeObjects());
+        assertEquals(estimated.nodeRegistry(), measured.nodeRegistry());
+        assertEquals(estimated.edgeRegistry(), measured.edgeRegistry());
+        assertEquals(0, measured.indexes());
+
+        graph.statistics();
+        assertTrue(estimator.measure(graph).indexes() > 0);
+    }
+
+    @Test
+    public void testDirectedAndCompact() {
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final List<DirectedNodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < 100; i++) graph.connect(nodes.get(i), nodes.get((i + 1) % 100));
+
+        final MemoryReport measured = estimator.measure(graph);
+        final MemoryReport estimated = estimator.estimate(Backend.DIRECTED, 100, 100,
+                DirectedNodeImpl.class, DirectedEdgeImpl.class);
+        assertEquals(estimated.indexes(), measured.indexes());
+
+        final CompactGraph<DirectedNodeImpl, DirectedEdgeImpl> compact = CompactGraph.of(graph);
+        assertEquals(estimator.estimate(Backend.COMPACT, 100, 100, DirectedNodeImpl.class, DirectedEdgeImpl.class).total(),
+                estimator.measure(compact).total());
+        assertTrue(estimator.measure(compact).total() < measured.total());
+    }
+
+    @Test
+    public void testPartitioned() {
+        final PartitionedGraphImpl graph = new PartitionedGraphImpl(4);
+        final List<NodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < 100; i++) graph.connect(nodes.get(i), nodes.get((i + 1) % 100));
+
+        final MemoryReport report = estimator.measure(graph);
+        assertEquals(100 * estimator.shallowSize(EdgeImpl.class), report.edgeObjects());
+        assertTrue(report.indexes() > 0);
+        assertEquals(report.nodeObjects() + report.edgeObjects() + report.nodeRegistry()
+                + report.edgeRegistry() + report.indexes(), report.total());
+    }
+
+    @Test
+    public void testEstimateGrowsWithSize() {
+        for (Backend backend : Backend.values()) {
+            final long small = estimator.estimate(backend, 1_000, 5_000, NodeImpl.class, EdgeImpl.class).total();
+            final long large = estimator.estimate(backend, 1_000_000, 5_000_000, NodeImpl.class, EdgeImpl.class).total();
+            assertTrue(backend.name(), large > 500 * small);
+        }
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph;
+
+import org.junit.Test;
+import org.medal.graph.impl.DirectedEdgeImpl;
+import org.medal.graph.impl.DirectedGraphImpl;
+import org.medal.graph.impl.DirectedNodeImpl;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphCopy;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.GraphStatistics;
+import org.medal.graph.impl.MemoryEstimator;
+import org.medal.graph.impl.NodeImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.medal.graph.GraphStatisticsTest.assertConsistent;
+
+/**
+ * @author skrymets
+ */
+public class ParallelEdgeFoldingTest {
+
+    private static GraphImpl foldingGraph() {
+        final GraphImpl graph = new GraphImpl();
+        graph.withParallelEdgeFolding();
+        return graph;
+    }
+
+    @Test
+    public void testParallelEdgesAreFolded() {
+        final GraphImpl graph = foldingGraph();
+        assertTrue(graph.foldsParallelEdges());
+        final GraphStatistics<NodeImpl, EdgeImpl> statistics = graph.statistics();
+
+        final NodeImpl a = graph.createNode();
+        final NodeImpl b = graph.createNode();
+        final EdgeImpl ab = graph.connect(a, b);
+        assertSame(ab, graph.connect(a, b));
+        assertSame(ab, b.connect(a));
+
+        assertEquals(1, graph.edges().size());
+        assertEquals(3, ab.multiplicity());
+        assertEquals(3, a.degree());
+        assertEquals(3, b.degree());
+
+        final EdgeImpl loop = a.connect(a);
+        a.connect(a);
+        assertEquals(2, loop.multiplicity());
+        assertEquals(7, a.degree());
+        assertEquals(2, graph.edges().size());
+        assertEquals(2, statistics.edgeCount());
+        assertEquals(7, statistics.maxDegree());
+        assertEquals(5.0, statistics.averageDegree(), 1e-12);
+        assertConsistent(statistics);
+
+        // Deleting an edge drops all the edges folded into it
+        graph.deleteEdge(ab);
+        assertEquals(4, a.degree());
+        assertTrue(b.isIsolated());
+        assertEquals(1, a.connect(b).multiplicity());
+        assertEquals(3.0, statistics.averageDegree(), 1e-12);
+        assertConsistent(statistics);
+    }
+
+    @Test
+    public void testDirectedEdgesFoldByDirection() {
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        graph.withParallelEdgeFolding();
+
+        final DirectedNodeImpl a = graph.createNode();
+        final DirectedNodeImpl b = graph.createNode();
+        final DirectedEdgeImpl ab = graph.connect(a, b);
+        graph.connect(a, b);
+        final DirectedEdgeImpl ba = graph.connect(b, a);
+
+        assertNotSame(ab, ba);
+        assertEquals(2, ab.multiplicity());
+        assertEquals(1, ba.multiplicity());
+        assertEquals(2, a.outDegree());
+        assertEquals(1, a.inDegree());
+        assertEquals(3, b.degree());
+    }
+
+    @Test
+    public void testCollapseMergesEdges() {
+        final GraphImpl graph = foldingGraph();
+        final GraphStatistics<NodeImpl, EdgeImpl> statistics = graph.statistics();
+
+        final NodeImpl a = graph.createNode();
+        final NodeImpl b = graph.createNode();
+        final NodeImpl c = graph.createNode();
+        final EdgeImpl ab = a.connect(b);
+        a.connect(c);
+        c.connect(b);
+        c.connect(b);
+
+        final NodeImpl collapsed = ab.collapse();
+        assertEquals(1, graph.edges().size());
+        final EdgeImpl merged = graph.edges().iterator().next();
+        assertTrue(merged.isIncident(collapsed) && merged.isIncident(c));
+        assertEquals(3, merged.multiplicity());
+        assertEquals(3, c.degree());
+        assertEquals(3, collapsed.degree());
+        assertConsistent(statistics);
+
+        final GraphCopy<NodeImpl, EdgeImpl> copy = graph.copy();
+        assertTrue(copy.graph().foldsParallelEdges());
+        assertEquals(3, copy.edge(merged).multiplicity());
+    }
+
+    @Test
+    public void testTransactionFoldsOnCommit() {
+        final GraphImpl graph = foldingGraph();
+        final NodeImpl a = graph.createNode();
+        final NodeImpl b = graph.createNode();
+        final EdgeImpl ab = a.connect(b);
+
+        graph.transaction(tx -> {
+            tx.connect(a, b);
+            tx.connect(b, a);
+        });
+        assertEquals(1, graph.edges().size());
+        assertEquals(3, ab.multiplicity());
+    }
+
+    @Test
+    public void testInsertMiddleNodeKeepsMultiplicity() {
+        final GraphImpl graph = foldingGraph();
+        final GraphStatistics<NodeImpl, EdgeImpl> statistics = graph.statistics();
+        final NodeImpl a = graph.createNode();
+        final NodeImpl b = graph.createNode();
+        final EdgeImpl ab = a.connect(b);
+        a.connect(b);
+        a.connect(b);
+
+        final Edge.Split<NodeImpl, EdgeImpl> split = ab.insertMiddleNode();
+        assertEquals(3, split.leftEdge().multiplicity());
+        assertEquals(3, split.rightEdge().multiplicity());
+        assertEquals(3, a.degree());
+        assertEquals(6, split.leftEdge().right().degree());
+        assertConsistent(statistics);
+
+        final EdgeImpl[] halves = new EdgeImpl[2];
+        graph.transaction(tx -> {
+            final Edge.Split<NodeImpl, EdgeImpl> staged = tx.insertMiddleNode(split.rightEdge());
+            halves[0] = staged.leftEdge();
+            halves[1] = staged.rightEdge();
+        });
+        assertEquals(3, halves[0].multiplicity());
+        assertEquals(3, halves[1].multiplicity());
+        assertEquals(3, b.degree());
+        assertConsistent(statistics);
+    }
+
+    @Test
+    public void testSubgraphDegreeCountsMultiplicity() {
+        final GraphImpl graph = foldingGraph();
+        final NodeImpl a = graph.createNode();
+        final NodeImpl b = graph.createNode();
+        a.connect(b);
+        a.connect(b);
+        a.connect(a);
+        a.connect(a);
+
+        final Subgraph<NodeImpl, EdgeImpl> subgraph = graph.subgraph(node -> true, edge -> true);
+        assertEquals(a.degree(), subgraph.degree(a));
+        assertEquals(6, subgraph.degree(a));
+        assertEquals(2, subgraph.degree(b));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEnabledOnlyBeforeEdges() {
+        final GraphImpl graph = new GraphImpl();
+        graph.createNode().connect(graph.createNode());
+        graph.withParallelEdgeFolding();
+    }
+
+    @Test
+    public void testFoldingSavesMemory() {
+        final GraphImpl plain = new GraphImpl();
+        final GraphImpl folded = foldingGraph();
+        for (GraphImpl graph : List.of(plain, folded)) {
+            final List<NodeImpl> nodes = new ArrayList<>();
+            for (int i = 0; i < 100; i++) nodes.add(graph.createNode());
+            for (int i = 0; i < 20_000; i++) graph.connect(nodes.get(i % 100), nodes.get((i % 100 + 1) % 100));
+        }
+        assertEquals(20_000, plain.edges().size());
+        assertEquals(100, folded.edges().size());
+        assertEquals(plain.nodes().iterator().next().degree(), folded.nodes().iterator().next().degree());
+
+        final MemoryEstimator estimator = MemoryEstimator.of(true);
+        final long plainEdges = estimator.measure(plain).edgeObjects() + estimator.measure(plain).edgeRegistry();
+        final long foldedEdges = estimator.measure(folded).edgeObjects() + estimator.measure(folded).edgeRegistry()
+                + estimator.measure(folded).indexes();
+        assertTrue(foldedEdges * 10 < plainEdges);
+    }
+}
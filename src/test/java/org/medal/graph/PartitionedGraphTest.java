@@ -0,0 +1,216 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphPartition;
+import org.medal.graph.impl.NodeImpl;
+import org.medal.graph.impl.PartitionedGraphImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class PartitionedGraphTest {
+
+    private PartitionedGraphImpl graph;
+
+    @Before
+    public void prepareData() {
+        graph = new PartitionedGraphImpl(3);
+    }
+
+    @Test
+    public void testNodesAreOwnedByTheirPartition() {
+        for (int i = 0; i < 9; i++) graph.createNode();
+
+        assertEquals(9, graph.nodes().size());
+        for (int p = 0; p < 3; p++) {
+            final GraphPartition<NodeImpl, EdgeImpl> partition = graph.partition(p);
+            assertEquals(3, partition.nodes().size());
+            for (NodeImpl node : partition.nodes()) {
+                assertSame(partition, graph.partitionOf(node));
+            }
+        }
+
+        final NodeImpl node = graph.createNode(2);
+        assertSame(graph.partition(2), graph.partitionOf(node));
+        assertTrue(graph.nodes().contains(node));
+    }
+
+    @Test
+    public void testCrossEdgesAndGhosts() {
+        final NodeImpl a = graph.createNode(0);
+        final NodeImpl b = graph.createNode(0);
+        final NodeImpl c = graph.createNode(1);
+
+        final EdgeImpl internal = graph.connect(a, b);
+        final EdgeImpl cross1 = graph.connect(a, c);
+        final EdgeImpl cross2 = graph.connect(b, c);
+
+        assertEquals(3, graph.edges().size());
+        assertTrue(graph.edges().contains(internal));
+        assertEquals(Set.of(cross1, cross2), graph.crossEdges());
+
+        assertEquals(Set.of(internal), graph.partition(0).edges());
+        assertEquals(Set.of(cross1, cross2), graph.partition(0).boundaryEdges());
+        assertEquals(Set.of(c), graph.partition(0).ghosts());
+        assertEquals(Set.of(a, b), graph.partition(1).ghosts());
+        assertTrue(graph.partition(2).ghosts().isEmpty());
+
+        graph.deleteEdge(cross1);
+        assertEquals(Set.of(c), graph.partition(0).ghosts());
+        assertEquals(Set.of(b), graph.partition(1).ghosts());
+
+        graph.deleteEdge(cross2);
+        assertTrue(graph.crossEdges().isEmpty());
+        assertTrue(graph.partition(0).ghosts().isEmpty());
+        assertTrue(graph.partition(1).boundaryEdges().isEmpty());
+        assertEquals(1, graph.edges().size());
+    }
+
+    @Test
+    public void testDeleteNodeRemovesIncidentEdges() {
+        final NodeImpl a = graph.createNode(0);
+        final NodeImpl b = graph.createNode(1);
+        final NodeImpl c = graph.createNode(2);
+        graph.connect(a, b);
+        graph.connect(a, c);
+        final EdgeImpl remaining = graph.connect(b, c);
+
+        assertTrue(graph.deleteNode(a));
+        assertFalse(graph.deleteNode(a));
+
+        assertFalse(graph.nodes().contains(a));
+        assertEquals(Set.of(remaining), graph.edges());
+        assertEquals(Set.of(remaining), graph.crossEdges());
+        assertTrue(graph.partition(0).ghosts().isEmpty());
+        assertEquals(Set.of(c), graph.partition(1).ghosts());
+    }
+
+    @Test
+    public void testConnectDeletedNode() {
+        final NodeImpl a = graph.createNode(0);
+        final NodeImpl b = graph.createNode(1);
+        graph.deleteNode(b);
+
+        try {
+            graph.connect(a, b);
+            fail("A deleted node can not be connected");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertTrue(graph.edges().isEmpty());
+        assertTrue(graph.partition(0).ghosts().isEmpty());
+    }
+
+    @Test
+    public void testNodeViewsFollowPartitions() {
+        final NodeImpl a = graph.createNode(0);
+        final NodeImpl b = graph.createNode(0);
+        final NodeImpl c = graph.createNode(1);
+        final NodeImpl d = graph.createNode(2);
+        final EdgeImpl ab = graph.connect(a, b);
+        final EdgeImpl ac = graph.connect(a, c);
+        final EdgeImpl cd = graph.connect(c, d);
+
+        assertEquals(Set.of(ab, ac), Set.copyOf(a.incidentEdges()));
+        assertEquals(Set.copyOf(graph.partition(0).incidentEdges(a)), Set.copyOf(a.incidentEdges()));
+        assertEquals(Set.of(ac, cd), Set.copyOf(c.incidentEdges()));
+        assertEquals(Set.of(b, c), a.adjacentNodes());
+        assertEquals(Set.of(a, d), c.adjacentNodes());
+        assertEquals(2, a.degree());
+        assertEquals(1, d.degree());
+    }
+
+    @Test
+    public void testCollapse() {
+        final NodeImpl a = graph.createNode(0);
+        final NodeImpl b = graph.createNode(1);
+        final NodeImpl c = graph.createNode(2);
+        final NodeImpl d = graph.createNode(0);
+        final EdgeImpl ab = graph.connect(a, b);
+        final EdgeImpl bc = graph.connect(b, c);
+        final EdgeImpl ad = graph.connect(a, d);
+
+        final NodeImpl collapsed = ab.collapse();
+
+        assertEquals(Set.of(collapsed, c, d), graph.nodes());
+        assertEquals(Set.of(bc, ad), graph.edges());
+        assertTrue(bc.opposite(c).get() == collapsed);
+        assertTrue(ad.opposite(d).get() == collapsed);
+        assertEquals(2, graph.incidentEdges(collapsed).size());
+    }
+
+    @Test
+    public void testBreadthFirst() {
+        // A path 0 - 1 - 2 - 3 - 4 with nodes spread across partitions.
+        final List<NodeImpl> path = new ArrayList<>();
+        for (int i = 0; i < 5; i++) path.add(graph.createNode());
+        for (int i = 0; i < 4; i++) graph.connect(path.get(i), path.get(i + 1));
+
+        final Map<NodeImpl, Integer> distances = graph.breadthFirst(path.get(0), 3);
+
+        assertEquals(4, distances.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Integer.valueOf(i), distances.get(path.get(i)));
+        }
+        assertFalse(distances.containsKey(path.get(4)));
+    }
+
+    @Test
+    public void testConcurrentMutation() throws Exception {
+        final int partitions = 3;
+        final int perThread = 500;
+        final ExecutorService pool = Executors.newFixedThreadPool(partitions);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < partitions; p++) {
+                final int partition = p;
+                futures.add(pool.submit(() -> {
+                    NodeImpl previous = graph.createNode(partition);
+                    for (int i = 1; i < perThread; i++) {
+                        final NodeImpl next = graph.createNode(partition);
+                        graph.connect(previous, next);
+                        previous = next;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(partitions * perThread, graph.nodes().size());
+        assertEquals(partitions * (perThread - 1), graph.edges().size());
+        assertTrue(graph.crossEdges().isEmpty());
+        for (int p = 0; p < partitions; p++) {
+            assertEquals(perThread, graph.partition(p).nodes().size());
+            assertEquals(perThread - 1, graph.partition(p).edges().size());
+        }
+    }
+
+}
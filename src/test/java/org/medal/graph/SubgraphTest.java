@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class SubgraphTest {
+
+    protected GraphImpl graph;
+
+    private NodeImpl node0;
+
+    private NodeImpl node1;
+
+    private NodeImpl node2;
+
+    private NodeImpl node3;
+
+    private EdgeImpl edge0to1;
+
+    private EdgeImpl edge1to2;
+
+    private EdgeImpl edge2to3;
+
+    private EdgeImpl edge3to0;
+
+    @Before
+    public void prepareData() {
+        graph = new GraphImpl();
+        /*
+         *   (0) ----- (1)
+         *    |         |
+         *    |         |
+         *   (3) ----- (2)
+         */
+        node0 = graph.createNode();
+        node1 = graph.createNode();
+        node2 = graph.createNode();
+        node3 = graph.createNode();
+
+        edge0to1 = node0.connect(node1);
+        edge1to2 = node1.connect(node2);
+        edge2to3 = node2.connect(node3);
+        edge3to0 = node3.connect(node0);
+    }
+
+    @Test
+    public void testIdentifiers() {
+        assertEquals(0, node0.id());
+        assertEquals(3, node3.id());
+        assertEquals(0, edge0to1.id());
+        assertEquals(3, edge3to0.id());
+    }
+
+    @Test
+    public void testInducedSubgraph() {
+        final Subgraph<NodeImpl, EdgeImpl> subgraph = graph.subgraph(n -> n != node3, e -> true);
+
+        assertEquals(3, subgraph.nodes().size());
+        assertFalse(subgraph.nodes().contains(node3));
+
+        // Edges to the dropped node are dropped too
+        assertEquals(2, subgraph.edges().size());
+        assertTrue(subgraph.edges().contains(edge0to1));
+        assertTrue(subgraph.edges().contains(edge1to2));
+        assertFalse(subgraph.edges().contains(edge2to3));
+
+        assertEquals(1, subgraph.incidentEdges(node0).size());
+        assertEquals(1, subgraph.degree(node2));
+        assertEquals(Set.of(node0, node2), new HashSet<>(subgraph.adjacentNodes(node1)));
+        assertTrue(subgraph.incidentEdges(node3).isEmpty());
+    }
+
+    @Test
+    public void testViewIsLive() {
+        final Subgraph<NodeImpl, EdgeImpl> subgraph = graph.subgraph(n -> true, e -> e != edge1to2);
+        assertEquals(3, subgraph.edges().size());
+
+        final NodeImpl node4 = graph.createNode();
+        final EdgeImpl edge3to4 = node3.connect(node4);
+
+        assertTrue(subgraph.nodes().contains(node4));
+        assertTrue(subgraph.edges().contains(edge3to4));
+        assertEquals(4, subgraph.edges().size());
+
+        graph.deleteNode(node0);
+        assertFalse(subgraph.nodes().contains(node0));
+        assertEquals(2, subgraph.edges().size());
+    }
+
+    @Test
+    public void testCachedMembership() {
+        final Set<NodeImpl> excluded = new HashSet<>();
+        final Subgraph<NodeImpl, EdgeImpl> subgraph = graph.subgraph(n -> !excluded.contains(n), e -> true).cached();
+
+        assertTrue(subgraph.nodes().contains(node1));
+
+        // A cached answer survives a change of the filter's input ...
+        excluded.add(node1);
+        assertTrue(subgraph.nodes().contains(node1));
+
+        // ... until the cache is invalidated
+        subgraph.invalidate();
+        assertFalse(subgraph.nodes().contains(node1));
+        assertEquals(2, subgraph.edges().size());
+    }
+
+    @Test
+    public void testNestedSubgraph() {
+        final Subgraph<NodeImpl, EdgeImpl> outer = graph.subgraph(n -> n != node3, e -> true);
+        final Subgraph<NodeImpl, EdgeImpl> inner = outer.subgraph(n -> n != node0, e -> true);
+
+        assertEquals(Set.of(node1, node2), new HashSet<>(inner.nodes()));
+        assertEquals(Set.of(edge1to2), new HashSet<>(inner.edges()));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testViewIsReadOnly() {
+        graph.subgraph(n -> true, e -> true).createNode();
+        fail("Should throw UnsupportedOperationException");
+    }
+
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph;
+
+import org.junit.Test;
+import org.medal.graph.impl.DirectedEdgeImpl;
+import org.medal.graph.impl.DirectedGraphImpl;
+import org.medal.graph.impl.DirectedNodeImpl;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.GraphStatistics;
+import org.medal.graph.impl.NodeImpl;
+import org.medal.graph.impl.PartitionedGraphImpl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+import static org.medal.graph.GraphStatisticsTest.assertConsistent;
+
+/**
+ * @author skrymets
+ */
+public class TransactionTest {
+
+    /**
+     * Performs the operations of a transaction directly on a graph, for reference.
+     */
+    private static final class Direct<N extends Node<N, E>, E extends Edge<N, E>> implements Transaction<N, E> {
+
+        private final Graph<N, E> graph;
+
+        private Direct(Graph<N, E> graph) {
+            this.graph = graph;
+        }
+
+        @Override
+        public N createNode() {
+            return graph.createNode();
+        }
+
+        @Override
+        public boolean deleteNode(N node) {
+            return graph.deleteNode(node);
+        }
+
+        @Override
+        public E connect(N left, N right) {
+            return graph.connect(left, right);
+        }
+
+        @Override
+        public void deleteEdge(E edge) {
+            graph.deleteEdge(edge);
+        }
+
+        @Override
+        public N collapse(E edge) {
+            return edge.collapse();
+        }
+
+        @Override
+        public Edge.Split<N, E> insertMiddleNode(E edge) {
+            return edge.insertMiddleNode();
+        }
+
+        @Override
+        public Edge.Split<N, E> insertMiddleNode(E edge, N middleNode) {
+            return edge.insertMiddleNode(middleNode);
+        }
+
+        @Override
+        public Collection<E> incidentEdges(N node) {
+            return node.incidentEdges();
+        }
+
+        @Override
+        public void rollback() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    private static <N extends Node<N, E>, E extends Edge<N, E>> List<E> build(Graph<N, E> graph, List<N> nodes) {
+        final List<E> edges = new ArrayList<>();
+        for (int i = 0; i < 8; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < 8; i++) edges.add(graph.connect(nodes.get(i), nodes.get((i + 1) % 8)));
+        edges.add(graph.connect(nodes.get(0), nodes.get(4)));
+        edges.add(graph.connect(nodes.get(2), nodes.get(3)));
+        return edges;
+    }
+
+    private static <N extends Node<N, E>, E extends Edge<N, E>> void scenario(
+            Transaction<N, E> tx, List<N> nodes, List<E> edges) {
+        final N collapsed = tx.collapse(edges.get(0));
+        tx.connect(collapsed, nodes.get(4));
+        tx.insertMiddleNode(edges.get(5));
+        // The parallel edge 2-3 turns into a loop
+        tx.collapse(edges.get(2));
+        tx.deleteNode(nodes.get(7));
+        final N created = tx.createNode();
+        tx.collapse(tx.connect(created, collapsed));
+        tx.deleteEdge(edges.get(4));
+        tx.insertMiddleNode(edges.get(3), tx.createNode());
+    }
+
+    private static List<String> describe(Graph<?, ?> graph) {
+        final List<String> description = graph.nodes().stream()
+                .map(node -> "n" + node.id())
+                .sorted()
+                .collect(toList());
+        graph.edges().stream()
+                .map(edge -> "e" + edge.id() + ":" + edge.left().id() + "-" + edge.right().id())
+                .sorted()
+                .forEach(description::add);
+        return description;
+    }
+
+    @Test
+    public void testMatchesDirectChanges() {
+        final GraphImpl expected = new GraphImpl();
+        final List<NodeImpl> expectedNodes = new ArrayList<>();
+        scenario(new Direct<>(expected), expectedNodes, build(expected, expectedNodes));
+
+        final GraphImpl graph = new GraphImpl();
+        final List<NodeImpl> nodes = new ArrayList<>();
+        final List<EdgeImpl> edges = build(graph, nodes);
+        final GraphStatistics<NodeImpl, EdgeImpl> statistics = graph.statistics();
+        graph.transaction(tx -> scenario(tx, nodes, edges));
+
+        assertEquals(describe(expected), describe(graph));
+        assertConsistent(statistics);
+        assertEquals(expected.createNode().id(), graph.createNode().id());
+        assertEquals(expected.connect(expectedNodes.get(5), expectedNodes.get(6)).id(),
+                graph.connect(nodes.get(5), nodes.get(6)).id());
+    }
+
+    @Test
+    public void testDirectedAdjacency() {
+        final DirectedGraphImpl expected = new DirectedGraphImpl();
+        final List<DirectedNodeImpl> expectedNodes = new ArrayList<>();
+        scenario(new Direct<>(expected), expectedNodes, build(expected, expectedNodes));
+
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final List<DirectedNodeImpl> nodes = new ArrayList<>();
+        final List<DirectedEdgeImpl> edges = build(graph, nodes);
+        graph.transaction(tx -> scenario(tx, nodes, edges));
+
+        assertEquals(describe(expected), describe(graph));
+        for (DirectedNodeImpl node : graph.nodes()) {
+            for (DirectedEdgeImpl edge : node.outEdges()) assertSame(node, edge.left());
+            for (DirectedEdgeImpl edge : node.inEdges()) assertSame(node, edge.right());
+            assertEquals(graph.edges().stream().filter(edge -> edge.left() == node).count(), node.outDegree());
+            assertEquals(graph.edges().stream().filter(edge -> edge.right() == node).count(), node.inDegree());
+        }
+    }
+
+    @Test
+    public void testChangesAreStagedUntilCommit() {
+        final GraphImpl graph = new GraphImpl();
+        final NodeImpl a = graph.createNode();
+        final NodeImpl b = graph.createNode();
+        final EdgeImpl ab = graph.connect(a, b);
+
+        graph.transaction(tx -> {
+            final NodeImpl c = tx.createNode();
+            final EdgeImpl bc = tx.connect(b, c);
+            tx.deleteEdge(ab);
+
+            assertEquals(2, graph.nodes().size());
+            assertTrue(graph.edges().contains(ab));
+            assertFalse(graph.edges().contains(bc));
+            assertTrue(tx.incidentEdges(a).isEmpty());
+            assertEquals(1, tx.incidentEdges(b).size());
+            assertTrue(tx.incidentEdges(b).contains(bc));
+        });
+
+        assertEquals(3, graph.nodes().size());
+        assertEquals(1, graph.edges().size());
+        assertTrue(a.isIsolated());
+        assertEquals(1, b.degree());
+    }
+
+    @Test
+    public void testFailureLeavesGraphUnchanged() {
+        final GraphImpl graph = new GraphImpl();
+        final List<NodeImpl> nodes = new ArrayList<>();
+        final List<EdgeImpl> edges = build(graph, nodes);
+        final GraphStatistics<NodeImpl, EdgeImpl> statistics = graph.statistics();
+        final List<String> before = describe(graph);
+
+        try {
+            graph.transaction(tx -> {
+                scenario(tx, nodes, edges);
+                tx.connect(nodes.get(7), nodes.get(0));
+            });
+            fail("A node deleted by the transaction can not be connected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(before, describe(graph));
+        assertConsistent(statistics);
+        assertEquals(8, graph.createNode().id());
+
+        graph.transaction(tx -> {
+            tx.collapse(edges.get(1));
+            tx.rollback();
+        });
+        assertEquals(9, graph.nodes().size());
+        assertEquals(10, graph.edges().size());
+    }
+
+    @Test
+    public void testListenerSeesOneBatch() {
+        final GraphImpl graph = new GraphImpl();
+        final NodeImpl a = graph.createNode();
+        final NodeImpl b = graph.createNode();
+        graph.connect(a, b);
+
+        final List<String> events = new ArrayList<>();
+        graph.addListener(new GraphListener<NodeImpl, EdgeImpl>() {
+            @Override
+            public void batchStarted(int changes) {
+                events.add("start " + changes);
+            }
+
+            @Override
+            public void batchCompleted() {
+                events.add("complete");
+            }
+
+            @Override
+            public void nodeCreated(NodeImpl node) {
+                events.add("+n" + node.id());
+            }
+
+            @Override
+            public void nodeDeleted(NodeImpl node) {
+                events.add("-n" + node.id());
+            }
+
+            @Override
+            public void edgeCreated(EdgeImpl edge) {
+                events.add("+e" + edge.id());
+            }
+
+            @Override
+            public void edgeDeleted(EdgeImpl edge) {
+                events.add("-e" + edge.id());
+            }
+        });
+
+        graph.transaction(tx -> {
+            final NodeImpl c = tx.createNode();
+            tx.deleteNode(tx.createNode());
+            tx.connect(b, c);
+            tx.deleteNode(a);
+        });
+        assertEquals(List.of("start 4", "-e0", "+n2", "+e1", "-n0", "complete"), events);
+
+        events.clear();
+        graph.transaction(tx -> tx.deleteNode(tx.createNode()));
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testFailingListenerDoesNotInterruptCommit() {
+        final GraphImpl graph = new GraphImpl();
+        final NodeImpl a = graph.createNode();
+        final GraphStatistics<NodeImpl, EdgeImpl> statistics = graph.statistics();
+
+        graph.addListener(new GraphListener<NodeImpl, EdgeImpl>() {
+            @Override
+            public void edgeCreated(EdgeImpl edge) {
+                throw new IllegalStateException("e" + edge.id());
+            }
+        });
+        final List<String> events = new ArrayList<>();
+        graph.addListener(new GraphListener<NodeImpl, EdgeImpl>() {
+            @Override
+            public void edgeCreated(EdgeImpl edge) {
+                events.add("+e" + edge.id());
+            }
+
+            @Override
+            public void batchCompleted() {
+                events.add("complete");
+            }
+        });
+
+        try {
+            graph.transaction(tx -> {
+                final NodeImpl b = tx.createNode();
+                tx.connect(a, b);
+                tx.connect(b, tx.createNode());
+            });
+            fail("The failure of the listener is rethrown");
+        } catch (IllegalStateException e) {
+            assertEquals("e0", e.getMessage());
+            assertEquals(1, e.getSuppressed().length);
+        }
+
+        // The batch has been applied and reported in full nonetheless
+        assertEquals(3, graph.nodes().size());
+        assertEquals(2, graph.edges().size());
+        assertEquals(List.of("+e0", "+e1", "complete"), events);
+        assertConsistent(statistics);
+
+        // Outside of a transaction the failure fails the mutation right away
+        try {
+            graph.connect(a, a);
+            fail("The failure of the listener is thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("e2", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testStatisticsFollowLargeAndSmallBatches() {
+        final GraphImpl graph = new GraphImpl();
+        final GraphStatistics<NodeImpl, EdgeImpl> statistics = graph.statistics();
+        final List<NodeImpl> nodes = new ArrayList<>();
+
+        graph.transaction(tx -> {
+            for (int i = 0; i < 1000; i++) nodes.add(tx.createNode());
+            for (int i = 0; i < 1000; i++) tx.connect(nodes.get(i), nodes.get((i * 7 + 3) % 1000));
+        });
+        assertEquals(1000, statistics.nodeCount());
+        assertConsistent(statistics);
+
+        graph.transaction(tx -> {
+            tx.deleteNode(nodes.get(0));
+            tx.connect(nodes.get(1), nodes.get(1));
+            tx.insertMiddleNode(nodes.get(2).incidentEdges().iterator().next());
+        });
+        assertConsistent(statistics);
+    }
+
+    @Test
+    public void testGraphChangedMeanwhile() {
+        final GraphImpl graph = new GraphImpl();
+        final NodeImpl a = graph.createNode();
+        final AtomicReference<Transaction<NodeImpl, EdgeImpl>> leaked = new AtomicReference<>();
+
+        try {
+            graph.transaction(tx -> {
+                leaked.set(tx);
+                tx.connect(a, tx.createNode());
+                graph.createNode();
+            });
+            fail("The graph has been changed outside of the transaction");
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+        assertEquals(2, graph.nodes().size());
+        assertTrue(graph.edges().isEmpty());
+
+        try {
+            leaked.get().createNode();
+            fail("A transaction can not be used after it is completed");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testGraphFoldedMeanwhile() {
+        final GraphImpl graph = new GraphImpl();
+        graph.withParallelEdgeFolding();
+        final NodeImpl a = graph.createNode();
+        final NodeImpl b = graph.createNode();
+        final EdgeImpl ab = a.connect(b);
+
+        try {
+            graph.transaction(tx -> {
+                tx.insertMiddleNode(ab);
+                // Changes the multiplicity only, the stores stay as they are
+                a.connect(b);
+            });
+            fail("The graph has been changed outside of the transaction");
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+        assertEquals(2, graph.nodes().size());
+        assertEquals(2, ab.multiplicity());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPartitionedGraph() {
+        new PartitionedGraphImpl(2).transaction(tx -> tx.createNode());
+    }
+}
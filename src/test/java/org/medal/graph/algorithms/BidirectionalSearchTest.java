@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.junit.Test;
+import org.medal.graph.Edge;
+import org.medal.graph.Node;
+import org.medal.graph.impl.DirectedEdgeImpl;
+import org.medal.graph.impl.DirectedGraphImpl;
+import org.medal.graph.impl.DirectedNodeImpl;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class BidirectionalSearchTest {
+
+    private static <N extends Node<N, E>, E extends Edge<N, E>> Map<N, Integer> distancesFrom(
+            N source, Function<N, Collection<N>> neighbours) {
+        final Map<N, Integer> distances = new HashMap<>();
+        final Deque<N> queue = new ArrayDeque<>();
+        distances.put(source, 0);
+        queue.add(source);
+        while (!queue.isEmpty()) {
+            final N node = queue.poll();
+            for (N next : neighbours.apply(node)) {
+                if (!distances.containsKey(next)) {
+                    distances.put(next, distances.get(node) + 1);
+                    queue.add(next);
+                }
+            }
+        }
+        return distances;
+    }
+
+    private static <N extends Node<N, E>, E extends Edge<N, E>> void assertPath(
+            List<E> path, N source, N target, boolean directed) {
+        N node = source;
+        for (E edge : path) {
+            if (directed) {
+                assertSame(node, edge.left());
+                node = edge.right();
+            } else {
+                node = edge.opposite(node).orElseThrow(AssertionError::new);
+            }
+        }
+        assertSame(target, node);
+    }
+
+    @Test
+    public void testUndirected() {
+        final Random random = new Random(7);
+        final GraphImpl graph = new GraphImpl();
+        final List<NodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 400; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < 700; i++) {
+            graph.connect(nodes.get(random.nextInt(390)), nodes.get(random.nextInt(390)));
+        }
+
+        final BidirectionalSearch<NodeImpl, EdgeImpl> search = BidirectionalSearch.of(graph);
+        for (int i = 0; i < 20; i++) {
+            final NodeImpl source = nodes.get(random.nextInt(nodes.size()));
+            final Map<NodeImpl, Integer> expected = distancesFrom(source, NodeImpl::adjacentNodes);
+            for (NodeImpl target : nodes) {
+                final int distance = expected.getOrDefault(target, -1);
+                assertEquals(distance, search.distance(source, target));
+
+                final Optional<List<EdgeImpl>> path = search.shortestPath(source, target);
+                assertEquals(distance >= 0, path.isPresent());
+                if (path.isPresent()) {
+                    assertEquals(distance, path.get().size());
+                    assertPath(path.get(), source, target, false);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDirected() {
+        final Random random = new Random(11);
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final List<DirectedNodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < 900; i++) {
+            graph.connect(nodes.get(random.nextInt(nodes.size())), nodes.get(random.nextInt(nodes.size())));
+        }
+
+        final BidirectionalSearch<DirectedNodeImpl, DirectedEdgeImpl> search = BidirectionalSearch.of(graph);
+        for (int i = 0; i < 20; i++) {
+            final DirectedNodeImpl source = nodes.get(random.nextInt(nodes.size()));
+            final Map<DirectedNodeImpl, Integer> expected = distancesFrom(source, DirectedNodeImpl::successors);
+            for (DirectedNodeImpl target : nodes) {
+                final int distance = expected.getOrDefault(target, -1);
+                assertEquals(distance, search.distance(source, target));
+
+                final Optional<List<DirectedEdgeImpl>> path = search.shortestPath(source, target);
+                if (path.isPresent()) {
+                    assertEquals(distance, path.get().size());
+                    assertPath(path.get(), source, target, true);
+                } else {
+                    assertEquals(-1, distance);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTrivialQueries() {
+        final GraphImpl graph = new GraphImpl();
+        final NodeImpl a = graph.createNode();
+        final NodeImpl b = graph.createNode();
+        final EdgeImpl ab = a.connect(b);
+        final BidirectionalSearch<NodeImpl, EdgeImpl> search = BidirectionalSearch.of(graph);
+
+        assertEquals(0, search.distance(a, a));
+        assertTrue(search.shortestPath(a, a).get().isEmpty());
+        assertEquals(List.of(ab), search.shortestPath(b, a).get());
+
+        try {
+            search.distance(a, graph.createNode());
+            fail("A node created after the snapshot is not in it");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConcurrentQueries() {
+        final GraphImpl graph = new GraphImpl();
+        final List<NodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) nodes.add(graph.createNode());
+        for (int i = 1; i < 1000; i++) nodes.get(i).connect(nodes.get(i / 2));
+
+        final BidirectionalSearch<NodeImpl, EdgeImpl> search = BidirectionalSearch.of(graph);
+        IntStream.range(0, 10_000).parallel().forEach(i -> {
+            final int a = (i * 31) % 1000;
+            final int b = (i * 17 + 5) % 1000;
+            // In a heap shaped tree the distance goes through the lowest common ancestor
+            int x = a;
+            int y = b;
+            int distance = 0;
+            while (x != y) {
+                if (x > y) x /= 2;
+                else y /= 2;
+                distance++;
+            }
+            assertEquals(distance, search.distance(nodes.get(a), nodes.get(b)));
+        });
+    }
+}
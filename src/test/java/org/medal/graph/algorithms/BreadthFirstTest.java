@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.junit.Test;
+import org.medal.graph.compact.CompactGraph;
+import org.medal.graph.compact.CompactGraph.Direction;
+import org.medal.graph.compact.CompressedGraph;
+import org.medal.graph.impl.DirectedEdgeImpl;
+import org.medal.graph.impl.DirectedGraphImpl;
+import org.medal.graph.impl.DirectedNodeImpl;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class BreadthFirstTest {
+
+    @Test
+    public void testPath() {
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final List<DirectedNodeImpl> path = new ArrayList<>();
+        for (int i = 0; i < 6; i++) path.add(graph.createNode());
+        for (int i = 0; i < 5; i++) graph.connect(path.get(i), path.get(i + 1));
+        final DirectedNodeImpl isolated = graph.createNode();
+
+        final CompactGraph<DirectedNodeImpl, DirectedEdgeImpl> compact = CompactGraph.of(graph, Direction.OUTGOING);
+        final BreadthFirst search = BreadthFirst.of(compact);
+
+        final int[] distances = search.distances(compact.index(path.get(0)));
+        for (int i = 0; i < 6; i++) assertEquals(i, distances[compact.index(path.get(i))]);
+        assertEquals(-1, distances[compact.index(isolated)]);
+
+        // Edges are followed in the snapshot's direction only
+        final int[] backwards = search.distances(compact.index(path.get(3)));
+        assertEquals(-1, backwards[compact.index(path.get(2))]);
+        assertEquals(2, backwards[compact.index(path.get(5))]);
+
+        final int[] limited = search.distances(compact.index(path.get(0)), 2);
+        assertEquals(2, limited[compact.index(path.get(2))]);
+        assertEquals(-1, limited[compact.index(path.get(3))]);
+    }
+
+    @Test
+    public void testCompressedAdjacency() {
+        final Random random = new Random(7);
+        final GraphImpl graph = new GraphImpl();
+        final List<NodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < 3000; i++) {
+            graph.connect(nodes.get(random.nextInt(nodes.size())), nodes.get(random.nextInt(nodes.size())));
+        }
+
+        final CompactGraph<NodeImpl, EdgeImpl> compact = CompactGraph.of(graph);
+        final CompressedGraph<NodeImpl, EdgeImpl> compressed = CompressedGraph.of(compact);
+        for (int source = 0; source < 2000; source += 97) {
+            assertArrayEquals(BreadthFirst.of(compact).distances(source),
+                    BreadthFirst.of(compressed).distances(source));
+        }
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        final BreadthFirst search = BreadthFirst.of(CompactGraph.of(new GraphImpl()));
+        try {
+            search.distances(0);
+            fail("There are no nodes.");
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+}
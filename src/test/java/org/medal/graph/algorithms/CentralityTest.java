@@ -0,0 +1,217 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.junit.Test;
+import org.medal.graph.Edge;
+import org.medal.graph.Node;
+import org.medal.graph.compact.CompactGraph;
+import org.medal.graph.impl.DirectedEdgeImpl;
+import org.medal.graph.impl.DirectedGraphImpl;
+import org.medal.graph.impl.DirectedNodeImpl;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class CentralityTest {
+
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Distances and numbers of shortest paths between all pairs of nodes.
+     */
+    private static <N extends Node<N, E>, E extends Edge<N, E>> void allPairs(
+            CompactGraph<N, E> graph, int[][] distance, double[][] paths) {
+        final int n = graph.nodeCount();
+        for (int s = 0; s < n; s++) {
+            Arrays.fill(distance[s], -1);
+            distance[s][s] = 0;
+            paths[s][s] = 1;
+            final Deque<Integer> queue = new ArrayDeque<>();
+            queue.add(s);
+            while (!queue.isEmpty()) {
+                final int v = queue.poll();
+                for (int slot = graph.firstSlot(v); slot < graph.endSlot(v); slot++) {
+                    final int w = graph.target(slot);
+                    if (distance[s][w] < 0) {
+                        distance[s][w] = distance[s][v] + 1;
+                        queue.add(w);
+                    }
+                    if (distance[s][w] == distance[s][v] + 1) {
+                        paths[s][w] += paths[s][v];
+                    }
+                }
+            }
+        }
+    }
+
+    private static <N extends Node<N, E>, E extends Edge<N, E>> double[] naiveBetweenness(CompactGraph<N, E> graph) {
+        final int n = graph.nodeCount();
+        final int[][] distance = new int[n][n];
+        final double[][] paths = new double[n][n];
+        allPairs(graph, distance, paths);
+
+        final double[] scores = new double[n];
+        for (int v = 0; v < n; v++) {
+            for (int s = 0; s < n; s++) {
+                for (int t = 0; t < n; t++) {
+                    if (s == v || t == v || s == t || distance[s][t] < 0) continue;
+                    if (distance[s][v] >= 0 && distance[v][t] >= 0 && distance[s][v] + distance[v][t] == distance[s][t]) {
+                        scores[v] += paths[s][v] * paths[v][t] / paths[s][t];
+                    }
+                }
+            }
+            if (graph.direction() == CompactGraph.Direction.BOTH) scores[v] /= 2;
+        }
+        return scores;
+    }
+
+    private static <N extends Node<N, E>, E extends Edge<N, E>> double[] naiveCloseness(CompactGraph<N, E> graph) {
+        final int n = graph.nodeCount();
+        final int[][] distance = new int[n][n];
+        allPairs(graph, distance, new double[n][n]);
+
+        final double[] scores = new double[n];
+        for (int v = 0; v < n; v++) {
+            int reached = 0;
+            int sum = 0;
+            for (int t = 0; t < n; t++) {
+                if (t != v && distance[v][t] > 0) {
+                    reached++;
+                    sum += distance[v][t];
+                }
+            }
+            scores[v] = sum == 0 ? 0 : ((double) reached / (n - 1)) * ((double) reached / sum);
+        }
+        return scores;
+    }
+
+    @Test
+    public void testUndirected() {
+        final Random random = new Random(3);
+        final GraphImpl graph = new GraphImpl();
+        final List<NodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 80; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < 130; i++) {
+            graph.connect(nodes.get(random.nextInt(75)), nodes.get(random.nextInt(75)));
+        }
+
+        final Centrality<NodeImpl, EdgeImpl> centrality = Centrality.of(graph).withPool(new ForkJoinPool(4));
+        final CompactGraph<NodeImpl, EdgeImpl> snapshot = centrality.betweenness().graph();
+        assertArrayEquals(naiveBetweenness(snapshot), centrality.betweenness().toArray(), DELTA);
+        assertArrayEquals(naiveCloseness(snapshot), centrality.closeness().toArray(), DELTA);
+    }
+
+    @Test
+    public void testDirected() {
+        final Random random = new Random(5);
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final List<DirectedNodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 80; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < 240; i++) {
+            graph.connect(nodes.get(random.nextInt(nodes.size())), nodes.get(random.nextInt(nodes.size())));
+        }
+
+        final Centrality<DirectedNodeImpl, DirectedEdgeImpl> centrality = Centrality.of(graph);
+        final CompactGraph<DirectedNodeImpl, DirectedEdgeImpl> snapshot = centrality.betweenness().graph();
+        assertEquals(CompactGraph.Direction.OUTGOING, snapshot.direction());
+        assertArrayEquals(naiveBetweenness(snapshot), centrality.betweenness().toArray(), DELTA);
+        assertArrayEquals(naiveCloseness(snapshot), centrality.closeness().toArray(), DELTA);
+    }
+
+    @Test
+    public void testStarAndPath() {
+        final GraphImpl star = new GraphImpl();
+        final NodeImpl center = star.createNode();
+        for (int i = 0; i < 10; i++) center.connect(star.createNode());
+
+        final CentralityScores<NodeImpl, EdgeImpl> betweenness = Centrality.of(star).betweenness();
+        assertEquals(10 * 9 / 2, betweenness.score(center), DELTA);
+        assertEquals(List.of(center), betweenness.top(1));
+        assertEquals(1.0, Centrality.of(star).closeness().score(center), DELTA);
+
+        final GraphImpl path = new GraphImpl();
+        final NodeImpl a = path.createNode();
+        final NodeImpl b = path.createNode();
+        final NodeImpl c = path.createNode();
+        a.connect(b);
+        b.connect(c);
+        final CentralityScores<NodeImpl, EdgeImpl> closeness = Centrality.of(path).closeness();
+        assertEquals(1.0, closeness.score(b), DELTA);
+        assertEquals(2.0 / 3, closeness.score(a), DELTA);
+        assertEquals(1.0, Centrality.of(path).betweenness().score(b), DELTA);
+
+        try {
+            closeness.score(path.createNode());
+            fail("A node created after the snapshot is not in it");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSampled() {
+        final GraphImpl graph = new GraphImpl();
+        final List<NodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) nodes.add(graph.createNode());
+        for (int i = 1; i < 1000; i++) nodes.get(i).connect(nodes.get((i - 1) / 2));
+
+        final CentralityScores<NodeImpl, EdgeImpl> exact = Centrality.of(graph).betweenness();
+        final CentralityScores<NodeImpl, EdgeImpl> sampled = Centrality.of(graph).withSamples(200).withSeed(1).betweenness();
+        assertEquals(1000, exact.sources());
+        assertEquals(200, sampled.sources());
+        for (NodeImpl node : nodes.subList(0, 3)) {
+            assertEquals(exact.score(node), sampled.score(node), exact.score(node) * 0.2);
+        }
+
+        // The same seed draws the same sample
+        assertArrayEquals(sampled.toArray(),
+                Centrality.of(sampled.graph()).withSamples(200).withSeed(1).betweenness().toArray(), DELTA);
+        // A sample of all nodes is exact
+        assertArrayEquals(exact.toArray(), Centrality.of(graph).withSamples(5000).betweenness().toArray(), 1e-6);
+    }
+
+    @Test
+    public void testProgress() {
+        final GraphImpl graph = new GraphImpl();
+        final List<NodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 500; i++) nodes.add(graph.createNode());
+        for (int i = 1; i < 500; i++) nodes.get(i).connect(nodes.get(i - 1));
+
+        final ConcurrentLinkedQueue<int[]> updates = new ConcurrentLinkedQueue<>();
+        Centrality.of(graph).withSamples(300).withProgress((done, total) -> updates.add(new int[]{done, total}))
+                .betweenness();
+
+        assertFalse(updates.isEmpty());
+        assertTrue(updates.size() <= 101);
+        assertTrue(updates.stream().allMatch(update -> update[1] == 300 && update[0] <= 300));
+        assertTrue(updates.stream().anyMatch(update -> update[0] == 300));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.junit.Test;
+import org.medal.graph.Subgraph;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class MinimumSpanningForestTest {
+
+    @Test
+    public void testSmallGraph() {
+        final GraphImpl graph = new GraphImpl();
+        /*
+         *   (a) -1- (b)
+         *    |     / |
+         *    4   2   5
+         *    |  /    |
+         *   (c) -3- (d)     (e)
+         */
+        final NodeImpl a = graph.createNode();
+        final NodeImpl b = graph.createNode();
+        final NodeImpl c = graph.createNode();
+        final NodeImpl d = graph.createNode();
+        graph.createNode();
+        final Map<EdgeImpl, Double> weights = new HashMap<>();
+        final EdgeImpl ab = a.connect(b);
+        weights.put(ab, 1.0);
+        weights.put(a.connect(c), 4.0);
+        final EdgeImpl bc = b.connect(c);
+        weights.put(bc, 2.0);
+        weights.put(b.connect(d), 5.0);
+        final EdgeImpl cd = c.connect(d);
+        weights.put(cd, 3.0);
+        weights.put(a.connect(a), -10.0);
+
+        for (SpanningForest<NodeImpl, EdgeImpl> forest : List.of(
+                MinimumSpanningForest.kruskal(graph, weights::get),
+                MinimumSpanningForest.prim(graph, weights::get))) {
+            assertEquals(Set.of(ab, bc, cd), forest.edges());
+            assertEquals(6.0, forest.totalWeight(), 1e-12);
+            assertEquals(2, forest.trees());
+
+            final Subgraph<NodeImpl, EdgeImpl> view = forest.asSubgraph();
+            assertEquals(5, view.nodes().size());
+            assertEquals(Set.of(ab, bc, cd), view.edges());
+        }
+    }
+
+    @Test
+    public void testAlgorithmsAgreeOnRandomGraphs() {
+        final Random random = new Random(3);
+        for (int round = 0; round < 10; round++) {
+            final GraphImpl graph = new GraphImpl();
+            final List<NodeImpl> nodes = new ArrayList<>();
+            final int n = 50 + random.nextInt(200);
+            for (int i = 0; i < n; i++) nodes.add(graph.createNode());
+            final Map<EdgeImpl, Double> weights = new HashMap<>();
+            for (int i = 0; i < 3 * n; i++) {
+                final EdgeImpl edge = graph.connect(nodes.get(random.nextInt(n)), nodes.get(random.nextInt(n)));
+                weights.put(edge, (double) random.nextInt(20));
+            }
+
+            final SpanningForest<NodeImpl, EdgeImpl> kruskal = MinimumSpanningForest.kruskal(graph, weights::get);
+            final SpanningForest<NodeImpl, EdgeImpl> prim = MinimumSpanningForest.prim(graph, weights::get);
+
+            assertEquals(kruskal.totalWeight(), prim.totalWeight(), 1e-9);
+            assertEquals(kruskal.trees(), prim.trees());
+            assertEquals(n - kruskal.trees(), kruskal.edges().size());
+            assertEquals(graph.statistics().componentCount(), kruskal.trees());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNaN() {
+        final GraphImpl graph = new GraphImpl();
+        graph.createNode().connect(graph.createNode());
+
+        MinimumSpanningForest.kruskal(graph, edge -> Double.NaN);
+    }
+
+}
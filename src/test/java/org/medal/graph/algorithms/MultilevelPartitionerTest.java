@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.junit.Test;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class MultilevelPartitionerTest {
+
+    /**
+     * Builds a ring of cliques: every clique is connected to the next one by a
+     * single edge.
+     */
+    static List<List<NodeImpl>> ringOfCliques(GraphImpl graph, int cliques, int cliqueSize) {
+        final List<List<NodeImpl>> result = new ArrayList<>();
+        for (int c = 0; c < cliques; c++) {
+            final List<NodeImpl> clique = new ArrayList<>();
+            for (int i = 0; i < cliqueSize; i++) clique.add(graph.createNode());
+            for (int i = 0; i < cliqueSize; i++) {
+                for (int j = i + 1; j < cliqueSize; j++) clique.get(i).connect(clique.get(j));
+            }
+            result.add(clique);
+        }
+        for (int c = 0; c < cliques; c++) {
+            result.get(c).get(0).connect(result.get((c + 1) % cliques).get(1));
+        }
+        return result;
+    }
+
+    @Test
+    public void testFindsNaturalCut() {
+        final GraphImpl graph = new GraphImpl();
+        final List<List<NodeImpl>> cliques = ringOfCliques(graph, 8, 20);
+
+        final Partitioning<NodeImpl, EdgeImpl> partitioning = new MultilevelPartitioner(4).partition(graph);
+
+        assertEquals(4, partitioning.parts());
+        assertEquals(4, partitioning.cutEdges());
+        assertEquals(1.0, partitioning.imbalance(), 1e-9);
+
+        // Each clique stays in one part
+        for (List<NodeImpl> clique : cliques) {
+            final int part = partitioning.part(clique.get(0));
+            for (NodeImpl node : clique) assertEquals(part, partitioning.part(node));
+        }
+        assertEquals(160, partitioning.toMap().size());
+    }
+
+    @Test
+    public void testKeepsBalance() {
+        final GraphImpl graph = new GraphImpl();
+        // A 30x30 grid
+        final NodeImpl[][] grid = new NodeImpl[30][30];
+        for (int i = 0; i < 30; i++) {
+            for (int j = 0; j < 30; j++) {
+                grid[i][j] = graph.createNode();
+                if (i > 0) grid[i][j].connect(grid[i - 1][j]);
+                if (j > 0) grid[i][j].connect(grid[i][j - 1]);
+            }
+        }
+
+        final Partitioning<NodeImpl, EdgeImpl> partitioning = new MultilevelPartitioner(3)
+                .withImbalance(0.05)
+                .withSeed(7)
+                .partition(graph);
+
+        assertTrue(partitioning.imbalance() <= 1.05);
+        for (int size : partitioning.partSizes()) assertTrue(size > 0);
+        // Straight cuts would cost 60 edges, hashing would cut about 2/3 of all 1740
+        assertTrue("Cut is too large: " + partitioning.cutEdges(), partitioning.cutEdges() < 150);
+    }
+
+    @Test
+    public void testSinglePart() {
+        final GraphImpl graph = new GraphImpl();
+        ringOfCliques(graph, 2, 5);
+
+        final Partitioning<NodeImpl, EdgeImpl> partitioning = new MultilevelPartitioner(1).partition(graph);
+        assertEquals(0, partitioning.cutEdges());
+        assertArrayEquals(new int[]{10}, partitioning.partSizes());
+    }
+
+    @Test
+    public void testRefinementPasses() {
+        final GraphImpl graph = new GraphImpl();
+        ringOfCliques(graph, 8, 20);
+
+        final Partitioning<NodeImpl, EdgeImpl> unrefined = new MultilevelPartitioner(4)
+                .withRefinementPasses(0)
+                .partition(graph);
+        final Partitioning<NodeImpl, EdgeImpl> refined = new MultilevelPartitioner(4)
+                .withRefinementPasses(16)
+                .partition(graph);
+        assertTrue(refined.cutEdges() <= unrefined.cutEdges());
+        assertEquals(160, unrefined.toMap().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeRefinementPasses() {
+        new MultilevelPartitioner(2).withRefinementPasses(-1);
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.medal.graph.algorithms.NeighborhoodCache.Eviction;
+import org.medal.graph.impl.DirectedEdgeImpl;
+import org.medal.graph.impl.DirectedGraphImpl;
+import org.medal.graph.impl.DirectedNodeImpl;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+import org.medal.graph.impl.PartitionedGraphImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class NeighborhoodsTest {
+
+    private GraphImpl graph;
+
+    private List<NodeImpl> path;
+
+    @Before
+    public void prepareData() {
+        graph = new GraphImpl();
+        /*
+         *   (0) - (1) - (2) - (3) - (4) - (5)
+         */
+        path = new ArrayList<>();
+        for (int i = 0; i < 6; i++) path.add(graph.createNode());
+        for (int i = 0; i < 5; i++) path.get(i).connect(path.get(i + 1));
+    }
+
+    @Test
+    public void testNeighborhood() {
+        assertEquals(Set.of(), Neighborhoods.neighborhood(path.get(2), 0));
+        assertEquals(Set.of(path.get(1), path.get(3)), Neighborhoods.neighborhood(path.get(2), 1));
+        assertEquals(Set.of(path.get(0), path.get(1), path.get(3), path.get(4)),
+                Neighborhoods.neighborhood(path.get(2), 2));
+        assertEquals(5, Neighborhoods.neighborhood(path.get(0), 10).size());
+
+        // A shortcut makes the far end reachable in fewer hops.
+        path.get(0).connect(path.get(5));
+        assertEquals(Set.of(path.get(1), path.get(5), path.get(2), path.get(4)),
+                Neighborhoods.neighborhood(path.get(0), 2));
+    }
+
+    @Test
+    public void testNeighborhoodIgnoresDirection() {
+        final DirectedGraphImpl directed = new DirectedGraphImpl();
+        final DirectedNodeImpl a = directed.createNode();
+        final DirectedNodeImpl b = directed.createNode();
+        final DirectedNodeImpl c = directed.createNode();
+        directed.connect(a, b);
+        directed.connect(c, b);
+
+        assertEquals(Set.of(b, c), Neighborhoods.<DirectedNodeImpl, DirectedEdgeImpl>neighborhood(a, 2));
+    }
+
+    @Test
+    public void testNeighborhoodInPartitionedGraph() {
+        final PartitionedGraphImpl partitioned = new PartitionedGraphImpl(3);
+        final List<NodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 6; i++) nodes.add(partitioned.createNode());
+        for (int i = 0; i < 5; i++) partitioned.connect(nodes.get(i), nodes.get(i + 1));
+
+        assertEquals(Set.of(nodes.get(1), nodes.get(3), nodes.get(0), nodes.get(4)),
+                Neighborhoods.neighborhood(nodes.get(2), 2));
+    }
+
+    @Test
+    public void testCacheHitsAndPreciseInvalidation() {
+        try (NeighborhoodCache<NodeImpl, EdgeImpl> cache = NeighborhoodCache.attach(graph, 16, Eviction.LRU)) {
+            assertEquals(Set.of(path.get(1), path.get(2)), cache.neighborhood(path.get(0), 2));
+            assertEquals(Set.of(path.get(1), path.get(2)), cache.neighborhood(path.get(0), 2));
+            assertEquals(1, cache.hits());
+            assertEquals(1, cache.misses());
+
+            // (5) is beyond the region the entry depends on.
+            final NodeImpl extra = graph.createNode();
+            path.get(5).connect(extra);
+            assertEquals(1, cache.size());
+
+            // (2) is exactly two hops away, its new edges do not matter either.
+            path.get(2).connect(extra);
+            assertEquals(1, cache.size());
+
+            // (1) is inside the region.
+            path.get(1).connect(extra);
+            assertEquals(0, cache.size());
+            assertEquals(Set.of(path.get(1), path.get(2), extra), cache.neighborhood(path.get(0), 2));
+
+            graph.deleteNode(extra);
+            assertEquals(Set.of(path.get(1), path.get(2)), cache.neighborhood(path.get(0), 2));
+            assertEquals(3, cache.misses());
+        }
+    }
+
+    @Test
+    public void testCollapseInvalidates() {
+        try (NeighborhoodCache<NodeImpl, EdgeImpl> cache = NeighborhoodCache.attach(graph, 16, Eviction.LFU)) {
+            assertEquals(2, cache.neighborhood(path.get(0), 2).size());
+
+            final EdgeImpl edge = path.get(1).incidentEdges().stream()
+                    .filter(e -> e.opposite(path.get(1)).get() == path.get(2))
+                    .findFirst().get();
+            final NodeImpl collapsed = edge.collapse();
+
+            assertEquals(Set.of(collapsed, path.get(3)), cache.neighborhood(path.get(0), 2));
+        }
+    }
+
+    @Test
+    public void testEviction() {
+        try (NeighborhoodCache<NodeImpl, EdgeImpl> lru = NeighborhoodCache.attach(graph, 2, Eviction.LRU)) {
+            lru.neighborhood(path.get(0), 1);
+            lru.neighborhood(path.get(1), 1);
+            lru.neighborhood(path.get(0), 1);
+            lru.neighborhood(path.get(2), 1); // evicts (1)
+
+            lru.neighborhood(path.get(0), 1);
+            assertEquals(2, lru.hits());
+            lru.neighborhood(path.get(1), 1);
+            assertEquals(2, lru.hits());
+        }
+
+        try (NeighborhoodCache<NodeImpl, EdgeImpl> lfu = NeighborhoodCache.attach(graph, 2, Eviction.LFU)) {
+            lfu.neighborhood(path.get(0), 1);
+            lfu.neighborhood(path.get(0), 1);
+            lfu.neighborhood(path.get(1), 1);
+            lfu.neighborhood(path.get(2), 1); // evicts (1), used once
+
+            lfu.neighborhood(path.get(0), 1);
+            assertEquals(2, lfu.hits());
+            lfu.neighborhood(path.get(2), 1);
+            assertEquals(3, lfu.hits());
+            lfu.neighborhood(path.get(1), 1);
+            assertEquals(3, lfu.hits());
+        }
+    }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.junit.Test;
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+import org.medal.graph.compact.CompactGraph;
+import org.medal.graph.compact.CompactGraph.Direction;
+import org.medal.graph.compact.CompressedGraph;
+import org.medal.graph.impl.DirectedEdgeImpl;
+import org.medal.graph.impl.DirectedGraphImpl;
+import org.medal.graph.impl.DirectedNodeImpl;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class PageRankTest {
+
+    private static final double DELTA = 1e-8;
+
+    /**
+     * Power iteration over the edges of the graph, with uniform handling of dangling nodes.
+     */
+    private static <N extends Node<N, E>, E extends Edge<N, E>> Map<N, Double> naiveRanks(
+            Graph<N, E> graph, boolean directed, Map<N, Double> teleport) {
+        final Map<N, Double> outWeight = new HashMap<>();
+        for (E edge : graph.edges()) {
+            outWeight.merge(edge.left(), (double) edge.multiplicity(), Double::sum);
+            if (!directed) outWeight.merge(edge.right(), (double) edge.multiplicity(), Double::sum);
+        }
+
+        final int n = graph.nodes().size();
+        Map<N, Double> ranks = new HashMap<>(teleport);
+        for (int i = 0; i < 500; i++) {
+            double danglingMass = 0;
+            for (N node : graph.nodes()) {
+                if (!outWeight.containsKey(node)) danglingMass += ranks.get(node);
+            }
+            final Map<N, Double> next = new HashMap<>();
+            for (N node : graph.nodes()) {
+                next.put(node, 0.15 * teleport.get(node) + 0.85 * danglingMass / n);
+            }
+            for (E edge : graph.edges()) {
+                final N left = edge.left();
+                final N right = edge.right();
+                next.merge(right, 0.85 * edge.multiplicity() * ranks.get(left) / outWeight.get(left), Double::sum);
+                if (!directed) {
+                    next.merge(left, 0.85 * edge.multiplicity() * ranks.get(right) / outWeight.get(right), Double::sum);
+                }
+            }
+            ranks = next;
+        }
+        return ranks;
+    }
+
+    private static <N> Map<N, Double> uniform(List<N> nodes) {
+        final Map<N, Double> teleport = new HashMap<>();
+        for (N node : nodes) teleport.put(node, 1.0 / nodes.size());
+        return teleport;
+    }
+
+    @Test
+    public void testDirected() {
+        final Random random = new Random(13);
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final List<DirectedNodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 9000; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < 30000; i++) {
+            // A tenth of the nodes stays dangling
+            graph.connect(nodes.get(random.nextInt(8100)), nodes.get(random.nextInt(nodes.size())));
+        }
+
+        final PageRankScores<DirectedNodeImpl, DirectedEdgeImpl> scores = PageRank.of(graph)
+                .withPool(new ForkJoinPool(4))
+                .ranks();
+        assertTrue(scores.converged());
+        assertEquals(scores.residuals().length, scores.iterations());
+        assertTrue(scores.residuals()[scores.iterations() - 1] < 1e-9);
+        assertEquals(1.0, Arrays.stream(scores.toArray()).sum(), DELTA);
+
+        final Map<DirectedNodeImpl, Double> expected = naiveRanks(graph, true, uniform(nodes));
+        for (DirectedNodeImpl node : nodes) {
+            assertEquals(expected.get(node), scores.rank(node), DELTA);
+        }
+    }
+
+    @Test
+    public void testCompressedAdjacency() {
+        final Random random = new Random(29);
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final List<DirectedNodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < 20000; i++) {
+            graph.connect(nodes.get(random.nextInt(4500)), nodes.get(random.nextInt(nodes.size())));
+        }
+
+        final CompressedGraph<DirectedNodeImpl, DirectedEdgeImpl> links =
+                CompressedGraph.of(CompactGraph.of(graph, Direction.INCOMING));
+        final PageRankScores<DirectedNodeImpl, DirectedEdgeImpl> compressed = PageRank.of(links)
+                .withPool(new ForkJoinPool(4))
+                .ranks();
+        final PageRankScores<DirectedNodeImpl, DirectedEdgeImpl> compact = PageRank.of(graph).ranks();
+
+        assertTrue(compressed.converged());
+        assertEquals(compact.iterations(), compressed.iterations());
+        for (DirectedNodeImpl node : nodes) {
+            assertEquals(compact.rank(node), compressed.rank(node), DELTA);
+        }
+
+        final Map<DirectedNodeImpl, Double> personalization = Map.of(nodes.get(0), 1.0, nodes.get(1), 3.0);
+        final PageRankScores<DirectedNodeImpl, DirectedEdgeImpl> personalized = PageRank.of(links).ranks(personalization);
+        final PageRankScores<DirectedNodeImpl, DirectedEdgeImpl> expected = PageRank.of(graph).ranks(personalization);
+        for (DirectedNodeImpl node : nodes) {
+            assertEquals(expected.rank(node), personalized.rank(node), DELTA);
+        }
+    }
+
+    @Test
+    public void testUndirected() {
+        final GraphImpl cycle = new GraphImpl();
+        final List<NodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) nodes.add(cycle.createNode());
+        for (int i = 0; i < 50; i++) nodes.get(i).connect(nodes.get((i + 1) % 50));
+
+        final PageRankScores<NodeImpl, EdgeImpl> scores = PageRank.of(cycle).ranks();
+        for (NodeImpl node : nodes) assertEquals(1.0 / 50, scores.rank(node), DELTA);
+
+        final NodeImpl hub = cycle.createNode();
+        for (int i = 0; i < 50; i += 5) hub.connect(nodes.get(i));
+        final PageRankScores<NodeImpl, EdgeImpl> withHub = PageRank.of(cycle).ranks();
+        assertEquals(List.of(hub), withHub.top(1));
+
+        final List<NodeImpl> all = new ArrayList<>(nodes);
+        all.add(hub);
+        final Map<NodeImpl, Double> expected = naiveRanks(cycle, false, uniform(all));
+        for (NodeImpl node : all) assertEquals(expected.get(node), withHub.rank(node), DELTA);
+    }
+
+    @Test
+    public void testPersonalized() {
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final List<DirectedNodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < 4; i++) nodes.get(i).connect(nodes.get(i + 1));
+        nodes.get(4).connect(nodes.get(0));
+        for (int i = 5; i < 9; i++) nodes.get(i).connect(nodes.get(i + 1));
+
+        final Map<DirectedNodeImpl, Double> personalization = new HashMap<>();
+        personalization.put(nodes.get(0), 3.0);
+        personalization.put(nodes.get(2), 1.0);
+        final PageRankScores<DirectedNodeImpl, DirectedEdgeImpl> scores = PageRank.of(graph)
+                .withDangling(PageRank.Dangling.TELEPORT)
+                .ranks(personalization);
+
+        // The second chain can not be reached from the personalized nodes
+        for (int i = 5; i < 10; i++) assertEquals(0, scores.rank(nodes.get(i)), DELTA);
+        assertEquals(List.of(nodes.get(0)), scores.top(1));
+        assertEquals(1.0, Arrays.stream(scores.toArray()).sum(), DELTA);
+
+        try {
+            PageRank.of(graph).ranks(Map.of(nodes.get(0), -1.0));
+            fail("A negative weight is not a probability");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDangling() {
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final DirectedNodeImpl a = graph.createNode();
+        final DirectedNodeImpl b = graph.createNode();
+        final DirectedNodeImpl c = graph.createNode();
+        a.connect(b);
+        a.connect(c);
+
+        final double dropped = Arrays.stream(
+                PageRank.of(graph).withDangling(PageRank.Dangling.DROP).ranks().toArray()).sum();
+        assertTrue(dropped < 0.5);
+
+        // With uniform teleports, teleporting the dangling mass is spreading it uniformly
+        assertArrayEquals(PageRank.of(graph).ranks().toArray(),
+                PageRank.of(graph).withDangling(PageRank.Dangling.TELEPORT).ranks().toArray(), DELTA);
+
+        final PageRankScores<DirectedNodeImpl, DirectedEdgeImpl> limited = PageRank.of(graph)
+                .withTolerance(1e-300)
+                .withMaxIterations(3)
+                .ranks();
+        assertFalse(limited.converged());
+        assertEquals(3, limited.iterations());
+    }
+
+    @Test
+    public void testFoldedEdges() {
+        final DirectedGraphImpl folded = new DirectedGraphImpl();
+        folded.withParallelEdgeFolding();
+        final DirectedGraphImpl plain = new DirectedGraphImpl();
+        final Random random = new Random(17);
+        final List<DirectedNodeImpl> foldedNodes = new ArrayList<>();
+        final List<DirectedNodeImpl> plainNodes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            foldedNodes.add(folded.createNode());
+            plainNodes.add(plain.createNode());
+        }
+        for (int i = 0; i < 100; i++) {
+            final int left = random.nextInt(20);
+            final int right = random.nextInt(20);
+            folded.connect(foldedNodes.get(left), foldedNodes.get(right));
+            plain.connect(plainNodes.get(left), plainNodes.get(right));
+        }
+        assertTrue(folded.edges().size() < plain.edges().size());
+
+        final PageRankScores<DirectedNodeImpl, DirectedEdgeImpl> foldedScores = PageRank.of(folded).ranks();
+        final PageRankScores<DirectedNodeImpl, DirectedEdgeImpl> plainScores = PageRank.of(plain).ranks();
+        for (int i = 0; i < 20; i++) {
+            assertEquals(plainScores.rank(plainNodes.get(i)), foldedScores.rank(foldedNodes.get(i)), DELTA);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.junit.Test;
+import org.medal.graph.impl.DirectedEdgeImpl;
+import org.medal.graph.impl.DirectedGraphImpl;
+import org.medal.graph.impl.DirectedNodeImpl;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class ReachabilityIndexTest {
+
+    static Set<DirectedNodeImpl> reachableFrom(DirectedNodeImpl source) {
+        final Set<DirectedNodeImpl> reached = new HashSet<>();
+        final Deque<DirectedNodeImpl> stack = new ArrayDeque<>();
+        reached.add(source);
+        stack.push(source);
+        while (!stack.isEmpty()) {
+            for (DirectedNodeImpl next : stack.pop().successors()) {
+                if (reached.add(next)) stack.push(next);
+            }
+        }
+        return reached;
+    }
+
+    @Test
+    public void testUndirected() {
+        final GraphImpl graph = new GraphImpl();
+        final NodeImpl a = graph.createNode();
+        final NodeImpl b = graph.createNode();
+        final NodeImpl c = graph.createNode();
+        final NodeImpl d = graph.createNode();
+        a.connect(b);
+        c.connect(b);
+
+        final ReachabilityIndex<NodeImpl, EdgeImpl> index = ReachabilityIndex.build(graph);
+
+        assertEquals(2, index.componentCount());
+        assertTrue(index.reachable(a, c));
+        assertTrue(index.reachable(c, a));
+        assertTrue(index.reachable(d, d));
+        assertFalse(index.reachable(a, d));
+    }
+
+    @Test
+    public void testDirectedWithCycles() {
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        /*
+         *   (0) -> (1) -> (2) -> (3)
+         *           ^      |
+         *           +------+
+         */
+        final List<DirectedNodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) nodes.add(graph.createNode());
+        graph.connect(nodes.get(0), nodes.get(1));
+        graph.connect(nodes.get(1), nodes.get(2));
+        graph.connect(nodes.get(2), nodes.get(1));
+        graph.connect(nodes.get(2), nodes.get(3));
+
+        final ReachabilityIndex<DirectedNodeImpl, DirectedEdgeImpl> index = ReachabilityIndex.build(graph);
+
+        assertEquals(3, index.componentCount());
+        assertTrue(index.reachable(nodes.get(0), nodes.get(3)));
+        assertTrue(index.reachable(nodes.get(2), nodes.get(1)));
+        assertFalse(index.reachable(nodes.get(3), nodes.get(0)));
+        assertFalse(index.reachable(nodes.get(1), nodes.get(0)));
+        assertTrue(index.memoryFootprint() > 0);
+        assertFalse(index.buildTime().isNegative());
+    }
+
+    @Test
+    public void testMatchesTraversalOnRandomGraphs() {
+        final Random random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            final DirectedGraphImpl graph = new DirectedGraphImpl();
+            final List<DirectedNodeImpl> nodes = new ArrayList<>();
+            final int n = 10 + random.nextInt(60);
+            for (int i = 0; i < n; i++) nodes.add(graph.createNode());
+            final int m = random.nextInt(2 * n);
+            for (int i = 0; i < m; i++) {
+                graph.connect(nodes.get(random.nextInt(n)), nodes.get(random.nextInt(n)));
+            }
+
+            final ReachabilityIndex<DirectedNodeImpl, DirectedEdgeImpl> index = ReachabilityIndex.build(graph);
+            for (DirectedNodeImpl source : nodes) {
+                final Set<DirectedNodeImpl> expected = reachableFrom(source);
+                for (DirectedNodeImpl target : nodes) {
+                    assertEquals(expected.contains(target), index.reachable(source, target));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownNode() {
+        final GraphImpl graph = new GraphImpl();
+        final NodeImpl a = graph.createNode();
+        final ReachabilityIndex<NodeImpl, EdgeImpl> index = ReachabilityIndex.build(graph);
+
+        index.reachable(a, graph.createNode());
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.junit.Test;
+import org.medal.graph.impl.DirectedEdgeImpl;
+import org.medal.graph.impl.DirectedGraphImpl;
+import org.medal.graph.impl.DirectedNodeImpl;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.medal.graph.algorithms.ReachabilityIndexTest.reachableFrom;
+
+/**
+ * @author skrymets
+ */
+public class StrongComponentsTest {
+
+    @Test
+    public void testRandomDirected() {
+        final Random random = new Random(31);
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final List<DirectedNodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < 450; i++) {
+            graph.connect(nodes.get(random.nextInt(nodes.size())), nodes.get(random.nextInt(nodes.size())));
+        }
+
+        final StrongComponents<DirectedNodeImpl, DirectedEdgeImpl> components = StrongComponents.of(graph);
+        final List<Set<DirectedNodeImpl>> reachable = new ArrayList<>();
+        for (DirectedNodeImpl node : nodes) reachable.add(reachableFrom(node));
+        for (int a = 0; a < nodes.size(); a++) {
+            for (int b = 0; b < nodes.size(); b++) {
+                final boolean strong = reachable.get(a).contains(nodes.get(b)) && reachable.get(b).contains(nodes.get(a));
+                assertEquals(strong, components.component(nodes.get(a)) == components.component(nodes.get(b)));
+            }
+        }
+
+        // Components are numbered in a topological order
+        for (DirectedEdgeImpl edge : graph.edges()) {
+            assertTrue(components.component(edge.left()) <= components.component(edge.right()));
+        }
+        int members = 0;
+        for (int c = 0; c < components.count(); c++) {
+            for (DirectedNodeImpl node : components.members(c)) assertEquals(c, components.component(node));
+            members += components.members(c).size();
+        }
+        assertEquals(nodes.size(), members);
+        assertFalse(components.isAcyclic());
+    }
+
+    @Test
+    public void testCondensation() {
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final List<DirectedNodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 7; i++) nodes.add(graph.createNode());
+        // Two cycles {0, 1, 2} and {3, 4}, linked twice, and a tail 5 -> 6
+        nodes.get(0).connect(nodes.get(1));
+        nodes.get(1).connect(nodes.get(2));
+        nodes.get(2).connect(nodes.get(0));
+        nodes.get(3).connect(nodes.get(4));
+        nodes.get(4).connect(nodes.get(3));
+        nodes.get(1).connect(nodes.get(3));
+        nodes.get(2).connect(nodes.get(4));
+        nodes.get(4).connect(nodes.get(5));
+        nodes.get(5).connect(nodes.get(6));
+
+        final StrongComponents<DirectedNodeImpl, DirectedEdgeImpl> components = StrongComponents.of(graph);
+        assertEquals(4, components.count());
+
+        final Condensation<DirectedNodeImpl, DirectedEdgeImpl, DirectedNodeImpl, DirectedEdgeImpl> condensation =
+                components.condense(new DirectedGraphImpl());
+        final DirectedGraphImpl condensed = (DirectedGraphImpl) condensation.graph();
+        assertEquals(4, condensed.nodes().size());
+        assertEquals(3, condensed.edges().size());
+        assertTrue(StrongComponents.of(condensed).isAcyclic());
+
+        final DirectedNodeImpl first = condensation.nodeOf(nodes.get(1));
+        assertSame(first, condensation.node(0));
+        assertEquals(new HashSet<>(nodes.subList(0, 3)), new HashSet<>(condensation.members(first)));
+        assertEquals(Set.of(condensation.nodeOf(nodes.get(3))), first.successors());
+        assertEquals(List.of(nodes.get(6)), condensation.members(condensation.nodeOf(nodes.get(6))));
+
+        try {
+            condensation.members(graph.createNode());
+            fail("A node of the condensed graph only has members");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLongChains() {
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final int length = 1_000_000;
+        DirectedNodeImpl first = graph.createNode();
+        DirectedNodeImpl last = first;
+        for (int i = 1; i < length; i++) {
+            final DirectedNodeImpl next = graph.createNode();
+            last.connect(next);
+            last = next;
+        }
+
+        final StrongComponents<DirectedNodeImpl, DirectedEdgeImpl> chain = StrongComponents.of(graph);
+        assertEquals(length, chain.count());
+        assertTrue(chain.isAcyclic());
+        assertEquals(0, chain.component(first));
+        assertEquals(length - 1, chain.component(last));
+
+        last.connect(first);
+        final StrongComponents<DirectedNodeImpl, DirectedEdgeImpl> cycle = StrongComponents.of(graph);
+        assertEquals(1, cycle.count());
+        assertEquals(length, cycle.members(0).size());
+    }
+
+    @Test
+    public void testUndirected() {
+        final GraphImpl graph = new GraphImpl();
+        final NodeImpl a = graph.createNode();
+        final NodeImpl b = graph.createNode();
+        final NodeImpl c = graph.createNode();
+        final NodeImpl d = graph.createNode();
+        a.connect(b);
+        c.connect(b);
+
+        final StrongComponents<NodeImpl, EdgeImpl> components = StrongComponents.of(graph);
+        assertEquals(2, components.count());
+        assertEquals(components.component(a), components.component(c));
+        assertNotEquals(components.component(a), components.component(d));
+        assertEquals(0, components.condense(new GraphImpl()).graph().edges().size());
+    }
+}
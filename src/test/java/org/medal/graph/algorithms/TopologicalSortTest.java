@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.junit.Test;
+import org.medal.graph.impl.DirectedEdgeImpl;
+import org.medal.graph.impl.DirectedGraphImpl;
+import org.medal.graph.impl.DirectedNodeImpl;
+import org.medal.graph.impl.GraphImpl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class TopologicalSortTest {
+
+    @Test
+    public void testRandomDag() {
+        final Random random = new Random(37);
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final List<DirectedNodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) nodes.add(graph.createNode());
+        // Edges go forward in a hidden order, which differs from the order of creation
+        final List<DirectedNodeImpl> hidden = new ArrayList<>(nodes);
+        Collections.shuffle(hidden, random);
+        for (int i = 0; i < 8000; i++) {
+            final int a = random.nextInt(hidden.size());
+            final int b = random.nextInt(hidden.size());
+            if (a != b) graph.connect(hidden.get(Math.min(a, b)), hidden.get(Math.max(a, b)));
+        }
+
+        final TopologicalSort<DirectedNodeImpl, DirectedEdgeImpl> sort = TopologicalSort.of(graph);
+        assertTrue(sort.isAcyclic());
+        final List<DirectedNodeImpl> order = sort.order().get();
+        assertEquals(nodes.size(), order.size());
+        final int[] positions = sort.positions().get();
+        for (DirectedEdgeImpl edge : graph.edges()) {
+            final int left = positions[sort.graph().index(edge.left())];
+            final int right = positions[sort.graph().index(edge.right())];
+            assertTrue(left < right);
+            assertSame(edge.left(), order.get(left));
+        }
+    }
+
+    @Test
+    public void testCycles() {
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final DirectedNodeImpl a = graph.createNode();
+        final DirectedNodeImpl b = graph.createNode();
+        final DirectedNodeImpl c = graph.createNode();
+        a.connect(b);
+        b.connect(c);
+        assertEquals(List.of(a, b, c), TopologicalSort.of(graph).order().get());
+
+        final DirectedEdgeImpl loop = c.connect(c);
+        assertFalse(TopologicalSort.of(graph).isAcyclic());
+        graph.deleteEdge(loop);
+
+        c.connect(a);
+        assertFalse(TopologicalSort.of(graph).order().isPresent());
+        assertFalse(TopologicalSort.of(graph).positions().isPresent());
+
+        // An undirected edge goes both ways
+        final GraphImpl undirected = new GraphImpl();
+        undirected.createNode().connect(undirected.createNode());
+        assertFalse(TopologicalSort.of(undirected).isAcyclic());
+    }
+
+    @Test
+    public void testLongChain() {
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final List<DirectedNodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 1_000_000; i++) nodes.add(graph.createNode());
+        for (int i = nodes.size() - 1; i > 0; i--) nodes.get(i).connect(nodes.get(i - 1));
+
+        final List<DirectedNodeImpl> order = TopologicalSort.of(graph).order().get();
+        assertSame(nodes.get(nodes.size() - 1), order.get(0));
+        assertSame(nodes.get(0), order.get(order.size() - 1));
+    }
+}
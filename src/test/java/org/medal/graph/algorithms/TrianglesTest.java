@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.algorithms;
+
+import org.junit.Test;
+import org.medal.graph.Edge;
+import org.medal.graph.Graph;
+import org.medal.graph.Node;
+import org.medal.graph.impl.DirectedGraphImpl;
+import org.medal.graph.impl.DirectedNodeImpl;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class TrianglesTest {
+
+    private static final double DELTA = 1e-12;
+
+    private static <N extends Node<N, E>, E extends Edge<N, E>> void assertCounts(Graph<N, E> graph) {
+        final Map<N, Set<N>> neighbors = new HashMap<>();
+        for (N node : graph.nodes()) neighbors.put(node, new HashSet<>());
+        for (E edge : graph.edges()) {
+            if (edge.left() != edge.right()) {
+                neighbors.get(edge.left()).add(edge.right());
+                neighbors.get(edge.right()).add(edge.left());
+            }
+        }
+
+        final TriangleCounts<N, E> counts = Triangles.of(graph).withPool(new ForkJoinPool(4)).count();
+        long total = 0;
+        for (N node : graph.nodes()) {
+            final List<N> adjacent = new ArrayList<>(neighbors.get(node));
+            long expected = 0;
+            for (int i = 0; i < adjacent.size(); i++) {
+                for (int j = i + 1; j < adjacent.size(); j++) {
+                    if (neighbors.get(adjacent.get(i)).contains(adjacent.get(j))) expected++;
+                }
+            }
+            total += expected;
+            assertEquals(expected, counts.triangles(node));
+            final int degree = adjacent.size();
+            assertEquals(degree < 2 ? 0 : 2.0 * expected / (degree * (degree - 1)), counts.clustering(node), DELTA);
+        }
+        assertEquals(total / 3, counts.total());
+    }
+
+    @Test
+    public void testUndirected() {
+        final Random random = new Random(19);
+        final GraphImpl graph = new GraphImpl();
+        final List<NodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < 12000; i++) {
+            // Indexes drawn close together make many triangles, and some parallel edges and self-loops
+            final int left = random.nextInt(nodes.size());
+            final int right = Math.floorMod(left + random.nextInt(40) - 20, nodes.size());
+            graph.connect(nodes.get(left), nodes.get(right));
+        }
+        assertCounts(graph);
+    }
+
+    @Test
+    public void testSkewedDegrees() {
+        final Random random = new Random(23);
+        final GraphImpl graph = new GraphImpl();
+        final List<NodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) nodes.add(graph.createNode());
+        // Hubs have neighbor lists far longer than the others, which are galloped through
+        for (int hub = 0; hub < 3; hub++) {
+            for (int i = hub + 1; i < nodes.size(); i++) nodes.get(hub).connect(nodes.get(i));
+        }
+        for (int i = 0; i < 4000; i++) {
+            graph.connect(nodes.get(3 + random.nextInt(1997)), nodes.get(3 + random.nextInt(1997)));
+        }
+        assertCounts(graph);
+    }
+
+    @Test
+    public void testDirectedIsTakenUndirected() {
+        final Random random = new Random(29);
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final List<DirectedNodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 500; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < 3000; i++) {
+            graph.connect(nodes.get(random.nextInt(100)), nodes.get(random.nextInt(nodes.size())));
+        }
+        assertCounts(graph);
+    }
+
+    @Test
+    public void testCompleteGraph() {
+        final GraphImpl graph = new GraphImpl();
+        final List<NodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 5; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < 5; i++) {
+            for (int j = i + 1; j < 5; j++) nodes.get(i).connect(nodes.get(j));
+        }
+        final NodeImpl pendant = graph.createNode();
+        pendant.connect(nodes.get(0));
+
+        final TriangleCounts<NodeImpl, EdgeImpl> counts = Triangles.of(graph).count();
+        assertEquals(10, counts.total());
+        assertEquals(6, counts.triangles(nodes.get(1)));
+        assertEquals(1.0, counts.clustering(nodes.get(1)), DELTA);
+        assertEquals(6.0 / 10, counts.clustering(nodes.get(0)), DELTA);
+        assertEquals(0, counts.clustering(pendant), DELTA);
+        assertEquals(30.0 / 34, counts.globalClustering(), DELTA);
+        assertEquals((4 + 0.6) / 6, counts.averageClustering(), DELTA);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.compact;
+
+import org.junit.Test;
+import org.medal.graph.impl.DirectedEdgeImpl;
+import org.medal.graph.impl.DirectedGraphImpl;
+import org.medal.graph.impl.DirectedNodeImpl;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class CompactGraphTest {
+
+    @Test
+    public void testUndirectedSnapshot() {
+        final GraphImpl graph = new GraphImpl();
+        final NodeImpl node0 = graph.createNode();
+        final NodeImpl node1 = graph.createNode();
+        final NodeImpl node2 = graph.createNode();
+        final EdgeImpl edge0to1 = node0.connect(node1);
+        node1.connect(node1);
+
+        final CompactGraph<NodeImpl, EdgeImpl> compact = CompactGraph.of(graph);
+
+        assertEquals(3, compact.nodeCount());
+        assertEquals(2, compact.edgeCount());
+        assertSame(node1, compact.node(compact.index(node1)));
+        assertEquals(-1, compact.index(new GraphImpl().createNode()));
+
+        // Degrees agree with the graph, a self-loop takes two slots
+        assertEquals(node0.degree(), compact.degree(compact.index(node0)));
+        assertEquals(node1.degree(), compact.degree(compact.index(node1)));
+        assertEquals(0, compact.degree(compact.index(node2)));
+
+        final int slot = compact.firstSlot(compact.index(node0));
+        assertEquals(compact.index(node1), compact.target(slot));
+        assertSame(edge0to1, compact.edge(compact.slotEdge(slot)));
+    }
+
+    @Test
+    public void testDirectedSnapshot() {
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final DirectedNodeImpl node0 = graph.createNode();
+        final DirectedNodeImpl node1 = graph.createNode();
+        node0.connect(node1);
+
+        final CompactGraph<DirectedNodeImpl, DirectedEdgeImpl> outgoing =
+                CompactGraph.of(graph, CompactGraph.Direction.OUTGOING);
+        final CompactGraph<DirectedNodeImpl, DirectedEdgeImpl> incoming =
+                CompactGraph.of(graph, CompactGraph.Direction.INCOMING);
+
+        assertEquals(1, outgoing.degree(outgoing.index(node0)));
+        assertEquals(0, outgoing.degree(outgoing.index(node1)));
+        assertEquals(0, incoming.degree(incoming.index(node0)));
+        assertEquals(1, incoming.degree(incoming.index(node1)));
+        assertEquals(1, outgoing.slotCount());
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.compact;
+
+import org.junit.Test;
+import org.medal.graph.compact.CompactGraph.Direction;
+import org.medal.graph.impl.DirectedEdgeImpl;
+import org.medal.graph.impl.DirectedGraphImpl;
+import org.medal.graph.impl.DirectedNodeImpl;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class CompressedGraphTest {
+
+    private static void assertSameAdjacency(CompactGraph<?, ?> expected, IntGraph actual) {
+        assertSameLists(expected, actual);
+        // A cursor reused for all the lists, in reverse order so that it shrinks and grows
+        final IntGraph cursor = actual.cursor();
+        assertSameLists(expected, cursor);
+        assertSameLists(expected, cursor);
+    }
+
+    private static void assertSameLists(CompactGraph<?, ?> expected, IntGraph actual) {
+        assertEquals(expected.nodeCount(), actual.nodeCount());
+        for (int v = expected.nodeCount() - 1; v >= 0; v--) {
+            final int[] expectedList = new int[expected.degree(v)];
+            expected.neighbors(v, expectedList);
+            Arrays.sort(expectedList);
+
+            assertEquals(expectedList.length, actual.degree(v));
+            final int[] actualList = new int[actual.degree(v)];
+            assertEquals(actualList.length, actual.neighbors(v, actualList));
+            assertArrayEquals(expectedList, actualList);
+        }
+    }
+
+    @Test
+    public void testRandomGraph() {
+        final Random random = new Random(13);
+        final GraphImpl graph = new GraphImpl();
+        final List<NodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < 1500; i++) {
+            graph.connect(nodes.get(random.nextInt(300)), nodes.get(random.nextInt(300)));
+        }
+        // Self-loops and parallel edges
+        nodes.get(0).connect(nodes.get(0));
+        nodes.get(1).connect(nodes.get(2));
+        nodes.get(1).connect(nodes.get(2));
+
+        final CompactGraph<NodeImpl, EdgeImpl> compact = CompactGraph.of(graph);
+        final CompressedGraph<NodeImpl, EdgeImpl> compressed = CompressedGraph.of(compact);
+
+        assertSameAdjacency(compact, compressed);
+        assertSameAdjacency(compact, CompressedGraph.of(compact, 0, 0));
+        for (int v = 0; v < compact.nodeCount(); v++) {
+            assertEquals(v, compressed.index(compressed.node(v)));
+        }
+        assertEquals(-1, compressed.index(new GraphImpl().createNode()));
+    }
+
+    @Test
+    public void testSimilarListsAreReferenced() {
+        // Nodes which link to mostly the same pages, as pages of one site do
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final List<DirectedNodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) nodes.add(graph.createNode());
+        final Random random = new Random(17);
+        for (int site = 0; site < 10; site++) {
+            final int first = site * 100;
+            for (int page = first; page < first + 100; page++) {
+                for (int target = first; target < first + 40; target++) {
+                    graph.connect(nodes.get(page), nodes.get(target));
+                }
+                graph.connect(nodes.get(page), nodes.get(random.nextInt(1000)));
+            }
+        }
+
+        // Pages of a site are numbered consecutively
+        final CompactGraph<DirectedNodeImpl, DirectedEdgeImpl> compact =
+                CompactGraph.of(graph, Direction.OUTGOING, nodes.toArray());
+        final CompressedGraph<DirectedNodeImpl, DirectedEdgeImpl> plain = CompressedGraph.of(compact, 0, 0);
+        final CompressedGraph<DirectedNodeImpl, DirectedEdgeImpl> referenced = CompressedGraph.of(compact);
+
+        assertSameAdjacency(compact, referenced);
+        assertTrue(plain.bitsPerEdge() <= 10);
+        assertTrue(referenced.bitsPerEdge() < 4);
+        assertTrue(referenced.dataSize() < plain.dataSize() / 4);
+    }
+
+    @Test
+    public void testReferenceChainIsBounded() {
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final List<DirectedNodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) nodes.add(graph.createNode());
+        for (DirectedNodeImpl node : nodes) {
+            for (int target = 0; target < 20; target++) graph.connect(node, nodes.get(target));
+        }
+
+        final CompactGraph<DirectedNodeImpl, DirectedEdgeImpl> compact = CompactGraph.of(graph, Direction.OUTGOING);
+        assertSameAdjacency(compact, CompressedGraph.of(compact, 1, 1));
+        assertSameAdjacency(compact, CompressedGraph.of(compact, 3, 10));
+    }
+
+    @Test
+    public void testShrinkingReferenceChain() {
+        // Every list is its predecessor without one element, so a list is decoded
+        // through a chain of longer ones
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final List<DirectedNodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < 60; i++) nodes.add(graph.createNode());
+        for (int i = 0; i < 30; i++) {
+            for (int target = 30 + i; target < 60; target++) graph.connect(nodes.get(i), nodes.get(target));
+        }
+
+        final CompactGraph<DirectedNodeImpl, DirectedEdgeImpl> compact =
+                CompactGraph.of(graph, Direction.OUTGOING, nodes.toArray());
+        final CompressedGraph<DirectedNodeImpl, DirectedEdgeImpl> compressed = CompressedGraph.of(compact, 7, 30);
+        assertSameAdjacency(compact, compressed);
+
+        final int[] last = new int[1];
+        assertEquals(1, compressed.cursor().neighbors(29, last));
+        assertEquals(59, last[0]);
+    }
+
+}
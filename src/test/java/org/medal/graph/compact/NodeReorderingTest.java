@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.compact;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.medal.graph.compact.CompactGraph.Direction;
+import org.medal.graph.compact.NodeReordering.Strategy;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class NodeReorderingTest {
+
+    private static final int SIDE = 20;
+
+    private GraphImpl graph;
+
+    private CompactGraph<NodeImpl, EdgeImpl> original;
+
+    @Before
+    public void prepareData() {
+        // A grid which nodes are numbered at random
+        graph = new GraphImpl();
+        final List<NodeImpl> nodes = new ArrayList<>();
+        for (int i = 0; i < SIDE * SIDE; i++) nodes.add(graph.createNode());
+        Collections.shuffle(nodes, new Random(5));
+        for (int row = 0; row < SIDE; row++) {
+            for (int column = 0; column < SIDE; column++) {
+                final NodeImpl node = nodes.get(row * SIDE + column);
+                if (column + 1 < SIDE) node.connect(nodes.get(row * SIDE + column + 1));
+                if (row + 1 < SIDE) node.connect(nodes.get((row + 1) * SIDE + column));
+            }
+        }
+        original = CompactGraph.of(graph);
+    }
+
+    private static void assertSameStructure(CompactGraph<NodeImpl, EdgeImpl> original,
+                                            NodeReordering<NodeImpl, EdgeImpl> reordering) {
+        final CompactGraph<NodeImpl, EdgeImpl> reordered = reordering.graph();
+        final int[] permutation = reordering.permutation();
+
+        final boolean[] taken = new boolean[permutation.length];
+        for (int v = 0; v < permutation.length; v++) {
+            assertFalse(taken[permutation[v]]);
+            taken[permutation[v]] = true;
+            assertSame(original.node(v), reordered.node(permutation[v]));
+            assertEquals(permutation[v], reordered.index(original.node(v)));
+            assertEquals(original.degree(v), reordered.degree(permutation[v]));
+        }
+        for (int e = 0; e < original.edgeCount(); e++) {
+            assertSame(original.edge(e), reordered.edge(e));
+            assertEquals(permutation[original.left(e)], reordered.left(e));
+            assertEquals(permutation[original.right(e)], reordered.right(e));
+        }
+    }
+
+    @Test
+    public void testReverseCuthillMcKee() {
+        final NodeReordering<NodeImpl, EdgeImpl> reordering =
+                NodeReordering.of(original, Direction.BOTH, Strategy.REVERSE_CUTHILL_MCKEE);
+
+        assertSameStructure(original, reordering);
+        assertEquals(NodeReordering.bandwidth(original), reordering.bandwidthBefore());
+        // The optimal bandwidth of a grid is its side
+        assertTrue(reordering.bandwidthAfter() <= SIDE + 1);
+        assertTrue(reordering.averageGapAfter() < reordering.averageGapBefore() / 5);
+    }
+
+    @Test
+    public void testDegreeOrder() {
+        final NodeReordering<NodeImpl, EdgeImpl> reordering =
+                NodeReordering.of(graph, Direction.BOTH, Strategy.DEGREE);
+
+        final CompactGraph<NodeImpl, EdgeImpl> reordered = reordering.graph();
+        for (int v = 1; v < reordered.nodeCount(); v++) {
+            assertTrue(reordered.degree(v - 1) >= reordered.degree(v));
+        }
+    }
+
+    @Test
+    public void testBreadthFirstKeepsDirection() {
+        final NodeReordering<NodeImpl, EdgeImpl> reordering =
+                NodeReordering.of(original, Direction.OUTGOING, Strategy.BREADTH_FIRST);
+
+        assertEquals(Direction.OUTGOING, reordering.graph().direction());
+        assertEquals(original.edgeCount(), reordering.graph().slotCount());
+        assertTrue(reordering.bandwidthAfter() < reordering.bandwidthBefore());
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.concurrent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.medal.graph.GraphListener;
+import org.medal.graph.compact.CompactGraph;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class AsyncQueryExecutorTest {
+
+    private GraphImpl graph;
+
+    private List<NodeImpl> path;
+
+    private AsyncQueryExecutor<NodeImpl, EdgeImpl> executor;
+
+    @Before
+    public void prepareData() {
+        graph = new GraphImpl();
+        path = new ArrayList<>();
+        for (int i = 0; i < 10; i++) path.add(graph.createNode());
+        for (int i = 0; i < 9; i++) path.get(i).connect(path.get(i + 1));
+        executor = new AsyncQueryExecutor<>(graph);
+    }
+
+    @After
+    public void close() {
+        executor.close();
+    }
+
+    @Test
+    public void testQueries() throws Exception {
+        assertEquals(Set.of(path.get(0), path.get(2)), executor.adjacentNodes(path.get(1)).get());
+        assertEquals(Integer.valueOf(1), executor.degree(path.get(0)).get());
+        assertEquals(Integer.valueOf(9), executor.distance(path.get(0), path.get(9)).get());
+
+        final NodeImpl isolated = graph.createNode();
+        assertEquals(Integer.valueOf(-1), executor.distance(path.get(0), isolated).get());
+
+        path.get(0).connect(path.get(9));
+        assertEquals(Integer.valueOf(1), executor.distance(path.get(0), path.get(9)).get());
+    }
+
+    @Test
+    public void testManyQueriesInFlight() {
+        final List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) futures.add(executor.degree(path.get(i % path.size())));
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        for (int i = 0; i < futures.size(); i++) {
+            final int expected = i % path.size() == 0 || i % path.size() == 9 ? 1 : 2;
+            assertEquals(Integer.valueOf(expected), futures.get(i).join());
+        }
+    }
+
+    @Test
+    public void testConcurrencyLimit() {
+        executor.withMaxConcurrency(2);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+
+        final List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(executor.submit(compact -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return compact.nodeCount();
+            }));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        assertTrue(peak.get() <= 2);
+    }
+
+    @Test
+    public void testPermitIsTakenBeforeSubmitting() throws Exception {
+        executor.withMaxConcurrency(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CompletableFuture<Integer> running = executor.submit(compact -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return compact.nodeCount();
+        });
+
+        final AtomicInteger started = new AtomicInteger();
+        final CompletableFuture<Integer> waiting = executor.submit(compact -> started.incrementAndGet(),
+                Duration.ofMillis(50));
+        assertTrue(waiting.isCompletedExceptionally());
+        try {
+            waiting.get();
+            fail("No permit was available.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        release.countDown();
+        assertEquals(Integer.valueOf(10), running.get());
+        assertEquals(Integer.valueOf(1), executor.submit(compact -> started.incrementAndGet()).get());
+    }
+
+    @Test
+    public void testFoldedEdgeRefreshesSnapshot() {
+        final GraphImpl folding = new GraphImpl();
+        folding.withParallelEdgeFolding();
+        final NodeImpl a = folding.createNode();
+        final NodeImpl b = folding.createNode();
+        a.connect(b);
+
+        try (AsyncQueryExecutor<NodeImpl, EdgeImpl> queries = new AsyncQueryExecutor<>(folding)) {
+            final CompactGraph<NodeImpl, EdgeImpl> before = queries.snapshot();
+            assertSame(before, queries.snapshot());
+
+            a.connect(b);
+
+            assertNotSame(before, queries.snapshot());
+        }
+    }
+
+    @Test
+    public void testNoSnapshotInTheMiddleOfTransaction() {
+        final List<RuntimeException> failures = new ArrayList<>();
+        graph.addListener(new GraphListener<NodeImpl, EdgeImpl>() {
+            @Override
+            public void edgeCreated(EdgeImpl edge) {
+                try {
+                    executor.snapshot();
+                } catch (RuntimeException e) {
+                    failures.add(e);
+                }
+            }
+        });
+
+        graph.transaction(tx -> {
+            tx.connect(path.get(0), path.get(2));
+            tx.connect(path.get(0), path.get(3));
+        });
+
+        assertEquals(2, failures.size());
+        assertTrue(failures.get(0) instanceof ConcurrentModificationException);
+        assertEquals(3, executor.snapshot().degree(executor.snapshot().index(path.get(0))));
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        final CountDownLatch never = new CountDownLatch(1);
+        final CompletableFuture<Object> future = executor.submit(compact -> {
+            try {
+                never.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }, Duration.ofMillis(50));
+
+        try {
+            future.get();
+            fail("The query must time out.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+    }
+
+    @Test
+    public void testFailedQuery() throws Exception {
+        final CompletableFuture<Integer> future = executor.degree(new GraphImpl().createNode());
+
+        try {
+            future.get();
+            fail("The node is not in the snapshot.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+}
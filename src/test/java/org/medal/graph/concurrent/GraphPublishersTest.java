@@ -0,0 +1,208 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.concurrent;
+
+import org.junit.Test;
+import org.medal.graph.impl.DirectedGraphImpl;
+import org.medal.graph.impl.DirectedNodeImpl;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class GraphPublishersTest {
+
+    /**
+     * Requests elements in batches and records them; may cancel after a number of elements.
+     */
+    private static class Recorder<T> implements Flow.Subscriber<T> {
+
+        final List<T> received = new ArrayList<>();
+
+        final CountDownLatch finished = new CountDownLatch(1);
+
+        final int batch;
+
+        final int cancelAfter;
+
+        Flow.Subscription subscription;
+
+        boolean completed;
+
+        Throwable error;
+
+        Recorder(int batch, int cancelAfter) {
+            this.batch = batch;
+            this.cancelAfter = cancelAfter;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        void request() {
+            subscription.request(batch);
+        }
+
+        @Override
+        public void onNext(T item) {
+            received.add(item);
+            if (received.size() == cancelAfter) {
+                subscription.cancel();
+                finished.countDown();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            finished.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            finished.countDown();
+        }
+    }
+
+    private static GraphImpl binaryTree(int nodes, List<NodeImpl> out) {
+        final GraphImpl graph = new GraphImpl();
+        for (int i = 0; i < nodes; i++) {
+            out.add(graph.createNode());
+            if (i > 0) out.get((i - 1) / 2).connect(out.get(i));
+        }
+        return graph;
+    }
+
+    @Test
+    public void testEmitsOnlyRequestedElements() {
+        final List<NodeImpl> nodes = new ArrayList<>();
+        final GraphImpl graph = binaryTree(15, nodes);
+
+        final Recorder<NodeImpl> recorder = new Recorder<>(4, -1);
+        GraphPublishers.nodes(graph, Runnable::run).subscribe(recorder);
+        assertTrue(recorder.received.isEmpty());
+
+        recorder.request();
+        assertEquals(4, recorder.received.size());
+        recorder.request();
+        assertEquals(8, recorder.received.size());
+        recorder.subscription.request(Long.MAX_VALUE);
+        assertEquals(new HashSet<>(nodes), new HashSet<>(recorder.received));
+        assertTrue(recorder.completed);
+    }
+
+    @Test
+    public void testBreadthFirstOrder() {
+        final List<NodeImpl> nodes = new ArrayList<>();
+        binaryTree(15, nodes);
+
+        final Recorder<NodeImpl> recorder = new Recorder<>(1, -1);
+        GraphPublishers.<NodeImpl, EdgeImpl>breadthFirst(nodes.get(0), Runnable::run).subscribe(recorder);
+        for (int i = 0; i < 15; i++) recorder.request();
+
+        for (int i = 0; i < 15; i++) {
+            assertEquals(depthOf(i), depthOf(nodes.indexOf(recorder.received.get(i))));
+        }
+        assertTrue(recorder.completed);
+    }
+
+    private static int depthOf(int index) {
+        return 31 - Integer.numberOfLeadingZeros(index + 1);
+    }
+
+    @Test
+    public void testDepthFirstCancellation() {
+        final List<NodeImpl> nodes = new ArrayList<>();
+        binaryTree(15, nodes);
+
+        final Recorder<NodeImpl> recorder = new Recorder<>(100, 4);
+        GraphPublishers.<NodeImpl, EdgeImpl>depthFirst(nodes.get(0), Runnable::run).subscribe(recorder);
+        recorder.request();
+
+        assertEquals(4, recorder.received.size());
+        assertFalse(recorder.completed);
+        // A path from the root down to a leaf.
+        for (int i = 1; i < 4; i++) {
+            assertEquals((nodes.indexOf(recorder.received.get(i)) - 1) / 2, nodes.indexOf(recorder.received.get(i - 1)));
+        }
+    }
+
+    @Test
+    public void testDirectedWalkFollowsOutgoingEdges() {
+        final DirectedGraphImpl graph = new DirectedGraphImpl();
+        final DirectedNodeImpl a = graph.createNode();
+        final DirectedNodeImpl b = graph.createNode();
+        final DirectedNodeImpl c = graph.createNode();
+        graph.connect(a, b);
+        graph.connect(c, a);
+
+        final Recorder<DirectedNodeImpl> recorder = new Recorder<>(10, -1);
+        GraphPublishers.breadthFirst(a, Runnable::run).subscribe(recorder);
+        recorder.request();
+
+        assertEquals(List.of(a, b), recorder.received);
+        assertTrue(recorder.completed);
+    }
+
+    @Test
+    public void testAsynchronousDelivery() throws Exception {
+        final List<NodeImpl> nodes = new ArrayList<>();
+        final GraphImpl graph = binaryTree(1000, nodes);
+
+        final Recorder<EdgeImpl> recorder = new Recorder<>(64, -1) {
+            @Override
+            public void onNext(EdgeImpl item) {
+                super.onNext(item);
+                if (received.size() % 64 == 0) request();
+            }
+        };
+        GraphPublishers.edges(graph).subscribe(recorder);
+        recorder.request();
+
+        assertTrue(recorder.finished.await(10, TimeUnit.SECONDS));
+        assertTrue(recorder.completed);
+        assertEquals(999, recorder.received.size());
+        assertEquals(graph.edges(), Set.copyOf(recorder.received));
+    }
+
+    @Test
+    public void testInvalidRequest() {
+        final GraphImpl graph = new GraphImpl();
+        graph.createNode();
+
+        final Recorder<NodeImpl> recorder = new Recorder<>(0, -1);
+        GraphPublishers.nodes(graph, Runnable::run).subscribe(recorder);
+        recorder.request();
+
+        assertTrue(recorder.error instanceof IllegalArgumentException);
+    }
+
+}
@@ -20,6 +20,18 @@ import org.medal.graph.NodeFactory;
 
 public class GraphImpl extends AbstractGraph<NodeImpl, EdgeImpl> {
 
+    public GraphImpl() {
+    }
+
+    public GraphImpl(int expectedNodes, int expectedEdges) {
+        super(expectedNodes, expectedEdges);
+    }
+
+    @Override
+    protected GraphImpl newGraph(int expectedNodes, int expectedEdges) {
+        return new GraphImpl(expectedNodes, expectedEdges);
+    }
+
     @Override
     protected NodeFactory<NodeImpl, EdgeImpl> getNodeFactory() {
         return () -> new NodeImpl(GraphImpl.this);
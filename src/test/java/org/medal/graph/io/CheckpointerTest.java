@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.medal.graph.GraphListener;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+import static org.medal.graph.io.MutationLogTest.structureOf;
+
+/**
+ * @author skrymets
+ */
+public class CheckpointerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSnapshotAndDeltas() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+
+        final GraphImpl graph = new GraphImpl();
+        try (Checkpointer<NodeImpl, EdgeImpl> checkpointer = Checkpointer.open(graph, directory)) {
+            final NodeImpl node1 = graph.createNode();
+            final NodeImpl node2 = graph.createNode();
+            final NodeImpl node3 = graph.createNode();
+            node1.connect(node2);
+            final EdgeImpl edge2to3 = node2.connect(node3);
+
+            // There is no snapshot yet, so the first delta is a snapshot
+            assertTrue(checkpointer.delta().toString().endsWith(".snapshot"));
+
+            final NodeImpl node4 = graph.createNode();
+            node3.connect(node4);
+            edge2to3.collapse();
+            assertTrue(checkpointer.delta().toString().endsWith(".delta"));
+
+            // A node created and deleted between two checkpoints leaves no trace
+            graph.deleteNode(graph.createNode());
+            graph.deleteNode(node1);
+            checkpointer.delta();
+            assertEquals(2, checkpointer.sequence());
+        }
+
+        final GraphImpl restored = new GraphImpl();
+        assertEquals(2, Checkpointer.recover(directory, restored));
+        assertEquals(structureOf(graph), structureOf(restored));
+        assertEquals(graph.createNode().id(), restored.createNode().id());
+    }
+
+    @Test
+    public void testMultiplicities() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+
+        final GraphImpl graph = new GraphImpl();
+        graph.withParallelEdgeFolding();
+        try (Checkpointer<NodeImpl, EdgeImpl> checkpointer = Checkpointer.open(graph, directory)) {
+            final NodeImpl node1 = graph.createNode();
+            final NodeImpl node2 = graph.createNode();
+            node1.connect(node2);
+            node1.connect(node2);
+            checkpointer.snapshot();
+
+            node2.connect(node1);
+            checkpointer.delta();
+        }
+
+        final GraphImpl restored = new GraphImpl();
+        restored.withParallelEdgeFolding();
+        Checkpointer.recover(directory, restored);
+        assertEquals(structureOf(graph), structureOf(restored));
+        assertEquals(3, restored.edges().iterator().next().multiplicity());
+    }
+
+    @Test
+    public void testRejectsGraphWhichFoldsDifferently() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+
+        final GraphImpl graph = new GraphImpl();
+        graph.withParallelEdgeFolding();
+        try (Checkpointer<NodeImpl, EdgeImpl> checkpointer = Checkpointer.open(graph, directory)) {
+            graph.createNode().connect(graph.createNode());
+            checkpointer.snapshot();
+        }
+
+        final GraphImpl restored = new GraphImpl();
+        try {
+            Checkpointer.recover(directory, restored);
+            fail("A checkpoint of a folding graph can not be recovered into one which does not fold");
+        } catch (IOException e) {
+            // expected
+        }
+        assertTrue(restored.nodes().isEmpty());
+    }
+
+    @Test
+    public void testDeltasWhileMutating() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+
+        final GraphImpl graph = new GraphImpl();
+        try (Checkpointer<NodeImpl, EdgeImpl> checkpointer = Checkpointer.open(graph, directory)) {
+            checkpointer.snapshot();
+
+            // The mutator does not hold the graph's monitor: deltas only read tracked changes
+            final Thread mutator = new Thread(() -> {
+                NodeImpl previous = graph.createNode();
+                for (int i = 0; i < 5_000; i++) {
+                    final NodeImpl next = graph.createNode();
+                    previous.connect(next);
+                    previous = next;
+                }
+            });
+            mutator.start();
+            while (mutator.isAlive()) checkpointer.delta();
+            mutator.join();
+            checkpointer.delta();
+        }
+
+        final GraphImpl restored = new GraphImpl();
+        Checkpointer.recover(directory, restored);
+        assertEquals(structureOf(graph), structureOf(restored));
+    }
+
+    @Test
+    public void testSnapshotMakesOlderCheckpointsObsolete() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+
+        final GraphImpl graph = new GraphImpl();
+        try (Checkpointer<NodeImpl, EdgeImpl> checkpointer = Checkpointer.open(graph, directory)) {
+            graph.createNode();
+            checkpointer.snapshot();
+            graph.createNode();
+            checkpointer.delta();
+            graph.createNode().connect(graph.createNode());
+            checkpointer.snapshot();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.collect(toList()).size());
+        }
+
+        final GraphImpl reopened = new GraphImpl();
+        try (Checkpointer<NodeImpl, EdgeImpl> checkpointer = Checkpointer.open(reopened, directory)) {
+            assertEquals(structureOf(graph), structureOf(reopened));
+            assertEquals(2, checkpointer.sequence());
+
+            reopened.createNode();
+            checkpointer.delta();
+        }
+
+        final GraphImpl restored = new GraphImpl();
+        Checkpointer.recover(directory, restored);
+        assertEquals(structureOf(reopened), structureOf(restored));
+    }
+
+    @Test
+    public void testNoCheckpointInTheMiddleOfTransaction() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+
+        final GraphImpl graph = new GraphImpl();
+        try (Checkpointer<NodeImpl, EdgeImpl> checkpointer = Checkpointer.open(graph, directory)) {
+            graph.addListener(new GraphListener<NodeImpl, EdgeImpl>() {
+                @Override
+                public void nodeCreated(NodeImpl node) {
+                    try {
+                        checkpointer.snapshot();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+
+            try {
+                graph.transaction(tx -> tx.connect(tx.createNode(), tx.createNode()));
+                fail("A checkpoint would capture a half-applied transaction");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            assertEquals(-1, checkpointer.sequence());
+            assertEquals(1, graph.edges().size());
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.io;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.medal.graph.impl.DirectedEdgeImpl;
+import org.medal.graph.impl.DirectedGraphImpl;
+import org.medal.graph.impl.DirectedNodeImpl;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class GraphExporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GraphImpl graph;
+
+    @Before
+    public void prepareData() {
+        graph = new GraphImpl();
+        final NodeImpl node0 = graph.createNode();
+        final NodeImpl node1 = graph.createNode();
+        node0.connect(node1);
+    }
+
+    @Test
+    public void testDot() throws IOException {
+        final StringWriter out = new StringWriter();
+        new DotExporter<NodeImpl, EdgeImpl>()
+                .withNodeAttribute("label", node -> "node \"" + node.id() + "\"")
+                .withNodeAttribute("missing", node -> null)
+                .export(graph, out);
+
+        final String dot = out.toString();
+        assertTrue(dot.startsWith("graph {\n"));
+        assertTrue(dot.contains("  0 [\"label\"=\"node \\\"0\\\"\"];\n"));
+        assertTrue(dot.contains("  0 -- 1;\n"));
+        assertTrue(dot.endsWith("}\n"));
+    }
+
+    @Test
+    public void testDirectedDot() throws IOException {
+        final DirectedGraphImpl directed = new DirectedGraphImpl();
+        directed.createNode().connect(directed.createNode());
+
+        final StringWriter out = new StringWriter();
+        new DotExporter<DirectedNodeImpl, DirectedEdgeImpl>().export(directed, out);
+
+        assertTrue(out.toString().startsWith("digraph {\n"));
+        assertTrue(out.toString().contains("  0 -> 1;\n"));
+    }
+
+    @Test
+    public void testGraphML() throws IOException {
+        final StringWriter out = new StringWriter();
+        new GraphMLExporter<NodeImpl, EdgeImpl>()
+                .withEdgeAttribute("weight", edge -> "<1>")
+                .export(graph, out);
+
+        final String xml = out.toString();
+        assertTrue(xml.contains("<key id=\"ek0\" for=\"edge\" attr.name=\"weight\" attr.type=\"string\"/>"));
+        assertTrue(xml.contains("<graph edgedefault=\"undirected\">"));
+        assertTrue(xml.contains("<node id=\"n1\"/>"));
+        assertTrue(xml.contains("<edge id=\"e0\" source=\"n0\" target=\"n1\">\n      <data key=\"ek0\">&lt;1&gt;</data>\n    </edge>"));
+        assertTrue(xml.endsWith("</graphml>\n"));
+    }
+
+    @Test
+    public void testEdgeListEscapesSeparators() throws IOException {
+        final StringWriter out = new StringWriter();
+        new EdgeListExporter<NodeImpl, EdgeImpl>()
+                .withEdgeAttribute("note\tname", edge -> "a\tb\nc\\d\r")
+                .withEdgeAttribute("missing", edge -> null)
+                .export(graph, out);
+
+        assertEquals("# left\tright\tnote\\tname\tmissing\n0\t1\ta\\tb\\nc\\\\d\\r\t\n", out.toString());
+    }
+
+    @Test
+    public void testGzippedEdgeList() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("graph.tsv.gz");
+        new EdgeListExporter<NodeImpl, EdgeImpl>()
+                .withEdgeAttribute("loop", edge -> edge.isLoop())
+                .export(graph, file);
+
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            in.transferTo(content);
+        }
+        assertEquals("# left\tright\tloop\n0\t1\tfalse\n", content.toString(UTF_8));
+    }
+
+}
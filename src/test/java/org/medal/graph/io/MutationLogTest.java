@@ -0,0 +1,267 @@
+/*
+ * Copyright 2017 skrymets.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.medal.graph.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.medal.graph.Edge;
+import org.medal.graph.impl.EdgeImpl;
+import org.medal.graph.impl.GraphImpl;
+import org.medal.graph.impl.NodeImpl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.Assert.*;
+
+/**
+ * @author skrymets
+ */
+public class MutationLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static Set<String> structureOf(GraphImpl graph) {
+        final Set<String> structure = new TreeSet<>();
+        for (NodeImpl node : graph.nodes()) structure.add("n" + node.id());
+        for (EdgeImpl edge : graph.edges()) structure.add("e" + edge.id() + ":" + edge.left().id() + "-" + edge.right().id());
+        return structure;
+    }
+
+    @Test
+    public void testReplayRestoresGraph() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("graph.log");
+
+        final GraphImpl graph = new GraphImpl();
+        try (MutationLog<NodeImpl, EdgeImpl> log = MutationLog.open(graph, file, Durability.GROUP)) {
+            final NodeImpl node1 = graph.createNode();
+            final NodeImpl node2 = graph.createNode();
+            final NodeImpl node3 = graph.createNode();
+            final NodeImpl node4 = graph.createNode();
+
+            node1.connect(node2);
+            final EdgeImpl edge2to3 = node2.connect(node3);
+            final EdgeImpl edge3to4 = node3.connect(node4);
+            node4.connect(node1);
+
+            edge2to3.collapse();
+            final Edge.Split<NodeImpl, EdgeImpl> split = edge3to4.insertMiddleNode();
+            graph.deleteEdge(split.rightEdge());
+            graph.deleteNode(node1);
+        }
+
+        final GraphImpl restored = new GraphImpl();
+        assertTrue(MutationLog.replay(file, restored) > 0);
+        assertEquals(structureOf(graph), structureOf(restored));
+
+        // New identifiers continue after the replayed ones
+        assertEquals(graph.createNode().id(), restored.createNode().id());
+    }
+
+    @Test
+    public void testReplayRestoresMultiplicities() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("graph.log");
+
+        final GraphImpl graph = new GraphImpl();
+        graph.withParallelEdgeFolding();
+        try (MutationLog<NodeImpl, EdgeImpl> log = MutationLog.open(graph, file, Durability.GROUP)) {
+            final NodeImpl node1 = graph.createNode();
+            final NodeImpl node2 = graph.createNode();
+            final NodeImpl node3 = graph.createNode();
+            node1.connect(node2);
+            node1.connect(node2);
+            node2.connect(node3);
+            node1.connect(node3).collapse();
+        }
+
+        final GraphImpl restored = new GraphImpl();
+        restored.withParallelEdgeFolding();
+        MutationLog.replay(file, restored);
+        assertEquals(structureOf(graph), structureOf(restored));
+        assertEquals(3, restored.edges().iterator().next().multiplicity());
+    }
+
+    @Test
+    public void testReopenAppends() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("graph.log");
+
+        final GraphImpl graph = new GraphImpl();
+        try (MutationLog<NodeImpl, EdgeImpl> log = MutationLog.open(graph, file, Durability.SYNC)) {
+            graph.createNode().connect(graph.createNode());
+        }
+
+        final GraphImpl reopened = new GraphImpl();
+        try (MutationLog<NodeImpl, EdgeImpl> log = MutationLog.open(reopened, file, Durability.ASYNC, 2, 0)) {
+            assertEquals(structureOf(graph), structureOf(reopened));
+            reopened.createNode();
+        }
+
+        final GraphImpl restored = new GraphImpl();
+        assertEquals(4, MutationLog.replay(file, restored));
+        assertEquals(3, restored.nodes().size());
+        assertEquals(1, restored.edges().size());
+    }
+
+    @Test
+    public void testTornTailIsIgnored() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("graph.log");
+
+        final GraphImpl graph = new GraphImpl();
+        try (MutationLog<NodeImpl, EdgeImpl> log = MutationLog.open(graph, file, Durability.GROUP)) {
+            graph.createNode().connect(graph.createNode());
+        }
+
+        // Cut the last CONNECT record in the middle
+        try (FileChannel channel = FileChannel.open(file, WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        final GraphImpl restored = new GraphImpl();
+        try (MutationLog<NodeImpl, EdgeImpl> log = MutationLog.open(restored, file, Durability.GROUP)) {
+            assertEquals(2, restored.nodes().size());
+            assertTrue(restored.edges().isEmpty());
+        }
+        assertEquals(MutationLog.HEADER_SIZE + 2 * (5 + MutationLog.CHECKSUM_SIZE), Files.size(file));
+    }
+
+    @Test
+    public void testGarbageTailIsCutOff() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("graph.log");
+
+        final GraphImpl graph = new GraphImpl();
+        try (MutationLog<NodeImpl, EdgeImpl> log = MutationLog.open(graph, file, Durability.GROUP)) {
+            graph.createNode().connect(graph.createNode());
+        }
+        final long size = Files.size(file);
+
+        // A torn write may leave a whole record which fails its checksum, or zeros
+        try (FileChannel channel = FileChannel.open(file, WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{MutationLog.CREATE_NODE, 0, 0, 0, 9, 1, 2, 3, 4, 0, 0, 0}), size);
+        }
+
+        final GraphImpl restored = new GraphImpl();
+        try (MutationLog<NodeImpl, EdgeImpl> log = MutationLog.open(restored, file, Durability.GROUP)) {
+            assertEquals(structureOf(graph), structureOf(restored));
+        }
+        assertEquals(size, Files.size(file));
+    }
+
+    @Test
+    public void testCorruptRecordFailsReplay() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("graph.log");
+
+        final GraphImpl graph = new GraphImpl();
+        try (MutationLog<NodeImpl, EdgeImpl> log = MutationLog.open(graph, file, Durability.GROUP)) {
+            for (int i = 0; i < 10; i++) graph.createNode();
+        }
+        final long size = Files.size(file);
+
+        // Flip a byte of the second record: the eight records after it are intact
+        try (FileChannel channel = FileChannel.open(file, WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0x7F}), MutationLog.HEADER_SIZE + 5 + MutationLog.CHECKSUM_SIZE + 2);
+        }
+
+        try {
+            MutationLog.open(new GraphImpl(), file, Durability.GROUP);
+            fail("A damaged record in the middle of the log is a corruption");
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            MutationLog.replay(file, new GraphImpl());
+            fail("A damaged record in the middle of the log is a corruption");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(size, Files.size(file));
+    }
+
+    @Test
+    public void testTransactionIsReplayedAsAWhole() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("graph.log");
+
+        final GraphImpl graph = new GraphImpl();
+        final long committed;
+        try (MutationLog<NodeImpl, EdgeImpl> log = MutationLog.open(graph, file, Durability.SYNC)) {
+            final NodeImpl a = graph.createNode();
+            graph.transaction(tx -> tx.connect(a, tx.createNode()));
+            log.sync();
+            committed = Files.size(file);
+            graph.transaction(tx -> tx.collapse(a.incidentEdges().iterator().next()));
+        }
+
+        final GraphImpl restored = new GraphImpl();
+        assertTrue(MutationLog.replay(file, restored) > 3);
+        assertEquals(structureOf(graph), structureOf(restored));
+
+        // A crash before the end record of the second batch leaves it unterminated
+        try (FileChannel channel = FileChannel.open(file, WRITE)) {
+            channel.truncate(channel.size() - 1 - MutationLog.CHECKSUM_SIZE);
+        }
+        final GraphImpl reopened = new GraphImpl();
+        try (MutationLog<NodeImpl, EdgeImpl> log = MutationLog.open(reopened, file, Durability.GROUP)) {
+            assertEquals(2, reopened.nodes().size());
+            assertEquals(1, reopened.edges().size());
+        }
+        assertEquals(committed, Files.size(file));
+    }
+
+    @Test
+    public void testWriteFailureFailsTheLogNotTheMutation() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("graph.log");
+
+        final GraphImpl graph = new GraphImpl();
+        final MutationLog<NodeImpl, EdgeImpl> log = MutationLog.open(graph, file, Durability.SYNC);
+        graph.createNode();
+        assertNull(log.failure());
+
+        log.channel.close();
+        final NodeImpl node = graph.createNode();
+        graph.createNode().connect(node);
+        assertEquals(3, graph.nodes().size());
+        assertNotNull(log.failure());
+
+        try {
+            log.sync();
+            fail("A failed log must not sync silently");
+        } catch (IOException e) {
+            assertSame(log.failure(), e.getCause());
+        }
+        try {
+            log.close();
+            fail("A failed log must not close silently");
+        } catch (IOException e) {
+            assertSame(log.failure(), e.getCause());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsForeignFile() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("graph.log");
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        MutationLog.open(new GraphImpl(), file, Durability.GROUP);
+    }
+
+}